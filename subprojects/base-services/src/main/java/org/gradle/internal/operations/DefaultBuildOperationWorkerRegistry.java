@@ -16,22 +16,42 @@
 
 package org.gradle.internal.operations;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.Stoppable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Hands out worker leases without a global lock. The leases in use are tracked using atomic counters. A thread that cannot get a lease immediately
+ * joins a FIFO queue of waiters. Whenever a lease is released, the waiters that can now proceed are granted their lease and woken, in order.
+ * The operations of each thread are tracked in a thread-local stack.
+ */
 public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorkerRegistry, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildOperationWorkerRegistry.class);
     private final int maxWorkerCount;
-    private final Object lock = new Object();
-    private int counter = 1;
-    private final ListMultimap<Thread, DefaultOperation> threads = ArrayListMultimap.create();
+    private final AtomicInteger counter = new AtomicInteger(1);
+    private final AtomicInteger activeOperations = new AtomicInteger();
+    private final ThreadLocal<List<DefaultOperation>> threadOperations = new ThreadLocal<List<DefaultOperation>>() {
+        @Override
+        protected List<DefaultOperation> initialValue() {
+            return new ArrayList<DefaultOperation>();
+        }
+    };
     private final Root root = new Root();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<Waiter>();
+    private final AtomicInteger pendingSignals = new AtomicInteger();
+    private final AtomicLong leaseWaitCount = new AtomicLong();
+    private final AtomicLong leaseWaitTime = new AtomicLong();
+    private final AtomicLong maxLeaseWaitTime = new AtomicLong();
 
     public DefaultBuildOperationWorkerRegistry(int maxWorkerCount) {
         this.maxWorkerCount = maxWorkerCount;
@@ -40,7 +60,7 @@ public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorker
 
     @Override
     public Operation getCurrent() {
-        List<DefaultOperation> operations = threads.get(Thread.currentThread());
+        List<DefaultOperation> operations = threadOperations.get();
         if (operations.isEmpty()) {
             throw new IllegalStateException("No build operation associated with the current thread");
         }
@@ -49,55 +69,150 @@ public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorker
 
     @Override
     public Completion operationStart() {
-        List<DefaultOperation> operations = threads.get(Thread.currentThread());
+        List<DefaultOperation> operations = threadOperations.get();
         LeaseHolder parent = operations.isEmpty() ? root : operations.get(operations.size() - 1);
         return doStartOperation(parent);
     }
 
     private BuildOperationWorkerRegistry.Completion doStartOperation(LeaseHolder parent) {
-        synchronized (lock) {
-            int workerId = counter++;
-            Thread ownerThread = Thread.currentThread();
-
-            DefaultOperation operation = new DefaultOperation(parent, workerId, ownerThread);
-            while (!parent.grantLease()) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Worker {} waiting for a lease. Currently {} in use", operation.getDisplayName(), root.leasesInUse);
-                }
-                try {
-                    lock.wait();
-                } catch (InterruptedException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
-                }
-            }
+        DefaultOperation operation = new DefaultOperation(parent, counter.getAndIncrement(), Thread.currentThread());
 
-            threads.put(ownerThread, operation);
+        // Only take a lease ahead of the queued waiters when there are none
+        if (!waiters.isEmpty() || !parent.grantLease()) {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Worker {} started ({} in use).", operation.getDisplayName(), root.leasesInUse);
+                LOGGER.debug("Worker {} waiting for a lease. Currently {} in use", operation.getDisplayName(), root.leasesInUse.get());
+            }
+            waitForLease(parent);
+        }
+
+        threadOperations.get().add(operation);
+        activeOperations.incrementAndGet();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Worker {} started ({} in use).", operation.getDisplayName(), root.leasesInUse.get());
+        }
+        return operation;
+    }
+
+    private void waitForLease(LeaseHolder parent) {
+        long start = System.nanoTime();
+        Waiter waiter = new Waiter(parent, Thread.currentThread());
+        waiters.add(waiter);
+        signalWaiters();
+        while (waiter.state.get() != Waiter.GRANTED) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+                    waiters.remove(waiter);
+                } else {
+                    returnLease(parent);
+                }
+                throw UncheckedException.throwAsUncheckedException(new InterruptedException());
             }
-            return operation;
         }
+        long waited = System.nanoTime() - start;
+        leaseWaitCount.incrementAndGet();
+        leaseWaitTime.addAndGet(waited);
+        long max = maxLeaseWaitTime.get();
+        while (waited > max && !maxLeaseWaitTime.compareAndSet(max, waited)) {
+            max = maxLeaseWaitTime.get();
+        }
+    }
+
+    private void returnLease(LeaseHolder holder) {
+        holder.releaseLease();
+        if (!waiters.isEmpty()) {
+            signalWaiters();
+        }
+    }
+
+    /**
+     * Grants leases to the waiters that can proceed, in the order they started waiting. Only one thread signals at a time. When another thread
+     * asks for a signal while this is happening, the signalling thread makes another pass over the waiters on its behalf.
+     */
+    private void signalWaiters() {
+        if (pendingSignals.getAndIncrement() != 0) {
+            return;
+        }
+        int signals = 1;
+        do {
+            for (Waiter waiter : waiters) {
+                if (waiter.state.get() == Waiter.CANCELLED) {
+                    continue;
+                }
+                if (!waiter.parent.grantLease()) {
+                    continue;
+                }
+                if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                    waiters.remove(waiter);
+                    LockSupport.unpark(waiter.thread);
+                } else {
+                    // Cancelled in the meantime
+                    returnLease(waiter.parent);
+                }
+            }
+            signals = pendingSignals.addAndGet(-signals);
+        } while (signals != 0);
+    }
+
+    /**
+     * Returns the number of operations that had to wait for a lease.
+     */
+    public long getLeaseWaitCount() {
+        return leaseWaitCount.get();
+    }
+
+    /**
+     * Returns the total time that operations have waited for a lease, in milliseconds.
+     */
+    public long getLeaseWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(leaseWaitTime.get());
+    }
+
+    /**
+     * Returns the longest time that an operation has waited for a lease, in milliseconds.
+     */
+    public long getMaxLeaseWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLeaseWaitTime.get());
     }
 
     @Override
     public void stop() {
-        synchronized (lock) {
-            if (!threads.isEmpty()) {
-                throw new IllegalStateException("Some build operations have not been marked as completed.");
-            }
+        if (activeOperations.get() != 0) {
+            throw new IllegalStateException("Some build operations have not been marked as completed.");
+        }
+        if (LOGGER.isInfoEnabled() && leaseWaitCount.get() > 0) {
+            LOGGER.info("Waited for a worker lease {} times, for {}ms in total and at most {}ms.", getLeaseWaitCount(), getLeaseWaitTimeMillis(), getMaxLeaseWaitTimeMillis());
+        }
+    }
+
+    private static class Waiter {
+        static final int WAITING = 0;
+        static final int GRANTED = 1;
+        static final int CANCELLED = 2;
+
+        final LeaseHolder parent;
+        final Thread thread;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(LeaseHolder parent, Thread thread) {
+            this.parent = parent;
+            this.thread = thread;
         }
     }
 
     private abstract class LeaseHolder {
         abstract String getDisplayName();
 
+        /**
+         * Grants a lease if one is available. Does not block.
+         */
         abstract boolean grantLease();
 
         abstract void releaseLease();
     }
 
     private class Root extends LeaseHolder {
-        int leasesInUse;
+        final AtomicInteger leasesInUse = new AtomicInteger();
 
         public String getDisplayName() {
             return "root";
@@ -105,16 +220,20 @@ public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorker
 
         @Override
         boolean grantLease() {
-            if (leasesInUse >= maxWorkerCount) {
-                return false;
+            while (true) {
+                int current = leasesInUse.get();
+                if (current >= maxWorkerCount) {
+                    return false;
+                }
+                if (leasesInUse.compareAndSet(current, current + 1)) {
+                    return true;
+                }
             }
-            leasesInUse++;
-            return true;
         }
 
         @Override
         void releaseLease() {
-            leasesInUse--;
+            leasesInUse.decrementAndGet();
         }
     }
 
@@ -122,7 +241,8 @@ public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorker
         private final LeaseHolder parent;
         private final int workerId;
         private final Thread ownerThread;
-        int children;
+        // Every child except one holds a lease from the root
+        final AtomicInteger children = new AtomicInteger();
 
         DefaultOperation(LeaseHolder parent, int workerId, Thread ownerThread) {
             this.parent = parent;
@@ -137,17 +257,29 @@ public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorker
 
         @Override
         boolean grantLease() {
-            if (children == 0 || root.grantLease()) {
-                children++;
-                return true;
+            while (true) {
+                int current = children.get();
+                if (current == 0) {
+                    if (children.compareAndSet(0, 1)) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (!root.grantLease()) {
+                    return false;
+                }
+                if (children.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                // The number of children changed, so give back the root lease and try again
+                returnLease(root);
             }
-            return false;
         }
 
         @Override
         void releaseLease() {
-            children--;
-            if (children > 0) {
+            int remaining = children.decrementAndGet();
+            if (remaining > 0) {
                 root.releaseLease();
             }
         }
@@ -163,18 +295,17 @@ public class DefaultBuildOperationWorkerRegistry implements BuildOperationWorker
                 // Not implemented - not yet required. Please implement if required
                 throw new UnsupportedOperationException("Must complete operation from owner thread.");
             }
-            synchronized (lock) {
-                parent.releaseLease();
-                threads.remove(ownerThread, this);
-                lock.notifyAll();
+            returnLease(parent);
+            List<DefaultOperation> operations = threadOperations.get();
+            operations.remove(operations.lastIndexOf(this));
+            activeOperations.decrementAndGet();
 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Worker {} completed ({} in use)", getDisplayName(), root.leasesInUse);
-                }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Worker {} completed ({} in use)", getDisplayName(), root.leasesInUse.get());
+            }
 
-                if (children != 0) {
-                    throw new IllegalStateException("Some child operations have not yet completed.");
-                }
+            if (children.get() != 0) {
+                throw new IllegalStateException("Some child operations have not yet completed.");
             }
         }
     }
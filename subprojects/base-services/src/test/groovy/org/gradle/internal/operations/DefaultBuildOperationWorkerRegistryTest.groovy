@@ -69,6 +69,68 @@ class DefaultBuildOperationWorkerRegistryTest extends ConcurrentSpec {
         registry?.stop()
     }
 
+    def "waiting operations start in the order they started waiting"() {
+        def registry = new DefaultBuildOperationWorkerRegistry(1)
+
+        when:
+        async {
+            start {
+                def cl = registry.operationStart()
+                instant.worker1
+                thread.blockUntil.worker3Waiting
+                thread.block()
+                cl.operationFinish()
+            }
+            start {
+                thread.blockUntil.worker1
+                instant.worker2Waiting
+                def cl = registry.operationStart()
+                instant.worker2
+                cl.operationFinish()
+            }
+            start {
+                thread.blockUntil.worker2Waiting
+                thread.block()
+                instant.worker3Waiting
+                def cl = registry.operationStart()
+                instant.worker3
+                cl.operationFinish()
+            }
+        }
+
+        then:
+        instant.worker3 > instant.worker2
+
+        cleanup:
+        registry?.stop()
+    }
+
+    def "records time spent waiting for a lease"() {
+        def registry = new DefaultBuildOperationWorkerRegistry(1)
+
+        when:
+        async {
+            start {
+                def cl = registry.operationStart()
+                instant.worker1
+                thread.block()
+                cl.operationFinish()
+            }
+            start {
+                thread.blockUntil.worker1
+                registry.operationStart().operationFinish()
+            }
+        }
+
+        then:
+        registry.leaseWaitCount == 1
+        registry.leaseWaitTimeMillis > 0
+        registry.maxLeaseWaitTimeMillis == registry.leaseWaitTimeMillis
+
+        cleanup:
+        registry?.stop()
+    }
+
     def "child operation starts immediately when there are sufficient leases available"() {
         def registry = new DefaultBuildOperationWorkerRegistry(1)
 
@@ -28,6 +28,7 @@ import spock.lang.Specification
 
 import javax.servlet.http.HttpServletRequest
 import javax.servlet.http.HttpServletResponse
+import java.util.concurrent.CountDownLatch
 
 class HttpBuildCacheTest extends Specification {
     public static final List<Integer> FATAL_HTTP_ERROR_CODES = [
@@ -165,6 +166,127 @@ class HttpBuildCacheTest extends Specification {
         httpCode << [HttpStatus.SC_INTERNAL_SERVER_ERROR, HttpStatus.SC_SERVICE_UNAVAILABLE]
     }
 
+    def "counts hits, misses and failed loads"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGet("/cache/${key.hashCode}", srcFile)
+        server.expectGetMissing("/cache/${key.hashCode}")
+        expectError(HttpStatus.SC_INTERNAL_SERVER_ERROR, 'GET')
+
+        when:
+        cache.load(key) { input -> input.text }
+        cache.load(key) { input -> }
+        cache.load(key) { input -> }
+
+        then:
+        thrown(BuildCacheException)
+        cache.hits == 1
+        cache.misses == 1
+        cache.errors == 1
+    }
+
+    def "does not prefetch entries unless enabled"() {
+        def stagingDir = tempDir.file("staging")
+
+        when:
+        cache.prefetch([key], stagingDir)
+
+        then:
+        !cache.prefetchEnabled
+        !stagingDir.exists()
+    }
+
+    def "loads prefetched entries from the staging directory"() {
+        def stagingDir = tempDir.file("staging")
+        def prefetchingCache = new HttpBuildCache(server.uri.resolve("/cache/"), 2)
+        def requested = expectPrefetch { HttpServletResponse response ->
+            response.outputStream << "Data"
+        }
+
+        when:
+        prefetchingCache.prefetch([key], stagingDir)
+        requested.await()
+        def receivedInput = null
+        def fromCache = prefetchingCache.load(key) { input ->
+            receivedInput = input.text
+        }
+
+        then:
+        fromCache
+        receivedInput == "Data"
+        prefetchingCache.hits == 1
+        prefetchingCache.prefetchedHits == 1
+        stagingDir.list() as List == []
+
+        when:
+        prefetchingCache.close()
+
+        then:
+        !stagingDir.exists()
+    }
+
+    def "reports cache miss for entries that were missing when prefetched"() {
+        def prefetchingCache = new HttpBuildCache(server.uri.resolve("/cache/"), 2)
+        def requested = expectPrefetch { HttpServletResponse response ->
+            response.sendError(HttpStatus.SC_NOT_FOUND, "not found")
+        }
+
+        when:
+        prefetchingCache.prefetch([key], tempDir.file("staging"))
+        requested.await()
+        def fromCache = prefetchingCache.load(key) { input ->
+            throw new RuntimeException("That should never be called")
+        }
+        prefetchingCache.close()
+
+        then:
+        !fromCache
+        prefetchingCache.misses == 1
+        prefetchingCache.prefetchedHits == 0
+    }
+
+    def "loads entries again when they could not be prefetched"() {
+        def prefetchingCache = new HttpBuildCache(server.uri.resolve("/cache/"), 2)
+        def requested = expectPrefetch { HttpServletResponse response ->
+            response.sendError(HttpStatus.SC_INTERNAL_SERVER_ERROR, "broken")
+        }
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGet("/cache/${key.hashCode}", srcFile)
+
+        when:
+        prefetchingCache.prefetch([key], tempDir.file("staging"))
+        requested.await()
+        def receivedInput = null
+        def fromCache = prefetchingCache.load(key) { input ->
+            receivedInput = input.text
+        }
+        prefetchingCache.close()
+
+        then:
+        fromCache
+        receivedInput == "Data"
+        prefetchingCache.hits == 1
+        prefetchingCache.prefetchedHits == 0
+        prefetchingCache.errors == 0
+    }
+
+    /**
+     * Expects the GET of a prefetch. The returned latch is released once the request has been received, at which point
+     * a load of the entry waits for the prefetch instead of requesting the entry itself.
+     */
+    private CountDownLatch expectPrefetch(Closure respond) {
+        def requested = new CountDownLatch(1)
+        server.expect("/cache/${key.hashCode}", false, ['GET'], new HttpServer.ActionSupport("prefetch") {
+            @Override
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                requested.countDown()
+                respond(response)
+            }
+        })
+        return requested
+    }
+
     private HttpResourceInteraction expectError(int httpCode, String method) {
         server.expect("/cache/${key.hashCode}", false, [method], new HttpServer.ActionSupport("return ${httpCode} broken") {
             @Override
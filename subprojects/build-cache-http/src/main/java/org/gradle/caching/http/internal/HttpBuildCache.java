@@ -17,6 +17,7 @@
 package org.gradle.caching.http.internal;
 
 import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.IncompleteArgumentException;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
@@ -27,22 +28,43 @@ import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.gradle.api.Nullable;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCache;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.PrefetchingBuildCache;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.util.GFileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
@@ -52,8 +74,13 @@ import java.util.Set;
  * Other responses are treated as recoverable or non-recoverable errors, depending on the status code.
  * E.g. we treat authentication failures (401 and 409) as non-recoverable while an internal server error (500) is recoverable.
  *
+ * <p>Connections are pooled and kept alive between requests, with enough connections per host for every worker of a parallel build to have a
+ * request in flight. Hits, misses, errors and the time spent loading are logged when the cache is closed.</p>
+ *
+ * <p>When prefetching is enabled, entries for tasks that have not executed yet can be loaded ahead of time on a bounded number of threads.
+ * They are staged in a local directory, where {@link #load} looks first. An entry that could not be prefetched is requested again.</p>
  */
-public class HttpBuildCache implements BuildCache {
+public class HttpBuildCache implements PrefetchingBuildCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCache.class);
     private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
         HttpStatus.SC_USE_PROXY,
@@ -66,21 +93,79 @@ public class HttpBuildCache implements BuildCache {
         511 // network authentication required
     );
 
+    // Connections that have not been used for this long are checked before being reused, as the server may have closed them
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+    static final int MAX_CONNECTIONS = 32;
+    // Leaves connections for the loads and stores of executing tasks
+    static final int MAX_PREFETCH_THREADS = MAX_CONNECTIONS / 2;
+
     private final URI root;
     private final URI safeUri;
     private final CloseableHttpClient httpClient;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+    private final AtomicLong prefetchedHits = new AtomicLong();
+    private final int prefetchThreads;
+    private final ConcurrentMap<String, PrefetchedEntry> prefetchedEntries = new ConcurrentHashMap<String, PrefetchedEntry>();
+    private final Collection<File> stagingDirectories = new CopyOnWriteArrayList<File>();
+    private final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory();
+    private StoppableExecutor prefetchExecutor;
 
     public HttpBuildCache(URI root) {
+        this(root, 0);
+    }
+
+    /**
+     * @param prefetchThreads the number of threads to prefetch entries with, or 0 to not prefetch entries.
+     */
+    public HttpBuildCache(URI root, int prefetchThreads) {
         if (!root.getPath().endsWith("/")) {
             throw new IncompleteArgumentException("HTTP cache root URI must end with '/'");
         }
         this.root = root;
         this.safeUri = safeUri(root);
-        this.httpClient = HttpClients.createDefault();
+        this.prefetchThreads = Math.min(prefetchThreads, MAX_PREFETCH_THREADS);
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        // The default allows only two connections per host, which serializes the requests of parallel workers
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .build();
     }
 
     @Override
     public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Boolean found = loadPrefetched(key, reader);
+            if (found != null) {
+                if (found) {
+                    prefetchedHits.incrementAndGet();
+                }
+            } else {
+                found = get(key, reader);
+            }
+            failed = false;
+            if (found) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+            return found;
+        } finally {
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            loadTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private boolean get(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
         final URI uri = root.resolve("./" + key.getHashCode());
         HttpGet httpGet = new HttpGet(uri);
         CloseableHttpResponse response = null;
@@ -106,10 +191,102 @@ public class HttpBuildCache implements BuildCache {
             // Right now, everything is considered recoverable.
             throw new BuildCacheException(String.format("Loading key '%s' from %s", key, getDescription()), e);
         } finally {
+            // Consumes any remaining content, so the connection can be reused
             HttpClientUtils.closeQuietly(response);
         }
     }
 
+    /**
+     * Loads the entry from its staged copy, waiting for the prefetch to complete if necessary.
+     *
+     * @return whether the entry was found, or {@code null} when the entry was not prefetched, or could not be.
+     */
+    @Nullable
+    private Boolean loadPrefetched(BuildCacheKey key, BuildCacheEntryReader reader) {
+        PrefetchedEntry prefetch = prefetchedEntries.remove(key.getHashCode());
+        if (prefetch == null || prefetch.claim()) {
+            // Loading an entry that is still queued for prefetching directly is faster than waiting for it
+            return null;
+        }
+        File stagedEntry;
+        try {
+            stagedEntry = prefetch.staged.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            LOGGER.debug("Could not prefetch key '{}' from {}, loading it again.", key, getDescription(), e.getCause());
+            return null;
+        }
+        if (stagedEntry == null) {
+            return false;
+        }
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(stagedEntry));
+            try {
+                reader.readFrom(input);
+            } finally {
+                input.close();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Loading key '%s' from %s", key, getDescription()), e);
+        } finally {
+            GFileUtils.deleteQuietly(stagedEntry);
+        }
+    }
+
+    @Override
+    public boolean isPrefetchEnabled() {
+        return prefetchThreads > 0;
+    }
+
+    @Override
+    public void prefetch(Collection<? extends BuildCacheKey> keys, final File stagingDirectory) {
+        if (!isPrefetchEnabled()) {
+            return;
+        }
+        GFileUtils.mkdirs(stagingDirectory);
+        stagingDirectories.add(stagingDirectory);
+        StoppableExecutor executor = getPrefetchExecutor();
+        for (BuildCacheKey key : keys) {
+            if (prefetchedEntries.containsKey(key.getHashCode())) {
+                continue;
+            }
+            PrefetchedEntry prefetch = new PrefetchedEntry(key, new File(stagingDirectory, key.getHashCode()));
+            prefetch.staged = executor.submit(prefetch);
+            prefetchedEntries.put(key.getHashCode(), prefetch);
+        }
+        LOGGER.info("Prefetching {} entries from {}.", keys.size(), getDescription());
+    }
+
+    /**
+     * Downloads the entry to the given file.
+     *
+     * @return the staged entry, or {@code null} when the entry is not in the cache.
+     */
+    @Nullable
+    private File stage(BuildCacheKey key, final File destination) {
+        boolean found = get(key, new BuildCacheEntryReader() {
+            @Override
+            public void readFrom(InputStream input) throws IOException {
+                OutputStream output = new BufferedOutputStream(new FileOutputStream(destination));
+                try {
+                    IOUtils.copyLarge(input, output);
+                } finally {
+                    output.close();
+                }
+            }
+        });
+        return found ? destination : null;
+    }
+
+    private synchronized StoppableExecutor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = executorFactory.create("HTTP build cache prefetch", prefetchThreads);
+        }
+        return prefetchExecutor;
+    }
+
     @Override
     public void store(BuildCacheKey key, final BuildCacheEntryWriter output) throws BuildCacheException {
         final URI uri = root.resolve(key.getHashCode());
@@ -182,9 +359,67 @@ public class HttpBuildCache implements BuildCache {
 
     @Override
     public void close() throws IOException {
+        long loads = hits.get() + misses.get() + errors.get();
+        if (loads > 0) {
+            LOGGER.info("{}: {} hits ({} prefetched), {} misses, {} failed loads, {} ms average load time.",
+                getDescription(), hits.get(), prefetchedHits.get(), misses.get(), errors.get(), TimeUnit.NANOSECONDS.toMillis(loadTimeNanos.get()) / loads);
+        }
+        // Entries that no task has loaded are not needed anymore
+        for (PrefetchedEntry prefetch : prefetchedEntries.values()) {
+            prefetch.claim();
+        }
+        executorFactory.stop();
+        prefetchedEntries.clear();
+        for (File stagingDirectory : stagingDirectories) {
+            GFileUtils.deleteQuietly(stagingDirectory);
+        }
         httpClient.close();
     }
 
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    long getPrefetchedHits() {
+        return prefetchedHits.get();
+    }
+
+    private class PrefetchedEntry implements Callable<File> {
+        private final BuildCacheKey key;
+        private final File destination;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<File> staged;
+
+        private PrefetchedEntry(BuildCacheKey key, File destination) {
+            this.key = key;
+            this.destination = destination;
+        }
+
+        /**
+         * Claims the entry, returning false when it has been claimed already. A prefetch thread claims the entry when it starts to download it.
+         * A load claims it so it does not wait for a download that has not started yet.
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public File call() {
+            if (!claim()) {
+                return null;
+            }
+            return stage(key, destination);
+        }
+    }
+
     /**
      * Create a safe URI from the given one by stripping out user info.
      *
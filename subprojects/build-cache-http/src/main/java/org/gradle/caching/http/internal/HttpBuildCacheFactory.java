@@ -24,10 +24,11 @@ import org.gradle.caching.internal.BuildCacheFactory;
 import java.net.URI;
 
 /**
- * Build cache factory for HTTP backends.
+ * Build cache factory for HTTP backends. Entries are prefetched when the {@value #PREFETCH_THREADS_PROPERTY} system property is set to a positive number of threads.
  */
 public class HttpBuildCacheFactory implements BuildCacheFactory {
     private static final String HTTP_URI_PROPERTY = "org.gradle.cache.tasks.http.uri";
+    static final String PREFETCH_THREADS_PROPERTY = "org.gradle.cache.tasks.http.prefetch.maxthreads";
 
     private final URI root;
 
@@ -45,6 +46,6 @@ public class HttpBuildCacheFactory implements BuildCacheFactory {
 
     @Override
     public BuildCache createCache(StartParameter startParameter) {
-        return new HttpBuildCache(root);
+        return new HttpBuildCache(root, Integer.getInteger(PREFETCH_THREADS_PROPERTY, 0));
     }
 }
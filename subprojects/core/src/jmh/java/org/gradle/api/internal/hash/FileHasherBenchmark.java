@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the file hash functions on many small source files and on a few large jars.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FileHasherBenchmark {
+
+    public enum Content {
+        SOURCE_FILES(2000, 4 * 1024),
+        JARS(4, 16 * 1024 * 1024);
+
+        private final int count;
+        private final int size;
+
+        Content(int count, int size) {
+            this.count = count;
+            this.size = size;
+        }
+    }
+
+    @Param({"MD5", "MURMUR3"})
+    FileHashFunction hashFunction;
+
+    @Param({"SOURCE_FILES", "JARS"})
+    Content content;
+
+    private File dir;
+    private List<File> files;
+    private DefaultFileHasher hasher;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        dir = Files.createTempDir();
+        files = new ArrayList<File>(content.count);
+        Random random = new Random(42);
+        byte[] bytes = new byte[content.size];
+        for (int i = 0; i < content.count; i++) {
+            random.nextBytes(bytes);
+            File file = new File(dir, "file" + i);
+            Files.write(bytes, file);
+            files.add(file);
+        }
+        hasher = new DefaultFileHasher(hashFunction);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        for (File file : files) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public void hashFiles(Blackhole bh) {
+        for (File file : files) {
+            bh.consume(hasher.hash(file));
+        }
+    }
+}
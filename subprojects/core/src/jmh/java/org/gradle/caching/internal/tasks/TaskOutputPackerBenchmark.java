@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.file.IdentityFileResolver;
+import org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType;
+import org.gradle.api.internal.tasks.DefaultCacheableTaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec;
+import org.gradle.api.tasks.util.internal.PatternSets;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares packing and unpacking a build cache entry with each kind of compression, on a single thread and with parallel compression, for an
+ * output with many small files and for an output with a few huge files.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TaskOutputPackerBenchmark {
+
+    public enum Content {
+        SMALL_FILES(5000, 2 * 1024),
+        HUGE_FILES(2, 64 * 1024 * 1024);
+
+        private final int count;
+        private final int size;
+
+        Content(int count, int size) {
+            this.count = count;
+            this.size = size;
+        }
+    }
+
+    private static final TaskOutputOriginWriter WRITE_ORIGIN = new TaskOutputOriginWriter() {
+        @Override
+        public void execute(OutputStream outputStream) {
+        }
+    };
+
+    private static final TaskOutputOriginReader READ_ORIGIN = new TaskOutputOriginReader() {
+        @Override
+        public void execute(InputStream inputStream) {
+        }
+    };
+
+    @Param({"SMALL_FILES", "HUGE_FILES"})
+    Content content;
+
+    @Param({"GZIP", "GZIP_FAST", "NONE"})
+    TaskOutputCompression compression;
+
+    @Param({"1", "4"})
+    int maxThreads;
+
+    private File tempDir;
+    private TaskOutputsInternal sourceOutputs;
+    private TaskOutputsInternal targetOutputs;
+    private DefaultExecutorFactory executorFactory;
+    private TaskOutputPacker packer;
+    private byte[] packed;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        tempDir = Files.createTempDir();
+        File sourceDir = new File(tempDir, "source");
+        Random random = new Random(42);
+        byte[] bytes = new byte[content.size];
+        for (int i = 0; i < content.count; i++) {
+            // Half random and half repeated, so that the contents compress somewhat like class files do
+            random.nextBytes(bytes);
+            for (int j = bytes.length / 2; j < bytes.length; j++) {
+                bytes[j] = (byte) (j % 16);
+            }
+            File file = new File(sourceDir, "dir" + (i % 50) + "/file" + i);
+            Files.createParentDirs(file);
+            Files.write(bytes, file);
+        }
+
+        FileSystem fileSystem = fileSystem();
+        sourceOutputs = taskOutputs(fileSystem, sourceDir);
+        targetOutputs = taskOutputs(fileSystem, new File(tempDir, "target"));
+        executorFactory = new DefaultExecutorFactory();
+        packer = new CompressingTaskOutputPacker(new TarTaskOutputPacker(fileSystem), compression, executorFactory, maxThreads);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(sourceOutputs, output, WRITE_ORIGIN);
+        packed = output.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        executorFactory.stop();
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Benchmark
+    public int pack() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(packed.length);
+        packer.pack(sourceOutputs, output, WRITE_ORIGIN);
+        return output.size();
+    }
+
+    @Benchmark
+    public void unpack() {
+        packer.unpack(targetOutputs, new ByteArrayInputStream(packed), READ_ORIGIN);
+    }
+
+    private static TaskOutputsInternal taskOutputs(FileSystem fileSystem, File dir) {
+        DefaultCacheableTaskOutputFilePropertySpec spec = new DefaultCacheableTaskOutputFilePropertySpec(null, "benchmark", new IdentityFileResolver(fileSystem, PatternSets.getNonCachingPatternSetFactory()), OutputType.DIRECTORY, dir);
+        spec.withPropertyName("output");
+        final SortedSet<TaskOutputFilePropertySpec> fileProperties = ImmutableSortedSet.<TaskOutputFilePropertySpec>of(spec);
+        return (TaskOutputsInternal) Proxy.newProxyInstance(TaskOutputPackerBenchmark.class.getClassLoader(), new Class<?>[]{TaskOutputsInternal.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getFileProperties")) {
+                    return fileProperties;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * A file system that does not need the native integration, and that reports the same permissions for every file.
+     */
+    private static FileSystem fileSystem() {
+        return (FileSystem) Proxy.newProxyInstance(TaskOutputPackerBenchmark.class.getClassLoader(), new Class<?>[]{FileSystem.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getUnixMode")) {
+                    return ((File) args[0]).isDirectory() ? 0755 : 0644;
+                }
+                if (name.equals("isCaseSensitive")) {
+                    return true;
+                }
+                if (name.equals("chmod")) {
+                    return null;
+                }
+                if (method.getReturnType() == boolean.class) {
+                    return false;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Task;
+import org.gradle.api.internal.TaskInternal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulates handing out the tasks of a synthetic graph to a fixed number of workers, comparing a scan of the whole
+ * execution queue with the indexed ready queue.
+ */
+@State(Scope.Benchmark)
+public class TaskExecutionQueueBenchmark {
+
+    private static final int WORKERS = 16;
+    private static final int MAX_DEPENDENCIES = 4;
+
+    @Param({"10000", "100000"})
+    int taskCount;
+
+    private List<TaskInfo> plan;
+
+    @Setup(Level.Invocation)
+    public void createGraph() {
+        Random random = new Random(42);
+        plan = new ArrayList<TaskInfo>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            TaskInfo taskInfo = new TaskInfo(task(i));
+            int dependencies = i == 0 ? 0 : random.nextInt(MAX_DEPENDENCIES + 1);
+            for (int j = 0; j < dependencies; j++) {
+                // Mostly depend on nearby tasks, like tasks of the same project, with the occasional long edge
+                int distance = random.nextInt(10) == 0 ? random.nextInt(i) + 1 : Math.min(i, random.nextInt(50) + 1);
+                taskInfo.addDependencySuccessor(plan.get(i - distance));
+            }
+            taskInfo.require();
+            plan.add(taskInfo);
+        }
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole bh) {
+        List<TaskInfo> queue = new LinkedList<TaskInfo>(plan);
+        Deque<TaskInfo> running = new ArrayDeque<TaskInfo>();
+        while (!queue.isEmpty() || !running.isEmpty()) {
+            while (running.size() < WORKERS) {
+                TaskInfo next = null;
+                Iterator<TaskInfo> iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    TaskInfo taskInfo = iterator.next();
+                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete()) {
+                        next = taskInfo;
+                        iterator.remove();
+                        break;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                next.startExecution();
+                running.add(next);
+            }
+            TaskInfo completed = running.poll();
+            completed.finishExecution();
+            bh.consume(completed);
+        }
+    }
+
+    @Benchmark
+    public void readyQueue(Blackhole bh) {
+        TaskExecutionQueue queue = new TaskExecutionQueue();
+        queue.reset(plan);
+        Deque<TaskInfo> running = new ArrayDeque<TaskInfo>();
+        while (!queue.allTasksComplete() || !running.isEmpty()) {
+            while (running.size() < WORKERS) {
+                Iterator<TaskInfo> ready = queue.getReadyTasks().iterator();
+                if (!ready.hasNext()) {
+                    break;
+                }
+                TaskInfo next = ready.next();
+                queue.remove(next);
+                next.startExecution();
+                running.add(next);
+            }
+            TaskInfo completed = running.poll();
+            completed.finishExecution();
+            queue.taskCompleted(completed);
+            bh.consume(completed);
+        }
+    }
+
+    private static TaskInternal task(final int index) {
+        final String path = String.format(":task%06d", index);
+        return (TaskInternal) Proxy.newProxyInstance(TaskExecutionQueueBenchmark.class.getClassLoader(), new Class<?>[]{TaskInternal.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getPath") || name.equals("toString")) {
+                    return path;
+                }
+                if (name.equals("compareTo")) {
+                    return path.compareTo(((Task) args[0]).getPath());
+                }
+                if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+}
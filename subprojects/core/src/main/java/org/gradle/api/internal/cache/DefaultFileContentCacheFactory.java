@@ -17,6 +17,7 @@
 package org.gradle.api.internal.cache;
 
 import com.google.common.hash.HashCode;
+import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 import org.gradle.internal.event.ListenerManager;
@@ -71,7 +72,7 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory {
         }
 
         @Override
-        public void beforeTaskOutputsGenerated() {
+        public void beforeTaskOutputsGenerated(TaskInternal task) {
             // A very dumb strategy for invalidating cache
             cache.clear();
         }
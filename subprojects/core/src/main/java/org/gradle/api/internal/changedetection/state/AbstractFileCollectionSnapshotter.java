@@ -19,6 +19,7 @@ package org.gradle.api.internal.changedetection.state;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.gradle.api.Nullable;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
@@ -50,13 +51,15 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
     private final FileSystem fileSystem;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
     private final FileSystemMirror fileSystemMirror;
+    private final FileHashingExecutor fileHashingExecutor;
 
-    public AbstractFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+    public AbstractFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, FileHashingExecutor fileHashingExecutor) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
         this.fileSystemMirror = fileSystemMirror;
+        this.fileHashingExecutor = fileHashingExecutor;
     }
 
     public void registerSerializers(SerializerRegistry registry) {
@@ -69,6 +72,7 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
         FileCollectionInternal fileCollection = (FileCollectionInternal) input;
         FileCollectionVisitorImpl visitor = new FileCollectionVisitorImpl(fileTreeElements);
         fileCollection.visitRootElements(visitor);
+        visitor.complete();
 
         if (fileTreeElements.isEmpty()) {
             return FileCollectionSnapshot.EMPTY;
@@ -113,18 +117,46 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
 
     private class FileCollectionVisitorImpl implements FileCollectionVisitor {
         private final List<FileDetails> fileTreeElements;
+        private final FileHashingExecutor.Batch pendingFiles = fileHashingExecutor.newBatch();
+        // Details containing files that are still being hashed, which are only added to the mirror once hashing has succeeded
+        private final List<FileDetails> pendingMirrorFiles = Lists.newArrayList();
+        private final List<DirectoryTreeDetails> pendingMirrorTrees = Lists.newArrayList();
 
         FileCollectionVisitorImpl(List<FileDetails> fileTreeElements) {
             this.fileTreeElements = fileTreeElements;
         }
 
+        /**
+         * Waits for all files to be hashed, hashing the files that no other thread has started on.
+         */
+        void complete() {
+            if (!fileHashingExecutor.isParallel()) {
+                return;
+            }
+            for (FileDetails details : fileTreeElements) {
+                if (details instanceof PendingFileDetails) {
+                    details.getContent();
+                }
+            }
+            for (FileDetails details : pendingMirrorFiles) {
+                fileSystemMirror.putFile(details);
+            }
+            for (DirectoryTreeDetails details : pendingMirrorTrees) {
+                fileSystemMirror.putDirectory(details);
+            }
+        }
+
         @Override
         public void visitCollection(FileCollectionInternal fileCollection) {
             for (File file : fileCollection) {
                 FileDetails details = fileSystemMirror.getFile(file.getPath());
                 if (details == null) {
                     details = calculateDetails(file);
-                    fileSystemMirror.putFile(details);
+                    if (details instanceof PendingFileDetails) {
+                        pendingMirrorFiles.add(details);
+                    } else {
+                        fileSystemMirror.putFile(details);
+                    }
                 }
                 switch (details.getType()) {
                     case Missing:
@@ -142,7 +174,7 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
             }
         }
 
-        private DefaultFileDetails calculateDetails(File file) {
+        private FileDetails calculateDetails(File file) {
             String path = getPath(file);
             FileMetadataSnapshot stat = fileSystem.stat(file);
             switch (stat.getType()) {
@@ -151,6 +183,11 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
                 case Directory:
                     return new DefaultFileDetails(path, new RelativePath(false, file.getName()), Directory, true, dirSnapshot());
                 case RegularFile:
+                    if (fileHashingExecutor.isParallel()) {
+                        PendingFileDetails details = new PendingRootFileDetails(path, new RelativePath(true, file.getName()), file, stat);
+                        pendingFiles.add(details);
+                        return details;
+                    }
                     return new DefaultFileDetails(path, new RelativePath(true, file.getName()), RegularFile, true, fileSnapshot(file, stat));
                 default:
                     throw new IllegalArgumentException("Unrecognized file type: " + stat.getType());
@@ -160,7 +197,8 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
         @Override
         public void visitTree(FileTreeInternal fileTree) {
             List<FileDetails> elements = Lists.newArrayList();
-            fileTree.visitTreeOrBackingFile(new FileVisitorImpl(elements));
+            // Elements of other trees, such as archive contents, may only be accessible while the tree is being visited
+            fileTree.visitTreeOrBackingFile(new FileVisitorImpl(elements, null));
             elements = normalise(elements);
             fileTreeElements.addAll(elements);
         }
@@ -171,7 +209,7 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
             if (!directoryTree.getPatterns().isEmpty()) {
                 // Currently handle only those trees where we want everything from a directory
                 elements = Lists.newArrayList();
-                directoryTree.visit(new FileVisitorImpl(elements));
+                directoryTree.visit(new FileVisitorImpl(elements, pendingFiles));
             } else {
                 DirectoryTreeDetails treeDetails = fileSystemMirror.getDirectoryTree(directoryTree.getDir().getAbsolutePath());
                 if (treeDetails != null) {
@@ -181,9 +219,13 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
                     // Scan the directory
                     String path = getPath(directoryTree.getDir());
                     elements = Lists.newArrayList();
-                    directoryTree.visit(new FileVisitorImpl(elements));
+                    directoryTree.visit(new FileVisitorImpl(elements, pendingFiles));
                     DirectoryTreeDetails details = new DirectoryTreeDetails(path, ImmutableList.copyOf(elements));
-                    fileSystemMirror.putDirectory(details);
+                    if (fileHashingExecutor.isParallel()) {
+                        pendingMirrorTrees.add(details);
+                    } else {
+                        fileSystemMirror.putDirectory(details);
+                    }
                 }
             }
 
@@ -194,9 +236,14 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
 
     private class FileVisitorImpl implements FileVisitor {
         private final List<FileDetails> fileTreeElements;
+        private final FileHashingExecutor.Batch pendingFiles;
 
-        FileVisitorImpl(List<FileDetails> fileTreeElements) {
+        /**
+         * @param pendingFiles where to hand off files for hashing, or null to hash files while visiting.
+         */
+        FileVisitorImpl(List<FileDetails> fileTreeElements, @Nullable FileHashingExecutor.Batch pendingFiles) {
             this.fileTreeElements = fileTreeElements;
+            this.pendingFiles = pendingFiles;
         }
 
         @Override
@@ -206,7 +253,52 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
 
         @Override
         public void visitFile(FileVisitDetails fileDetails) {
+            if (pendingFiles != null && fileHashingExecutor.isParallel()) {
+                PendingFileDetails details = new PendingTreeFileDetails(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), fileDetails);
+                pendingFiles.add(details);
+                fileTreeElements.add(details);
+                return;
+            }
             fileTreeElements.add(new DefaultFileDetails(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), RegularFile, false, fileSnapshot(fileDetails)));
         }
     }
+
+    private class PendingRootFileDetails extends PendingFileDetails {
+        private File file;
+        private FileMetadataSnapshot stat;
+
+        PendingRootFileDetails(String path, RelativePath relativePath, File file, FileMetadataSnapshot stat) {
+            super(path, relativePath, true);
+            this.file = file;
+            this.stat = stat;
+        }
+
+        @Override
+        protected IncrementalFileSnapshot calculateContent() {
+            try {
+                return fileSnapshot(file, stat);
+            } finally {
+                file = null;
+                stat = null;
+            }
+        }
+    }
+
+    private class PendingTreeFileDetails extends PendingFileDetails {
+        private FileTreeElement element;
+
+        PendingTreeFileDetails(String path, RelativePath relativePath, FileTreeElement element) {
+            super(path, relativePath, false);
+            this.element = element;
+        }
+
+        @Override
+        protected IncrementalFileSnapshot calculateContent() {
+            try {
+                return fileSnapshot(element);
+            } finally {
+                element = null;
+            }
+        }
+    }
 }
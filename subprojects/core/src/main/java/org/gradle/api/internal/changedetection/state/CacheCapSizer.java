@@ -27,6 +27,7 @@ class CacheCapSizer {
     static {
         DEFAULT_CAP_SIZES.put("fileSnapshots", 10000);
         DEFAULT_CAP_SIZES.put("taskArtifacts", 2000);
+        DEFAULT_CAP_SIZES.put("taskDurations", 2000);
         DEFAULT_CAP_SIZES.put("fileHashes", 400000);
         DEFAULT_CAP_SIZES.put("jvmClassHashes", 400000);
         DEFAULT_CAP_SIZES.put("compilationState", 1000);
@@ -57,7 +58,13 @@ class CacheCapSizer {
     }
 
     public Integer getMaxSize(String cacheName) {
-        return capSizes.get(cacheName);
+        Integer maxSize = capSizes.get(cacheName);
+        int versionSeparator = cacheName.indexOf('-');
+        if (maxSize == null && versionSeparator > 0) {
+            // A versioned cache, such as fileHashes-murmur3, has the same cap as the cache it replaces
+            maxSize = capSizes.get(cacheName.substring(0, versionSeparator));
+        }
+        return maxSize;
     }
 
     public int getNumberOfCaches() {
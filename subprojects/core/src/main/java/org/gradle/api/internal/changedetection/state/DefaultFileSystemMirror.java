@@ -17,43 +17,154 @@
 package org.gradle.api.internal.changedetection.state;
 
 import org.gradle.api.Nullable;
+import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 
-import java.util.Map;
+import java.io.File;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Known details of files and directory trees, indexed by the segments of their absolute paths.
+ *
+ * <p>Indexing by path segment allows the details of everything in or above a directory to be discarded without touching the rest of the mirror.
+ * Before a task generates its outputs, only the details for its declared outputs are discarded. Tasks that do not declare outputs may write
+ * anywhere, so everything is discarded for those.</p>
+ */
 public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener {
-    // Map from interned absolute path for a file to known details for the file. Currently not shared with trees
-    private final Map<String, FileDetails> files = new ConcurrentHashMap<String, FileDetails>();
-    // Map from interned absolute path for a directory to known details for the directory.
-    private final Map<String, DirectoryTreeDetails> trees = new ConcurrentHashMap<String, DirectoryTreeDetails>();
+    private final AtomicLong sizeEstimate = new AtomicLong();
+    private volatile Node root = new Node();
 
     @Override
-    public void beforeTaskOutputsGenerated() {
-        // When the task outputs are generated, throw away all cached state. This is intentionally very simple, to be improved later
-        files.clear();
-        trees.clear();
+    public void beforeTaskOutputsGenerated(TaskInternal task) {
+        if (!task.getOutputs().getHasOutput()) {
+            invalidateAll();
+            return;
+        }
+        for (File outputFile : task.getOutputs().getFiles()) {
+            invalidate(outputFile.getAbsolutePath());
+        }
     }
 
     @Nullable
     @Override
     public FileDetails getFile(String path) {
-        return files.get(path);
+        Node node = find(path);
+        return node == null ? null : node.file;
     }
 
     @Override
     public void putFile(FileDetails file) {
-        files.put(file.getPath(), file);
+        findOrCreate(file.getPath()).file = file;
+        sizeEstimate.incrementAndGet();
     }
 
     @Nullable
     @Override
     public DirectoryTreeDetails getDirectoryTree(String path) {
-        return trees.get(path);
+        Node node = find(path);
+        return node == null ? null : node.tree;
     }
 
     @Override
     public void putDirectory(DirectoryTreeDetails directory) {
-        trees.put(directory.path, directory);
+        findOrCreate(directory.path).tree = directory;
+        sizeEstimate.addAndGet(directory.elements.size() + 1);
+    }
+
+    /**
+     * Discards the details for the given absolute path, everything below it and the directories containing it.
+     */
+    public void invalidate(String path) {
+        Node node = root;
+        Node parent = null;
+        String segment = null;
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = nextSeparator(path, start);
+            if (end > start) {
+                // The details of a containing directory may change when something is created or deleted in it
+                node.file = null;
+                node.tree = null;
+                parent = node;
+                segment = path.substring(start, end);
+                node = node.children.get(segment);
+                if (node == null) {
+                    return;
+                }
+            }
+            start = end + 1;
+        }
+        if (parent == null) {
+            invalidateAll();
+        } else {
+            parent.children.remove(segment);
+        }
+    }
+
+    public void invalidateAll() {
+        root = new Node();
+        sizeEstimate.set(0);
+    }
+
+    /**
+     * Returns an upper bound of the number of file details held by this mirror. Details that were discarded for a single location are still counted.
+     */
+    public long getSizeEstimate() {
+        return sizeEstimate.get();
+    }
+
+    @Nullable
+    private Node find(String path) {
+        Node node = root;
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = nextSeparator(path, start);
+            if (end > start) {
+                node = node.children.get(path.substring(start, end));
+                if (node == null) {
+                    return null;
+                }
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private Node findOrCreate(String path) {
+        Node node = root;
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = nextSeparator(path, start);
+            if (end > start) {
+                String segment = path.substring(start, end);
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    Node newChild = new Node();
+                    child = node.children.putIfAbsent(segment, newChild);
+                    if (child == null) {
+                        child = newChild;
+                    }
+                }
+                node = child;
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private static int nextSeparator(String path, int start) {
+        int end = path.indexOf(File.separatorChar, start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private static class Node {
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>(4, 0.75f, 1);
+        private volatile FileDetails file;
+        private volatile DirectoryTreeDetails tree;
     }
 }
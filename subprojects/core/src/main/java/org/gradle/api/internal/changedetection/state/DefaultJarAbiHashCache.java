@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashCode;
+import org.gradle.api.internal.cache.MinimalPersistentCache;
+import org.gradle.api.internal.hash.FileHashFunction;
+import org.gradle.cache.CacheRepository;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+/**
+ * Cross-process, global cache of the ABI hashes of jars. As the cache is keyed by the contents of a jar, a jar that is on the compile classpath
+ * of many projects, or of many builds, is only hashed once.
+ */
+public class DefaultJarAbiHashCache extends MinimalPersistentCache<HashCode, HashCode> implements JarAbiHashCache {
+    public DefaultJarAbiHashCache(CacheRepository cacheRepository, FileHashFunction hashFunction) {
+        super(cacheRepository, hashFunction.versionedCacheName("jar ABI hashes"), new HashCodeSerializer(), new HashCodeSerializer());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Nullable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashes the regular files found while snapshotting a file collection on a bounded number of threads, while the rest of the collection is
+ * still being visited.
+ *
+ * <p>Files are handed to the pool in batches. The thread taking the snapshot hashes any file that the pool has not started on when it needs
+ * the result, so a snapshot never waits for work queued by other snapshots.</p>
+ */
+public class FileHashingExecutor implements Stoppable {
+    public static final String MAX_THREADS_PROPERTY = "org.gradle.internal.snapshotting.maxthreads";
+    private static final int BATCH_SIZE = 32;
+
+    private final StoppableExecutor executor;
+
+    private FileHashingExecutor(@Nullable StoppableExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns an executor that hashes files on the thread taking the snapshot.
+     */
+    public static FileHashingExecutor sequential() {
+        return new FileHashingExecutor(null);
+    }
+
+    /**
+     * Returns an executor that uses up to the given number of threads per snapshot, including the thread taking the snapshot.
+     */
+    public static FileHashingExecutor create(ExecutorFactory executorFactory, int maxThreads) {
+        if (maxThreads <= 1) {
+            return sequential();
+        }
+        return new FileHashingExecutor(executorFactory.create("file hashing", maxThreads - 1));
+    }
+
+    public boolean isParallel() {
+        return executor != null;
+    }
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    /**
+     * The files found while taking a single snapshot.
+     */
+    public class Batch {
+        private List<PendingFileDetails> queued = new ArrayList<PendingFileDetails>(BATCH_SIZE);
+
+        public void add(PendingFileDetails file) {
+            if (executor == null) {
+                return;
+            }
+            queued.add(file);
+            if (queued.size() == BATCH_SIZE) {
+                final List<PendingFileDetails> files = queued;
+                queued = new ArrayList<PendingFileDetails>(BATCH_SIZE);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (PendingFileDetails file : files) {
+                            file.calculate();
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
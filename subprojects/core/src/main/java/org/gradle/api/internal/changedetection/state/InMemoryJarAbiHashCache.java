@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the most recently used ABI hashes of jars in memory, in front of a persistent cache.
+ */
+public class InMemoryJarAbiHashCache implements JarAbiHashCache {
+    private static final int MAX_ENTRIES = 20000;
+
+    private final JarAbiHashCache delegate;
+    private final Cache<HashCode, HashCode> inMemoryCache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_ENTRIES)
+        .build();
+
+    public InMemoryJarAbiHashCache(JarAbiHashCache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HashCode get(final HashCode key, final Factory<HashCode> factory) {
+        try {
+            return inMemoryCache.get(key, new Callable<HashCode>() {
+                @Override
+                public HashCode call() throws Exception {
+                    return delegate.get(key, factory);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    @Override
+    public void stop() {
+        delegate.stop();
+    }
+}
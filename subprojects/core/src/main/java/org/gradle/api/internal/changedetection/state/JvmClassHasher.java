@@ -21,14 +21,11 @@ import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
-import org.gradle.api.file.FileVisitDetails;
-import org.gradle.api.file.FileVisitor;
-import org.gradle.api.internal.file.archive.ZipFileTree;
-import org.gradle.api.internal.file.collections.FileTreeAdapter;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.compile.ApiClassExtractor;
-import org.gradle.internal.UncheckedException;
+import org.gradle.internal.Factory;
 import org.gradle.internal.nativeintegration.filesystem.FileMetadataSnapshot;
 import org.gradle.internal.resource.TextResource;
 import org.gradle.util.internal.Java9ClassReader;
@@ -37,14 +34,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class JvmClassHasher implements FileHasher {
     private static final byte[] SIGNATURE = Hashing.md5().hashString(JvmClassHasher.class.getName(), Charsets.UTF_8).asBytes();
     private static final HashCode IGNORED = createHasher().hash();
     private final FileHasher delegate;
+    private final JarAbiHashCache jarAbiHashCache;
 
-    public JvmClassHasher(FileHasher hasher) {
+    public JvmClassHasher(FileHasher hasher, JarAbiHashCache jarAbiHashCache) {
         this.delegate = hasher;
+        this.jarAbiHashCache = jarAbiHashCache;
     }
 
     @Override
@@ -85,12 +89,44 @@ public class JvmClassHasher implements FileHasher {
         }
     }
 
-    private static HashCode hashJarFile(File file) {
-        ZipFileTree zipTree = new ZipFileTree(file, null, null, null);
-        final Hasher hasher = createHasher();
-        FileTreeAdapter adapter = new FileTreeAdapter(zipTree);
-        adapter.visit(new HashingJarVisitor(hasher));
-        return hasher.hash();
+    private HashCode hashJarFile(final File file) {
+        return jarAbiHashCache.get(delegate.hash(file), new Factory<HashCode>() {
+            @Override
+            public HashCode create() {
+                return hashJarEntries(file);
+            }
+        });
+    }
+
+    private static HashCode hashJarEntries(File file) {
+        try {
+            ZipFile zipFile = new ZipFile(file);
+            try {
+                // Hash the classes in a stable order, and only read the entries that are classes
+                Map<String, ZipEntry> classEntries = new TreeMap<String, ZipEntry>();
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                        classEntries.put(entry.getName(), entry);
+                    }
+                }
+                Hasher hasher = createHasher();
+                for (ZipEntry entry : classEntries.values()) {
+                    InputStream inputStream = zipFile.getInputStream(entry);
+                    try {
+                        hashClassBytes(hasher, ByteStreams.toByteArray(inputStream));
+                    } finally {
+                        inputStream.close();
+                    }
+                }
+                return hasher.hash();
+            } finally {
+                zipFile.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not hash the classes of jar file '%s'.", file), e);
+        }
     }
 
     private static Hasher createHasher() {
@@ -108,37 +144,4 @@ public class JvmClassHasher implements FileHasher {
     public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
         return hash(file);
     }
-
-    private static class HashingJarVisitor implements FileVisitor {
-        private final Hasher hasher;
-
-        public HashingJarVisitor(Hasher hasher) {
-            this.hasher = hasher;
-        }
-
-        @Override
-        public void visitDir(FileVisitDetails dirDetails) {
-
-        }
-
-        @Override
-        public void visitFile(FileVisitDetails fileDetails) {
-            InputStream inputStream = fileDetails.open();
-            byte[] src;
-            try {
-                src = ByteStreams.toByteArray(inputStream);
-            } catch (IOException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
-            } finally {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
-                }
-            }
-            if (fileDetails.getName().endsWith(".class")) {
-                hashClassBytes(hasher, src);
-            }
-        }
-    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.RelativePath;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.nativeintegration.filesystem.FileType;
+
+/**
+ * The details of a regular file whose content is hashed on demand, by whichever thread gets to it first.
+ */
+abstract class PendingFileDetails implements FileDetails {
+    private final String path;
+    private final RelativePath relativePath;
+    private final boolean root;
+    private boolean claimed;
+    private boolean done;
+    private IncrementalFileSnapshot content;
+    private Throwable failure;
+
+    PendingFileDetails(String path, RelativePath relativePath, boolean root) {
+        this.path = path;
+        this.relativePath = relativePath;
+        this.root = root;
+    }
+
+    /**
+     * Calculates the content of the file. Called at most once.
+     */
+    protected abstract IncrementalFileSnapshot calculateContent();
+
+    /**
+     * Calculates the content of the file, unless another thread has already started to do so.
+     */
+    public void calculate() {
+        synchronized (this) {
+            if (claimed) {
+                return;
+            }
+            claimed = true;
+        }
+        IncrementalFileSnapshot result = null;
+        Throwable calculationFailure = null;
+        try {
+            result = calculateContent();
+        } catch (Throwable t) {
+            calculationFailure = t;
+        }
+        synchronized (this) {
+            content = result;
+            failure = calculationFailure;
+            done = true;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public IncrementalFileSnapshot getContent() {
+        calculate();
+        synchronized (this) {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+            return content;
+        }
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String getName() {
+        return relativePath.getLastName();
+    }
+
+    @Override
+    public FileType getType() {
+        return FileType.RegularFile;
+    }
+
+    @Override
+    public boolean isRoot() {
+        return root;
+    }
+
+    @Override
+    public RelativePath getRelativePath() {
+        return relativePath;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Action;
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link FileSystemMirror} that is kept between builds by a long-living process.
+ *
+ * <p>Before details are calculated for a location that is not known yet, the location is registered with a {@link FileWatcher}, and details are
+ * discarded when the watcher reports a change. Registrations are never removed, so everything kept in the mirror is covered by a watch.</p>
+ *
+ * <p>Changes are reported asynchronously, so at the start of each build the mirror waits until the watcher has reported everything that changed
+ * before the build started. To do so, it creates fence files in a watched directory of its own, and waits for the watcher to report them. Everything
+ * is discarded when a fence is not reported in time. Once the mirror holds more than a maximum number of details, it is discarded and watching starts
+ * over, so that neither the mirror nor the registrations grow without bounds.</p>
+ *
+ * <p>When watching is not supported or fails, everything is discarded at the start of each build instead. Watching is only used on Linux, where the
+ * native watch service reports all changes in the order they happen. Other watch services may report a change after a later fence, or report changes
+ * too late to be useful here.</p>
+ */
+public class RetainedFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetainedFileSystemMirror.class);
+    private static final long FENCE_TIMEOUT_MILLIS = 5000;
+    private static final long MAX_RETAINED_DETAILS = 500000;
+
+    private final DefaultFileSystemMirror mirror = new DefaultFileSystemMirror();
+    private final FileWatcherFactory fileWatcherFactory;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final long fenceTimeoutMillis;
+    private final long maxRetainedDetails;
+    private final Set<String> watchedRoots = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Object lock = new Object();
+    private final Set<File> fencesReported = new HashSet<File>();
+    private FileWatcher watcher;
+    private volatile File fenceDir;
+    private int fenceCount;
+    private volatile boolean watching;
+
+    public RetainedFileSystemMirror(FileWatcherFactory fileWatcherFactory, TemporaryFileProvider temporaryFileProvider) {
+        this(fileWatcherFactory, temporaryFileProvider, OperatingSystem.current().isLinux(), FENCE_TIMEOUT_MILLIS, MAX_RETAINED_DETAILS);
+    }
+
+    RetainedFileSystemMirror(FileWatcherFactory fileWatcherFactory, TemporaryFileProvider temporaryFileProvider, boolean watchingSupported, long fenceTimeoutMillis, long maxRetainedDetails) {
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.watching = watchingSupported;
+        this.fenceTimeoutMillis = fenceTimeoutMillis;
+        this.maxRetainedDetails = maxRetainedDetails;
+    }
+
+    /**
+     * Called at the start of each build that uses this mirror, before any details are requested.
+     */
+    public void beforeBuild() {
+        File fences;
+        synchronized (lock) {
+            if (watching && watcher != null && !watcher.isRunning()) {
+                stopWatching("file watcher is no longer running", null);
+            }
+            if (watching && mirror.getSizeEstimate() > maxRetainedDetails) {
+                LOGGER.debug("Discarding retained file system state, as it holds more than {} details.", maxRetainedDetails);
+                restartWatching();
+            }
+            fences = watching ? fenceDir : null;
+        }
+        if (fences != null && !awaitReportedChanges(fences)) {
+            LOGGER.debug("Discarding retained file system state, as the file watcher did not report changes in time.");
+            mirror.invalidateAll();
+        }
+        if (!watching) {
+            mirror.invalidateAll();
+        }
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated(TaskInternal task) {
+        mirror.beforeTaskOutputsGenerated(task);
+    }
+
+    @Nullable
+    @Override
+    public FileDetails getFile(String path) {
+        FileDetails file = mirror.getFile(path);
+        if (file == null) {
+            watch(path);
+        }
+        return file;
+    }
+
+    @Override
+    public void putFile(FileDetails file) {
+        mirror.putFile(file);
+    }
+
+    @Nullable
+    @Override
+    public DirectoryTreeDetails getDirectoryTree(String path) {
+        DirectoryTreeDetails tree = mirror.getDirectoryTree(path);
+        if (tree == null) {
+            watch(path);
+        }
+        return tree;
+    }
+
+    @Override
+    public void putDirectory(DirectoryTreeDetails directory) {
+        mirror.putDirectory(directory);
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            watching = false;
+            stopWatcher();
+        }
+        mirror.invalidateAll();
+    }
+
+    private void watch(String path) {
+        // The caller calculates the details after a miss, so the watch must be in place before this method returns
+        if (!watching || isWatched(path)) {
+            return;
+        }
+        synchronized (lock) {
+            if (!watching || isWatched(path)) {
+                return;
+            }
+            try {
+                if (watcher == null) {
+                    startWatcher();
+                }
+                watcher.watch(FileSystemSubset.builder().add(new File(path)).build());
+                watchedRoots.add(path);
+            } catch (IOException e) {
+                stopWatching("could not watch " + path, e);
+            }
+        }
+    }
+
+    private void startWatcher() throws IOException {
+        watcher = fileWatcherFactory.watch(new Action<Throwable>() {
+            @Override
+            public void execute(Throwable throwable) {
+                synchronized (lock) {
+                    stopWatching("file watching failed", throwable);
+                }
+            }
+        }, new FileWatcherListener() {
+            @Override
+            public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                changed(event);
+            }
+        });
+        fenceDir = temporaryFileProvider.createTemporaryDirectory("file-watch", "fences").getAbsoluteFile();
+        watcher.watch(FileSystemSubset.builder().add(fenceDir).build());
+    }
+
+    private void stopWatcher() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+        if (fenceDir != null) {
+            GFileUtils.deleteQuietly(fenceDir);
+            fenceDir = null;
+        }
+    }
+
+    /**
+     * Waits until the watcher has reported all changes made before this method was called. Returns false when it did not do so in time.
+     */
+    private boolean awaitReportedChanges(File fences) {
+        // The watch service queues each directory with pending events once. A directory whose events are being delivered when a change is made
+        // is queued again behind a fence created meanwhile, but once the first fence has been reported, every earlier change is queued ahead
+        // of the second fence.
+        synchronized (fencesReported) {
+            fencesReported.clear();
+        }
+        for (int i = 0; i < 2; i++) {
+            File fence = new File(fences, "fence-" + (++fenceCount));
+            try {
+                if (!fence.createNewFile() || !awaitFence(fence)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Could not create file watching fence {}.", fence, e);
+                return false;
+            } finally {
+                GFileUtils.deleteQuietly(fence);
+            }
+        }
+        return true;
+    }
+
+    private boolean awaitFence(File fence) {
+        long deadline = System.currentTimeMillis() + fenceTimeoutMillis;
+        synchronized (fencesReported) {
+            while (!fencesReported.remove(fence)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !watching) {
+                    return false;
+                }
+                try {
+                    fencesReported.wait(remaining);
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            return true;
+        }
+    }
+
+    private void changed(FileWatcherEvent event) {
+        if (event.getType() == FileWatcherEvent.Type.UNDEFINED) {
+            mirror.invalidateAll();
+            return;
+        }
+        File file = event.getFile();
+        if (event.getType() == FileWatcherEvent.Type.CREATE && fenceDir != null && fenceDir.equals(file.getParentFile())) {
+            synchronized (fencesReported) {
+                fencesReported.add(file);
+                fencesReported.notifyAll();
+            }
+            return;
+        }
+        mirror.invalidate(file.getAbsolutePath());
+    }
+
+    private boolean isWatched(String path) {
+        String candidate = path;
+        while (true) {
+            if (watchedRoots.contains(candidate)) {
+                return true;
+            }
+            int separator = candidate.lastIndexOf(File.separatorChar);
+            if (separator <= 0) {
+                return false;
+            }
+            candidate = candidate.substring(0, separator);
+        }
+    }
+
+    private void stopWatching(String reason, @Nullable Throwable failure) {
+        if (!watching) {
+            return;
+        }
+        LOGGER.debug("Not retaining file system state between builds, as {}.", reason, failure);
+        watching = false;
+        watchedRoots.clear();
+        stopWatcher();
+        // Changes may have been missed
+        mirror.invalidateAll();
+        synchronized (fencesReported) {
+            fencesReported.notifyAll();
+        }
+    }
+
+    private void restartWatching() {
+        watchedRoots.clear();
+        stopWatcher();
+        mirror.invalidateAll();
+    }
+}
@@ -16,21 +16,49 @@
 package org.gradle.api.internal.hash;
 
 import com.google.common.base.Charsets;
-import com.google.common.hash.Funnels;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.internal.nativeintegration.filesystem.FileMetadataSnapshot;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.resource.TextResource;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class DefaultFileHasher implements FileHasher {
-    private static final byte[] SIGNATURE = Hashing.md5().hashString(DefaultFileHasher.class.getName(), Charsets.UTF_8).asBytes();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Below this size, mapping costs more than reading
+    private static final long MAPPING_THRESHOLD = 1024 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private final FileHashFunction hashFunction;
+    private final byte[] signature;
+    private final boolean mapLargeFiles;
+
+    public DefaultFileHasher() {
+        this(FileHashFunction.MD5);
+    }
+
+    public DefaultFileHasher(FileHashFunction hashFunction) {
+        // A mapped file cannot be deleted or replaced on Windows until the mapping is garbage collected
+        this(hashFunction, !OperatingSystem.current().isWindows());
+    }
+
+    DefaultFileHasher(FileHashFunction hashFunction, boolean mapLargeFiles) {
+        this.hashFunction = hashFunction;
+        this.signature = hashFunction.getHashFunction().hashString(DefaultFileHasher.class.getName(), Charsets.UTF_8).asBytes();
+        this.mapLargeFiles = mapLargeFiles;
+    }
 
     @Override
     public HashCode hash(TextResource resource) {
@@ -42,11 +70,31 @@ public class DefaultFileHasher implements FileHasher {
     @Override
     public HashCode hash(File file) {
         try {
-            Hasher hasher = createFileHasher();
-            Files.copy(file, Funnels.asOutputStream(hasher));
-            return hasher.hash();
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                Hasher hasher = createFileHasher();
+                byte[] buffer = BUFFERS.get();
+                FileChannel channel = inputStream.getChannel();
+                long size = channel.size();
+                if (mapLargeFiles && size >= MAPPING_THRESHOLD && size <= Integer.MAX_VALUE) {
+                    MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    while (content.hasRemaining()) {
+                        int count = Math.min(buffer.length, content.remaining());
+                        content.get(buffer, 0, count);
+                        hasher.putBytes(buffer, 0, count);
+                    }
+                } else {
+                    int count;
+                    while ((count = inputStream.read(buffer)) >= 0) {
+                        hasher.putBytes(buffer, 0, count);
+                    }
+                }
+                return hasher.hash();
+            } finally {
+                inputStream.close();
+            }
         } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", hashFunction.name(), file), e);
         }
     }
 
@@ -60,9 +108,9 @@ public class DefaultFileHasher implements FileHasher {
         return hash(fileDetails.getFile());
     }
 
-    private static Hasher createFileHasher() {
-        Hasher hasher = Hashing.md5().newHasher();
-        hasher.putBytes(SIGNATURE);
+    private Hasher createFileHasher() {
+        Hasher hasher = hashFunction.getHashFunction().newHasher();
+        hasher.putBytes(signature);
         return hasher;
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * The hash functions that can be used to hash the content of files for up-to-date checks and cache keys.
+ *
+ * <p>Hashes calculated with different functions are never comparable, so persistent stores of file hashes must be kept apart for each function.</p>
+ */
+public enum FileHashFunction {
+    MD5("md5", Hashing.md5()),
+    /**
+     * A non-cryptographic 128-bit hash, considerably cheaper to calculate than MD5.
+     */
+    MURMUR3("murmur3", Hashing.murmur3_128());
+
+    public static final String SYSTEM_PROPERTY = "org.gradle.internal.filehashing";
+
+    private final String id;
+    private final HashFunction hashFunction;
+
+    FileHashFunction(String id, HashFunction hashFunction) {
+        this.id = id;
+        this.hashFunction = hashFunction;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Returns the name of the persistent store to use for file hashes calculated with this function. The default function uses the unversioned
+     * name, so existing stores remain valid.
+     */
+    public String versionedCacheName(String cacheName) {
+        return this == MD5 ? cacheName : cacheName + "-" + id;
+    }
+
+    /**
+     * Returns the function selected using the {@value #SYSTEM_PROPERTY} system property, or {@link #MD5} when not set.
+     */
+    public static FileHashFunction fromSystemProperty() {
+        String value = System.getProperty(SYSTEM_PROPERTY);
+        if (value == null || value.length() == 0) {
+            return MD5;
+        }
+        for (FileHashFunction function : values()) {
+            if (function.id.equalsIgnoreCase(value)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown file hash function '%s' specified by system property '%s'.", value, SYSTEM_PROPERTY));
+    }
+}
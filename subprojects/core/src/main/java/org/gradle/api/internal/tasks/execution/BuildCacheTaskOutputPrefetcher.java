@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.changedetection.TaskArtifactState;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheConfigurationInternal;
+import org.gradle.caching.internal.PrefetchingBuildCache;
+import org.gradle.internal.time.Timer;
+import org.gradle.internal.time.Timers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Prefetches the cached outputs of tasks from a {@link PrefetchingBuildCache}, when the build cache is one that has prefetching enabled.
+ *
+ * <p>Cache keys are calculated on the calling thread, before any task executes, as calculating them reads the configuration of the tasks.
+ * Only tasks that would load their outputs from the cache are considered: cacheable tasks with actions that are not up-to-date.
+ * A task whose cache key changes before it executes only costs the request for its prefetched entry.</p>
+ */
+public class BuildCacheTaskOutputPrefetcher implements TaskOutputPrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheTaskOutputPrefetcher.class);
+
+    private final BuildCacheConfigurationInternal buildCacheConfiguration;
+    private final TaskArtifactStateRepository repository;
+    private final TemporaryFileProvider temporaryFileProvider;
+
+    public BuildCacheTaskOutputPrefetcher(BuildCacheConfigurationInternal buildCacheConfiguration, TaskArtifactStateRepository repository, TemporaryFileProvider temporaryFileProvider) {
+        this.buildCacheConfiguration = buildCacheConfiguration;
+        this.repository = repository;
+        this.temporaryFileProvider = temporaryFileProvider;
+    }
+
+    @Override
+    public void prefetch(Collection<? extends TaskInternal> tasks) {
+        if (!buildCacheConfiguration.isPullAllowed()) {
+            return;
+        }
+        PrefetchingBuildCache cache = buildCacheConfiguration.getPrefetchingCache();
+        if (cache == null) {
+            return;
+        }
+        Timer clock = Timers.startTimer();
+        List<BuildCacheKey> keys = new ArrayList<BuildCacheKey>();
+        for (TaskInternal task : tasks) {
+            BuildCacheKey cacheKey;
+            try {
+                cacheKey = calculateCacheKeyToLoad(task);
+            } catch (Exception e) {
+                // The failure is reported when the task executes
+                LOGGER.debug("Could not build cache key for {} ahead of its execution.", task, e);
+                continue;
+            }
+            if (cacheKey != null) {
+                keys.add(cacheKey);
+            }
+        }
+        LOGGER.info("Calculating {} cache keys to prefetch took {}.", keys.size(), clock.getElapsed());
+        if (!keys.isEmpty()) {
+            cache.prefetch(keys, temporaryFileProvider.createTemporaryDirectory("build-cache", "prefetch"));
+        }
+    }
+
+    private BuildCacheKey calculateCacheKeyToLoad(TaskInternal task) {
+        if (task.getActions().isEmpty()) {
+            return null;
+        }
+        TaskOutputsInternal taskOutputs = task.getOutputs();
+        if (!taskOutputs.isCacheEnabled() || !taskOutputs.hasDeclaredOutputs() || !taskOutputs.isCacheAllowed()) {
+            return null;
+        }
+        TaskArtifactState taskState = repository.getStateFor(task);
+        try {
+            if (!taskState.isAllowedToUseCachedResults()) {
+                return null;
+            }
+            BuildCacheKey cacheKey = taskState.calculateCacheKey();
+            if (cacheKey == null || taskState.isUpToDate(null)) {
+                return null;
+            }
+            return cacheKey;
+        } finally {
+            taskState.finished();
+        }
+    }
+}
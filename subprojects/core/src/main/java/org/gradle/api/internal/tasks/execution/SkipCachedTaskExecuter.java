@@ -99,7 +99,7 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
                                     });
                                     if (found) {
                                         state.setOutcome(TaskExecutionOutcome.FROM_CACHE);
-                                        taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+                                        taskOutputsGenerationListener.beforeTaskOutputsGenerated(task);
                                         return;
                                     }
                                 } else {
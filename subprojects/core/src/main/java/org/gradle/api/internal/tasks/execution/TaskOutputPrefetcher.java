@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.api.internal.TaskInternal;
+
+import java.util.Collection;
+
+/**
+ * Loads the outputs of tasks ahead of their execution.
+ */
+public interface TaskOutputPrefetcher {
+    TaskOutputPrefetcher NOOP = new TaskOutputPrefetcher() {
+        @Override
+        public void prefetch(Collection<? extends TaskInternal> tasks) {
+        }
+    };
+
+    /**
+     * Invoked once the task graph is ready, before any task executes.
+     *
+     * @param tasks the tasks of the graph whose inputs are not produced by other tasks of the graph.
+     */
+    void prefetch(Collection<? extends TaskInternal> tasks);
+}
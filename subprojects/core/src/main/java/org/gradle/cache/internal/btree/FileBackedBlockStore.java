@@ -16,6 +16,7 @@
 package org.gradle.cache.internal.btree;
 
 import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.os.OperatingSystem;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -31,9 +32,19 @@ public class FileBackedBlockStore implements BlockStore {
     private long nextBlock;
     private Factory factory;
     private long currentFileSize;
+    private final boolean mapReads;
 
     public FileBackedBlockStore(File cacheFile) {
+        // A mapped file cannot be truncated or deleted on Windows, which would break clearing the cache and cleanup by other processes
+        this(cacheFile, !OperatingSystem.current().isWindows());
+    }
+
+    /**
+     * @param mapReads whether blocks should be read from a memory mapping of the file, rather than by seeking and reading the file.
+     */
+    public FileBackedBlockStore(File cacheFile, boolean mapReads) {
         this.cacheFile = cacheFile;
+        this.mapReads = mapReads;
     }
 
     @Override
@@ -47,7 +58,7 @@ public class FileBackedBlockStore implements BlockStore {
             cacheFile.getParentFile().mkdirs();
             file = new RandomAccessFile(cacheFile, "rw");
             output = new ByteOutput(file);
-            input = new ByteInput(file);
+            input = mapReads ? new MappedByteInput(file) : new ByteInput(file);
             currentFileSize = file.length();
             nextBlock = currentFileSize;
             if (currentFileSize == 0) {
@@ -60,6 +71,7 @@ public class FileBackedBlockStore implements BlockStore {
 
     public void close() {
         try {
+            discardMapping();
             file.close();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -68,6 +80,7 @@ public class FileBackedBlockStore implements BlockStore {
 
     public void clear() {
         try {
+            discardMapping();
             file.setLength(0);
             currentFileSize = 0;
         } catch (IOException e) {
@@ -119,6 +132,12 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
+    private void discardMapping() {
+        if (input instanceof MappedByteInput) {
+            ((MappedByteInput) input).reset();
+        }
+    }
+
     private long alloc(long length) {
         long pos = nextBlock;
         nextBlock += length;
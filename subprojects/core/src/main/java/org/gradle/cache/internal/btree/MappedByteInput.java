@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import com.google.common.io.CountingInputStream;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads bytes from a memory mapping of a file, instead of seeking and reading the file for each block.
+ *
+ * <p>The mapping covers the file as it was when the mapping was made, and is replaced when a read reaches its end while the file has grown since.
+ * Reads that cannot be served from a mapping, for example because the file is too large to map, fall back to reading the file.</p>
+ *
+ * <p>A mapping that is replaced or discarded is released right away where the JVM allows it, rather than when it is garbage collected, so that
+ * superseded mappings do not hold on to address space and the file can be truncated on platforms that do not allow truncating a mapped file.</p>
+ */
+class MappedByteInput extends ByteInput {
+    private final RandomAccessFile file;
+    private MappedByteBuffer mapping;
+    private boolean mappingDisabled;
+    private CountingInputStream countingInputStream;
+
+    public MappedByteInput(RandomAccessFile file) {
+        super(file);
+        this.file = file;
+    }
+
+    @Override
+    public DataInputStream start(long offset) throws IOException {
+        if (mapping == null || offset >= mapping.capacity()) {
+            remap();
+        }
+        if (mapping == null || offset >= mapping.capacity()) {
+            countingInputStream = null;
+            return super.start(offset);
+        }
+        countingInputStream = new CountingInputStream(new MappedInputStream((int) offset));
+        return new DataInputStream(countingInputStream);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return countingInputStream != null ? countingInputStream.getCount() : super.getBytesRead();
+    }
+
+    @Override
+    public void done() {
+        if (countingInputStream != null) {
+            countingInputStream = null;
+        } else {
+            super.done();
+        }
+    }
+
+    /**
+     * Discards the current mapping. Must be called before the file is truncated.
+     */
+    public void reset() {
+        replaceMapping(null);
+    }
+
+    private void remap() throws IOException {
+        if (mappingDisabled) {
+            return;
+        }
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            mappingDisabled = true;
+            replaceMapping(null);
+            return;
+        }
+        if (length == 0 || (mapping != null && mapping.capacity() >= length)) {
+            return;
+        }
+        try {
+            replaceMapping(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length));
+        } catch (IOException e) {
+            // Typically there is not enough address space left, so keep reading the file instead
+            mappingDisabled = true;
+            replaceMapping(null);
+        }
+    }
+
+    private void replaceMapping(MappedByteBuffer newMapping) {
+        MappedByteBuffer oldMapping = mapping;
+        mapping = newMapping;
+        if (oldMapping != null) {
+            // Streams notice that the mapping they read from has been replaced before they read from it again
+            unmap(oldMapping);
+        }
+    }
+
+    /**
+     * Releases the given mapping, when the JVM provides a way to do so. Otherwise, the mapping is released once it is garbage collected.
+     * The mapping must not be used afterwards.
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8 and earlier
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Object cleanerInstance = cleaner.invoke(mapping);
+                if (cleanerInstance != null) {
+                    cleanerInstance.getClass().getMethod("clean").invoke(cleanerInstance);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), mapping);
+        } catch (Exception e) {
+            // Leave the mapping to the garbage collector
+        }
+    }
+
+    private class MappedInputStream extends InputStream {
+        private final byte[] single = new byte[1];
+        private long position;
+        private MappedByteBuffer source;
+        private ByteBuffer buffer;
+
+        MappedInputStream(int offset) {
+            position = offset;
+            buffer = view();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (source == mapping && buffer != null && buffer.hasRemaining()) {
+                position++;
+                return buffer.get() & 0xff;
+            }
+            int count = read(single, 0, 1);
+            return count < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (source != mapping) {
+                // The mapping this stream was reading from has been released
+                buffer = view();
+            }
+            if (buffer == null || !buffer.hasRemaining()) {
+                remap();
+                buffer = view();
+            }
+            int count;
+            if (buffer == null || !buffer.hasRemaining()) {
+                file.seek(position);
+                count = file.read(bytes, offset, length);
+            } else {
+                count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+            }
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        private ByteBuffer view() {
+            source = mapping;
+            if (mapping == null || position >= mapping.capacity()) {
+                return null;
+            }
+            ByteBuffer view = mapping.duplicate();
+            view.position((int) position);
+            return view;
+        }
+    }
+}
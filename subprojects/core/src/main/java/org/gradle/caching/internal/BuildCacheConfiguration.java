@@ -31,11 +31,15 @@ public interface BuildCacheConfiguration {
     /**
      * Use the default local directory cache. The cache directory path defaults to {@code $GRADLE_HOME/task-cache}.
      * It can also be overridden via the {@code org.gradle.cache.tasks.directory} system property.
+     *
+     * <p>Entries are kept until they are removed by hand, unless limits are set. Entries not used for longer than the
+     * {@code org.gradle.cache.tasks.directory.maxAge} system property, in days, are removed, as are the least recently used entries once the cache
+     * grows beyond the {@code org.gradle.cache.tasks.directory.maxSize} system property, in megabytes.</p>
      */
     void useLocalCache();
 
     /**
-     * Use a local directory cache in the given directory.
+     * Use a local directory cache in the given directory. Entries are removed in the same way as for {@link #useLocalCache()}.
      */
     void useLocalCache(File directory);
 
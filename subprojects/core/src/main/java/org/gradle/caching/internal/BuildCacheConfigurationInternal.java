@@ -16,10 +16,18 @@
 
 package org.gradle.caching.internal;
 
+import org.gradle.api.Nullable;
 import org.gradle.caching.BuildCache;
 
 public interface BuildCacheConfigurationInternal extends BuildCacheConfiguration {
     BuildCache getCache();
+
+    /**
+     * Returns the configured cache when it prefetches entries, or {@code null} when it does not.
+     */
+    @Nullable
+    PrefetchingBuildCache getPrefetchingCache();
+
     boolean isPullAllowed();
     boolean isPushAllowed();
 }
@@ -24,14 +24,19 @@ import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.util.SingleMessageLogger;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationInternal, Stoppable {
+    static final String MAX_SIZE_PROPERTY = "org.gradle.cache.tasks.directory.maxSize";
+    static final String MAX_AGE_PROPERTY = "org.gradle.cache.tasks.directory.maxAge";
+
     private final boolean pullAllowed;
     private final boolean pushAllowed;
     private final CacheRepository cacheRepository;
     private final StartParameter startParameter;
     private BuildCacheFactory factory;
     private BuildCache cache;
+    private BuildCache undecoratedCache;
 
     public DefaultBuildCacheConfiguration(CacheRepository cacheRepository, StartParameter startParameter) {
         this.cacheRepository = cacheRepository;
@@ -47,9 +52,11 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
             @Override
             public BuildCache createCache(StartParameter startParameter) {
                 String cacheDirectoryPath = System.getProperty("org.gradle.cache.tasks.directory");
+                long maxSize = getMaxLocalCacheSize();
+                long maxAge = getMaxLocalCacheAge();
                 return cacheDirectoryPath != null
-                    ? new LocalDirectoryBuildCache(cacheRepository, new File(cacheDirectoryPath))
-                    : new LocalDirectoryBuildCache(cacheRepository, "task-cache");
+                    ? new LocalDirectoryBuildCache(cacheRepository, new File(cacheDirectoryPath), maxSize, maxAge)
+                    : new LocalDirectoryBuildCache(cacheRepository, "task-cache", maxSize, maxAge);
             }
         });
     }
@@ -59,11 +66,40 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
         setFactory(new BuildCacheFactory() {
             @Override
             public BuildCache createCache(StartParameter startParameter) {
-                return new LocalDirectoryBuildCache(cacheRepository, directory);
+                return new LocalDirectoryBuildCache(cacheRepository, directory, getMaxLocalCacheSize(), getMaxLocalCacheAge());
             }
         });
     }
 
+    private static long getMaxLocalCacheSize() {
+        return getLimit(MAX_SIZE_PROPERTY, 1024 * 1024, "megabytes");
+    }
+
+    private static long getMaxLocalCacheAge() {
+        return getLimit(MAX_AGE_PROPERTY, TimeUnit.DAYS.toMillis(1), "days");
+    }
+
+    /**
+     * Returns the limit specified by the given system property, in units of the given size, or {@link LocalDirectoryBuildCache#UNLIMITED} when
+     * the property is not set.
+     */
+    static long getLimit(String property, long unitSize, String unitName) {
+        String value = System.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            return LocalDirectoryBuildCache.UNLIMITED;
+        }
+        long limit;
+        try {
+            limit = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException(String.format("Invalid value '%s' specified by system property '%s'. Expected a number of %s.", value, property, unitName));
+        }
+        return limit > LocalDirectoryBuildCache.UNLIMITED / unitSize ? LocalDirectoryBuildCache.UNLIMITED : limit * unitSize;
+    }
+
     @Override
     public void useCacheFactory(BuildCacheFactory factory) {
         setFactory(factory);
@@ -77,10 +113,11 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
     public BuildCache getCache() {
         // TODO:LPTR Instantiate this as a service instead
         if (cache == null) {
+            this.undecoratedCache = factory.createCache(startParameter);
             this.cache = new LenientBuildCacheDecorator(
                 new ShortCircuitingErrorHandlerBuildCacheDecorator(3,
                     new LoggingBuildCacheDecorator(
-                            factory.createCache(startParameter))));
+                            undecoratedCache)));
             if (isPullAllowed() && isPushAllowed()) {
                 SingleMessageLogger.incubatingFeatureUsed("Using " + cache.getDescription());
             } else if (isPushAllowed()) {
@@ -93,6 +130,15 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
         return cache;
     }
 
+    @Override
+    public PrefetchingBuildCache getPrefetchingCache() {
+        getCache();
+        if (undecoratedCache instanceof PrefetchingBuildCache && ((PrefetchingBuildCache) undecoratedCache).isPrefetchEnabled()) {
+            return (PrefetchingBuildCache) undecoratedCache;
+        }
+        return null;
+    }
+
     @Override
     public boolean isPullAllowed() {
         return pullAllowed;
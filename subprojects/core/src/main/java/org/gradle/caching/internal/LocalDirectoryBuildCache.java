@@ -27,32 +27,77 @@ import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.internal.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import static org.gradle.cache.internal.FileLockManager.LockMode.None;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
+/**
+ * A build cache that stores each entry in a file of a local directory.
+ *
+ * <p>Entries are written to a temporary file and then renamed, so they can be loaded without locking while other builds store entries. An entry is
+ * not replaced once stored, as entries with the same key are equivalent.</p>
+ *
+ * <p>Entries are spread over subdirectories named after the first two characters of their key, so no single directory grows too large. Loading an
+ * entry updates its modification time, which makes the modification time the time of last use. When the cache is closed, and no cleanup has been
+ * done for {@link #CLEANUP_INTERVAL_MILLIS}, entries not used for longer than the maximum age are removed, followed by the least recently used
+ * entries until the cache fits into its maximum size. By default, neither the age nor the size of the cache is limited, so no entries are removed.</p>
+ */
 public class LocalDirectoryBuildCache implements BuildCache {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalDirectoryBuildCache.class);
+    private static final String CLEANUP_MARKER_FILE_NAME = "gc.properties";
+    private static final Pattern SHARD_NAME = Pattern.compile("\\p{XDigit}{2}");
+    private static final Pattern ENTRY_NAME = Pattern.compile("\\p{XDigit}{32}");
+    private static final int SHARD_PREFIX_LENGTH = 2;
+    private static final String TEMP_FILE_SUFFIX = ".part";
+
     private final PersistentCache persistentCache;
+    private final long maxSizeBytes;
+    private final long maxAgeMillis;
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
 
     public LocalDirectoryBuildCache(CacheRepository cacheRepository, File directory) {
-        this(cacheRepository.cache(checkDirectory(directory)));
+        this(cacheRepository, directory, UNLIMITED, UNLIMITED);
     }
 
     public LocalDirectoryBuildCache(CacheRepository cacheRepository, String cacheKey) {
-        this(cacheRepository.cache(cacheKey));
+        this(cacheRepository, cacheKey, UNLIMITED, UNLIMITED);
+    }
+
+    public LocalDirectoryBuildCache(CacheRepository cacheRepository, File directory, long maxSizeBytes, long maxAgeMillis) {
+        this(cacheRepository.cache(checkDirectory(directory)), maxSizeBytes, maxAgeMillis);
+    }
+
+    public LocalDirectoryBuildCache(CacheRepository cacheRepository, String cacheKey, long maxSizeBytes, long maxAgeMillis) {
+        this(cacheRepository.cache(cacheKey), maxSizeBytes, maxAgeMillis);
     }
 
-    private LocalDirectoryBuildCache(CacheBuilder cacheBuilder) {
+    private LocalDirectoryBuildCache(CacheBuilder cacheBuilder, long maxSizeBytes, long maxAgeMillis) {
         this.persistentCache = cacheBuilder
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .open();
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxAgeMillis = maxAgeMillis;
     }
 
     private static File checkDirectory(File directory) {
@@ -79,22 +124,36 @@ public class LocalDirectoryBuildCache implements BuildCache {
         return persistentCache.useCache("load build cache entry", new Factory<Boolean>() {
             @Override
             public Boolean create() {
+                loads.incrementAndGet();
                 File file = getFile(key.getHashCode());
-                if (file.isFile()) {
+                if (!file.isFile()) {
+                    // Written before entries were sharded
+                    file = new File(persistentCache.getBaseDir(), key.getHashCode());
+                }
+                if (!file.isFile()) {
+                    return false;
+                }
+                try {
+                    Closer closer = Closer.create();
+                    FileInputStream stream;
                     try {
-                        Closer closer = Closer.create();
-                        FileInputStream stream = closer.register(new FileInputStream(file));
-                        try {
-                            reader.readFrom(stream);
-                            return true;
-                        } finally {
-                            closer.close();
-                        }
-                    } catch (IOException ex) {
-                        throw new UncheckedIOException(ex);
+                        stream = closer.register(new FileInputStream(file));
+                    } catch (FileNotFoundException e) {
+                        // Removed by the cleanup of another build since it was found
+                        return false;
+                    }
+                    try {
+                        hits.incrementAndGet();
+                        // Track the last use of the entry for cleanup
+                        file.setLastModified(System.currentTimeMillis());
+                        reader.readFrom(stream);
+                        return true;
+                    } finally {
+                        closer.close();
                     }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
                 }
-                return false;
             }
         });
     }
@@ -105,23 +164,130 @@ public class LocalDirectoryBuildCache implements BuildCache {
             @Override
             public void run() {
                 File file = getFile(key.getHashCode());
+                if (file.isFile()) {
+                    // Entries with the same key are equivalent, so keep the existing one and only mark it as used
+                    file.setLastModified(System.currentTimeMillis());
+                    return;
+                }
+                File shard = file.getParentFile();
+                if (!shard.isDirectory() && !shard.mkdirs() && !shard.isDirectory()) {
+                    throw new UncheckedIOException(String.format("Could not create cache directory: %s", shard));
+                }
+                File tempFile = null;
                 try {
+                    // Write to a temporary file first, so concurrent loads never see a partially written entry
+                    tempFile = File.createTempFile(key.getHashCode(), TEMP_FILE_SUFFIX, shard);
                     Closer closer = Closer.create();
-                    OutputStream output = closer.register(new FileOutputStream(file));
+                    OutputStream output = closer.register(new FileOutputStream(tempFile));
                     try {
                         result.writeTo(output);
                     } finally {
                         closer.close();
                     }
+                    if (!tempFile.renameTo(file) && !file.isFile()) {
+                        throw new IOException(String.format("Could not move temporary file %s to %s", tempFile, file));
+                    }
                 } catch (IOException ex) {
                     throw new UncheckedIOException(ex);
+                } finally {
+                    // Still exists when writing failed, or when another build stored the same entry first
+                    if (tempFile != null && tempFile.exists()) {
+                        tempFile.delete();
+                    }
                 }
             }
         });
     }
 
     private File getFile(String key) {
-        return new File(persistentCache.getBaseDir(), key);
+        return new File(new File(persistentCache.getBaseDir(), key.substring(0, SHARD_PREFIX_LENGTH)), key);
+    }
+
+    /**
+     * Removes entries that have not been used for longer than the maximum age, and then the least recently used entries until the total size of the
+     * cache is at most the maximum size. Does nothing when the previous cleanup was less than {@link #CLEANUP_INTERVAL_MILLIS} ago.
+     */
+    void cleanupIfRequired() {
+        persistentCache.useCache("clean up build cache", new Runnable() {
+            @Override
+            public void run() {
+                File marker = new File(persistentCache.getBaseDir(), CLEANUP_MARKER_FILE_NAME);
+                long now = System.currentTimeMillis();
+                if (marker.isFile() && now - marker.lastModified() < CLEANUP_INTERVAL_MILLIS) {
+                    return;
+                }
+                cleanup(now);
+                try {
+                    if (!marker.createNewFile()) {
+                        marker.setLastModified(now);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private void cleanup(long now) {
+        List<CacheEntry> entries = new ArrayList<CacheEntry>();
+        long totalSize = 0;
+        File[] children = persistentCache.getBaseDir().listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (SHARD_NAME.matcher(child.getName()).matches()) {
+                File[] shardEntries = child.listFiles();
+                if (shardEntries != null) {
+                    for (File entry : shardEntries) {
+                        if (entry.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                            deleteIfAbandoned(entry, now);
+                        } else {
+                            totalSize += addEntry(entry, entries);
+                        }
+                    }
+                }
+            } else if (ENTRY_NAME.matcher(child.getName()).matches()) {
+                totalSize += addEntry(child, entries);
+            }
+        }
+
+        Collections.sort(entries, new Comparator<CacheEntry>() {
+            @Override
+            public int compare(CacheEntry o1, CacheEntry o2) {
+                return o1.lastUsed < o2.lastUsed ? -1 : (o1.lastUsed == o2.lastUsed ? 0 : 1);
+            }
+        });
+        long removedSize = 0;
+        int removedEntries = 0;
+        for (CacheEntry entry : entries) {
+            boolean expired = now - entry.lastUsed > maxAgeMillis;
+            if (!expired && totalSize - removedSize <= maxSizeBytes) {
+                break;
+            }
+            // Another process may still be reading the entry, in which case it cannot be deleted on some platforms
+            if (entry.file.delete()) {
+                removedSize += entry.size;
+                removedEntries++;
+            }
+        }
+        LOGGER.info("Build cache cleanup removed {} entries ({} bytes) from {}, leaving {} bytes.", removedEntries, removedSize, getDescription(), totalSize - removedSize);
+    }
+
+    private static void deleteIfAbandoned(File tempFile, long now) {
+        // Left behind by a process that was killed while storing an entry
+        if (now - tempFile.lastModified() > CLEANUP_INTERVAL_MILLIS) {
+            tempFile.delete();
+        }
+    }
+
+    private static long addEntry(File file, List<CacheEntry> entries) {
+        if (!ENTRY_NAME.matcher(file.getName()).matches() || !file.isFile()) {
+            return 0;
+        }
+        CacheEntry entry = new CacheEntry(file, file.lastModified(), file.length());
+        entries.add(entry);
+        return entry.size;
     }
 
     @Override
@@ -131,6 +297,26 @@ public class LocalDirectoryBuildCache implements BuildCache {
 
     @Override
     public void close() throws IOException {
-        persistentCache.close();
+        try {
+            int loadCount = loads.get();
+            if (loadCount > 0) {
+                LOGGER.info("{} served {} of {} loads.", getDescription(), hits.get(), loadCount);
+            }
+            cleanupIfRequired();
+        } finally {
+            persistentCache.close();
+        }
+    }
+
+    private static class CacheEntry {
+        private final File file;
+        private final long lastUsed;
+        private final long size;
+
+        private CacheEntry(File file, long lastUsed, long size) {
+            this.file = file;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
     }
 }
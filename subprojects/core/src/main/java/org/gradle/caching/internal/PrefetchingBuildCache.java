@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCache;
+import org.gradle.caching.BuildCacheKey;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * A {@link BuildCache} that can load entries ahead of the tasks that need them.
+ */
+public interface PrefetchingBuildCache extends BuildCache {
+    /**
+     * Returns whether this cache has been configured to prefetch entries.
+     */
+    boolean isPrefetchEnabled();
+
+    /**
+     * Starts loading the entries with the given keys into the given directory, and returns without waiting for them.
+     * A later {@link #load} of one of these keys uses the staged entry. Entries that could not be prefetched are loaded again instead,
+     * so this method does not report failures.
+     */
+    void prefetch(Collection<? extends BuildCacheKey> keys, File stagingDirectory);
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Adds compression and CRC32 checks to the packed task output.
+ *
+ * <p>Outputs that consist only of files that are compressed already, such as jars, are stored with {@link TaskOutputCompression#NONE}, as
+ * compressing them again costs time without making the result smaller. They are still written in GZIP format, so the CRC32 check applies
+ * to every entry, and entries stored with any {@link TaskOutputCompression} are unpacked in the same way.</p>
+ *
+ * <p>When more than one thread is allowed, the output is compressed in blocks in parallel with packing it, see {@link ParallelGZipOutputStream}.
+ * The blocks of all outputs packed at the same time are compressed by a single pool of threads, which is stopped when the packer is stopped.
+ * The result can be unpacked in the same way as output compressed on a single thread.</p>
+ */
+public class CompressingTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    public static final String MAX_THREADS_PROPERTY = "org.gradle.internal.caching.packing.maxthreads";
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<String> COMPRESSED_EXTENSIONS = ImmutableSet.of("jar", "war", "ear", "aar", "zip", "gz", "tgz", "bz2", "xz", "7z", "png", "jpg", "jpeg", "gif");
+
+    private final TaskOutputPacker delegate;
+    private final TaskOutputCompression compression;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+    private final Object lock = new Object();
+    private StoppableExecutor executor;
+
+    public CompressingTaskOutputPacker(TaskOutputPacker delegate) {
+        this(delegate, TaskOutputCompression.GZIP, null, 1);
+    }
+
+    /**
+     * @param maxThreads the number of threads to compress each packed output with, in addition to the thread doing the packing.
+     */
+    public CompressingTaskOutputPacker(TaskOutputPacker delegate, TaskOutputCompression compression, @Nullable ExecutorFactory executorFactory, int maxThreads) {
+        this.delegate = delegate;
+        this.compression = compression;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+    }
+
+    @Override
+    public void pack(TaskOutputsInternal taskOutputs, OutputStream output, TaskOutputOriginWriter writeOrigin) {
+        TaskOutputCompression compression = compressionFor(taskOutputs);
+        // There is nothing to gain from storing blocks in parallel
+        if (maxThreads > 1 && compression.isCompressed()) {
+            packInParallel(taskOutputs, output, compression, writeOrigin);
+            return;
+        }
+        OutputStream gzipOutput = createGzipOutputStream(output, compression);
+        try {
+            delegate.pack(taskOutputs, gzipOutput, writeOrigin);
+        } finally {
+            IOUtils.closeQuietly(gzipOutput);
+        }
+    }
+
+    TaskOutputCompression compressionFor(TaskOutputsInternal taskOutputs) {
+        boolean compressedFilesOnly = false;
+        for (TaskOutputFilePropertySpec spec : taskOutputs.getFileProperties()) {
+            File outputFile = spec.getOutputFile();
+            if (outputFile == null) {
+                continue;
+            }
+            if (((CacheableTaskOutputFilePropertySpec) spec).getOutputType() != CacheableTaskOutputFilePropertySpec.OutputType.FILE
+                || !COMPRESSED_EXTENSIONS.contains(FilenameUtils.getExtension(outputFile.getName()).toLowerCase())) {
+                return compression;
+            }
+            compressedFilesOnly = true;
+        }
+        return compressedFilesOnly ? TaskOutputCompression.NONE : compression;
+    }
+
+    private void packInParallel(TaskOutputsInternal taskOutputs, OutputStream output, TaskOutputCompression compression, TaskOutputOriginWriter writeOrigin) {
+        ParallelGZipOutputStream gzipOutput = new ParallelGZipOutputStream(output, getExecutor(), compression, BLOCK_SIZE, maxThreads * 2);
+        boolean packed = false;
+        try {
+            delegate.pack(taskOutputs, gzipOutput, writeOrigin);
+            packed = true;
+        } finally {
+            if (packed) {
+                close(gzipOutput);
+            } else {
+                IOUtils.closeQuietly(gzipOutput);
+            }
+        }
+    }
+
+    private StoppableExecutor getExecutor() {
+        synchronized (lock) {
+            if (executor == null) {
+                executor = executorFactory.create("build cache entry compression", maxThreads);
+            }
+            return executor;
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            if (executor != null) {
+                executor.stop();
+                executor = null;
+            }
+        }
+    }
+
+    private static void close(OutputStream output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static OutputStream createGzipOutputStream(OutputStream output, TaskOutputCompression compression) {
+        try {
+            return compression.compress(output, 512);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void unpack(TaskOutputsInternal taskOutputs, InputStream input, TaskOutputOriginReader readOrigin) {
+        InputStream packedInput = createPackedInputStream(input);
+        try {
+            delegate.unpack(taskOutputs, packedInput, readOrigin);
+        } finally {
+            IOUtils.closeQuietly(packedInput);
+        }
+    }
+
+    private static InputStream createPackedInputStream(InputStream input) {
+        try {
+            return new GZIPInputStream(new MemberBoundaryInputStream(input), BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reports whether there is more input, for streams that do not know how much input is available.
+     *
+     * <p>Output packed in parallel consists of several GZIP members. At the end of a member, {@link GZIPInputStream} only looks for another one
+     * when the underlying stream reports available input or when enough input has been buffered already. Otherwise it silently stops reading,
+     * for example when the entry is read from the network in small chunks.</p>
+     */
+    private static class MemberBoundaryInputStream extends PushbackInputStream {
+        MemberBoundaryInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int available() throws IOException {
+            int available = super.available();
+            if (available > 0) {
+                return available;
+            }
+            int next = read();
+            if (next < 0) {
+                return 0;
+            }
+            unread(next);
+            return 1;
+        }
+    }
+}
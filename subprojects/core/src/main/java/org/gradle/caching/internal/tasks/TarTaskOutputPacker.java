@@ -19,7 +19,6 @@ package org.gradle.caching.internal.tasks;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
-import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.tools.tar.TarEntry;
@@ -47,9 +46,13 @@ import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -65,6 +68,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
     private static final String METADATA_PATH = "METADATA";
     private static final Pattern PROPERTY_PATH = Pattern.compile("property-([^/]+)(?:/(.*))?");
     private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int BUFFER_SIZE = 256 * 1024;
 
     private final DefaultDirectoryWalkerFactory directoryWalkerFactory;
     private final FileSystem fileSystem;
@@ -194,12 +198,25 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         entry.setMode(UnixStat.FILE_FLAG | mode);
         outputStream.putNextEntry(entry);
         try {
-            Files.copy(file, outputStream);
+            copyFile(file, outputStream);
         } finally {
             outputStream.closeEntry();
         }
     }
 
+    private static void copyFile(File file, OutputStream outputStream) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(file.length(), 1))];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
     @Override
     public void unpack(final TaskOutputsInternal taskOutputs, InputStream input, final TaskOutputOriginReader readOrigin) {
         IoActions.withResource(new TarInputStream(input), new Action<TarInputStream>() {
@@ -222,6 +239,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
             }
         });
         boolean originSeen = false;
+        byte[] buffer = new byte[BUFFER_SIZE];
         TarEntry entry;
         while ((entry = tarInput.getNextEntry()) != null) {
             String name = entry.getName();
@@ -256,7 +274,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
                     }
                     FileUtils.forceMkdir(outputFile);
                 } else {
-                    Files.asByteSink(outputFile).writeFrom(tarInput);
+                    unpackFile(tarInput, entry.getSize(), outputFile, buffer);
                 }
                 //noinspection OctalInteger
                 fileSystem.chmod(outputFile, entry.getMode() & 0777);
@@ -271,6 +289,30 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         }
     }
 
+    /**
+     * Writes the contents of the current entry through a file channel, which avoids allocating a native buffer for each large write.
+     */
+    private static void unpackFile(InputStream input, long size, File outputFile, byte[] buffer) throws IOException {
+        FileOutputStream output = new FileOutputStream(outputFile);
+        try {
+            FileChannel channel = output.getChannel();
+            long remaining = size;
+            while (remaining > 0) {
+                int count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new IllegalStateException(String.format("Cached result format error, unexpected end of contents of '%s'.", outputFile));
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, count);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+                remaining -= count;
+            }
+        } finally {
+            output.close();
+        }
+    }
+
     private static void storeModificationTime(TarEntry entry, long lastModified) {
         // This will be divided by 1000 internally
         entry.setModTime(lastModified);
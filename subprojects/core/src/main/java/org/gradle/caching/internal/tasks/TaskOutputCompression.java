@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.base.Joiner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression applied to packed task output. Output is written in GZIP format whatever the compression, so that it is covered by a CRC32
+ * check, and can be unpacked without knowing which compression was used, see {@link CompressingTaskOutputPacker}.
+ */
+public enum TaskOutputCompression {
+    /**
+     * GZIP without compression, storing the packed output as is along with its CRC32 checksum.
+     */
+    NONE(Deflater.NO_COMPRESSION),
+    /**
+     * GZIP at the default compression level.
+     */
+    GZIP(Deflater.DEFAULT_COMPRESSION),
+    /**
+     * GZIP at the fastest compression level, trading some size for a lot less CPU time.
+     */
+    GZIP_FAST(Deflater.BEST_SPEED);
+
+    public static final String PROPERTY = "org.gradle.internal.caching.packing.compression";
+
+    private final int level;
+
+    TaskOutputCompression(int level) {
+        this.level = level;
+    }
+
+    public boolean isCompressed() {
+        return this != NONE;
+    }
+
+    OutputStream compress(OutputStream output, int bufferSize) throws IOException {
+        return new LevelGZIPOutputStream(output, bufferSize, level);
+    }
+
+    /**
+     * Returns the compression named by the {@value #PROPERTY} system property, or {@link #GZIP} when it is not set.
+     */
+    public static TaskOutputCompression fromSystemProperty() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.length() == 0) {
+            return GZIP;
+        }
+        for (TaskOutputCompression compression : values()) {
+            if (compression.name().equalsIgnoreCase(value)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown task output compression '%s' specified by system property '%s'. Supported values are: %s.", value, PROPERTY, Joiner.on(", ").join(values())));
+    }
+
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream output, int bufferSize, int level) throws IOException {
+            super(output, bufferSize);
+            def.setLevel(level);
+        }
+    }
+}
@@ -48,8 +48,8 @@ abstract class AbstractTaskPlanExecutor implements TaskPlanExecutor {
             long busy = 0;
             Timer totalTimer = Timers.startTimer();
             Timer taskTimer = Timers.startTimer();
-            TaskInfo task;
-            while ((task = taskExecutionPlan.getTaskToExecute()) != null) {
+            TaskInfo task = null;
+            while ((task = taskExecutionPlan.getTaskToExecute(task)) != null) {
                 BuildOperationWorkerRegistry.Completion completion = buildOperationWorkerRegistry.operationStart();
                 try {
                     final String taskPath = task.getTask().getPath();
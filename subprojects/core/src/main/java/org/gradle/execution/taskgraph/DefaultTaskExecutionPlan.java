@@ -18,12 +18,14 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.*;
 import org.gradle.api.*;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Spec;
@@ -32,6 +34,7 @@ import org.gradle.api.tasks.ParallelizableTask;
 import org.gradle.execution.MultipleBuildFailures;
 import org.gradle.execution.TaskFailureHandler;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.Factory;
 import org.gradle.internal.Pair;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.graph.CachingDirectedGraphWalker;
@@ -50,6 +53,8 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static org.gradle.internal.time.Clock.prettyTime;
+
 /**
  * A reusable implementation of TaskExecutionPlan. The {@link #addToTaskGraph(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these
  * methods.
@@ -57,16 +62,24 @@ import java.util.concurrent.locks.ReentrantLock;
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     public static final String INTRA_PROJECT_TOGGLE = "org.gradle.parallel.intra";
+    public static final String CRITICAL_PATH_TOGGLE = "org.gradle.parallel.criticalpath";
+    public static final String PROJECT_AFFINITY_TOGGLE = "org.gradle.parallel.affinity";
+
+    /**
+     * The number of times a ready task can be passed over in favour of a task of the project a worker has just executed a task of.
+     */
+    private static final int MAX_TIMES_PASSED_OVER = 8;
 
     private final static Logger LOGGER = Logging.getLogger(DefaultTaskExecutionPlan.class);
 
     private final Lock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
+    private final Condition taskAvailable = lock.newCondition();
+    private final Condition executionComplete = lock.newCondition();
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskDependencyGraph graph = new TaskDependencyGraph();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final TaskExecutionQueue executionQueue = new TaskExecutionQueue();
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
 
@@ -75,23 +88,57 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Multiset<String> projectsWithRunningTasks = HashMultiset.create();
     private final Multiset<String> projectsWithRunningNonParallelizableTasks = HashMultiset.create();
     private final Set<TaskInternal> runningTasks = Sets.newIdentityHashSet();
+    private final TaskOutputPathIndex runningTaskOutputs = new TaskOutputPathIndex();
     private final Map<Task, Set<String>> canonicalizedOutputCache = Maps.newIdentityHashMap();
     private final Map<Task, Boolean> isParallelSafeCache = Maps.newIdentityHashMap();
+    private int waitingWorkers;
     private boolean tasksCancelled;
 
     private final boolean intraProjectParallelization;
+    private final TaskDurationRepository taskDurations;
+    private final boolean projectAffinity;
+    private final Map<TaskInfo, Long> taskStartTimes = Maps.newIdentityHashMap();
+    private final Map<TaskInfo, Long> taskFinishTimes = Maps.newIdentityHashMap();
 
-    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization) {
+    /**
+     * @param taskDurations the durations of previous task executions. When not null, ready tasks are prioritized by their estimated critical path.
+     * @param projectAffinity whether a worker should prefer the ready tasks of the project it has just executed a task of.
+     */
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization, @Nullable TaskDurationRepository taskDurations, boolean projectAffinity) {
         this.cancellationToken = cancellationToken;
         this.intraProjectParallelization = intraProjectParallelization;
+        this.taskDurations = taskDurations;
+        this.projectAffinity = projectAffinity;
 
         if (intraProjectParallelization) {
             LOGGER.info("intra project task parallelization is enabled");
         }
+        if (taskDurations != null) {
+            LOGGER.info("critical path task prioritization is enabled");
+        }
+        if (projectAffinity) {
+            LOGGER.info("project affinity of task workers is enabled");
+            executionQueue.indexReadyTasksByProject();
+        }
+    }
+
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization, @Nullable TaskDurationRepository taskDurations) {
+        this(cancellationToken, intraProjectParallelization, taskDurations, false);
+    }
+
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization) {
+        this(cancellationToken, intraProjectParallelization, null);
+    }
+
+    /**
+     * @param taskDurations creates the durations of previous task executions. Only used when critical path task prioritization is enabled.
+     */
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, Factory<? extends TaskDurationRepository> taskDurations) {
+        this(cancellationToken, Boolean.getBoolean(INTRA_PROJECT_TOGGLE), Boolean.getBoolean(CRITICAL_PATH_TOGGLE) ? taskDurations.create() : null, Boolean.getBoolean(PROJECT_AFFINITY_TOGGLE));
     }
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken) {
-        this(cancellationToken, Boolean.getBoolean(INTRA_PROJECT_TOGGLE));
+        this(cancellationToken, Boolean.getBoolean(INTRA_PROJECT_TOGGLE), null, Boolean.getBoolean(PROJECT_AFFINITY_TOGGLE));
     }
 
     public void addToTaskGraph(Collection<? extends Task> tasks) {
@@ -307,8 +354,30 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
-        executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        executionQueue.reset(executionPlan.values(), taskDurations == null ? null : estimateDurations());
+    }
+
+    /**
+     * Estimates task durations from their previous executions. Tasks that have not been executed before are assumed to take as long as the average
+     * known task, so that without any history the longest chain of tasks is preferred.
+     */
+    private Transformer<Long, TaskInfo> estimateDurations() {
+        final Map<TaskInfo, Long> durations = Maps.newIdentityHashMap();
+        long total = 0;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            Long duration = taskDurations.getPreviousDuration(taskInfo.getTask().getPath());
+            if (duration != null) {
+                durations.put(taskInfo, duration);
+                total += duration;
+            }
+        }
+        final long defaultDuration = durations.isEmpty() ? 1 : Math.max(1, total / durations.size());
+        return new Transformer<Long, TaskInfo>() {
+            public Long transform(TaskInfo taskInfo) {
+                Long duration = durations.get(taskInfo);
+                return duration == null ? defaultDuration : Math.max(1, duration);
+            }
+        };
     }
 
     private void maybeRemoveProcessedShouldRunAfterEdge(Stack<GraphEdge> walkedShouldRunAfterEdges, TaskInfo taskNode) {
@@ -458,6 +527,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             canonicalizedOutputCache.clear();
             isParallelSafeCache.clear();
             runningTasks.clear();
+            runningTaskOutputs.clear();
+            taskStartTimes.clear();
+            taskFinishTimes.clear();
         } finally {
             lock.unlock();
         }
@@ -467,6 +539,28 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return new ArrayList<Task>(executionPlan.keySet());
     }
 
+    /**
+     * Returns the tasks that do not depend on any other task in the plan, in plan order. The inputs of these tasks are not produced during the build.
+     */
+    public List<TaskInternal> getTasksWithoutDependencies() {
+        List<TaskInternal> tasks = new ArrayList<TaskInternal>();
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            if (!dependsOnTaskInPlan(taskInfo)) {
+                tasks.add(taskInfo.getTask());
+            }
+        }
+        return tasks;
+    }
+
+    private boolean dependsOnTaskInPlan(TaskInfo taskInfo) {
+        for (TaskInfo dependency : taskInfo.getDependencySuccessors()) {
+            if (executionPlan.containsKey(dependency.getTask())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void useFilter(Spec<? super Task> filter) {
         this.filter = filter;
     }
@@ -476,43 +570,51 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     public TaskInfo getTaskToExecute() {
+        return getTaskToExecute(null);
+    }
+
+    public TaskInfo getTaskToExecute(@Nullable TaskInfo previousTask) {
         lock.lock();
         try {
             while (true) {
                 if (cancellationToken.isCancellationRequested()) {
                     if (abortExecution()) {
                         tasksCancelled = true;
+                        signalWaiters(true);
                     }
                 }
+                if (executionQueue.allTasksComplete()) {
+                    return null;
+                }
                 TaskInfo nextMatching = null;
-                boolean allTasksComplete = true;
-                Iterator<TaskInfo> iterator = executionQueue.iterator();
-                while (iterator.hasNext()) {
-                    TaskInfo taskInfo = iterator.next();
-                    allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
+                for (TaskInfo taskInfo : executionQueue.getReadyTasks()) {
+                    if (canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
                         nextMatching = taskInfo;
-                        iterator.remove();
                         break;
                     }
                 }
-                if (allTasksComplete) {
-                    return null;
+                if (nextMatching != null && projectAffinity && previousTask != null) {
+                    nextMatching = preferTaskOfSameProject(nextMatching, previousTask);
                 }
                 if (nextMatching == null) {
+                    waitingWorkers++;
                     try {
-                        condition.await();
+                        taskAvailable.await();
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
+                    } finally {
+                        waitingWorkers--;
                     }
                 } else {
+                    executionQueue.remove(nextMatching);
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
                         recordTaskStarted(nextMatching);
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
-                        condition.signalAll();
+                        executionQueue.taskCompleted(nextMatching);
+                        signalWaiters(executionQueue.allTasksComplete());
                     }
                 }
             }
@@ -521,6 +623,26 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
+    /**
+     * Selects a ready task of the project of the previous task of the worker, rather than the next task in order, unless the next task has already
+     * been passed over too many times.
+     */
+    private TaskInfo preferTaskOfSameProject(TaskInfo nextMatching, TaskInfo previousTask) {
+        String projectPath = previousTask.getTask().getProject().getPath();
+        if (nextMatching.getTask().getProject().getPath().equals(projectPath)) {
+            return nextMatching;
+        }
+        for (TaskInfo taskInfo : executionQueue.getReadyTasks(projectPath)) {
+            if (canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
+                if (executionQueue.taskPassedOver(nextMatching) > MAX_TIMES_PASSED_OVER) {
+                    return nextMatching;
+                }
+                return taskInfo;
+            }
+        }
+        return nextMatching;
+    }
+
     private boolean canRunWithWithCurrentlyExecutedTasks(TaskInfo taskInfo) {
         TaskInternal task = taskInfo.getTask();
         String projectPath = task.getProject().getPath();
@@ -568,41 +690,20 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     @Nullable
     private Pair<TaskInternal, String> firstTaskWithOverlappingOutput(TaskInternal candidateTask) {
-        if (runningTasks.isEmpty()) {
+        if (runningTaskOutputs.isEmpty()) {
             return null;
         }
 
         for (String candidateTaskOutputPath : canonicalizedOutputPaths(candidateTask)) {
-            for (TaskInternal runningTask : runningTasks) {
-                for (String runningTaskOutputPath : canonicalizedOutputPaths(runningTask)) {
-                    if (pathsOverlap(candidateTaskOutputPath, runningTaskOutputPath)) {
-                        return Pair.of(runningTask, TextUtil.shorterOf(candidateTaskOutputPath, runningTaskOutputPath));
-                    }
-                }
+            Pair<TaskInternal, String> overlap = runningTaskOutputs.findOverlap(candidateTaskOutputPath);
+            if (overlap != null) {
+                return Pair.of(overlap.left, TextUtil.shorterOf(candidateTaskOutputPath, overlap.right));
             }
         }
 
         return null;
     }
 
-
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
-        }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
-    }
-
     boolean isParallelizable(TaskInternal task) {
         if (intraProjectParallelization) {
             Boolean safe = isParallelSafeCache.get(task);
@@ -637,6 +738,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         projectsWithRunningTasks.add(projectPath);
         runningTasks.add(task);
+        runningTaskOutputs.add(task, canonicalizedOutputPaths(task));
+        if (taskDurations != null) {
+            taskStartTimes.put(taskInfo, System.currentTimeMillis());
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
@@ -646,6 +751,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             projectsWithRunningNonParallelizableTasks.remove(projectPath);
         }
         projectsWithRunningTasks.remove(projectPath);
+        runningTaskOutputs.remove(task, canonicalizedOutputPaths(task));
+        if (taskDurations != null) {
+            taskFinishTimes.put(taskInfo, System.currentTimeMillis());
+        }
         canonicalizedOutputCache.remove(task);
         isParallelSafeCache.remove(task);
         runningTasks.remove(task);
@@ -660,8 +769,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
 
             taskInfo.finishExecution();
+            executionQueue.taskCompleted(taskInfo);
             recordTaskCompleted(taskInfo);
-            condition.signalAll();
+            signalWaiters(executionQueue.allTasksComplete());
         } finally {
             lock.unlock();
         }
@@ -687,7 +797,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 candidateNodes.addAll(node.getDependencySuccessors());
 
                 if (node.isMustNotRun() || node.isRequired()) {
+                    boolean wasComplete = node.isComplete();
                     node.enforceRun();
+                    executionQueue.taskEnforced(node, wasComplete);
                 }
             }
         }
@@ -719,6 +831,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         for (TaskInfo taskInfo : executionPlan.values()) {
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                executionQueue.taskCompleted(taskInfo);
                 aborted = true;
             }
         }
@@ -730,17 +843,66 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         try {
             while (!allTasksComplete()) {
                 try {
-                    condition.await();
+                    executionComplete.await();
                 } catch (InterruptedException e) {
                     throw new RuntimeException(e);
                 }
             }
+            if (taskDurations != null) {
+                recordTaskDurations();
+                reportCriticalPath();
+            }
             rethrowFailures();
         } finally {
             lock.unlock();
         }
     }
 
+    private void recordTaskDurations() {
+        for (Map.Entry<TaskInfo, Long> entry : taskFinishTimes.entrySet()) {
+            TaskInfo taskInfo = entry.getKey();
+            TaskStateInternal state = taskInfo.getTask().getState();
+            // Keep the previous duration of tasks that did not run their actions, as it is a better estimate of the next execution
+            if (state.getOutcome() != TaskExecutionOutcome.EXECUTED || state.getFailure() != null) {
+                continue;
+            }
+            taskDurations.recordDuration(taskInfo.getTask().getPath(), entry.getValue() - taskStartTimes.get(taskInfo));
+        }
+    }
+
+    private void reportCriticalPath() {
+        List<TaskInfo> predicted = executionQueue.getPredictedCriticalPath();
+        long predictedDuration = 0;
+        for (TaskInfo taskInfo : predicted) {
+            predictedDuration += executionQueue.getEstimatedDuration(taskInfo);
+        }
+
+        // Walk back from the task that finished last, each time to the dependency that finished last
+        LinkedList<TaskInfo> actual = new LinkedList<TaskInfo>();
+        TaskInfo current = null;
+        for (TaskInfo taskInfo : taskFinishTimes.keySet()) {
+            if (current == null || taskFinishTimes.get(taskInfo) > taskFinishTimes.get(current)) {
+                current = taskInfo;
+            }
+        }
+        while (current != null) {
+            actual.addFirst(current);
+            TaskInfo latestDependency = null;
+            for (TaskInfo dependency : Iterables.concat(current.getDependencySuccessors(), current.getMustSuccessors())) {
+                Long finishTime = taskFinishTimes.get(dependency);
+                if (finishTime != null && (latestDependency == null || finishTime > taskFinishTimes.get(latestDependency))) {
+                    latestDependency = dependency;
+                }
+            }
+            current = latestDependency;
+        }
+        long actualDuration = actual.isEmpty() ? 0 : taskFinishTimes.get(actual.getLast()) - taskStartTimes.get(actual.getFirst());
+
+        LOGGER.info("Critical path: predicted {} ({} tasks), actual {} ({} tasks)", prettyTime(predictedDuration), predicted.size(), prettyTime(actualDuration), actual.size());
+        LOGGER.info("Predicted critical path: {}", predicted);
+        LOGGER.info("Actual critical path: {}", actual);
+    }
+
     private void rethrowFailures() {
         if (tasksCancelled) {
             failures.add(new BuildCancelledException());
@@ -757,12 +919,24 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean allTasksComplete() {
-        for (TaskInfo taskInfo : executionPlan.values()) {
-            if (!taskInfo.isComplete()) {
-                return false;
+        return executionQueue.allTasksComplete() && runningTasks.isEmpty();
+    }
+
+    /**
+     * Wakes up workers waiting for a task. Only as many workers as there are tasks ready to run are woken, unless all workers need to re-check the plan.
+     */
+    private void signalWaiters(boolean allWorkers) {
+        if (allWorkers) {
+            taskAvailable.signalAll();
+        } else {
+            int toWake = Math.min(waitingWorkers, executionQueue.getReadyTaskCount());
+            for (int i = 0; i < toWake; i++) {
+                taskAvailable.signal();
             }
         }
-        return true;
+        if (allTasksComplete()) {
+            executionComplete.signalAll();
+        }
     }
 
     private static class GraphEdge {
@@ -16,6 +16,7 @@
 
 package org.gradle.execution.taskgraph;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.Task;
 
 import java.util.List;
@@ -47,4 +48,13 @@ public interface TaskExecutionPlan {
      * @return The task, or null if no matching tasks remain.
      */
     TaskInfo getTaskToExecute();
+
+    /**
+     * Provides a ready-to-execute task, as for {@link #getTaskToExecute()}. The plan may prefer a task that is related to the task previously
+     * executed by the calling worker.
+     *
+     * @param previousTask the task the calling worker executed last, or null for its first task.
+     * @return The task, or null if no matching tasks remain.
+     */
+    TaskInfo getTaskToExecute(@Nullable TaskInfo previousTask);
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import org.gradle.api.Nullable;
+import org.gradle.api.Transformer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * The tasks of an execution plan that have not been handed out to a worker yet.
+ *
+ * <p>Each queued task keeps a count of its dependencies that are not complete. The count is adjusted as tasks change state, so the tasks that can
+ * be started are available without scanning the whole queue. Ready tasks are kept in execution plan order, or, when task durations are available,
+ * ordered by the estimated duration of the longest chain of tasks that cannot start before them. The ready tasks can also be indexed by project.</p>
+ *
+ * <p>This class is not thread-safe. Callers must hold the execution plan lock and must report every state change of a task in the plan.</p>
+ */
+class TaskExecutionQueue {
+    private static final Comparator<Entry> PLAN_ORDER = new Comparator<Entry>() {
+        public int compare(Entry o1, Entry o2) {
+            return o1.ordinal < o2.ordinal ? -1 : (o1.ordinal == o2.ordinal ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Entry> CRITICAL_PATH_ORDER = new Comparator<Entry>() {
+        public int compare(Entry o1, Entry o2) {
+            if (o1.remainingDuration != o2.remainingDuration) {
+                return o1.remainingDuration > o2.remainingDuration ? -1 : 1;
+            }
+            return PLAN_ORDER.compare(o1, o2);
+        }
+    };
+
+    private final Map<TaskInfo, Entry> entries = Maps.newIdentityHashMap();
+    private NavigableSet<Entry> readyTasks = new TreeSet<Entry>(PLAN_ORDER);
+    private Map<String, NavigableSet<Entry>> readyTasksByProject;
+    private int incompleteQueuedTasks;
+
+    /**
+     * Keeps an index of the ready tasks of each project from the next reset on, for {@link #getReadyTasks(String)}.
+     */
+    public void indexReadyTasksByProject() {
+        readyTasksByProject = new HashMap<String, NavigableSet<Entry>>();
+    }
+
+    /**
+     * Replaces the contents of this queue with the given tasks, in execution order.
+     */
+    public void reset(Collection<TaskInfo> executionPlan) {
+        reset(executionPlan, null);
+    }
+
+    /**
+     * Replaces the contents of this queue with the given tasks, in execution order.
+     *
+     * @param durationEstimate the estimated duration of each task, in milliseconds. When not null, ready tasks are handed out longest critical path first.
+     */
+    public void reset(Collection<TaskInfo> executionPlan, @Nullable Transformer<Long, TaskInfo> durationEstimate) {
+        clear();
+        readyTasks = new TreeSet<Entry>(durationEstimate == null ? PLAN_ORDER : CRITICAL_PATH_ORDER);
+        List<Entry> planOrder = new ArrayList<Entry>(executionPlan.size());
+        int ordinal = 0;
+        for (TaskInfo taskInfo : executionPlan) {
+            Entry entry = new Entry(taskInfo, ordinal++);
+            entry.queued = true;
+            if (readyTasksByProject != null) {
+                entry.projectPath = taskInfo.getTask().getProject().getPath();
+            }
+            entries.put(taskInfo, entry);
+            planOrder.add(entry);
+        }
+        for (Entry entry : entries.values()) {
+            TaskInfo taskInfo = entry.taskInfo;
+            for (TaskInfo dependency : Iterables.concat(taskInfo.getMustSuccessors(), taskInfo.getDependencySuccessors())) {
+                Entry dependencyEntry = entries.get(dependency);
+                if (dependencyEntry == null) {
+                    // Not part of the plan, so never changes state
+                    if (!dependency.isComplete()) {
+                        entry.incompleteDependencies++;
+                    }
+                    continue;
+                }
+                dependencyEntry.dependents.add(entry);
+                if (!dependency.isComplete()) {
+                    entry.incompleteDependencies++;
+                }
+            }
+            if (!taskInfo.isComplete()) {
+                incompleteQueuedTasks++;
+            }
+        }
+        if (durationEstimate != null) {
+            calculateRemainingDurations(planOrder, durationEstimate);
+        }
+        for (Entry entry : planOrder) {
+            updateReadiness(entry);
+        }
+    }
+
+    private void calculateRemainingDurations(List<Entry> planOrder, Transformer<Long, TaskInfo> durationEstimate) {
+        // Dependents always come later in the plan, so walk it backwards
+        for (int i = planOrder.size() - 1; i >= 0; i--) {
+            Entry entry = planOrder.get(i);
+            entry.estimatedDuration = entry.taskInfo.isComplete() ? 0 : durationEstimate.transform(entry.taskInfo);
+            long longestDependentPath = 0;
+            for (Entry dependent : entry.dependents) {
+                if (dependent.remainingDuration > longestDependentPath || entry.criticalDependent == null) {
+                    longestDependentPath = dependent.remainingDuration;
+                    entry.criticalDependent = dependent;
+                }
+            }
+            entry.remainingDuration = entry.estimatedDuration + longestDependentPath;
+        }
+    }
+
+    /**
+     * Returns the chain of tasks with the longest estimated total duration, as calculated when the queue was reset. Returns an empty list when no
+     * duration estimate was provided.
+     */
+    public List<TaskInfo> getPredictedCriticalPath() {
+        Entry start = null;
+        for (Entry entry : entries.values()) {
+            if (start == null || CRITICAL_PATH_ORDER.compare(entry, start) < 0) {
+                start = entry;
+            }
+        }
+        List<TaskInfo> path = new ArrayList<TaskInfo>();
+        if (start == null || start.remainingDuration == 0) {
+            return path;
+        }
+        for (Entry entry = start; entry != null; entry = entry.criticalDependent) {
+            path.add(entry.taskInfo);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the estimated duration of the given task, as provided when the queue was reset.
+     */
+    public long getEstimatedDuration(TaskInfo taskInfo) {
+        Entry entry = entries.get(taskInfo);
+        return entry == null ? 0 : entry.estimatedDuration;
+    }
+
+    public void clear() {
+        entries.clear();
+        readyTasks.clear();
+        if (readyTasksByProject != null) {
+            readyTasksByProject.clear();
+        }
+        incompleteQueuedTasks = 0;
+    }
+
+    /**
+     * Returns true when there are no queued tasks left that still need to be executed or skipped.
+     */
+    public boolean allTasksComplete() {
+        return incompleteQueuedTasks == 0;
+    }
+
+    /**
+     * Returns the queued tasks whose dependencies are all complete, in execution plan order.
+     */
+    public Iterable<TaskInfo> getReadyTasks() {
+        return tasksOf(readyTasks);
+    }
+
+    /**
+     * Returns the queued tasks of the given project whose dependencies are all complete, in the same order as {@link #getReadyTasks()}.
+     * Requires {@link #indexReadyTasksByProject()}.
+     */
+    public Iterable<TaskInfo> getReadyTasks(String projectPath) {
+        if (readyTasksByProject == null) {
+            throw new IllegalStateException("Ready tasks are not indexed by project.");
+        }
+        NavigableSet<Entry> projectReadyTasks = readyTasksByProject.get(projectPath);
+        return projectReadyTasks == null ? Collections.<TaskInfo>emptyList() : tasksOf(projectReadyTasks);
+    }
+
+    /**
+     * Records that a ready task was passed over in favour of a task later in the order.
+     *
+     * @return the number of times the task has been passed over.
+     */
+    public int taskPassedOver(TaskInfo taskInfo) {
+        Entry entry = entries.get(taskInfo);
+        return entry == null ? 0 : ++entry.timesPassedOver;
+    }
+
+    private static Iterable<TaskInfo> tasksOf(final NavigableSet<Entry> entries) {
+        return new Iterable<TaskInfo>() {
+            public Iterator<TaskInfo> iterator() {
+                final Iterator<Entry> iterator = entries.iterator();
+                return new Iterator<TaskInfo>() {
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    public TaskInfo next() {
+                        return iterator.next().taskInfo;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    public int getReadyTaskCount() {
+        return readyTasks.size();
+    }
+
+    /**
+     * Removes a task from the queue, before it is started or skipped.
+     */
+    public void remove(TaskInfo taskInfo) {
+        Entry entry = entries.get(taskInfo);
+        if (entry == null || !entry.queued) {
+            return;
+        }
+        entry.queued = false;
+        removeReady(entry);
+        if (!taskInfo.isComplete()) {
+            incompleteQueuedTasks--;
+        }
+    }
+
+    /**
+     * Must be called after a task in the plan has moved from an incomplete to a complete state.
+     *
+     * @return the number of tasks that became ready as a result.
+     */
+    public int taskCompleted(TaskInfo taskInfo) {
+        Entry entry = entries.get(taskInfo);
+        if (entry == null) {
+            return 0;
+        }
+        if (entry.queued) {
+            entry.queued = false;
+            removeReady(entry);
+            incompleteQueuedTasks--;
+        }
+        int newlyReady = 0;
+        for (Entry dependent : entry.dependents) {
+            dependent.incompleteDependencies--;
+            if (updateReadiness(dependent)) {
+                newlyReady++;
+            }
+        }
+        return newlyReady;
+    }
+
+    /**
+     * Must be called after a task in the plan has been enforced to run.
+     *
+     * @param wasComplete whether the task was in a complete state before it was enforced.
+     */
+    public void taskEnforced(TaskInfo taskInfo, boolean wasComplete) {
+        Entry entry = entries.get(taskInfo);
+        if (entry == null) {
+            return;
+        }
+        if (wasComplete) {
+            if (entry.queued) {
+                incompleteQueuedTasks++;
+            }
+            for (Entry dependent : entry.dependents) {
+                dependent.incompleteDependencies++;
+                removeReady(dependent);
+            }
+        }
+        updateReadiness(entry);
+    }
+
+    private boolean updateReadiness(Entry entry) {
+        if (entry.queued && entry.incompleteDependencies == 0 && entry.taskInfo.isReady()) {
+            if (!readyTasks.add(entry)) {
+                return false;
+            }
+            if (readyTasksByProject != null) {
+                NavigableSet<Entry> projectReadyTasks = readyTasksByProject.get(entry.projectPath);
+                if (projectReadyTasks == null) {
+                    projectReadyTasks = new TreeSet<Entry>(readyTasks.comparator());
+                    readyTasksByProject.put(entry.projectPath, projectReadyTasks);
+                }
+                projectReadyTasks.add(entry);
+            }
+            return true;
+        }
+        removeReady(entry);
+        return false;
+    }
+
+    private void removeReady(Entry entry) {
+        if (readyTasks.remove(entry) && readyTasksByProject != null) {
+            NavigableSet<Entry> projectReadyTasks = readyTasksByProject.get(entry.projectPath);
+            projectReadyTasks.remove(entry);
+            if (projectReadyTasks.isEmpty()) {
+                readyTasksByProject.remove(entry.projectPath);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final TaskInfo taskInfo;
+        private final int ordinal;
+        private final List<Entry> dependents = new ArrayList<Entry>();
+        private int incompleteDependencies;
+        private boolean queued;
+        private long estimatedDuration;
+        private long remainingDuration;
+        private Entry criticalDependent;
+        private String projectPath;
+        private int timesPassedOver;
+
+        private Entry(TaskInfo taskInfo, int ordinal) {
+            this.taskInfo = taskInfo;
+            this.ordinal = ordinal;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.internal.Pair;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie of the canonical output paths of the currently executing tasks, indexed by path segment.
+ *
+ * <p>An overlap query walks the segments of the candidate path once, so it costs O(path depth) regardless of how many tasks are running or how many
+ * outputs they declare. Two paths overlap when they are equal, or when one is an ancestor directory of the other.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+class TaskOutputPathIndex {
+    private final Node root = new Node(null, null);
+
+    public void add(TaskInternal task, Iterable<String> canonicalPaths) {
+        for (String path : canonicalPaths) {
+            Node node = root;
+            node.ownersInSubtree++;
+            for (String segment : segments(path)) {
+                node = node.child(segment);
+                node.ownersInSubtree++;
+            }
+            node.owners.add(task);
+            node.path = path;
+        }
+    }
+
+    public void remove(TaskInternal task, Iterable<String> canonicalPaths) {
+        for (String path : canonicalPaths) {
+            Node node = find(path);
+            if (node == null || !node.owners.remove(task)) {
+                continue;
+            }
+            while (node != null) {
+                node.ownersInSubtree--;
+                if (node.ownersInSubtree == 0 && node.parent != null) {
+                    node.parent.children.remove(node.segment);
+                }
+                node = node.parent;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return root.ownersInSubtree == 0;
+    }
+
+    public void clear() {
+        root.children = null;
+        root.owners.clear();
+        root.ownersInSubtree = 0;
+    }
+
+    /**
+     * Finds a running task with an output that overlaps the given canonical path.
+     *
+     * @return the running task and its overlapping output path, or null if there is no overlap.
+     */
+    @Nullable
+    public Pair<TaskInternal, String> findOverlap(String canonicalPath) {
+        Node node = root;
+        if (node.ownersInSubtree == 0) {
+            return null;
+        }
+        // Any output along the way is an ancestor of, or equal to, the candidate path
+        for (String segment : segments(canonicalPath)) {
+            if (!node.owners.isEmpty()) {
+                return Pair.of(node.owners.get(0), node.path);
+            }
+            node = node.children == null ? null : node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        // Any output in the remaining subtree is the candidate path itself or below it
+        while (node.owners.isEmpty()) {
+            Node next = null;
+            for (Node child : node.children.values()) {
+                next = child;
+                break;
+            }
+            node = next;
+        }
+        return Pair.of(node.owners.get(0), node.path);
+    }
+
+    @Nullable
+    private Node find(String path) {
+        Node node = root;
+        for (String segment : segments(path)) {
+            node = node.children == null ? null : node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == File.separatorChar) {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    private static class Node {
+        private final Node parent;
+        private final String segment;
+        private final List<TaskInternal> owners = new ArrayList<TaskInternal>(1);
+        private String path;
+        private Map<String, Node> children;
+        private int ownersInSubtree;
+
+        private Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+
+        Node child(String segment) {
+            if (children == null) {
+                children = new HashMap<String, Node>();
+            }
+            Node child = children.get(segment);
+            if (child == null) {
+                child = new Node(this, segment);
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+}
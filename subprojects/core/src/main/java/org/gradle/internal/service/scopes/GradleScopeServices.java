@@ -22,6 +22,7 @@ import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
 import org.gradle.api.internal.cache.DefaultFileContentCacheFactory;
 import org.gradle.api.internal.cache.FileContentCacheBackingStore;
 import org.gradle.api.internal.cache.FileContentCacheFactory;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.plugins.DefaultPluginManager;
 import org.gradle.api.internal.plugins.ImperativeOnlyPluginApplicator;
@@ -30,6 +31,7 @@ import org.gradle.api.internal.plugins.PluginManagerInternal;
 import org.gradle.api.internal.plugins.PluginRegistry;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.execution.TaskOutputPrefetcher;
 import org.gradle.api.internal.tasks.options.OptionReader;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.execution.BuildConfigurationAction;
@@ -132,7 +134,20 @@ public class GradleScopeServices extends DefaultServiceRegistry {
                 return get(TaskExecuter.class);
             }
         };
-        return new DefaultTaskGraphExecuter(listenerManager, taskPlanExecutor, taskExecuterFactory, cancellationToken, buildOperationExecutor);
+        // Only opens the task duration cache when critical path task prioritization is enabled
+        Factory<TaskDurationRepository> taskDurationRepositoryFactory = new Factory<TaskDurationRepository>() {
+            @Override
+            public TaskDurationRepository create() {
+                return get(TaskDurationRepository.class);
+            }
+        };
+        Factory<TaskOutputPrefetcher> taskOutputPrefetcherFactory = new Factory<TaskOutputPrefetcher>() {
+            @Override
+            public TaskOutputPrefetcher create() {
+                return get(TaskOutputPrefetcher.class);
+            }
+        };
+        return new DefaultTaskGraphExecuter(listenerManager, taskPlanExecutor, taskExecuterFactory, cancellationToken, buildOperationExecutor, taskDurationRepositoryFactory, taskOutputPrefetcherFactory);
     }
 
     ServiceRegistryFactory createServiceRegistryFactory(final ServiceRegistry services) {
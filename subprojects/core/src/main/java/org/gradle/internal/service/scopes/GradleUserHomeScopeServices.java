@@ -16,6 +16,12 @@
 
 package org.gradle.internal.service.scopes;
 
+import org.gradle.api.internal.changedetection.state.DefaultJarAbiHashCache;
+import org.gradle.api.internal.changedetection.state.InMemoryJarAbiHashCache;
+import org.gradle.api.internal.changedetection.state.JarAbiHashCache;
+import org.gradle.api.internal.changedetection.state.RetainedFileSystemMirror;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.api.internal.hash.FileHashFunction;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.CacheRepositoryServices;
 import org.gradle.initialization.GradleUserHomeDirProvider;
@@ -23,6 +29,7 @@ import org.gradle.internal.classpath.CachedClasspathTransformer;
 import org.gradle.internal.classpath.CachedJarFileStore;
 import org.gradle.internal.classpath.DefaultCachedClasspathTransformer;
 import org.gradle.internal.file.JarCache;
+import org.gradle.internal.filewatch.FileWatcherFactory;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.ServiceRegistry;
 
@@ -46,4 +53,12 @@ public class GradleUserHomeScopeServices {
     CachedClasspathTransformer createCachedClasspathTransformer(CacheRepository cacheRepository, ServiceRegistry serviceRegistry) {
         return new DefaultCachedClasspathTransformer(cacheRepository, new JarCache(), serviceRegistry.getAll(CachedJarFileStore.class));
     }
+
+    RetainedFileSystemMirror createRetainedFileSystemMirror(FileWatcherFactory fileWatcherFactory, TemporaryFileProvider temporaryFileProvider) {
+        return new RetainedFileSystemMirror(fileWatcherFactory, temporaryFileProvider);
+    }
+
+    JarAbiHashCache createJarAbiHashCache(CacheRepository cacheRepository) {
+        return new InMemoryJarAbiHashCache(new DefaultJarAbiHashCache(cacheRepository, FileHashFunction.fromSystemProperty()));
+    }
 }
@@ -24,6 +24,7 @@ import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.DefaultTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.ShortCircuitTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.CacheBackedFileSnapshotRepository;
+import org.gradle.api.internal.changedetection.state.CacheBackedTaskDurationRepository;
 import org.gradle.api.internal.changedetection.state.CacheBackedTaskHistoryRepository;
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.ClasspathSnapshotter;
@@ -37,19 +38,27 @@ import org.gradle.api.internal.changedetection.state.DefaultTaskHistoryStore;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotterRegistry;
+import org.gradle.api.internal.changedetection.state.FileHashingExecutor;
 import org.gradle.api.internal.changedetection.state.FileSystemMirror;
 import org.gradle.api.internal.changedetection.state.FileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.GenericFileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
+import org.gradle.api.internal.changedetection.state.JarAbiHashCache;
 import org.gradle.api.internal.changedetection.state.JvmClassHasher;
 import org.gradle.api.internal.changedetection.state.OutputFilesSnapshotter;
+import org.gradle.api.internal.changedetection.state.RetainedFileSystemMirror;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.changedetection.state.TaskHistoryRepository;
 import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider;
 import org.gradle.api.internal.file.FileCollectionFactory;
+import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.hash.DefaultFileHasher;
+import org.gradle.api.internal.hash.FileHashFunction;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.execution.BuildCacheTaskOutputPrefetcher;
 import org.gradle.api.internal.tasks.execution.CatchExceptionTaskExecuter;
 import org.gradle.api.internal.tasks.execution.ExecuteActionsTaskExecuter;
 import org.gradle.api.internal.tasks.execution.ExecuteAtMostOnceTaskExecuter;
@@ -59,19 +68,22 @@ import org.gradle.api.internal.tasks.execution.SkipEmptySourceFilesTaskExecuter;
 import org.gradle.api.internal.tasks.execution.SkipOnlyIfTaskExecuter;
 import org.gradle.api.internal.tasks.execution.SkipTaskWithNoActionsExecuter;
 import org.gradle.api.internal.tasks.execution.SkipUpToDateTaskExecuter;
+import org.gradle.api.internal.tasks.execution.TaskOutputPrefetcher;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 import org.gradle.api.internal.tasks.execution.ValidatingTaskExecuter;
 import org.gradle.api.internal.tasks.execution.VerifyNoInputChangesTaskExecuter;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.caching.internal.BuildCacheConfigurationInternal;
-import org.gradle.caching.internal.tasks.GZipTaskOutputPacker;
+import org.gradle.caching.internal.tasks.CompressingTaskOutputPacker;
 import org.gradle.caching.internal.tasks.OutputPreparingTaskOutputPacker;
 import org.gradle.caching.internal.tasks.TarTaskOutputPacker;
+import org.gradle.caching.internal.tasks.TaskOutputCompression;
 import org.gradle.caching.internal.tasks.TaskOutputPacker;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.execution.taskgraph.TaskPlanExecutorFactory;
+import org.gradle.internal.Factory;
 import org.gradle.internal.SystemProperties;
 import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.concurrent.ExecutorFactory;
@@ -138,6 +150,20 @@ public class TaskExecutionServices {
         );
     }
 
+    TaskOutputPrefetcher createTaskOutputPrefetcher(StartParameter startParameter, final GradleInternal gradle, TaskArtifactStateRepository repository) {
+        if (!startParameter.isTaskOutputCacheEnabled()) {
+            return TaskOutputPrefetcher.NOOP;
+        }
+        // Entries are staged in the temporary directory of the root project
+        TemporaryFileProvider temporaryFileProvider = new DefaultTemporaryFileProvider(new Factory<File>() {
+            @Override
+            public File create() {
+                return new File(gradle.getRootProject().getBuildDir(), "tmp");
+            }
+        });
+        return new BuildCacheTaskOutputPrefetcher(gradle.getBuildCache(), repository, temporaryFileProvider);
+    }
+
     private static TaskExecuter createSkipCachedExecuterIfNecessary(StartParameter startParameter, BuildCacheConfigurationInternal buildCacheConfiguration, TaskOutputPacker packer, TaskOutputsGenerationListener taskOutputsGenerationListener, TaskOutputOriginFactory taskOutputOriginFactory, TaskExecuter delegate) {
         if (startParameter.isTaskOutputCacheEnabled()) {
             return new SkipCachedTaskExecuter(taskOutputOriginFactory, buildCacheConfiguration, packer, taskOutputsGenerationListener, delegate);
@@ -158,34 +184,50 @@ public class TaskExecutionServices {
         return new DefaultTaskHistoryStore(gradle, cacheRepository, inMemoryTaskArtifactCache);
     }
 
+    TaskDurationRepository createTaskDurationRepository(TaskHistoryStore cacheAccess) {
+        return new CacheBackedTaskDurationRepository(cacheAccess);
+    }
+
     CachingFileHasher createFileSnapshotter(TaskHistoryStore cacheAccess, StringInterner stringInterner, FileTimeStampInspector fileTimeStampInspector) {
-        return new CachingFileHasher(new DefaultFileHasher(), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes");
+        FileHashFunction hashFunction = FileHashFunction.fromSystemProperty();
+        return new CachingFileHasher(new DefaultFileHasher(hashFunction), cacheAccess, stringInterner, fileTimeStampInspector, hashFunction.versionedCacheName("fileHashes"));
     }
 
-    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager) {
+    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, GradleBuildEnvironment environment, RetainedFileSystemMirror retainedFileSystemMirror) {
+        if (environment.isLongLivingProcess()) {
+            retainedFileSystemMirror.beforeBuild();
+            listenerManager.addListener(retainedFileSystemMirror);
+            return retainedFileSystemMirror;
+        }
         DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror();
         listenerManager.addListener(fileSystemMirror);
         return fileSystemMirror;
     }
 
-    GenericFileCollectionSnapshotter createGenericFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
-        return new DefaultGenericFileCollectionSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory,  fileSystemMirror);
+    FileHashingExecutor createFileHashingExecutor(ExecutorFactory executorFactory) {
+        return FileHashingExecutor.create(executorFactory, Integer.getInteger(FileHashingExecutor.MAX_THREADS_PROPERTY, 1));
+    }
+
+    GenericFileCollectionSnapshotter createGenericFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, FileHashingExecutor fileHashingExecutor) {
+        return new DefaultGenericFileCollectionSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory,  fileSystemMirror, fileHashingExecutor);
     }
 
-    ClasspathSnapshotter createClasspathSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
-        return new DefaultClasspathSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
+    ClasspathSnapshotter createClasspathSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, FileHashingExecutor fileHashingExecutor) {
+        return new DefaultClasspathSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, fileHashingExecutor);
     }
 
-    CompileClasspathSnapshotter createCompileClasspathSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, ListenerManager listenerManager, TaskHistoryStore store, FileTimeStampInspector fileTimeStampInspector) {
+    CompileClasspathSnapshotter createCompileClasspathSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, ListenerManager listenerManager, TaskHistoryStore store, FileTimeStampInspector fileTimeStampInspector, FileHashingExecutor fileHashingExecutor, JarAbiHashCache jarAbiHashCache) {
         FileHasher jvmClassHasher;
         if (Boolean.getBoolean("org.gradle.tasks.compileclasspath.snapshotting.disabled")) {
             jvmClassHasher = hasher;
         } else {
-            jvmClassHasher = new CachingFileHasher(new JvmClassHasher(hasher), store, stringInterner, fileTimeStampInspector, "jvmClassHashes");
+            // Hashes of resources that are not classes come from the file hasher, so depend on the selected hash function
+            String cacheName = FileHashFunction.fromSystemProperty().versionedCacheName("jvmClassHashes");
+            jvmClassHasher = new CachingFileHasher(new JvmClassHasher(hasher, jarAbiHashCache), store, stringInterner, fileTimeStampInspector, cacheName);
         }
         DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror();
         listenerManager.addListener(fileSystemMirror);
-        return new DefaultCompileClasspathSnapshotter(jvmClassHasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
+        return new DefaultCompileClasspathSnapshotter(jvmClassHasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, fileHashingExecutor);
     }
 
     FileCollectionSnapshotterRegistry createFileCollectionSnapshotterRegistry(ServiceRegistry serviceRegistry) {
@@ -226,10 +268,13 @@ public class TaskExecutionServices {
         return new TaskPlanExecutorFactory(parallelThreads, executorFactory, buildOperationWorkerRegistry).create();
     }
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem) {
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, ExecutorFactory executorFactory) {
         return new OutputPreparingTaskOutputPacker(
-            new GZipTaskOutputPacker(
-                new TarTaskOutputPacker(fileSystem)
+            new CompressingTaskOutputPacker(
+                new TarTaskOutputPacker(fileSystem),
+                TaskOutputCompression.fromSystemProperty(),
+                executorFactory,
+                Integer.getInteger(CompressingTaskOutputPacker.MAX_THREADS_PROPERTY, 1)
             )
         );
     }
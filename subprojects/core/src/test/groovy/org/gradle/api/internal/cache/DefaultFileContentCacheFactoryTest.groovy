@@ -17,6 +17,7 @@
 package org.gradle.api.internal.cache
 
 import com.google.common.hash.HashCode
+import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.hash.FileHasher
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener
 import org.gradle.internal.event.DefaultListenerManager
@@ -118,7 +119,7 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         0 * _
 
         when:
-        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated(Stub(TaskInternal))
         result = cache.get(file)
 
         then:
@@ -143,7 +144,7 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         0 * _
 
         when:
-        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated(Stub(TaskInternal))
         result = cache.get(file)
 
         then:
@@ -169,7 +170,7 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         0 * _
 
         when:
-        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated(Stub(TaskInternal))
         result = cache.get(file)
 
         then:
@@ -23,6 +23,8 @@ import org.gradle.api.internal.changedetection.rules.FileChange
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.hash.DefaultFileHasher
+import org.gradle.api.internal.hash.FileHasher
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.ChangeListener
@@ -38,7 +40,7 @@ class AbstractFileCollectionSnapshotterTest extends Specification {
         getFile(_) >> null
         getDirectoryTree(_) >> null
     }
-    def snapshotter = new AbstractFileCollectionSnapshotter(new DefaultFileHasher(), stringInterner, TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), fileSystemMirror) {
+    def snapshotter = new AbstractFileCollectionSnapshotter(new DefaultFileHasher(), stringInterner, TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), fileSystemMirror, FileHashingExecutor.sequential()) {
         @Override
         Class<? extends FileCollectionSnapshotter> getRegisteredType() {
             FileCollectionSnapshotter
@@ -299,6 +301,62 @@ class AbstractFileCollectionSnapshotterTest extends Specification {
         0 * listener._
     }
 
+    def "hashing files in parallel produces the same snapshot"() {
+        given:
+        def executor = FileHashingExecutor.create(new DefaultExecutorFactory(), 4)
+        def parallelSnapshotter = new AbstractFileCollectionSnapshotter(new DefaultFileHasher(), stringInterner, TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), fileSystemMirror, executor) {
+            @Override
+            Class<? extends FileCollectionSnapshotter> getRegisteredType() {
+                FileCollectionSnapshotter
+            }
+        }
+        TestFile file = tmpDir.createFile('file')
+        TestFile dir = tmpDir.createDir('dir')
+        (0..<200).each { dir.file("sub${it % 7}/file$it").text = "content $it" }
+        TestFile dir2 = tmpDir.createDir('dir2')
+        (0..<50).each { dir2.file("file$it").text = "other content $it" }
+        def input = files(dir2, file, dir)
+
+        when:
+        def sequential = snapshotter.snapshot(input, ORDERED, ABSOLUTE)
+        def parallel = parallelSnapshotter.snapshot(input, ORDERED, ABSOLUTE)
+
+        then:
+        parallel.elements == sequential.elements
+        parallel.snapshots == sequential.snapshots
+
+        cleanup:
+        executor?.stop()
+    }
+
+    def "reports failure to hash a file in parallel"() {
+        given:
+        def failure = new RuntimeException("broken")
+        def hasher = Stub(FileHasher) {
+            hash(_) >> { throw failure }
+            hash(_, _) >> { throw failure }
+        }
+        def executor = FileHashingExecutor.create(new DefaultExecutorFactory(), 4)
+        def parallelSnapshotter = new AbstractFileCollectionSnapshotter(hasher, stringInterner, TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), fileSystemMirror, executor) {
+            @Override
+            Class<? extends FileCollectionSnapshotter> getRegisteredType() {
+                FileCollectionSnapshotter
+            }
+        }
+        TestFile dir = tmpDir.createDir('dir')
+        (0..<100).each { dir.file("file$it").text = "content $it" }
+
+        when:
+        parallelSnapshotter.snapshot(files(dir), UNORDERED, ABSOLUTE)
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+
+        cleanup:
+        executor?.stop()
+    }
+
     private static void changes(FileCollectionSnapshot newSnapshot, FileCollectionSnapshot oldSnapshot, ChangeListener<String> listener) {
         newSnapshot.iterateContentChangesSince(oldSnapshot, "TYPE").each { FileChange change ->
             switch (change.type) {
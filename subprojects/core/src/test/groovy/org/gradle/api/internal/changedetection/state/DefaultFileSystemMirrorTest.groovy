@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DefaultFileSystemMirrorTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def mirror = new DefaultFileSystemMirror()
+
+    def "keeps details of files and directory trees"() {
+        def file = file("src/a.txt")
+        def tree = tree("src")
+
+        when:
+        mirror.putFile(file)
+        mirror.putDirectory(tree)
+
+        then:
+        mirror.getFile(file.path) == file
+        mirror.getDirectoryTree(tree.path) == tree
+        mirror.getFile(tree.path) == null
+        mirror.getDirectoryTree(file.path) == null
+        mirror.getFile(path("src/b.txt")) == null
+    }
+
+    def "invalidating a path discards details in and above it only"() {
+        def root = file("")
+        def build = tree("build")
+        def classes = file("build/classes/A.class")
+        def sibling = file("build/resources/a.txt")
+        def src = tree("src")
+        def source = file("src/A.java")
+        [root, classes, sibling, source].each { mirror.putFile(it) }
+        [build, src].each { mirror.putDirectory(it) }
+
+        when:
+        mirror.invalidate(path("build/classes"))
+
+        then:
+        mirror.getFile(root.path) == null
+        mirror.getDirectoryTree(build.path) == null
+        mirror.getFile(classes.path) == null
+        mirror.getFile(sibling.path) == sibling
+        mirror.getDirectoryTree(src.path) == src
+        mirror.getFile(source.path) == source
+    }
+
+    def "discards details under the declared outputs of a task before it generates outputs"() {
+        def output = file("build/out.txt")
+        def input = file("src/in.txt")
+        mirror.putFile(output)
+        mirror.putFile(input)
+        def task = task(true, tmpDir.file("build"))
+
+        when:
+        mirror.beforeTaskOutputsGenerated(task)
+
+        then:
+        mirror.getFile(output.path) == null
+        mirror.getFile(input.path) == input
+    }
+
+    def "discards all details before a task without declared outputs generates outputs"() {
+        def input = file("src/in.txt")
+        mirror.putFile(input)
+        def task = task(false)
+
+        when:
+        mirror.beforeTaskOutputsGenerated(task)
+
+        then:
+        mirror.getFile(input.path) == null
+    }
+
+    private TaskInternal task(boolean hasOutput, File... outputs) {
+        def taskOutputs = Stub(TaskOutputsInternal) {
+            getHasOutput() >> hasOutput
+            getFiles() >> new SimpleFileCollection(outputs)
+        }
+        return Stub(TaskInternal) {
+            getOutputs() >> taskOutputs
+        }
+    }
+
+    private FileDetails file(String relativePath) {
+        def path = path(relativePath)
+        return Stub(FileDetails) {
+            getPath() >> path
+        }
+    }
+
+    private DirectoryTreeDetails tree(String relativePath) {
+        return new DirectoryTreeDetails(path(relativePath), [])
+    }
+
+    private String path(String relativePath) {
+        return tmpDir.file(relativePath).absolutePath
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.base.Charsets
+import com.google.common.hash.Hashing
+import org.gradle.api.UncheckedIOException
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class InMemoryJarAbiHashCacheTest extends Specification {
+    def delegate = Mock(JarAbiHashCache)
+    def cache = new InMemoryJarAbiHashCache(delegate)
+    def key = Hashing.md5().hashString("content", Charsets.UTF_8)
+    def abiHash = Hashing.md5().hashString("abi", Charsets.UTF_8)
+    def factory = Mock(Factory)
+
+    def "loads ABI hash from the delegate once"() {
+        when:
+        def first = cache.get(key, factory)
+        def second = cache.get(key, factory)
+
+        then:
+        first == abiHash
+        second == abiHash
+        1 * delegate.get(key, factory) >> abiHash
+        0 * factory._
+    }
+
+    def "rethrows the failure to calculate the ABI hash without calculating it again"() {
+        def failure = new UncheckedIOException("corrupt jar")
+
+        when:
+        cache.get(key, factory)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.is(failure)
+        1 * delegate.get(key, factory) >> { throw failure }
+        0 * factory._
+    }
+
+    def "rethrows checked failures to calculate the ABI hash as unchecked exceptions"() {
+        def failure = new IOException("corrupt jar")
+
+        when:
+        cache.get(key, factory)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.cause.is(failure)
+        1 * delegate.get(key, factory) >> { throw failure }
+        0 * factory._
+    }
+}
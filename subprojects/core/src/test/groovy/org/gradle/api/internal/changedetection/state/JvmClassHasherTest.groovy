@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.base.Charsets
+import com.google.common.hash.Hashing
+import org.gradle.api.internal.hash.FileHasher
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class JvmClassHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def contentHasher = Mock(FileHasher)
+    def abiHashCache = Mock(JarAbiHashCache)
+    def hasher = new JvmClassHasher(contentHasher, abiHashCache)
+    def contentHash = Hashing.md5().hashString("content", Charsets.UTF_8)
+    def classBytes = JvmClassHasher.getResourceAsStream("JvmClassHasher.class").bytes
+
+    def "uses cached ABI hash of jar with the same contents"() {
+        def jar = tmpDir.file("lib.jar")
+        def abiHash = Hashing.md5().hashString("abi", Charsets.UTF_8)
+
+        when:
+        def result = hasher.hash(jar)
+
+        then:
+        result == abiHash
+        1 * contentHasher.hash(jar) >> contentHash
+        1 * abiHashCache.get(contentHash, _) >> abiHash
+        0 * _
+    }
+
+    def "hashes the classes of a jar that is not cached"() {
+        def jar = jar("lib.jar", ["org/A.class": classBytes, "resource.txt": "one".bytes])
+        def sameClassesJar = jar("other.jar", ["resource.txt": "two".bytes, "org/A.class": classBytes])
+        def emptyJar = jar("empty.jar", ["resource.txt": "one".bytes])
+
+        given:
+        contentHasher.hash(_) >> contentHash
+        abiHashCache.get(contentHash, _) >> { key, factory -> factory.create() }
+
+        expect:
+        hasher.hash(jar) == hasher.hash(sameClassesJar)
+        hasher.hash(jar) != hasher.hash(emptyJar)
+    }
+
+    private File jar(String name, Map<String, byte[]> entries) {
+        def jar = tmpDir.file(name)
+        jar.withOutputStream { outputStream ->
+            def zipOutput = new ZipOutputStream(outputStream)
+            entries.each { path, bytes ->
+                zipOutput.putNextEntry(new ZipEntry(path))
+                zipOutput.write(bytes)
+                zipOutput.closeEntry()
+            }
+            zipOutput.finish()
+        }
+        jar
+    }
+}
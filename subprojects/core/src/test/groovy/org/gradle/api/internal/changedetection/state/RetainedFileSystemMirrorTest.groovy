@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.Action
+import org.gradle.api.internal.file.TemporaryFileProvider
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class RetainedFileSystemMirrorTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def watcher = Mock(FileWatcher)
+    def watcherFactory = Mock(FileWatcherFactory)
+    def fenceDir = tmpDir.createDir("fences")
+    def temporaryFileProvider = Stub(TemporaryFileProvider) {
+        createTemporaryDirectory(*_) >> { fenceDir.createDir() }
+    }
+    FileWatcherListener listener
+    Action<? super Throwable> onError
+
+    def "watches a location before its details are calculated and keeps them between builds"() {
+        def mirror = mirror()
+        def file = file("src/a.txt")
+
+        when:
+        def result = mirror.getFile(file.path)
+
+        then:
+        result == null
+        1 * watcherFactory.watch(_, _) >> { args -> onError = args[0]; listener = args[1]; watcher }
+        1 * watcher.watch({ it.roots as List == [fenceDir] })
+        1 * watcher.watch({ it.roots as List == [new File(file.path)] })
+
+        when:
+        mirror.putFile(file)
+        beforeBuildReportingFences(mirror)
+
+        then:
+        _ * watcher.isRunning() >> true
+        mirror.getFile(file.path) == file
+        0 * watcher.watch(_)
+    }
+
+    def "discards details that changed before the build started"() {
+        def mirror = mirror()
+        def changed = file("src/a.txt")
+        def unchanged = file("src/b.txt")
+        watcherFactory.watch(_, _) >> { args -> listener = args[1]; watcher }
+        watcher.isRunning() >> true
+        mirror.getFile(changed.path)
+        [changed, unchanged].each { mirror.putFile(it) }
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.modify(new File(changed.path)))
+        beforeBuildReportingFences(mirror)
+
+        then:
+        mirror.getFile(changed.path) == null
+        mirror.getFile(unchanged.path) == unchanged
+    }
+
+    def "discards everything when the watcher does not report the fence in time"() {
+        def mirror = new RetainedFileSystemMirror(watcherFactory, temporaryFileProvider, true, 10, 1000)
+        def file = file("src/a.txt")
+        watcherFactory.watch(_, _) >> { args -> listener = args[1]; watcher }
+        watcher.isRunning() >> true
+        mirror.getFile(file.path)
+        mirror.putFile(file)
+
+        when:
+        mirror.beforeBuild()
+
+        then:
+        mirror.getFile(file.path) == null
+        fenceDir.list().length == 0
+    }
+
+    def "discards everything and starts watching again when the mirror holds too many details"() {
+        def mirror = new RetainedFileSystemMirror(watcherFactory, temporaryFileProvider, true, 1000, 2)
+        def files = ["a", "b", "c"].collect { file("src/${it}.txt") }
+        watcherFactory.watch(_, _) >> { args -> listener = args[1]; watcher }
+        watcher.isRunning() >> true
+        files.each { mirror.getFile(it.path) }
+        files.each { mirror.putFile(it) }
+
+        when:
+        mirror.beforeBuild()
+
+        then:
+        1 * watcher.stop()
+        !fenceDir.exists()
+
+        when:
+        def result = mirror.getFile(files[0].path)
+
+        then:
+        result == null
+        1 * watcher.watch({ it.roots as List == [new File(files[0].path)] })
+    }
+
+    def "does not watch locations under a watched directory again"() {
+        def mirror = mirror()
+        watcherFactory.watch(_, _) >> watcher
+
+        when:
+        mirror.getDirectoryTree(path("src"))
+        mirror.getFile(path("src/a.txt"))
+        mirror.getFile(path("src/b/c.txt"))
+
+        then:
+        1 * watcher.watch({ it.roots as List == [fenceDir] })
+        1 * watcher.watch({ it.roots as List == [new File(path("src"))] })
+        0 * watcher.watch(_)
+    }
+
+    def "discards details when a change is reported"() {
+        def mirror = mirror()
+        def changed = file("src/a.txt")
+        def unchanged = file("src/b.txt")
+        def src = tree("src")
+        watcherFactory.watch(_, _) >> { args -> listener = args[1]; watcher }
+        mirror.getDirectoryTree(src.path)
+        [changed, unchanged].each { mirror.putFile(it) }
+        mirror.putDirectory(src)
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.modify(new File(changed.path)))
+
+        then:
+        mirror.getFile(changed.path) == null
+        mirror.getDirectoryTree(src.path) == null
+        mirror.getFile(unchanged.path) == unchanged
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.undefined())
+
+        then:
+        mirror.getFile(unchanged.path) == null
+    }
+
+    def "discards details at the start of each build when watching fails"() {
+        def mirror = mirror()
+        def file = file("src/a.txt")
+        watcherFactory.watch(_, _) >> { args -> onError = args[0]; watcher }
+        mirror.getFile(file.path)
+        mirror.putFile(file)
+
+        when:
+        onError.execute(new RuntimeException("broken"))
+
+        then:
+        1 * watcher.stop()
+        mirror.getFile(file.path) == null
+
+        when:
+        mirror.putFile(file)
+
+        then:
+        mirror.getFile(file.path) == file
+
+        when:
+        mirror.beforeBuild()
+
+        then:
+        mirror.getFile(file.path) == null
+        0 * watcher.watch(_)
+    }
+
+    def "discards details at the start of each build when watching is not supported"() {
+        def mirror = new RetainedFileSystemMirror(watcherFactory, temporaryFileProvider, false, 1000, 1000)
+        def file = file("src/a.txt")
+
+        when:
+        mirror.getFile(file.path)
+        mirror.putFile(file)
+        mirror.beforeBuild()
+
+        then:
+        mirror.getFile(file.path) == null
+        0 * watcherFactory._
+    }
+
+    private RetainedFileSystemMirror mirror() {
+        return new RetainedFileSystemMirror(watcherFactory, temporaryFileProvider, true, 5000, 1000)
+    }
+
+    /**
+     * Runs the start of a build, reporting fence files like the watch service would.
+     */
+    private void beforeBuildReportingFences(RetainedFileSystemMirror mirror) {
+        def reported = [] as Set
+        def reporter = Thread.start {
+            while (reported.size() < 2) {
+                fenceDir.listFiles().each { fence ->
+                    if (reported.add(fence.name)) {
+                        listener.onChange(watcher, FileWatcherEvent.create(fence))
+                    }
+                }
+                Thread.sleep(5)
+            }
+        }
+        mirror.beforeBuild()
+        reporter.join()
+    }
+
+    private FileDetails file(String relativePath) {
+        def path = path(relativePath)
+        return Stub(FileDetails) {
+            getPath() >> path
+        }
+    }
+
+    private DirectoryTreeDetails tree(String relativePath) {
+        return new DirectoryTreeDetails(path(relativePath), [])
+    }
+
+    private String path(String relativePath) {
+        return tmpDir.file(relativePath).absolutePath
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.base.Charsets
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DefaultFileHasherTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    @Rule
+    final SetSystemProperties systemProperties = new SetSystemProperties()
+
+    def "hash of file content matches default MD5 hash"() {
+        def file = tmpDir.file("content.txt")
+        file.text = "content"
+        def function = FileHashFunction.MD5.hashFunction
+        def expected = function.newHasher()
+            .putBytes(function.hashString(DefaultFileHasher.name, Charsets.UTF_8).asBytes())
+            .putBytes("content".getBytes(Charsets.UTF_8))
+            .hash()
+
+        expect:
+        new DefaultFileHasher().hash(file) == expected
+    }
+
+    @Unroll
+    def "mapped and streamed content produce the same hash for #hashFunction"() {
+        def file = tmpDir.file("large.bin")
+        def bytes = new byte[3 * 1024 * 1024 + 17]
+        new Random(1).nextBytes(bytes)
+        file.bytes = bytes
+
+        expect:
+        new DefaultFileHasher(hashFunction, true).hash(file) == new DefaultFileHasher(hashFunction, false).hash(file)
+
+        where:
+        hashFunction << FileHashFunction.values()
+    }
+
+    def "different hash functions produce different hashes"() {
+        def file = tmpDir.file("content.txt")
+        file.text = "content"
+
+        expect:
+        new DefaultFileHasher(FileHashFunction.MD5).hash(file) != new DefaultFileHasher(FileHashFunction.MURMUR3).hash(file)
+    }
+
+    def "reports missing file"() {
+        def file = tmpDir.file("missing.txt")
+
+        when:
+        new DefaultFileHasher().hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create MD5 hash for file '$file'."
+    }
+
+    def "selects hash function using system property"() {
+        when:
+        System.setProperty(FileHashFunction.SYSTEM_PROPERTY, "murmur3")
+
+        then:
+        FileHashFunction.fromSystemProperty() == FileHashFunction.MURMUR3
+        FileHashFunction.fromSystemProperty().versionedCacheName("fileHashes") == "fileHashes-murmur3"
+
+        when:
+        System.clearProperty(FileHashFunction.SYSTEM_PROPERTY)
+
+        then:
+        FileHashFunction.fromSystemProperty() == FileHashFunction.MD5
+        FileHashFunction.fromSystemProperty().versionedCacheName("fileHashes") == "fileHashes"
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.api.Action
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository
+import org.gradle.api.internal.file.TemporaryFileProvider
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.BuildCacheConfigurationInternal
+import org.gradle.caching.internal.PrefetchingBuildCache
+import spock.lang.Specification
+
+class BuildCacheTaskOutputPrefetcherTest extends Specification {
+    def buildCacheConfiguration = Mock(BuildCacheConfigurationInternal)
+    def repository = Mock(TaskArtifactStateRepository)
+    def temporaryFileProvider = Mock(TemporaryFileProvider)
+    def cache = Mock(PrefetchingBuildCache)
+    def stagingDir = new File("staging")
+
+    def prefetcher = new BuildCacheTaskOutputPrefetcher(buildCacheConfiguration, repository, temporaryFileProvider)
+
+    def "prefetches entries of cacheable tasks that are not up-to-date"() {
+        def cacheKey = Mock(BuildCacheKey)
+        def task = cacheableTask()
+        def taskArtifactState = Mock(TaskArtifactState)
+
+        when:
+        prefetcher.prefetch([task])
+
+        then:
+        1 * buildCacheConfiguration.isPullAllowed() >> true
+        1 * buildCacheConfiguration.getPrefetchingCache() >> cache
+
+        then:
+        1 * repository.getStateFor(task) >> taskArtifactState
+        1 * taskArtifactState.isAllowedToUseCachedResults() >> true
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * taskArtifactState.isUpToDate(null) >> false
+        1 * taskArtifactState.finished()
+
+        then:
+        1 * temporaryFileProvider.createTemporaryDirectory("build-cache", "prefetch") >> stagingDir
+        1 * cache.prefetch([cacheKey], stagingDir)
+        0 * cache._
+    }
+
+    def "does not prefetch entries of up-to-date tasks"() {
+        def task = cacheableTask()
+        def taskArtifactState = Mock(TaskArtifactState)
+
+        when:
+        prefetcher.prefetch([task])
+
+        then:
+        1 * buildCacheConfiguration.isPullAllowed() >> true
+        1 * buildCacheConfiguration.getPrefetchingCache() >> cache
+        1 * repository.getStateFor(task) >> taskArtifactState
+        1 * taskArtifactState.isAllowedToUseCachedResults() >> true
+        1 * taskArtifactState.calculateCacheKey() >> Mock(BuildCacheKey)
+        1 * taskArtifactState.isUpToDate(null) >> true
+        0 * cache._
+        0 * temporaryFileProvider._
+    }
+
+    def "skips tasks whose cache key cannot be calculated"() {
+        def failingTask = cacheableTask()
+        def task = cacheableTask()
+        def failingState = Mock(TaskArtifactState)
+        def taskArtifactState = Mock(TaskArtifactState)
+        def cacheKey = Mock(BuildCacheKey)
+
+        when:
+        prefetcher.prefetch([failingTask, task])
+
+        then:
+        1 * buildCacheConfiguration.isPullAllowed() >> true
+        1 * buildCacheConfiguration.getPrefetchingCache() >> cache
+        1 * repository.getStateFor(failingTask) >> failingState
+        1 * failingState.isAllowedToUseCachedResults() >> true
+        1 * failingState.calculateCacheKey() >> { throw new RuntimeException("broken") }
+        1 * repository.getStateFor(task) >> taskArtifactState
+        1 * taskArtifactState.isAllowedToUseCachedResults() >> true
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * taskArtifactState.isUpToDate(null) >> false
+        1 * temporaryFileProvider.createTemporaryDirectory("build-cache", "prefetch") >> stagingDir
+        1 * cache.prefetch([cacheKey], stagingDir)
+    }
+
+    def "does not calculate cache keys when the cache does not prefetch"() {
+        def task = cacheableTask()
+
+        when:
+        prefetcher.prefetch([task])
+
+        then:
+        1 * buildCacheConfiguration.isPullAllowed() >> true
+        1 * buildCacheConfiguration.getPrefetchingCache() >> null
+        0 * repository._
+    }
+
+    def "does not prefetch when pulling from the cache is disabled"() {
+        def task = cacheableTask()
+
+        when:
+        prefetcher.prefetch([task])
+
+        then:
+        1 * buildCacheConfiguration.isPullAllowed() >> false
+        0 * buildCacheConfiguration._
+        0 * repository._
+    }
+
+    private TaskInternal cacheableTask() {
+        def outputs = Stub(TaskOutputsInternal) {
+            isCacheEnabled() >> true
+            hasDeclaredOutputs() >> true
+            isCacheAllowed() >> true
+        }
+        return Stub(TaskInternal) {
+            getActions() >> [Mock(Action)]
+            getOutputs() >> outputs
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedByteInputTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    RandomAccessFile file
+    MappedByteInput input
+
+    def setup() {
+        file = new RandomAccessFile(tmpDir.file("test.bin"), "rw")
+        input = new MappedByteInput(file)
+    }
+
+    def cleanup() {
+        input.reset()
+        file.close()
+    }
+
+    def "can reuse to read from multiple locations in file"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+        file.writeInt(321)
+        file.writeInt(456)
+
+        expect:
+        def stream = input.start(0)
+        stream.readInt() == 123
+        stream.readInt() == 321
+        input.getBytesRead() == 8
+        input.done()
+
+        def stream2 = input.start(4)
+        stream2.readInt() == 321
+        stream2.readInt() == 456
+        input.done()
+    }
+
+    def "sees content written after the file was mapped"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+        input.start(0).readInt()
+        input.done()
+
+        when:
+        file.seek(0)
+        file.writeInt(124)
+        file.writeInt(456)
+        file.writeInt(789)
+
+        then:
+        def stream = input.start(0)
+        stream.readInt() == 124
+        stream.readInt() == 456
+        stream.readInt() == 789
+        input.getBytesRead() == 12
+        input.done()
+    }
+
+    def "can read after file has been truncated and written again"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+        file.writeInt(456)
+        input.start(0).readInt()
+        input.done()
+
+        when:
+        input.reset()
+        file.setLength(0)
+        file.seek(0)
+        file.writeInt(321)
+
+        then:
+        input.start(0).readInt() == 321
+        input.done()
+    }
+
+    def "reads single bytes until the end of the file"() {
+        given:
+        file.seek(0)
+        file.write([1, 255] as byte[])
+
+        expect:
+        def stream = input.start(0)
+        stream.read() == 1
+        stream.read() == 255
+        stream.read() == -1
+        input.getBytesRead() == 2
+        input.done()
+    }
+
+    def "stream keeps reading after the mapping it started with has been released"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+        def stream = input.start(0)
+        stream.readShort()
+
+        when:
+        file.writeInt(456)
+        input.reset()
+
+        then:
+        stream.readShort() == 123
+        stream.readInt() == 456
+        input.done()
+    }
+
+    def "cannot read beyond end of file"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+
+        when:
+        input.start(2).readInt()
+
+        then:
+        EOFException e = thrown()
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.StartParameter
+import org.gradle.cache.CacheRepository
+import org.gradle.caching.BuildCache
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DefaultBuildCacheConfigurationTest extends Specification {
+    @Rule SetSystemProperties sysProp = new SetSystemProperties()
+
+    def "local cache is not limited by default"() {
+        expect:
+        DefaultBuildCacheConfiguration.getLimit(DefaultBuildCacheConfiguration.MAX_SIZE_PROPERTY, 1024 * 1024, "megabytes") == LocalDirectoryBuildCache.UNLIMITED
+    }
+
+    def "reads local cache limit from system property"() {
+        System.properties.setProperty(DefaultBuildCacheConfiguration.MAX_SIZE_PROPERTY, " 12 ")
+
+        expect:
+        DefaultBuildCacheConfiguration.getLimit(DefaultBuildCacheConfiguration.MAX_SIZE_PROPERTY, 1024 * 1024, "megabytes") == 12 * 1024 * 1024
+    }
+
+    @Unroll
+    def "reports invalid local cache limit '#value' specified by system property"() {
+        System.properties.setProperty(DefaultBuildCacheConfiguration.MAX_AGE_PROPERTY, value)
+
+        when:
+        DefaultBuildCacheConfiguration.getLimit(DefaultBuildCacheConfiguration.MAX_AGE_PROPERTY, 1000, "days")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Invalid value '${value}' specified by system property '${DefaultBuildCacheConfiguration.MAX_AGE_PROPERTY}'. Expected a number of days."
+
+        where:
+        value << ["seven", "-1", "7d"]
+    }
+
+    def "exposes the configured cache for prefetching only when it has prefetching enabled"() {
+        def configuration = new DefaultBuildCacheConfiguration(Stub(CacheRepository), new StartParameter())
+        def cache = Stub(PrefetchingBuildCache) {
+            isPrefetchEnabled() >> enabled
+        }
+        configuration.useCacheFactory(Stub(BuildCacheFactory) {
+            createCache(_) >> cache
+        })
+
+        expect:
+        configuration.prefetchingCache.is(enabled ? cache : null)
+
+        where:
+        enabled << [true, false]
+    }
+
+    def "does not prefetch from caches that cannot prefetch"() {
+        def configuration = new DefaultBuildCacheConfiguration(Stub(CacheRepository), new StartParameter())
+        configuration.useCacheFactory(Stub(BuildCacheFactory) {
+            createCache(_) >> Stub(BuildCache)
+        })
+
+        expect:
+        configuration.prefetchingCache == null
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class LocalDirectoryBuildCacheTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def cacheDir = temporaryFolder.createDir("cache")
+    def persistentCache = Stub(PersistentCache) {
+        getBaseDir() >> cacheDir
+        useCache(_, _ as Factory) >> { String name, Factory action -> action.create() }
+        useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+    }
+    def cacheBuilder = Stub(CacheBuilder) {
+        withDisplayName(_) >> { cacheBuilder }
+        withLockOptions(_) >> { cacheBuilder }
+        open() >> persistentCache
+    }
+    def cacheRepository = Stub(CacheRepository) {
+        cache(_ as File) >> cacheBuilder
+    }
+
+    def "stores entries in subdirectories named after the start of the key"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+
+        when:
+        cache.store(key(hash("a")), writer("content"))
+
+        then:
+        cacheDir.file(hash("a").substring(0, 2), hash("a")).text == "content"
+    }
+
+    def "keeps existing entry when storing the same key again"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        cache.store(key(hash("a")), writer("content"))
+        def entry = cacheDir.file(hash("a").substring(0, 2), hash("a"))
+        entry.lastModified = 0
+        def writer = Mock(BuildCacheEntryWriter)
+
+        when:
+        cache.store(key(hash("a")), writer)
+
+        then:
+        0 * writer._
+        entry.text == "content"
+        entry.lastModified() > 0
+    }
+
+    def "does not leave partial entry behind when writing fails"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        def failure = new IOException("broken")
+
+        when:
+        cache.store(key(hash("a")), { output ->
+            output.write(1)
+            throw failure
+        } as BuildCacheEntryWriter)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.cause == failure
+        cacheDir.file(hash("a").substring(0, 2)).list() as List == []
+    }
+
+    def "loads stored entry and marks it as used"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        cache.store(key(hash("a")), writer("content"))
+        def entry = cacheDir.file(hash("a").substring(0, 2), hash("a"))
+        entry.lastModified = 0
+        def loaded = null
+
+        when:
+        def found = cache.load(key(hash("a")), { input -> loaded = input.text } as BuildCacheEntryReader)
+
+        then:
+        found
+        loaded == "content"
+        entry.lastModified() > 0
+        !cache.load(key(hash("b")), Mock(BuildCacheEntryReader))
+    }
+
+    def "loads entry stored before entries were sharded"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        cacheDir.file(hash("a")).text = "content"
+        def loaded = null
+
+        when:
+        def found = cache.load(key(hash("a")), { input -> loaded = input.text } as BuildCacheEntryReader)
+
+        then:
+        found
+        loaded == "content"
+    }
+
+    def "does not remove entries when no limits are set"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        def old = entry(hash("old"), 10, TimeUnit.DAYS.toMillis(365))
+        def large = entry(hash("large"), 1024 * 1024, 1000)
+
+        when:
+        cache.cleanupIfRequired()
+
+        then:
+        old.exists()
+        large.exists()
+    }
+
+    def "removes entries that have not been used for longer than the maximum age"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 1000, TimeUnit.DAYS.toMillis(1))
+        def old = entry(hash("old"), 10, TimeUnit.DAYS.toMillis(2))
+        def recent = entry(hash("recent"), 10, TimeUnit.HOURS.toMillis(1))
+        def legacy = cacheDir.file(hash("legacy"))
+        legacy.text = "content"
+        legacy.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3)
+
+        when:
+        cache.cleanupIfRequired()
+
+        then:
+        !old.exists()
+        !legacy.exists()
+        recent.exists()
+    }
+
+    def "removes least recently used entries until the cache fits into the maximum size"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 25, TimeUnit.DAYS.toMillis(7))
+        def oldest = entry(hash("a"), 10, 3000)
+        def older = entry(hash("b"), 10, 2000)
+        def newest = entry(hash("c"), 10, 1000)
+
+        when:
+        cache.cleanupIfRequired()
+
+        then:
+        !oldest.exists()
+        older.exists()
+        newest.exists()
+    }
+
+    def "does not clean up again until the cleanup interval has passed"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 5, TimeUnit.DAYS.toMillis(7))
+        cache.cleanupIfRequired()
+        def first = entry(hash("a"), 10, 1000)
+
+        when:
+        cache.close()
+
+        then:
+        first.exists()
+
+        when:
+        cacheDir.file("gc.properties").lastModified = System.currentTimeMillis() - LocalDirectoryBuildCache.CLEANUP_INTERVAL_MILLIS - 1000
+        cache.close()
+
+        then:
+        !first.exists()
+    }
+
+    def "removes temporary files left behind by earlier builds"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        def abandoned = cacheDir.file("61", "${hash("a")}123.part")
+        abandoned.text = "content"
+        abandoned.lastModified = System.currentTimeMillis() - LocalDirectoryBuildCache.CLEANUP_INTERVAL_MILLIS - 1000
+        def inProgress = cacheDir.file("61", "${hash("a")}456.part")
+        inProgress.text = "content"
+
+        when:
+        cache.cleanupIfRequired()
+
+        then:
+        !abandoned.exists()
+        inProgress.exists()
+    }
+
+    def "does not remove files that are not cache entries"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 0, 0)
+        def properties = cacheDir.file("cache.properties")
+        properties.text = "content"
+        properties.lastModified = 0
+        def other = cacheDir.file("other/${hash("a")}")
+        other.text = "content"
+        other.lastModified = 0
+
+        when:
+        cache.cleanupIfRequired()
+
+        then:
+        properties.exists()
+        other.exists()
+    }
+
+    private TestFile entry(String hash, int size, long age) {
+        def file = cacheDir.file(hash.substring(0, 2), hash)
+        file.bytes = new byte[size]
+        file.lastModified = System.currentTimeMillis() - age
+        return file
+    }
+
+    private BuildCacheKey key(String hash) {
+        return Stub(BuildCacheKey) {
+            getHashCode() >> hash
+        }
+    }
+
+    private static BuildCacheEntryWriter writer(String content) {
+        return { output -> output.write(content.bytes) } as BuildCacheEntryWriter
+    }
+
+    private static String hash(String value) {
+        return value.bytes.encodeHex().toString().padRight(32, "0")
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ExecutorFactory
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.ZipException
+
+import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.FILE
+
+@Subject(CompressingTaskOutputPacker)
+class CompressingTaskOutputPackerTest extends AbstractTaskOutputPackerSpec {
+    def delegate = Mock(TaskOutputPacker)
+    def writeOrigin = Stub(TaskOutputOriginWriter)
+    def readOrigin = Stub(TaskOutputOriginReader)
+    def contents = ("packed output " * 1000).bytes
+
+    @Unroll
+    def "unpacks output packed with #compression compression"() {
+        def packer = new CompressingTaskOutputPacker(delegate, compression, null, 1)
+        def output = new ByteArrayOutputStream()
+        def unpacked = null
+
+        when:
+        packer.pack(taskOutputs, output, writeOrigin)
+
+        then:
+        _ * taskOutputs.getFileProperties() >> ([new TestProperty(propertyName: "dir", outputFile: tempDir.file("dir"), outputType: DIRECTORY)] as SortedSet)
+        1 * delegate.pack(taskOutputs, _, writeOrigin) >> { args -> args[1].write(contents) }
+
+        when:
+        packer.unpack(taskOutputs, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(taskOutputs, _, readOrigin) >> { args -> unpacked = args[1].bytes }
+        unpacked == contents
+
+        where:
+        compression << TaskOutputCompression.values()
+    }
+
+    def "does not compress output that consists of compressed files only"() {
+        def packer = new CompressingTaskOutputPacker(delegate, TaskOutputCompression.GZIP, null, 1)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(taskOutputs, output, writeOrigin)
+
+        then:
+        _ * taskOutputs.getFileProperties() >> ([
+            new TestProperty(propertyName: "jar", outputFile: tempDir.file("lib.jar"), outputType: FILE),
+            new TestProperty(propertyName: "image", outputFile: tempDir.file("image.PNG"), outputType: FILE)
+        ] as SortedSet)
+        1 * delegate.pack(taskOutputs, _, writeOrigin) >> { args -> args[1].write(contents) }
+        output.size() > contents.length
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == contents
+    }
+
+    def "detects corrupted output that was stored without compression"() {
+        def packer = new CompressingTaskOutputPacker(delegate, TaskOutputCompression.NONE, null, 1)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(taskOutputs, output, writeOrigin)
+
+        then:
+        _ * taskOutputs.getFileProperties() >> ([new TestProperty(propertyName: "dir", outputFile: tempDir.file("dir"), outputType: DIRECTORY)] as SortedSet)
+        1 * delegate.pack(taskOutputs, _, writeOrigin) >> { args -> args[1].write(contents) }
+
+        when:
+        def corrupted = output.toByteArray()
+        corrupted[corrupted.length / 2 as int] ^= 1
+        packer.unpack(taskOutputs, new ByteArrayInputStream(corrupted), readOrigin)
+
+        then:
+        1 * delegate.unpack(taskOutputs, _, readOrigin) >> { args -> args[1].bytes }
+        thrown(ZipException)
+    }
+
+    def "selects compression using system property"() {
+        when:
+        System.setProperty(TaskOutputCompression.PROPERTY, "gzip_fast")
+
+        then:
+        TaskOutputCompression.fromSystemProperty() == TaskOutputCompression.GZIP_FAST
+
+        when:
+        System.clearProperty(TaskOutputCompression.PROPERTY)
+
+        then:
+        TaskOutputCompression.fromSystemProperty() == TaskOutputCompression.GZIP
+    }
+
+    def "reports unknown compression specified by system property"() {
+        when:
+        System.setProperty(TaskOutputCompression.PROPERTY, "lz4")
+        TaskOutputCompression.fromSystemProperty()
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown task output compression 'lz4' specified by system property '${TaskOutputCompression.PROPERTY}'. Supported values are: NONE, GZIP, GZIP_FAST."
+
+        cleanup:
+        System.clearProperty(TaskOutputCompression.PROPERTY)
+    }
+
+    def "compresses output that contains other files"() {
+        def packer = new CompressingTaskOutputPacker(delegate, TaskOutputCompression.GZIP, null, 1)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(taskOutputs, output, writeOrigin)
+
+        then:
+        _ * taskOutputs.getFileProperties() >> ([
+            new TestProperty(propertyName: "jar", outputFile: tempDir.file("lib.jar"), outputType: FILE),
+            new TestProperty(propertyName: "classes", outputFile: tempDir.file("classes"), outputType: DIRECTORY)
+        ] as SortedSet)
+        1 * delegate.pack(taskOutputs, _, writeOrigin) >> { args -> args[1].write(contents) }
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == contents
+    }
+
+    def "unpacks output packed in parallel from a stream that does not report available input"() {
+        def executorFactory = Mock(ExecutorFactory)
+        def executor = new DefaultExecutorFactory().create("test", 2)
+        def packer = new CompressingTaskOutputPacker(delegate, TaskOutputCompression.GZIP, executorFactory, 2)
+        // Large enough to be compressed in several blocks, each written as a separate GZIP member
+        def largeContents = ("packed output " * 250000).bytes
+        def output = new ByteArrayOutputStream()
+        def unpacked = null
+
+        when:
+        packer.pack(taskOutputs, output, writeOrigin)
+
+        then:
+        _ * taskOutputs.getFileProperties() >> ([new TestProperty(propertyName: "dir", outputFile: tempDir.file("dir"), outputType: DIRECTORY)] as SortedSet)
+        1 * executorFactory.create(_, 2) >> executor
+        1 * delegate.pack(taskOutputs, _, writeOrigin) >> { args -> args[1].write(largeContents) }
+
+        when:
+        packer.unpack(taskOutputs, new TricklingInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(taskOutputs, _, readOrigin) >> { args -> unpacked = args[1].bytes }
+        unpacked == largeContents
+
+        cleanup:
+        packer.stop()
+    }
+
+    def "compresses outputs in parallel using a shared executor that is stopped with the packer"() {
+        def executorFactory = Mock(ExecutorFactory)
+        def executor = new DefaultExecutorFactory().create("test", 2)
+        def packer = new CompressingTaskOutputPacker(delegate, TaskOutputCompression.GZIP, executorFactory, 2)
+
+        when:
+        3.times {
+            def output = new ByteArrayOutputStream()
+            packer.pack(taskOutputs, output, writeOrigin)
+            assert new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == contents
+        }
+
+        then:
+        _ * taskOutputs.getFileProperties() >> ([new TestProperty(propertyName: "dir", outputFile: tempDir.file("dir"), outputType: DIRECTORY)] as SortedSet)
+        1 * executorFactory.create(_, 2) >> executor
+        3 * delegate.pack(taskOutputs, _, writeOrigin) >> { args -> args[1].write(contents) }
+        !executor.shutdown
+
+        when:
+        packer.stop()
+
+        then:
+        executor.shutdown
+    }
+
+    /**
+     * Returns a few bytes at a time and never reports available input, as a stream read from the network may do.
+     */
+    private static class TricklingInputStream extends FilterInputStream {
+        TricklingInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes))
+        }
+
+        @Override
+        int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 7))
+        }
+
+        @Override
+        int available() {
+            return 0
+        }
+    }
+}
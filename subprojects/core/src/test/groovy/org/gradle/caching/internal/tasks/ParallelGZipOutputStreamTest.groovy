@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    @Unroll
+    def "output of #length bytes in blocks of #blockSize bytes can be read by a standard decoder"() {
+        def data = new byte[length]
+        new Random(length).nextBytes(data)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def stream = new ParallelGZipOutputStream(output, executor, TaskOutputCompression.GZIP, blockSize, 2)
+        stream.write(data)
+        stream.close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == data
+
+        where:
+        length | blockSize
+        0      | 16
+        1      | 16
+        16     | 16
+        17     | 16
+        10000  | 16
+        10000  | 1024
+        10000  | 1000000
+    }
+
+    def "preserves order of single byte writes across blocks"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def stream = new ParallelGZipOutputStream(output, executor, TaskOutputCompression.GZIP, 7, 3)
+        100.times { stream.write(it) }
+        stream.close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == (0..<100).collect { it as byte } as byte[]
+    }
+
+    def "propagates failure to write a compressed block"() {
+        def failure = new IOException("broken")
+        def output = Stub(OutputStream) {
+            write(*_) >> { throw failure }
+        }
+
+        when:
+        def stream = new ParallelGZipOutputStream(output, executor, TaskOutputCompression.GZIP, 16, 2)
+        stream.write(new byte[100])
+        stream.close()
+
+        then:
+        def e = thrown(IOException)
+        e == failure
+    }
+}
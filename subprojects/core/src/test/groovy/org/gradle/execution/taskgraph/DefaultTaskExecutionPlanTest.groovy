@@ -21,7 +21,9 @@ import org.gradle.api.CircularReferenceException
 import org.gradle.api.Task
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.specs.Spec
 import org.gradle.api.tasks.TaskDependency
@@ -815,6 +817,25 @@ public class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         executes(b, c)
     }
 
+    def "tasks without dependencies ignore dependencies that are not in the plan"() {
+        given:
+        Task a = filteredTask("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [a])
+        Task d = task("d", dependsOn: [b, c])
+        Spec<Task> filter = Mock()
+
+        and:
+        filter.isSatisfiedBy(_) >> { Task t -> t != a }
+
+        when:
+        executionPlan.useFilter(filter)
+        addToGraphAndPopulate([d])
+
+        then:
+        executionPlan.tasksWithoutDependencies == [b, c]
+    }
+
     @Unroll
     def "does not build graph for or execute filtered tasks reachable via #orderingRule task ordering"() {
         given:
@@ -885,6 +906,75 @@ public class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         t3.task.project != t4.task.project
     }
 
+    @Unroll
+    def "worker prefers ready task of the project of its previous task when project affinity is #affinity"() {
+        given:
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, false, null, affinity)
+        def projectA = createChildProject(root, "a")
+        def projectB = createChildProject(root, "b")
+        def b1 = projectB.task("b1").doLast {}
+        def b2 = projectB.task("b2").dependsOn(b1).doLast {}
+        def a1 = projectA.task("a1").dependsOn(b1).doLast {}
+        addToGraphAndPopulate([a1, b2])
+
+        when:
+        def first = executionPlan.getTaskToExecute(null)
+        executionPlan.taskComplete(first)
+        def second = executionPlan.getTaskToExecute(first)
+
+        then:
+        first.task == b1
+        second.task == (affinity ? b2 : a1)
+
+        where:
+        affinity << [true, false]
+    }
+
+    def "ready task is not passed over indefinitely in favour of the project of the previous task"() {
+        given:
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, false, null, true)
+        def projectA = createChildProject(root, "a")
+        def projectB = createChildProject(root, "b")
+        def chain = [projectB.task("b0").doLast {}]
+        12.times { chain << projectB.task("b${it + 1}").dependsOn(chain.last()).doLast {} }
+        def a1 = projectA.task("a1").dependsOn(chain.first()).doLast {}
+        addToGraphAndPopulate([a1, chain.last()])
+
+        when:
+        def executed = []
+        def taskInfo = null
+        while ((taskInfo = executionPlan.getTaskToExecute(taskInfo)) != null) {
+            executed << taskInfo.task
+            executionPlan.taskComplete(taskInfo)
+        }
+
+        then:
+        executed == chain[0..8] + [a1] + chain[9..12]
+    }
+
+    def "records durations of tasks that executed their actions only"() {
+        given:
+        def taskDurations = Mock(TaskDurationRepository)
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, false, taskDurations)
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d", dependsOn: [c])
+        a.state.getOutcome() >> TaskExecutionOutcome.EXECUTED
+        b.state.getOutcome() >> TaskExecutionOutcome.UP_TO_DATE
+        c.state.getOutcome() >> TaskExecutionOutcome.FROM_CACHE
+        d.state.getOutcome() >> TaskExecutionOutcome.SKIPPED
+        addToGraphAndPopulate([d])
+
+        when:
+        executedTasks
+        executionPlan.awaitCompletion()
+
+        then:
+        1 * taskDurations.recordDuration(":a", _)
+        0 * taskDurations.recordDuration(_, _)
+    }
+
     void executes(Task... expectedTasks) {
         assert executionPlan.tasks == expectedTasks as List
         assert expectedTasks == expectedTasks as List
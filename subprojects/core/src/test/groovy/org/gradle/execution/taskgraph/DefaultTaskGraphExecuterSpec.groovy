@@ -18,13 +18,16 @@ package org.gradle.execution.taskgraph
 
 import org.gradle.api.BuildCancelledException
 import org.gradle.api.Task
+import org.gradle.api.execution.TaskExecutionGraphListener
 import org.gradle.api.execution.TaskExecutionListener
 import org.gradle.api.execution.internal.InternalTaskExecutionListener
 import org.gradle.api.execution.internal.TaskOperationInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.tasks.TaskExecuter
 import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.api.internal.tasks.execution.TaskOutputPrefetcher
 import org.gradle.api.tasks.TaskDependency
 import org.gradle.initialization.BuildCancellationToken
 import org.gradle.internal.Factories
@@ -40,7 +43,8 @@ class DefaultTaskGraphExecuterSpec extends Specification {
     def listenerManager = new DefaultListenerManager()
     def executer = Mock(TaskExecuter)
     def buildOperationExecutor = new TestBuildOperationExecutor()
-    def taskExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(new DefaultBuildOperationWorkerRegistry(1)), Factories.constant(executer), cancellationToken, buildOperationExecutor)
+    def prefetcher = Mock(TaskOutputPrefetcher)
+    def taskExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(new DefaultBuildOperationWorkerRegistry(1)), Factories.constant(executer), cancellationToken, buildOperationExecutor, Factories.constant(Stub(TaskDurationRepository)), Factories.constant(prefetcher))
 
     def "notifies task listeners as tasks are executed"() {
         def listener = Mock(TaskExecutionListener)
@@ -138,6 +142,29 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         0 * executer._
     }
 
+    def "prefetches outputs of tasks without dependencies once the graph listeners have been notified"() {
+        def a = task("a")
+        def b = task("b", a)
+        def c = task("c")
+        def graphListener = Mock(TaskExecutionGraphListener)
+
+        given:
+        taskExecuter.addTaskExecutionGraphListener(graphListener)
+        taskExecuter.addTasks([b, c])
+
+        when:
+        taskExecuter.execute()
+
+        then:
+        1 * graphListener.graphPopulated(taskExecuter)
+
+        then:
+        1 * prefetcher.prefetch([a, c])
+
+        then:
+        1 * executer.execute(a, a.state, _)
+    }
+
     def "does not fail with exception when build is cancelled and no tasks scheduled"() {
         given:
         cancellationToken.cancellationRequested >>> [true]
@@ -150,7 +177,7 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         noExceptionThrown()
     }
 
-    def task(String name) {
+    def task(String name, Task... dependsOn) {
         def mock = Mock(TaskInternal)
         _ * mock.name >> name
         _ * mock.identityPath >> project.identityPath.resolve(name)
@@ -158,7 +185,9 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         _ * mock.state >> Stub(TaskStateInternal) {
             getFailure() >> null
         }
-        _ * mock.taskDependencies >> Stub(TaskDependency)
+        _ * mock.taskDependencies >> Stub(TaskDependency) {
+            getDependencies(_) >> (dependsOn as Set)
+        }
         _ * mock.finalizedBy >> Stub(TaskDependency)
         _ * mock.mustRunAfter >> Stub(TaskDependency)
         _ * mock.shouldRunAfter >> Stub(TaskDependency)
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.Project
+import org.gradle.api.Transformer
+import org.gradle.api.internal.TaskInternal
+import spock.lang.Specification
+
+class TaskExecutionQueueTest extends Specification {
+    def queue = new TaskExecutionQueue()
+
+    def "tasks without dependencies are ready in plan order"() {
+        given:
+        def a = node("a")
+        def b = node("b")
+        def c = node("c", a)
+
+        when:
+        queue.reset([b, a, c])
+
+        then:
+        queue.readyTasks as List == [b, a]
+        !queue.allTasksComplete()
+    }
+
+    def "task becomes ready once all its dependencies complete"() {
+        given:
+        def a = node("a")
+        def b = node("b")
+        def c = node("c", a, b)
+        queue.reset([a, b, c])
+
+        when:
+        start(a)
+        start(b)
+        complete(a)
+
+        then:
+        queue.readyTasks as List == []
+
+        when:
+        def newlyReady = complete(b)
+
+        then:
+        newlyReady == 1
+        queue.readyTasks as List == [c]
+    }
+
+    def "is complete once all queued tasks have been removed"() {
+        given:
+        def a = node("a")
+        def b = node("b", a)
+        queue.reset([a, b])
+
+        when:
+        start(a)
+        complete(a)
+        start(b)
+
+        then:
+        queue.allTasksComplete()
+        queue.readyTasks as List == []
+    }
+
+    def "skipped task counts as complete for its dependents"() {
+        given:
+        def a = node("a")
+        def b = node("b", a)
+        queue.reset([a, b])
+
+        when:
+        queue.remove(a)
+        a.skipExecution()
+        queue.taskCompleted(a)
+
+        then:
+        queue.readyTasks as List == [b]
+    }
+
+    def "enforced task that must not run becomes ready and blocks its dependents"() {
+        given:
+        def finalizer = node("finalizer")
+        finalizer.mustNotRun()
+        def a = node("a")
+        a.addMustSuccessor(finalizer)
+        queue.reset([finalizer, a])
+
+        expect:
+        queue.readyTasks as List == [a]
+
+        when:
+        finalizer.enforceRun()
+        queue.taskEnforced(finalizer, true)
+
+        then:
+        queue.readyTasks as List == [finalizer]
+        !queue.allTasksComplete()
+    }
+
+    def "orders ready tasks by estimated critical path when durations are provided"() {
+        given:
+        def a = node("a")
+        def b = node("b")
+        def c = node("c")
+        def d = node("d", c)
+        def durations = [(a): 10L, (b): 30L, (c): 5L, (d): 40L]
+
+        when:
+        queue.reset([a, b, c, d], { durations[it] } as Transformer)
+
+        then:
+        queue.readyTasks as List == [c, b, a]
+        queue.predictedCriticalPath == [c, d]
+        queue.getEstimatedDuration(d) == 40
+    }
+
+    def "indexes ready tasks by project"() {
+        given:
+        queue.indexReadyTasksByProject()
+        def a1 = node(":a", "a1")
+        def b1 = node(":b", "b1")
+        def a2 = node(":a", "a2", a1)
+        def a3 = node(":a", "a3")
+        queue.reset([a1, b1, a2, a3])
+
+        expect:
+        queue.getReadyTasks(":a") as List == [a1, a3]
+        queue.getReadyTasks(":b") as List == [b1]
+        queue.getReadyTasks(":c") as List == []
+
+        when:
+        start(a1)
+        start(b1)
+        complete(a1)
+
+        then:
+        queue.getReadyTasks(":a") as List == [a2, a3]
+        queue.getReadyTasks(":b") as List == []
+        queue.readyTasks as List == [a2, a3]
+    }
+
+    def "counts the times a task is passed over"() {
+        given:
+        def a = node("a")
+        queue.reset([a])
+
+        expect:
+        queue.taskPassedOver(a) == 1
+        queue.taskPassedOver(a) == 2
+    }
+
+    private TaskInfo node(String projectPath, String name, TaskInfo... dependencies) {
+        def node = node(name, dependencies)
+        node.task.project >> Stub(Project) {
+            getPath() >> projectPath
+        }
+        return node
+    }
+
+    private TaskInfo node(String name, TaskInfo... dependencies) {
+        TaskInternal task = Mock()
+        task.path >> ":" + name
+        task.compareTo(_) >> { args -> (":" + name).compareTo(args[0].path) }
+        def node = new TaskInfo(task)
+        dependencies.each { node.addDependencySuccessor(it) }
+        node.require()
+        return node
+    }
+
+    private void start(TaskInfo node) {
+        queue.remove(node)
+        node.startExecution()
+    }
+
+    private int complete(TaskInfo node) {
+        node.finishExecution()
+        return queue.taskCompleted(node)
+    }
+}
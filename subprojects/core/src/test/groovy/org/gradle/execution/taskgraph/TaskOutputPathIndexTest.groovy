@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.TaskInternal
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TaskOutputPathIndexTest extends Specification {
+    def index = new TaskOutputPathIndex()
+    def task = Mock(TaskInternal)
+
+    @Unroll
+    def "running output #running overlaps #candidate"() {
+        given:
+        index.add(task, [path(running)])
+
+        expect:
+        def overlap = index.findOverlap(path(candidate))
+        overlap.left == task
+        overlap.right == path(running)
+
+        where:
+        running     | candidate
+        "/a/b"      | "/a/b"
+        "/a/b"      | "/a/b/c"
+        "/a/b/c/d"  | "/a/b"
+    }
+
+    @Unroll
+    def "running output #running does not overlap #candidate"() {
+        given:
+        index.add(task, [path(running)])
+
+        expect:
+        index.findOverlap(path(candidate)) == null
+
+        where:
+        running     | candidate
+        "/a/b"      | "/a/bc"
+        "/a/bc"     | "/a/b"
+        "/a/b/c"    | "/a/d"
+    }
+
+    def "removing the outputs of a task removes its overlaps"() {
+        given:
+        def other = Mock(TaskInternal)
+        index.add(task, [path("/a/b"), path("/a/c")])
+        index.add(other, [path("/x")])
+
+        when:
+        index.remove(task, [path("/a/b"), path("/a/c")])
+
+        then:
+        index.findOverlap(path("/a")) == null
+        index.findOverlap(path("/x/y")).left == other
+        !index.isEmpty()
+
+        when:
+        index.remove(other, [path("/x")])
+
+        then:
+        index.isEmpty()
+    }
+
+    private static String path(String path) {
+        path.replace('/', File.separator)
+    }
+}
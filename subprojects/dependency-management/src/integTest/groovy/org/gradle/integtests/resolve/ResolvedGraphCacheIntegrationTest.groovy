@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.integtests.resolve
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraphCache
+import org.gradle.integtests.fixtures.AbstractHttpDependencyResolutionTest
+
+class ResolvedGraphCacheIntegrationTest extends AbstractHttpDependencyResolutionTest {
+    private static final String USED = "Using cached resolved graph of configuration ':conf'."
+    private static final String NOT_USED = "Not using cached resolved graph of configuration ':conf'"
+
+    def setup() {
+        buildFile << """
+repositories {
+    maven { url "${mavenHttpRepo.uri}" }
+}
+configurations { conf }
+task check {
+    doLast {
+        def result = configurations.conf.incoming.resolutionResult
+        println "components: " + result.allComponents.collect { it.toString() }.sort()
+        println "dependencies: " + result.allDependencies.collect { it.toString() }.sort()
+        println "files: " + configurations.conf.collect { it.name }.sort()
+    }
+}
+"""
+    }
+
+    def "replays the same result in later builds"() {
+        given:
+        def c = mavenHttpRepo.module("org", "c", "1.0").publish().allowAll()
+        def b = mavenHttpRepo.module("org", "b", "1.0").dependsOn(c).publish().allowAll()
+        mavenHttpRepo.module("org", "a", "1.0").dependsOn(b).dependsOn(c).publish().allowAll()
+        buildFile << """
+dependencies { conf 'org:a:1.0' }
+"""
+
+        when:
+        runWithGraphCache "check"
+
+        then:
+        !output.contains(USED)
+        def firstResult = result()
+        firstResult.contains("files: [a-1.0.jar, b-1.0.jar, c-1.0.jar]")
+
+        when:
+        runWithGraphCache "check"
+
+        then:
+        outputContains(USED)
+        result() == firstResult
+    }
+
+    def "resolves again when the dependencies of the configuration have changed"() {
+        given:
+        mavenHttpRepo.module("org", "a", "1.0").publish().allowAll()
+        mavenHttpRepo.module("org", "b", "1.0").publish().allowAll()
+        buildFile << """
+dependencies { conf 'org:a:1.0' }
+"""
+        runWithGraphCache "check"
+
+        when:
+        buildFile << """
+dependencies { conf 'org:b:1.0' }
+"""
+        runWithGraphCache "check"
+
+        then:
+        outputContains(NOT_USED)
+        outputContains("files: [a-1.0.jar, b-1.0.jar]")
+
+        when:
+        runWithGraphCache "check"
+
+        then:
+        outputContains(USED)
+        outputContains("files: [a-1.0.jar, b-1.0.jar]")
+    }
+
+    def "resolves again when run with --refresh-dependencies"() {
+        given:
+        def a = mavenHttpRepo.module("org", "a", "1.0").publish().allowAll()
+        def b = mavenHttpRepo.module("org", "b", "1.0").publish().allowAll()
+        buildFile << """
+dependencies { conf 'org:a:1.0' }
+"""
+        runWithGraphCache "check"
+
+        when:
+        a.dependsOn(b).publishWithChangedContent()
+        runWithGraphCache "check"
+
+        then:
+        outputContains(USED)
+        outputContains("files: [a-1.0.jar]")
+
+        when:
+        runWithGraphCache "check", "--refresh-dependencies"
+
+        then:
+        outputContains(NOT_USED)
+        outputContains("files: [a-1.0.jar, b-1.0.jar]")
+    }
+
+    def "resolves again once a dynamic version has expired"() {
+        given:
+        mavenHttpRepo.module("org", "a", "1.0").publish().allowAll()
+        def metadata = mavenHttpRepo.getModuleMetaData("org", "a")
+        metadata.allowGetOrHead()
+        buildFile << """
+configurations.conf.resolutionStrategy.cacheDynamicVersionsFor 0, 'seconds'
+dependencies { conf 'org:a:1.+' }
+"""
+        runWithGraphCache "check"
+
+        when:
+        mavenHttpRepo.module("org", "a", "1.1").publish().allowAll()
+        runWithGraphCache "check"
+
+        then:
+        outputContains("${NOT_USED}, as versions of org:a have expired.")
+        outputContains("files: [a-1.1.jar]")
+    }
+
+    def "replays expired dynamic versions when offline"() {
+        given:
+        mavenHttpRepo.module("org", "a", "1.0").publish().allowAll()
+        def metadata = mavenHttpRepo.getModuleMetaData("org", "a")
+        metadata.allowGetOrHead()
+        buildFile << """
+configurations.conf.resolutionStrategy.cacheDynamicVersionsFor 0, 'seconds'
+dependencies { conf 'org:a:1.+' }
+"""
+        runWithGraphCache "check"
+
+        when:
+        runWithGraphCache "check", "--offline"
+
+        then:
+        outputContains(USED)
+        outputContains("files: [a-1.0.jar]")
+    }
+
+    private void runWithGraphCache(String... args) {
+        executer.withArgument("-D${ResolvedGraphCache.ENABLED_PROPERTY}=true")
+        executer.withArgument("--info")
+        succeeds(args)
+    }
+
+    private List<String> result() {
+        return output.readLines().findAll { it.startsWith("components: ") || it.startsWith("dependencies: ") || it.startsWith("files: ") }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.internal.component.external.descriptor.MutableModuleDescriptorState;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading the metadata of every module of a 2,000 module graph from a warm cache, with a descriptor file per module and with a single segment file.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ModuleMetadataStoreBenchmark {
+    private static final int MODULES = 2000;
+
+    public enum Layout {
+        DESCRIPTOR_FILES, SEGMENT_FILE
+    }
+
+    @Param({"DESCRIPTOR_FILES", "SEGMENT_FILE"})
+    Layout layout;
+
+    private File dir;
+    private List<ModuleComponentAtRepositoryKey> keys;
+    private ModuleMetadataStore descriptorFiles;
+    private SegmentFileModuleMetadataStore segmentFile;
+
+    @Setup(Level.Trial)
+    public void populateStore() {
+        dir = Files.createTempDir();
+        ModuleMetadataSerializer serializer = new ModuleMetadataSerializer();
+        descriptorFiles = new ModuleMetadataStore(new PathKeyFileStore(new File(dir, "descriptors")), serializer);
+        segmentFile = new SegmentFileModuleMetadataStore(dir, serializer);
+        keys = new ArrayList<ModuleComponentAtRepositoryKey>(MODULES);
+        for (int i = 0; i < MODULES; i++) {
+            ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId("org.group" + (i % 50), "module" + i, "1." + i);
+            DefaultMutableMavenModuleResolveMetadata metadata = new DefaultMutableMavenModuleResolveMetadata(id, new MutableModuleDescriptorState(id), "jar", false, Collections.<DependencyMetadata>emptyList());
+            ModuleComponentAtRepositoryKey key = new ModuleComponentAtRepositoryKey("a1b2c3d4", id);
+            if (layout == Layout.DESCRIPTOR_FILES) {
+                descriptorFiles.putModuleDescriptor(key, metadata.asImmutable());
+            } else {
+                segmentFile.putModuleDescriptor(key, metadata.asImmutable());
+            }
+            keys.add(key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteStore() throws IOException {
+        segmentFile.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void loadAllModules(Blackhole bh) {
+        for (ModuleComponentAtRepositoryKey key : keys) {
+            if (layout == Layout.DESCRIPTOR_FILES) {
+                bh.consume(descriptorFiles.getModuleDescriptor(key));
+            } else {
+                bh.consume(segmentFile.getModuleDescriptor(key));
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges and evaluates exclusions the way the graph builder does, for a synthetic graph where every edge excludes the usual logging libraries along with a module of its own.
+ * Each node is reached through 2 paths, so the exclusions of a node are the union of 2 ever deeper chains of intersections.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModuleExclusionsBenchmark {
+    private static final int WIDTH = 10;
+
+    @Param({"10", "40"})
+    int depth;
+
+    private ModuleExclusion[][] edgeExclusions;
+    private List<ModuleIdentifier> modules;
+
+    @Setup(Level.Trial)
+    public void createGraph() {
+        edgeExclusions = new ModuleExclusion[depth][WIDTH];
+        modules = new ArrayList<ModuleIdentifier>();
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < WIDTH; i++) {
+                edgeExclusions[level][i] = ModuleExclusions.excludeAny(
+                    new DefaultExclude("commons-logging", "commons-logging"),
+                    new DefaultExclude("log4j", "log4j"),
+                    new DefaultExclude("org.slf4j", "*", new String[0], PatternMatchers.EXACT),
+                    new DefaultExclude("org.level" + level, "lib" + i));
+                modules.add(DefaultModuleIdentifier.newId("org.level" + level, "lib" + i));
+            }
+        }
+        modules.add(DefaultModuleIdentifier.newId("commons-logging", "commons-logging"));
+        modules.add(DefaultModuleIdentifier.newId("org.slf4j", "slf4j-api"));
+    }
+
+    @Benchmark
+    public void traverseGraph(Blackhole blackhole) {
+        ModuleExclusion[] previous = new ModuleExclusion[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            previous[i] = ModuleExclusions.excludeNone();
+        }
+        for (int level = 0; level < depth; level++) {
+            ModuleExclusion[] current = new ModuleExclusion[WIDTH];
+            for (int i = 0; i < WIDTH; i++) {
+                ModuleExclusion first = ModuleExclusions.intersect(previous[i], edgeExclusions[level][i]);
+                ModuleExclusion second = ModuleExclusions.intersect(previous[(i + 1) % WIDTH], edgeExclusions[level][i]);
+                current[i] = ModuleExclusions.union(first, second);
+                for (ModuleIdentifier module : modules) {
+                    blackhole.consume(current[i].excludeModule(module));
+                }
+            }
+            previous = current;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolveActionExecutor;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Runs resolve actions on a bounded pool of threads.
+ *
+ * <p>The calling thread must be using the artifact cache. It releases the cache while waiting for the actions, and each action uses the cache in turn.
+ * As with parallel resolution in different projects, this means that only the remote requests made by the actions overlap, while their access
+ * to the cache and to the rest of the resolver chain is serialized.</p>
+ */
+public class CacheLockReleasingResolveActionExecutor implements ResolveActionExecutor, Stoppable {
+    public static final String MAX_THREADS_PROPERTY = "org.gradle.internal.resolution.maxthreads";
+
+    private final CacheLockingManager cacheLockingManager;
+    private final StoppableExecutor executor;
+
+    public CacheLockReleasingResolveActionExecutor(CacheLockingManager cacheLockingManager, ExecutorFactory executorFactory, int maxThreads) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.executor = executorFactory.create("dependency resolution", maxThreads);
+    }
+
+    /**
+     * Creates an executor when more than one thread is configured via {@value #MAX_THREADS_PROPERTY}, or returns {@link ResolveActionExecutor#SERIAL}
+     * otherwise. Resolution is serial unless the property is set.
+     */
+    public static ResolveActionExecutor create(CacheLockingManager cacheLockingManager, ExecutorFactory executorFactory) {
+        int maxThreads = Integer.getInteger(MAX_THREADS_PROPERTY, 1);
+        if (maxThreads <= 1) {
+            return SERIAL;
+        }
+        return new CacheLockReleasingResolveActionExecutor(cacheLockingManager, executorFactory, maxThreads);
+    }
+
+    @Override
+    public void runAll(final List<? extends Runnable> actions) {
+        if (actions.size() < 2) {
+            SERIAL.runAll(actions);
+            return;
+        }
+        cacheLockingManager.longRunningOperation("Run resolve actions", new Runnable() {
+            @Override
+            public void run() {
+                List<Future<?>> futures = new ArrayList<Future<?>>(actions.size());
+                for (final Runnable action : actions) {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            cacheLockingManager.useCache("Run resolve actions", action);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    } catch (ExecutionException e) {
+                        throw UncheckedException.throwAsUncheckedException(e.getCause());
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+}
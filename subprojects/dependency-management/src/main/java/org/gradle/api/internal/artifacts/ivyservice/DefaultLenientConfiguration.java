@@ -43,6 +43,7 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.Selec
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedFileDependencyResults;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolveActionExecutor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResultsLoader;
 import org.gradle.api.internal.artifacts.result.DefaultResolvedArtifactResult;
@@ -51,6 +52,7 @@ import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.local.model.ComponentFileArtifactIdentifier;
 import org.gradle.internal.component.local.model.OpaqueComponentArtifactIdentifier;
 import org.gradle.internal.graph.CachingDirectedGraphWalker;
@@ -67,6 +69,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultLenientConfiguration implements LenientConfiguration, VisitedArtifactSet {
     private final CacheLockingManager cacheLockingManager;
@@ -76,11 +79,12 @@ public class DefaultLenientConfiguration implements LenientConfiguration, Visite
     private final VisitedFileDependencyResults fileDependencyResults;
     private final TransientConfigurationResultsLoader transientConfigurationResultsFactory;
     private final ArtifactTransformer artifactTransformer;
+    private final ResolveActionExecutor downloadExecutor;
     // Selected for the configuration
     private final SelectedArtifactResults selectedArtifacts;
     private final SelectedFileDependencyResults selectedFileDependencies;
 
-    public DefaultLenientConfiguration(ConfigurationInternal configuration, CacheLockingManager cacheLockingManager, Set<UnresolvedDependency> unresolvedDependencies, VisitedArtifactsResults artifactResults, VisitedFileDependencyResults fileDependencyResults, TransientConfigurationResultsLoader transientConfigurationResultsLoader, ArtifactTransformer artifactTransformer) {
+    public DefaultLenientConfiguration(ConfigurationInternal configuration, CacheLockingManager cacheLockingManager, Set<UnresolvedDependency> unresolvedDependencies, VisitedArtifactsResults artifactResults, VisitedFileDependencyResults fileDependencyResults, TransientConfigurationResultsLoader transientConfigurationResultsLoader, ArtifactTransformer artifactTransformer, ResolveActionExecutor downloadExecutor) {
         this.configuration = configuration;
         this.cacheLockingManager = cacheLockingManager;
         this.unresolvedDependencies = unresolvedDependencies;
@@ -88,6 +92,7 @@ public class DefaultLenientConfiguration implements LenientConfiguration, Visite
         this.fileDependencyResults = fileDependencyResults;
         this.transientConfigurationResultsFactory = transientConfigurationResultsLoader;
         this.artifactTransformer = artifactTransformer;
+        this.downloadExecutor = downloadExecutor;
         selectedArtifacts = artifactResults.select(Specs.<ComponentIdentifier>satisfyAll(), artifactTransformer.variantSelector(configuration.getAttributes()));
         selectedFileDependencies = fileDependencyResults.select(artifactTransformer.variantSelector(configuration.getAttributes()));
     }
@@ -122,6 +127,10 @@ public class DefaultLenientConfiguration implements LenientConfiguration, Visite
                     // The visitor adds file dependencies directly to the destination collection however defers adding the artifacts.
                     // This is to ensure a fixed order regardless of whether the first level dependencies are filtered or not
                     // File dependencies and artifacts are currently treated separately as a migration step
+                    Throwable downloadFailure = downloadArtifacts(visitor.artifacts);
+                    if (downloadFailure != null) {
+                        throw downloadFailure;
+                    }
                     visitor.addArtifacts();
                 } catch (Throwable t) {
                     visitor.failures.add(t);
@@ -240,6 +249,11 @@ public class DefaultLenientConfiguration implements LenientConfiguration, Visite
     }
 
     private Set<ResolvedArtifact> filterUnresolved(final Set<ResolvedArtifact> artifacts) {
+        Throwable downloadFailure = downloadArtifacts(artifacts);
+        if (downloadFailure != null && !(downloadFailure instanceof org.gradle.internal.resolve.ArtifactResolveException)) {
+            // Artifacts that could not be resolved are ignored below, any other failure is not
+            throw UncheckedException.throwAsUncheckedException(downloadFailure);
+        }
         return cacheLockingManager.useCache("retrieve artifacts from " + configuration, new Factory<Set<ResolvedArtifact>>() {
             public Set<ResolvedArtifact> create() {
                 return CollectionUtils.filter(artifacts, new IgnoreMissingExternalArtifacts());
@@ -262,6 +276,43 @@ public class DefaultLenientConfiguration implements LenientConfiguration, Visite
         return files;
     }
 
+    /**
+     * Fetches the files of the given external artifacts concurrently, so that the artifacts can then be visited in order without waiting for
+     * each download in turn. Returns the first failure to download an artifact, or null when all artifacts were downloaded.
+     */
+    @Nullable
+    private Throwable downloadArtifacts(Collection<ResolvedArtifact> artifacts) {
+        if (downloadExecutor == ResolveActionExecutor.SERIAL) {
+            return null;
+        }
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<Throwable>();
+        final List<Runnable> downloads = new ArrayList<Runnable>();
+        for (final ResolvedArtifact artifact : artifacts) {
+            if (IgnoreMissingExternalArtifacts.isExternalModuleArtifact(artifact)) {
+                downloads.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            artifact.getFile();
+                        } catch (Throwable t) {
+                            firstFailure.compareAndSet(null, t);
+                        }
+                    }
+                });
+            }
+        }
+        if (downloads.size() < 2) {
+            return null;
+        }
+        cacheLockingManager.useCache("download artifacts for " + configuration, new Runnable() {
+            @Override
+            public void run() {
+                downloadExecutor.runAll(downloads);
+            }
+        });
+        return firstFailure.get();
+    }
+
     /**
      * Recursive, includes unsuccessfully resolved artifacts
      *
@@ -467,7 +518,7 @@ public class DefaultLenientConfiguration implements LenientConfiguration, Visite
             return true;
         }
 
-        boolean isExternalModuleArtifact(ResolvedArtifact element) {
+        static boolean isExternalModuleArtifact(ResolvedArtifact element) {
             return element.getId().getComponentIdentifier() instanceof ModuleComponentIdentifier;
         }
     }
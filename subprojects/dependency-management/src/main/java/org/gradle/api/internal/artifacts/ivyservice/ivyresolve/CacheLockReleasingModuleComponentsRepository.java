@@ -35,9 +35,9 @@ import org.gradle.internal.resolve.result.BuildableModuleVersionListingResolveRe
 public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComponentRepository {
     private final ModuleComponentRepositoryAccess remoteAccess;
 
-    public CacheLockReleasingModuleComponentsRepository(ModuleComponentRepository repository, CacheLockingManager cacheLockingManager) {
+    public CacheLockReleasingModuleComponentsRepository(ModuleComponentRepository repository, CacheLockingManager cacheLockingManager, RepositoryArtifactDownloads artifactDownloads) {
         super(repository);
-        this.remoteAccess = new LockReleasingRepositoryAccess(repository.getName(), repository.getRemoteAccess(), cacheLockingManager);
+        this.remoteAccess = new LockReleasingRepositoryAccess(repository.getId(), repository.getName(), repository.getRemoteAccess(), cacheLockingManager, artifactDownloads);
     }
 
     @Override
@@ -46,19 +46,23 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
     }
 
     private static class LockReleasingRepositoryAccess implements ModuleComponentRepositoryAccess {
+        private final String id;
         private final String name;
         private final ModuleComponentRepositoryAccess delegate;
         private final CacheLockingManager cacheLockingManager;
+        private final RepositoryArtifactDownloads artifactDownloads;
 
         @Override
         public String toString() {
             return "unlocking > " + delegate.toString();
         }
 
-        private LockReleasingRepositoryAccess(String name, ModuleComponentRepositoryAccess delegate, CacheLockingManager cacheLockingManager) {
+        private LockReleasingRepositoryAccess(String id, String name, ModuleComponentRepositoryAccess delegate, CacheLockingManager cacheLockingManager, RepositoryArtifactDownloads artifactDownloads) {
+            this.id = id;
             this.name = name;
             this.delegate = delegate;
             this.cacheLockingManager = cacheLockingManager;
+            this.artifactDownloads = artifactDownloads;
         }
 
         @Override
@@ -102,7 +106,11 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
         public void resolveArtifact(final ComponentArtifactMetadata artifact, final ModuleSource moduleSource, final BuildableArtifactResolveResult result) {
             cacheLockingManager.longRunningOperation("Download " + artifact + " using repository " + name, new Runnable() {
                 public void run() {
-                    delegate.resolveArtifact(artifact, moduleSource, result);
+                    artifactDownloads.download(id, name, new Runnable() {
+                        public void run() {
+                            delegate.resolveArtifact(artifact, moduleSource, result);
+                        }
+                    }, result);
                 }
             });
         }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+import org.gradle.api.Nullable;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.resolve.result.BuildableArtifactResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how many artifacts were downloaded from each remote repository, their total size and the time taken. The statistics are logged
+ * when the build finishes. Repositories are identified by their resolver id, as repository names are not unique across projects.
+ *
+ * <p>Artifacts are resolved one at a time by default, and downloads are not limited here. Concurrent downloads are enabled by setting
+ * {@value #MAX_DOWNLOADS_PROPERTY} to a value greater than 1, which is then also the limit of concurrent downloads from each repository.</p>
+ */
+public class RepositoryArtifactDownloads implements Stoppable {
+    public static final String MAX_DOWNLOADS_PROPERTY = "org.gradle.internal.resolution.maxdownloadsperrepository";
+    public static final int DEFAULT_MAX_DOWNLOADS = 1;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryArtifactDownloads.class);
+
+    private final int maxDownloadsPerRepository;
+    private final ConcurrentMap<String, RepositoryStatistics> repositories = new ConcurrentHashMap<String, RepositoryStatistics>();
+
+    public RepositoryArtifactDownloads() {
+        this(Integer.getInteger(MAX_DOWNLOADS_PROPERTY, DEFAULT_MAX_DOWNLOADS));
+    }
+
+    public RepositoryArtifactDownloads(int maxDownloadsPerRepository) {
+        this.maxDownloadsPerRepository = Math.max(1, maxDownloadsPerRepository);
+    }
+
+    /**
+     * Returns true when more than one artifact may be downloaded from a repository at a time.
+     */
+    public boolean isConcurrent() {
+        return maxDownloadsPerRepository > 1;
+    }
+
+    /**
+     * Runs the given download of an artifact from the given repository. When concurrent downloads are enabled, waits until fewer than the maximum number of
+     * downloads from the repository are running.
+     */
+    public void download(String repositoryId, String repositoryName, Runnable download, BuildableArtifactResolveResult result) {
+        RepositoryStatistics repository = getRepository(repositoryId, repositoryName);
+        if (repository.permits != null) {
+            try {
+                repository.permits.acquire();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            download.run();
+        } finally {
+            if (repository.permits != null) {
+                repository.permits.release();
+            }
+            repository.nanos.addAndGet(System.nanoTime() - start);
+        }
+        if (result.isSuccessful()) {
+            File file = result.getResult();
+            repository.downloads.incrementAndGet();
+            repository.bytes.addAndGet(file.length());
+        }
+    }
+
+    /**
+     * Returns the statistics for each repository that artifacts were downloaded from, keyed by repository id.
+     */
+    public Map<String, RepositoryStatistics> getStatistics() {
+        return repositories;
+    }
+
+    @Override
+    public void stop() {
+        for (RepositoryStatistics statistics : repositories.values()) {
+            if (statistics.getDownloads() > 0) {
+                LOGGER.info("Downloaded {} artifacts ({} bytes) from repository '{}' in {} ms, {} KB/s.",
+                    statistics.getDownloads(), statistics.getBytes(), statistics.getName(), statistics.getTimeMillis(), statistics.getKilobytesPerSecond());
+            }
+        }
+        repositories.clear();
+    }
+
+    private RepositoryStatistics getRepository(String repositoryId, String repositoryName) {
+        RepositoryStatistics repository = repositories.get(repositoryId);
+        if (repository == null) {
+            RepositoryStatistics newRepository = new RepositoryStatistics(repositoryName, isConcurrent() ? new Semaphore(maxDownloadsPerRepository) : null);
+            repository = repositories.putIfAbsent(repositoryId, newRepository);
+            if (repository == null) {
+                repository = newRepository;
+            }
+        }
+        return repository;
+    }
+
+    public static class RepositoryStatistics {
+        private final String name;
+        // Null when downloads are not limited
+        private final Semaphore permits;
+        private final AtomicLong downloads = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        private RepositoryStatistics(String name, @Nullable Semaphore permits) {
+            this.name = name;
+            this.permits = permits;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDownloads() {
+            return downloads.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Returns the total time spent downloading, summed over concurrent downloads.
+         */
+        public long getTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+        }
+
+        public long getKilobytesPerSecond() {
+            long millis = getTimeMillis();
+            return millis == 0 ? 0 : bytes.get() * 1000 / 1024 / millis;
+        }
+    }
+}
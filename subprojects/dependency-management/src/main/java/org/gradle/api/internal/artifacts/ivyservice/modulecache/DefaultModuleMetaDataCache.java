@@ -23,9 +23,8 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.Compone
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.hash.HashValue;
-import org.gradle.internal.resource.local.LocallyAvailableResource;
-import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.Serializer;
@@ -33,20 +32,20 @@ import org.gradle.util.BuildCommencedTimeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
+public class DefaultModuleMetaDataCache implements ModuleMetaDataCache, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultModuleMetaDataCache.class);
 
     private final BuildCommencedTimeProvider timeProvider;
     private final CacheLockingManager cacheLockingManager;
 
-    private final ModuleMetadataStore moduleMetadataStore;
+    private final SegmentFileModuleMetadataStore moduleMetadataStore;
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> cache;
 
     public DefaultModuleMetaDataCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ArtifactCacheMetaData artifactCacheMetaData) {
         this.timeProvider = timeProvider;
         this.cacheLockingManager = cacheLockingManager;
 
-        moduleMetadataStore = new ModuleMetadataStore(new PathKeyFileStore(artifactCacheMetaData.getMetaDataStoreDirectory()), new ModuleMetadataSerializer());
+        moduleMetadataStore = new SegmentFileModuleMetadataStore(artifactCacheMetaData.getMetaDataStoreDirectory().getParentFile(), new ModuleMetadataSerializer());
     }
 
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> getCache() {
@@ -71,7 +70,7 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
         }
         MutableModuleComponentResolveMetadata metadata = moduleMetadataStore.getModuleDescriptor(key);
         if (metadata == null) {
-            // Descriptor file has been deleted - ignore the entry
+            // Descriptor has been deleted or is corrupt - ignore the entry
             getCache().remove(key);
             return null;
         }
@@ -88,12 +87,29 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
     public CachedMetaData cacheMetaData(ModuleComponentRepository repository, ModuleComponentResolveMetadata metadata) {
         LOGGER.debug("Recording module descriptor in cache: {} [changing = {}]", metadata.getComponentId(), metadata.isChanging());
         ModuleComponentAtRepositoryKey key = createKey(repository, metadata.getComponentId());
-        LocallyAvailableResource resource = moduleMetadataStore.putModuleDescriptor(key, metadata);
-        ModuleMetadataCacheEntry entry = createEntry(metadata, resource.getSha1());
+        HashValue descriptorHash = moduleMetadataStore.putModuleDescriptor(key, metadata);
+        ModuleMetadataCacheEntry entry = createEntry(metadata, descriptorHash);
         getCache().put(key, entry);
         return new DefaultCachedMetaData(entry, null, timeProvider);
     }
 
+    @Override
+    public void stop() {
+        if (!moduleMetadataStore.isOpen()) {
+            return;
+        }
+        try {
+            cacheLockingManager.useCache("compact module metadata", new Runnable() {
+                @Override
+                public void run() {
+                    moduleMetadataStore.compactIfRequired();
+                }
+            });
+        } finally {
+            moduleMetadataStore.close();
+        }
+    }
+
     private ModuleComponentAtRepositoryKey createKey(ModuleComponentRepository repository, ModuleComponentIdentifier id) {
         return new ModuleComponentAtRepositoryKey(repository.getId(), id);
     }
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Stores module metadata in a single append-only segment file, rather than in a descriptor file per module.
+ *
+ * <p>Each record holds a key and the serialized metadata for that key, and replaces any earlier record with the same key. The records are located
+ * using an in-memory index, which is built by scanning the record headers when the segment is opened and extended as records are appended by this
+ * or another process. Record contents are read from a memory mapping of the segment, where supported. The mapping covers the records present when
+ * the segment was opened, and records appended after that are read from the file directly, so that the segment is only mapped once per open.</p>
+ *
+ * <p>Once most of the segment is taken up by replaced records, the live records are copied to a new segment. The old segment is then marked as
+ * superseded, so that other processes switch to the new one.</p>
+ *
+ * <p>This class is not thread-safe, and must only be used while holding the lock on the artifact cache.</p>
+ */
+public class SegmentFileModuleMetadataStore implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentFileModuleMetadataStore.class);
+
+    private static final String SEGMENT_PREFIX = "descriptors-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int MAGIC = 0x474d4d53;
+    private static final int VERSION = 1;
+    private static final int SUPERSEDED_OFFSET = 8;
+    static final int HEADER_SIZE = 16;
+    // bodyLength, crc, keyLength
+    private static final int RECORD_HEADER_SIZE = 12;
+    static final long COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+
+    private final File storeDir;
+    private final ModuleMetadataSerializer moduleMetadataSerializer;
+    private final boolean mapReads;
+    private final Map<String, Record> index = new HashMap<String, Record>();
+    private File segmentFile;
+    private long generation;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    private long indexedLength;
+    private long liveBytes;
+
+    public SegmentFileModuleMetadataStore(File storeDir, ModuleMetadataSerializer moduleMetadataSerializer) {
+        this(storeDir, moduleMetadataSerializer, !OperatingSystem.current().isWindows());
+    }
+
+    SegmentFileModuleMetadataStore(File storeDir, ModuleMetadataSerializer moduleMetadataSerializer, boolean mapReads) {
+        this.storeDir = storeDir;
+        this.moduleMetadataSerializer = moduleMetadataSerializer;
+        this.mapReads = mapReads;
+    }
+
+    @Nullable
+    public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
+        String key = getKey(component);
+        try {
+            syncWithSegment();
+            Record record = index.get(key);
+            if (record == null) {
+                return null;
+            }
+            byte[] payload = readPayload(record);
+            if (payload == null) {
+                LOGGER.info("Discarding corrupt module metadata for {} in {}.", component, segmentFile);
+                index.remove(key);
+                liveBytes -= record.length;
+                return null;
+            }
+            return decode(payload);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata for " + component + " from " + segmentFile, e);
+        }
+    }
+
+    /**
+     * Writes the metadata for the given component, returning the SHA1 of its serialized form.
+     */
+    public HashValue putModuleDescriptor(ModuleComponentAtRepositoryKey component, ModuleComponentResolveMetadata metadata) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+            try {
+                moduleMetadataSerializer.write(encoder, metadata);
+            } finally {
+                encoder.close();
+            }
+            byte[] payload = outputStream.toByteArray();
+            syncWithSegment();
+            append(getKey(component), payload);
+            return HashUtil.sha1(payload);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Copies the live records to a new segment, when most of the current segment is taken up by replaced records.
+     */
+    public void compactIfRequired() {
+        if (!isOpen()) {
+            return;
+        }
+        try {
+            syncWithSegment();
+            if (indexedLength < COMPACTION_THRESHOLD_BYTES || liveBytes * 2 > indexedLength - HEADER_SIZE) {
+                return;
+            }
+            compact();
+        } catch (IOException e) {
+            LOGGER.info("Could not compact module metadata in {}.", segmentFile, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        mapping = null;
+        index.clear();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close {}.", segmentFile, e);
+            }
+            file = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * Returns the segment file currently in use.
+     */
+    File getSegmentFile() {
+        return segmentFile;
+    }
+
+    /**
+     * Returns the number of bytes of the segment that are currently memory mapped.
+     */
+    long getMappedLength() {
+        return mapping == null ? 0 : mapping.capacity();
+    }
+
+    private void syncWithSegment() throws IOException {
+        if (channel == null) {
+            open();
+        } else if (readInt(SUPERSEDED_OFFSET) != 0 || channel.size() < indexedLength) {
+            // Compacted or replaced by another process
+            close();
+            open();
+        } else if (channel.size() > indexedLength) {
+            scan();
+        }
+    }
+
+    private void open() throws IOException {
+        generation = 0;
+        File newest = null;
+        File[] candidates = storeDir.listFiles();
+        if (candidates != null) {
+            for (File candidate : candidates) {
+                long candidateGeneration = getGeneration(candidate);
+                if (candidateGeneration > generation) {
+                    generation = candidateGeneration;
+                    newest = candidate;
+                }
+            }
+        }
+        if (newest == null) {
+            generation = 1;
+            newest = segmentFile(generation);
+        }
+        segmentFile = newest;
+        Files.createParentDirs(segmentFile);
+        file = new RandomAccessFile(segmentFile, "rw");
+        channel = file.getChannel();
+        if (channel.size() < HEADER_SIZE || readInt(0) != MAGIC || readInt(4) != VERSION) {
+            channel.truncate(0);
+            writeHeader(channel);
+        }
+        index.clear();
+        liveBytes = 0;
+        indexedLength = HEADER_SIZE;
+        mapping = null;
+        scan();
+        if (mapReads && indexedLength <= Integer.MAX_VALUE) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, indexedLength);
+        }
+        deleteOlderSegments(candidates);
+    }
+
+    private void scan() throws IOException {
+        long length = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (indexedLength < length) {
+            long offset = indexedLength;
+            header.clear();
+            if (length - offset < RECORD_HEADER_SIZE || readFully(header, offset) < RECORD_HEADER_SIZE) {
+                truncate(offset);
+                return;
+            }
+            header.flip();
+            int bodyLength = header.getInt();
+            header.getInt();
+            int keyLength = header.getInt();
+            if (bodyLength < 4 || keyLength < 0 || keyLength > bodyLength - 4 || offset + 8 + bodyLength > length) {
+                // A record that was not completely written
+                truncate(offset);
+                return;
+            }
+            ByteBuffer keyBytes = ByteBuffer.allocate(keyLength);
+            readFully(keyBytes, offset + RECORD_HEADER_SIZE);
+            String key = new String(keyBytes.array(), Charsets.UTF_8);
+            index(key, new Record(offset, 8 + bodyLength));
+            indexedLength = offset + 8 + bodyLength;
+        }
+    }
+
+    private void index(String key, Record record) {
+        Record previous = index.put(key, record);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        liveBytes += record.length;
+    }
+
+    private void append(String key, byte[] payload) throws IOException {
+        byte[] keyBytes = key.getBytes(Charsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + payload.length);
+        record.putInt(4 + keyBytes.length + payload.length);
+        record.putInt(0);
+        record.putInt(keyBytes.length);
+        record.put(keyBytes);
+        record.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        long offset = indexedLength;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        indexedLength = offset + record.capacity();
+        index(key, new Record(offset, record.capacity()));
+    }
+
+    /**
+     * Returns the serialized metadata held by the given record, or null when the record is corrupt.
+     */
+    @Nullable
+    private byte[] readPayload(Record record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length);
+        if (mapping != null && record.offset + record.length <= mapping.capacity()) {
+            ByteBuffer view = mapping.duplicate();
+            view.position((int) record.offset);
+            view.limit((int) (record.offset + record.length));
+            buffer.put(view);
+        } else if (readFully(buffer, record.offset) < record.length) {
+            return null;
+        }
+        buffer.flip();
+        buffer.getInt();
+        int crcValue = buffer.getInt();
+        int keyLength = buffer.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, record.length - 8);
+        if ((int) crc.getValue() != crcValue) {
+            return null;
+        }
+        int payloadOffset = RECORD_HEADER_SIZE + keyLength;
+        byte[] payload = new byte[record.length - payloadOffset];
+        System.arraycopy(buffer.array(), payloadOffset, payload, 0, payload.length);
+        return payload;
+    }
+
+    private void compact() throws IOException {
+        File compactedFile = segmentFile(generation + 1);
+        File partFile = new File(storeDir, compactedFile.getName() + ".part");
+        long before = indexedLength;
+        RandomAccessFile compacted = new RandomAccessFile(partFile, "rw");
+        try {
+            FileChannel compactedChannel = compacted.getChannel();
+            compactedChannel.truncate(0);
+            writeHeader(compactedChannel);
+            long position = HEADER_SIZE;
+            for (Record record : index.values()) {
+                long transferred = 0;
+                while (transferred < record.length) {
+                    transferred += channel.transferTo(record.offset + transferred, record.length - transferred, compactedChannel);
+                }
+                position += record.length;
+            }
+            compactedChannel.force(false);
+            if (compactedChannel.size() != position) {
+                throw new IOException("Unexpected size of compacted segment " + partFile);
+            }
+        } finally {
+            compacted.close();
+        }
+        if (!partFile.renameTo(compactedFile)) {
+            partFile.delete();
+            throw new IOException("Could not rename " + partFile + " to " + compactedFile);
+        }
+        ByteBuffer superseded = ByteBuffer.allocate(4);
+        superseded.putInt(0, 1);
+        channel.write(superseded, SUPERSEDED_OFFSET);
+        close();
+        // Also deletes the old segment
+        open();
+        LOGGER.info("Compacted module metadata from {} bytes to {} bytes.", before, indexedLength);
+    }
+
+    private void deleteOlderSegments(@Nullable File[] candidates) {
+        if (candidates == null) {
+            return;
+        }
+        for (File candidate : candidates) {
+            long candidateGeneration = getGeneration(candidate);
+            boolean abandonedCompaction = candidate.getName().startsWith(SEGMENT_PREFIX) && candidate.getName().endsWith(SEGMENT_SUFFIX + ".part");
+            if ((candidateGeneration > 0 && candidateGeneration < generation) || abandonedCompaction) {
+                // May still be in use by another process on some platforms, in which case it is deleted later
+                candidate.delete();
+            }
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        LOGGER.debug("Discarding incomplete module metadata record at offset {} in {}.", length, segmentFile);
+        // Only ever discards bytes past the mapped length, so the mapping remains valid
+        channel.truncate(length);
+    }
+
+    private int readInt(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        if (readFully(buffer, offset) < 4) {
+            return -1;
+        }
+        return buffer.getInt(0);
+    }
+
+    private int readFully(ByteBuffer buffer, long offset) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private MutableModuleComponentResolveMetadata decode(byte[] payload) throws IOException {
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(payload));
+        try {
+            return moduleMetadataSerializer.read(decoder);
+        } finally {
+            decoder.close();
+        }
+    }
+
+    private File segmentFile(long generation) {
+        return new File(storeDir, SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(0);
+        header.putInt(0);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static long getGeneration(File file) {
+        String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String getKey(ModuleComponentAtRepositoryKey component) {
+        ModuleComponentIdentifier id = component.getComponentId();
+        return id.getGroup() + "/" + id.getModule() + "/" + id.getVersion() + "/" + component.getRepositoryId();
+    }
+
+    private static class Record {
+        private final long offset;
+        private final int length;
+
+        private Record(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 import java.util.Collection;
 
 abstract class AbstractCompositeExclusion extends AbstractModuleExclusion {
+    private int hashCode;
+
     abstract Collection<AbstractModuleExclusion> getFilters();
 
     @Override
@@ -48,7 +50,11 @@ abstract class AbstractCompositeExclusion extends AbstractModuleExclusion {
 
     @Override
     protected int doHashCode() {
-        return getFilters().hashCode();
+        // Composites are hashed whenever they are interned, so calculate the hash once
+        if (hashCode == 0) {
+            hashCode = getFilters().hashCode();
+        }
+        return hashCode;
     }
 
     /**
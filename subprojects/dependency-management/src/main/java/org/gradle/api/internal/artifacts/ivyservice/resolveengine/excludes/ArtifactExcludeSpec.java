@@ -24,8 +24,8 @@ import org.gradle.internal.component.model.IvyArtifactName;
  * Does not exclude any modules
  */
 class ArtifactExcludeSpec extends AbstractModuleExclusion {
-    private final ModuleIdentifier moduleId;
-    private final IvyArtifactName ivyArtifactName;
+    final ModuleIdentifier moduleId;
+    final IvyArtifactName ivyArtifactName;
 
     ArtifactExcludeSpec(ModuleIdentifier moduleId, IvyArtifactName artifact) {
         this.moduleId = moduleId;
@@ -19,7 +19,11 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.internal.component.model.IvyArtifactName;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A spec that excludes modules or artifacts that are excluded by _any_ of the supplied exclusions.
@@ -27,9 +31,28 @@ import java.util.*;
  */
 class IntersectionExclusion extends AbstractCompositeExclusion {
     private final Set<AbstractModuleExclusion> excludeSpecs = new HashSet<AbstractModuleExclusion>();
+    // The exact module excludes are indexed by group and module, so that a large intersection can be matched with a few lookups
+    private final Set<ModuleIdentifier> excludedModuleIds = new HashSet<ModuleIdentifier>();
+    private final Set<String> excludedGroups = new HashSet<String>();
+    private final Set<String> excludedModuleNames = new HashSet<String>();
+    private final List<AbstractModuleExclusion> otherModuleSpecs = new ArrayList<AbstractModuleExclusion>();
+    private boolean excludesAllModules;
 
     public IntersectionExclusion(Collection<AbstractModuleExclusion> specs) {
         this.excludeSpecs.addAll(specs);
+        for (AbstractModuleExclusion spec : excludeSpecs) {
+            if (spec instanceof ModuleIdExcludeSpec) {
+                excludedModuleIds.add(((ModuleIdExcludeSpec) spec).moduleId);
+            } else if (spec instanceof GroupNameExcludeSpec) {
+                excludedGroups.add(((GroupNameExcludeSpec) spec).group);
+            } else if (spec instanceof ModuleNameExcludeSpec) {
+                excludedModuleNames.add(((ModuleNameExcludeSpec) spec).module);
+            } else if (spec instanceof ExcludeAllModulesSpec) {
+                excludesAllModules = true;
+            } else if (!(spec instanceof ArtifactExcludeSpec)) {
+                otherModuleSpecs.add(spec);
+            }
+        }
     }
 
     Collection<AbstractModuleExclusion> getFilters() {
@@ -47,7 +70,19 @@ class IntersectionExclusion extends AbstractCompositeExclusion {
     }
 
     public boolean excludeModule(ModuleIdentifier element) {
-        for (AbstractModuleExclusion excludeSpec : excludeSpecs) {
+        if (excludesAllModules) {
+            return true;
+        }
+        if (!excludedModuleIds.isEmpty() && excludedModuleIds.contains(element)) {
+            return true;
+        }
+        if (!excludedGroups.isEmpty() && excludedGroups.contains(element.getGroup())) {
+            return true;
+        }
+        if (!excludedModuleNames.isEmpty() && excludedModuleNames.contains(element.getName())) {
+            return true;
+        }
+        for (AbstractModuleExclusion excludeSpec : otherModuleSpecs) {
             if (excludeSpec.excludeModule(element)) {
                 return true;
             }
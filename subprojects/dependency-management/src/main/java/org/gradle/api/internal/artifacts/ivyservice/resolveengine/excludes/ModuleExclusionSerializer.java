@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.DefaultIvyArtifactName;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.Serializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Serializes a {@link ModuleExclusion}, keeping its structure so that a deserialized exclusion is the same interned instance as the original.
+ */
+public class ModuleExclusionSerializer implements Serializer<ModuleExclusion> {
+    private static final byte EXCLUDE_NONE = 0;
+    private static final byte EXCLUDE_ALL_MODULES = 1;
+    private static final byte MODULE_ID = 2;
+    private static final byte MODULE_NAME = 3;
+    private static final byte GROUP_NAME = 4;
+    private static final byte ARTIFACT = 5;
+    private static final byte IVY_PATTERN_MATCHER = 6;
+    private static final byte INTERSECTION = 7;
+    private static final byte UNION = 8;
+
+    @Override
+    public ModuleExclusion read(Decoder decoder) throws IOException {
+        return ModuleExclusions.intern(doRead(decoder));
+    }
+
+    private AbstractModuleExclusion doRead(Decoder decoder) throws IOException {
+        byte type = decoder.readByte();
+        switch (type) {
+            case EXCLUDE_NONE:
+                return new ExcludeNone();
+            case EXCLUDE_ALL_MODULES:
+                return new ExcludeAllModulesSpec();
+            case MODULE_ID:
+                return new ModuleIdExcludeSpec(decoder.readString(), decoder.readString());
+            case MODULE_NAME:
+                return new ModuleNameExcludeSpec(decoder.readString());
+            case GROUP_NAME:
+                return new GroupNameExcludeSpec(decoder.readString());
+            case ARTIFACT:
+                return new ArtifactExcludeSpec(readModuleId(decoder), readArtifact(decoder));
+            case IVY_PATTERN_MATCHER:
+                ModuleIdentifier moduleId = readModuleId(decoder);
+                IvyArtifactName artifact = readArtifact(decoder);
+                String matcher = decoder.readString();
+                return new IvyPatternMatcherExcludeRuleSpec(new DefaultExclude(moduleId.getGroup(), moduleId.getName(), artifact.getName(), artifact.getType(), artifact.getExtension(), new String[0], matcher));
+            case INTERSECTION:
+                return new IntersectionExclusion(readAll(decoder));
+            case UNION:
+                return new UnionExclusion(readAll(decoder));
+            default:
+                throw new IllegalArgumentException("Unable to find module exclusion with type: " + type);
+        }
+    }
+
+    @Override
+    public void write(Encoder encoder, ModuleExclusion value) throws IOException {
+        if (value instanceof ExcludeNone) {
+            encoder.writeByte(EXCLUDE_NONE);
+        } else if (value instanceof ExcludeAllModulesSpec) {
+            encoder.writeByte(EXCLUDE_ALL_MODULES);
+        } else if (value instanceof ModuleIdExcludeSpec) {
+            ModuleIdentifier moduleId = ((ModuleIdExcludeSpec) value).moduleId;
+            encoder.writeByte(MODULE_ID);
+            encoder.writeString(moduleId.getGroup());
+            encoder.writeString(moduleId.getName());
+        } else if (value instanceof ModuleNameExcludeSpec) {
+            encoder.writeByte(MODULE_NAME);
+            encoder.writeString(((ModuleNameExcludeSpec) value).module);
+        } else if (value instanceof GroupNameExcludeSpec) {
+            encoder.writeByte(GROUP_NAME);
+            encoder.writeString(((GroupNameExcludeSpec) value).group);
+        } else if (value instanceof ArtifactExcludeSpec) {
+            ArtifactExcludeSpec spec = (ArtifactExcludeSpec) value;
+            encoder.writeByte(ARTIFACT);
+            writeModuleId(encoder, spec.moduleId);
+            writeArtifact(encoder, spec.ivyArtifactName);
+        } else if (value instanceof IvyPatternMatcherExcludeRuleSpec) {
+            IvyPatternMatcherExcludeRuleSpec spec = (IvyPatternMatcherExcludeRuleSpec) value;
+            encoder.writeByte(IVY_PATTERN_MATCHER);
+            writeModuleId(encoder, spec.moduleId);
+            writeArtifact(encoder, spec.ivyArtifactName);
+            encoder.writeString(spec.matcher.getName());
+        } else if (value instanceof IntersectionExclusion) {
+            encoder.writeByte(INTERSECTION);
+            writeAll(encoder, ((IntersectionExclusion) value).getFilters());
+        } else if (value instanceof UnionExclusion) {
+            encoder.writeByte(UNION);
+            writeAll(encoder, ((UnionExclusion) value).getFilters());
+        } else {
+            throw new IllegalArgumentException("Unknown module exclusion: " + value);
+        }
+    }
+
+    private List<AbstractModuleExclusion> readAll(Decoder decoder) throws IOException {
+        int count = decoder.readSmallInt();
+        List<AbstractModuleExclusion> exclusions = new ArrayList<AbstractModuleExclusion>(count);
+        for (int i = 0; i < count; i++) {
+            exclusions.add((AbstractModuleExclusion) read(decoder));
+        }
+        return exclusions;
+    }
+
+    private void writeAll(Encoder encoder, Collection<AbstractModuleExclusion> exclusions) throws IOException {
+        encoder.writeSmallInt(exclusions.size());
+        for (AbstractModuleExclusion exclusion : exclusions) {
+            write(encoder, exclusion);
+        }
+    }
+
+    private static ModuleIdentifier readModuleId(Decoder decoder) throws IOException {
+        return DefaultModuleIdentifier.newId(decoder.readString(), decoder.readString());
+    }
+
+    private static void writeModuleId(Encoder encoder, ModuleIdentifier moduleId) throws IOException {
+        encoder.writeString(moduleId.getGroup());
+        encoder.writeString(moduleId.getName());
+    }
+
+    private static IvyArtifactName readArtifact(Decoder decoder) throws IOException {
+        return new DefaultIvyArtifactName(decoder.readString(), decoder.readString(), decoder.readNullableString(), decoder.readNullableString());
+    }
+
+    private static void writeArtifact(Encoder encoder, IvyArtifactName artifact) throws IOException {
+        encoder.writeString(artifact.getName());
+        encoder.writeString(artifact.getType());
+        encoder.writeNullableString(artifact.getExtension());
+        encoder.writeNullableString(artifact.getClassifier());
+    }
+}
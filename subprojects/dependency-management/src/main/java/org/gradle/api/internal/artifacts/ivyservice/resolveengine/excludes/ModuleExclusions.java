@@ -16,8 +16,15 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.cache.HeapProportionalCacheSizer;
+import org.gradle.internal.Cast;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.model.Exclude;
 import org.gradle.internal.component.model.IvyArtifactName;
 import org.gradle.util.CollectionUtils;
@@ -26,6 +33,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.AbstractModuleExclusion.isWildcard;
 
@@ -45,10 +54,24 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  *     <li>When a module is depended on via a transitive path, then the resulting exclusion is the _intersection_ of the exclusions on each leg of the path (module is excluded if excluded by _any_).</li>
  *     <li>When a module is depended on via multiple paths in the graph, then the resulting exclusion is the _union_ of the exclusions on each of those paths (module is excluded if excluded by _all_).</li>
  * </ul>
+ *
+ * <p>Every spec returned by this class is interned, so that specs that contain the same rules are the same instance. The results of {@link #intersect(ModuleExclusion, ModuleExclusion)}
+ * and {@link #union(ModuleExclusion, ModuleExclusion)} are cached by the identity of their operands, as the graph builder merges the same few specs over and over again.
+ * The cache only holds weak references to operands and results, so that it does not keep specs alive once no resolution uses them.</p>
  */
 public class ModuleExclusions {
-    private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
-    private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = new ExcludeAllModulesSpec();
+    private static final int MERGE_CACHE_MAX_SIZE = 10000;
+    private static final Interner<AbstractModuleExclusion> INTERNER = Interners.newWeakInterner();
+    // Keyed by the first operand, holds the results of merging it with a second operand
+    private static final Cache<ModuleExclusion, Merges> MERGE_CACHE = CacheBuilder.newBuilder().weakKeys().maximumSize(new HeapProportionalCacheSizer().scaleCacheSize(MERGE_CACHE_MAX_SIZE)).build();
+    private static final Callable<Merges> NEW_MERGES = new Callable<Merges>() {
+        @Override
+        public Merges call() {
+            return new Merges();
+        }
+    };
+    private static final ExcludeNone EXCLUDE_NONE = intern(new ExcludeNone());
+    private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = intern(new ExcludeAllModulesSpec());
 
     /**
      * Returns a spec that excludes nothing.
@@ -74,12 +97,19 @@ public class ModuleExclusions {
         if (excludes.isEmpty()) {
             return EXCLUDE_NONE;
         }
-        return new IntersectionExclusion(CollectionUtils.collect(excludes, new Transformer<AbstractModuleExclusion, Exclude>() {
+        return intern(new IntersectionExclusion(CollectionUtils.collect(excludes, new Transformer<AbstractModuleExclusion, Exclude>() {
             @Override
             public AbstractModuleExclusion transform(Exclude exclude) {
-                return forExclude(exclude);
+                return intern(forExclude(exclude));
             }
-        }));
+        })));
+    }
+
+    /**
+     * Returns the canonical instance of the given spec.
+     */
+    static <T extends AbstractModuleExclusion> T intern(T spec) {
+        return Cast.uncheckedCast(INTERNER.intern(spec));
     }
 
     private static AbstractModuleExclusion forExclude(Exclude rule) {
@@ -113,7 +143,7 @@ public class ModuleExclusions {
     /**
      * Returns a spec that excludes those modules and artifacts that are excluded by _either_ of the given exclude rules.
      */
-    public static ModuleExclusion intersect(ModuleExclusion one, ModuleExclusion two) {
+    public static ModuleExclusion intersect(final ModuleExclusion one, final ModuleExclusion two) {
         if (one == two) {
             return one;
         }
@@ -123,6 +153,15 @@ public class ModuleExclusions {
         if (two == EXCLUDE_NONE) {
             return one;
         }
+        return merge(false, one, two, new Callable<ModuleExclusion>() {
+            @Override
+            public ModuleExclusion call() {
+                return doIntersect(one, two);
+            }
+        });
+    }
+
+    private static ModuleExclusion doIntersect(ModuleExclusion one, ModuleExclusion two) {
         if (one.equals(two)) {
             return one;
         }
@@ -131,19 +170,28 @@ public class ModuleExclusions {
         ((AbstractModuleExclusion) one).unpackIntersection(specs);
         ((AbstractModuleExclusion) two).unpackIntersection(specs);
 
-        return new IntersectionExclusion(specs);
+        return intern(new IntersectionExclusion(specs));
     }
 
     /**
      * Returns a spec that excludes only those modules and artifacts that are excluded by _both_ of the supplied exclude rules.
      */
-    public static ModuleExclusion union(ModuleExclusion one, ModuleExclusion two) {
+    public static ModuleExclusion union(final ModuleExclusion one, final ModuleExclusion two) {
         if (one == two) {
             return one;
         }
         if (one == EXCLUDE_NONE || two == EXCLUDE_NONE) {
             return EXCLUDE_NONE;
         }
+        return merge(true, one, two, new Callable<ModuleExclusion>() {
+            @Override
+            public ModuleExclusion call() {
+                return doUnion(one, two);
+            }
+        });
+    }
+
+    private static ModuleExclusion doUnion(ModuleExclusion one, ModuleExclusion two) {
         if (one.equals(two)) {
             return one;
         }
@@ -169,9 +217,22 @@ public class ModuleExclusions {
             }
         }
         if (specs.size() == 1) {
-            return specs.get(0);
+            return intern(specs.get(0));
+        }
+        return intern(new UnionExclusion(specs));
+    }
+
+    private static ModuleExclusion merge(boolean union, ModuleExclusion one, ModuleExclusion two, Callable<ModuleExclusion> action) {
+        // The operands may be given in either order
+        boolean swap = System.identityHashCode(one) > System.identityHashCode(two);
+        ModuleExclusion first = swap ? two : one;
+        ModuleExclusion second = swap ? one : two;
+        try {
+            Merges merges = MERGE_CACHE.get(first, NEW_MERGES);
+            return (union ? merges.unions : merges.intersections).get(second, action);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
-        return new UnionExclusion(specs);
     }
 
     /**
@@ -212,7 +273,7 @@ public class ModuleExclusions {
         if (merged.isEmpty()) {
             return ModuleExclusions.EXCLUDE_NONE;
         }
-        return new IntersectionExclusion(merged);
+        return intern(new IntersectionExclusion(merged));
     }
 
     private static boolean canMerge(AbstractModuleExclusion excludeSpec) {
@@ -274,7 +335,7 @@ public class ModuleExclusions {
         } else if (spec2 instanceof ModuleNameExcludeSpec) {
             // Intersection of group & module name exclude only excludes module with matching group + name
             ModuleNameExcludeSpec moduleNameExcludeSpec = (ModuleNameExcludeSpec) spec2;
-            merged.add(new ModuleIdExcludeSpec(spec1.group, moduleNameExcludeSpec.module));
+            merged.add(intern(new ModuleIdExcludeSpec(spec1.group, moduleNameExcludeSpec.module)));
         } else if (spec2 instanceof ModuleIdExcludeSpec) {
             // Intersection of group + module id exclude only excludes the module id if the excluded groups match
             ModuleIdExcludeSpec moduleIdExcludeSpec = (ModuleIdExcludeSpec) spec2;
@@ -303,4 +364,13 @@ public class ModuleExclusions {
             throw new UnsupportedOperationException(String.format("Cannot calculate intersection of exclude rules: %s, %s", spec1, spec2));
         }
     }
+
+    /**
+     * The unions and intersections of a spec with other specs, keyed by the other spec. Keys and results are compared by identity and weakly
+     * referenced, so that a result does not keep the specs it was calculated from alive.
+     */
+    private static class Merges {
+        private final Cache<ModuleExclusion, ModuleExclusion> unions = CacheBuilder.newBuilder().concurrencyLevel(1).weakKeys().weakValues().build();
+        private final Cache<ModuleExclusion, ModuleExclusion> intersections = CacheBuilder.newBuilder().concurrencyLevel(1).weakKeys().weakValues().build();
+    }
 }
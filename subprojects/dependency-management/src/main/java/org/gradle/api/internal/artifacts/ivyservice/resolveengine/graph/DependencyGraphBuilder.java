@@ -22,6 +22,7 @@ import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ModuleVersionSelector;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.artifacts.result.ComponentSelectionReason;
 import org.gradle.api.attributes.AttributesSchema;
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
@@ -75,10 +76,19 @@ public class DependencyGraphBuilder {
     private final DependencyToComponentIdResolver idResolver;
     private final ComponentMetaDataResolver metaDataResolver;
     private final AttributesSchema attributesSchema;
+    private final ResolveActionExecutor resolveActionExecutor;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
                                   ConflictHandler conflictHandler, Spec<? super DependencyMetadata> edgeFilter, AttributesSchema attributesSchema) {
+        this(componentIdResolver, componentMetaDataResolver, resolveContextToComponentResolver, conflictHandler, edgeFilter, attributesSchema, ResolveActionExecutor.SERIAL);
+    }
+
+    public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
+                                  ResolveContextToComponentResolver resolveContextToComponentResolver,
+                                  ConflictHandler conflictHandler, Spec<? super DependencyMetadata> edgeFilter, AttributesSchema attributesSchema,
+                                  ResolveActionExecutor resolveActionExecutor) {
+        this.resolveActionExecutor = resolveActionExecutor;
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -116,6 +126,7 @@ public class DependencyGraphBuilder {
                 // Calculate the outgoing edges of this configuration
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
+                prefetchSelectors(dependencies);
 
                 for (DependencyEdge dependency : dependencies) {
                     LOGGER.debug("Visiting dependency {}", dependency);
@@ -178,6 +189,34 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Resolves the selectors of the given edges that have not been resolved yet, along with the metadata of the components they select, using the
+     * resolve action executor. The graph is not changed, so the traversal that later consumes the results makes the same decisions in the same
+     * order as when nothing is prefetched.
+     */
+    private void prefetchSelectors(List<DependencyEdge> dependencies) {
+        if (resolveActionExecutor == ResolveActionExecutor.SERIAL || dependencies.size() < 2) {
+            return;
+        }
+        Set<ModuleVersionSelectorResolveState> seen = new HashSet<ModuleVersionSelectorResolveState>();
+        List<Runnable> actions = new ArrayList<Runnable>();
+        for (DependencyEdge dependency : dependencies) {
+            final ModuleVersionSelectorResolveState selector = dependency.selector;
+            if (selector.canPrefetch() && seen.add(selector)) {
+                actions.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        selector.prefetch();
+                    }
+                });
+            }
+        }
+        if (actions.size() > 1) {
+            LOGGER.debug("Resolving {} selectors concurrently.", actions.size());
+            resolveActionExecutor.runAll(actions);
+        }
+    }
+
     /**
      * Populates the result from the graph traversal state.
      */
@@ -344,6 +383,11 @@ public class DependencyGraphBuilder {
         public Set<ComponentArtifactMetadata> getArtifacts(ConfigurationMetadata metaData1) {
             return dependencyMetadata.getArtifacts(from.metaData, metaData1);
         }
+
+        @Override
+        public DependencyMetadata getDependencyMetadata() {
+            return dependencyMetadata;
+        }
     }
 
     /**
@@ -633,8 +677,11 @@ public class DependencyGraphBuilder {
                 return;
             }
 
-            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
-            resolver.resolve(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetadata), result);
+            DefaultBuildableComponentResolveResult result = firstReference.takePrefetchedMetaData();
+            if (result == null) {
+                result = new DefaultBuildableComponentResolveResult();
+                resolver.resolve(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetadata), result);
+            }
             if (result.getFailure() != null) {
                 failure = result.getFailure();
                 return;
@@ -903,6 +950,9 @@ public class DependencyGraphBuilder {
         ModuleResolveState targetModule;
         ModuleVersionResolveState targetModuleRevision;
         BuildableComponentIdResolveResult idResolveResult;
+        // Results calculated by prefetch(), used in place of resolving again on the traversal thread
+        private BuildableComponentIdResolveResult prefetchedIdResolveResult;
+        private DefaultBuildableComponentResolveResult prefetchedMetaData;
 
         private ModuleVersionSelectorResolveState(Long id, DependencyMetadata dependencyMetadata, DependencyToComponentIdResolver resolver, ResolveState resolveState) {
             this.id = id;
@@ -954,8 +1004,13 @@ public class DependencyGraphBuilder {
                 return null;
             }
 
-            idResolveResult = new DefaultBuildableComponentIdResolveResult();
-            resolver.resolve(dependencyMetadata, idResolveResult);
+            if (prefetchedIdResolveResult != null) {
+                idResolveResult = prefetchedIdResolveResult;
+                prefetchedIdResolveResult = null;
+            } else {
+                idResolveResult = new DefaultBuildableComponentIdResolveResult();
+                resolver.resolve(dependencyMetadata, idResolveResult);
+            }
             if (idResolveResult.getFailure() != null) {
                 failure = idResolveResult.getFailure();
                 return null;
@@ -963,6 +1018,10 @@ public class DependencyGraphBuilder {
 
             targetModuleRevision = resolveState.getRevision(idResolveResult.getModuleVersionId());
             targetModuleRevision.addResolver(this);
+            if (targetModuleRevision.firstReference != this) {
+                // Only the metadata prefetched by the first selector of a module version is used, so do not hold on to the rest
+                prefetchedMetaData = null;
+            }
             targetModuleRevision.selectionReason = idResolveResult.getSelectionReason();
             targetModule = targetModuleRevision.module;
             targetModule.addSelector(this);
@@ -971,9 +1030,52 @@ public class DependencyGraphBuilder {
         }
 
         public void restart(ModuleVersionResolveState moduleRevision) {
+            if (moduleRevision != targetModuleRevision) {
+                // The metadata prefetched for the evicted module version is not going to be used
+                prefetchedMetaData = null;
+            }
             this.targetModuleRevision = moduleRevision;
             this.targetModule = moduleRevision.module;
         }
+
+        /**
+         * Returns true when this selector refers to an external module and has not been resolved or prefetched yet.
+         */
+        boolean canPrefetch() {
+            return targetModuleRevision == null && failure == null && idResolveResult == null && prefetchedIdResolveResult == null
+                && dependencyMetadata.getSelector() instanceof ModuleComponentSelector;
+        }
+
+        /**
+         * Resolves this selector and the metadata of the selected component, without changing the graph. May be called from any thread, but not
+         * concurrently with other methods of this selector.
+         */
+        void prefetch() {
+            try {
+                BuildableComponentIdResolveResult idResult = new DefaultBuildableComponentIdResolveResult();
+                resolver.resolve(dependencyMetadata, idResult);
+                if (idResult.getFailure() == null && idResult.getMetaData() == null) {
+                    DefaultBuildableComponentResolveResult metaDataResult = new DefaultBuildableComponentResolveResult();
+                    resolveState.metaDataResolver.resolve(idResult.getId(), DefaultComponentOverrideMetadata.forDependency(dependencyMetadata), metaDataResult);
+                    prefetchedMetaData = metaDataResult;
+                }
+                prefetchedIdResolveResult = idResult;
+            } catch (Throwable e) {
+                // Resolve again on the traversal thread, so the failure is reported in the same way as without prefetching
+                LOGGER.debug("Failed to prefetch {}.", dependencyMetadata, e);
+                prefetchedIdResolveResult = null;
+                prefetchedMetaData = null;
+            }
+        }
+
+        /**
+         * Returns the prefetched metadata of the component selected by this selector, if any. The result is only returned once.
+         */
+        DefaultBuildableComponentResolveResult takePrefetchedMetaData() {
+            DefaultBuildableComponentResolveResult result = prefetchedMetaData;
+            prefetchedMetaData = null;
+            return result;
+        }
     }
 
     private static class DirectDependencyForcingResolver implements ModuleConflictResolver {
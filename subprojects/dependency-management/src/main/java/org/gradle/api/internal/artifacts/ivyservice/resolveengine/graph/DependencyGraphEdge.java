@@ -22,6 +22,7 @@ import org.gradle.api.artifacts.ModuleVersionSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
 import org.gradle.internal.component.model.ComponentArtifactMetadata;
 import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
 
 import java.util.Set;
 
@@ -44,4 +45,9 @@ public interface DependencyGraphEdge extends DependencyResult {
 
     @Nullable
     ModuleDependency getModuleDependency();
+
+    /**
+     * Returns the dependency of the source node that this edge was created for.
+     */
+    DependencyMetadata getDependencyMetadata();
 }
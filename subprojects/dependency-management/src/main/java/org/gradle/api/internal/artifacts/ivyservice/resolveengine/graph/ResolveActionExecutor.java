@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph;
+
+import java.util.List;
+
+/**
+ * Runs actions that resolve dependency metadata or download artifacts, possibly concurrently.
+ */
+public interface ResolveActionExecutor {
+    /**
+     * Runs the given actions on the calling thread, one after the other.
+     */
+    ResolveActionExecutor SERIAL = new ResolveActionExecutor() {
+        @Override
+        public void runAll(List<? extends Runnable> actions) {
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+    };
+
+    /**
+     * Runs the given actions and returns once all of them have completed. Actions must not fail.
+     */
+    void runAll(List<? extends Runnable> actions);
+}
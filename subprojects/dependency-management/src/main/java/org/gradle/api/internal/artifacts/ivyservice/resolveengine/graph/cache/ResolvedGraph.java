@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.internal.artifacts.ModuleVersionSelectorSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusionSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.serialize.OutputStreamBackedEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A dependency graph as it was visited by a {@link org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor}, along with
+ * what is needed to check that resolving the graph again would produce the same result.
+ */
+class ResolvedGraph {
+    final String inputs;
+    final long recordedAt;
+    final Long rootNode;
+    final List<String> moduleReplacements;
+    final List<Component> components;
+    final List<Node> nodes;
+    final List<Selector> selectors;
+    final List<Edge> edges;
+
+    ResolvedGraph(String inputs, long recordedAt, Long rootNode, List<String> moduleReplacements, List<Component> components, List<Node> nodes, List<Selector> selectors, List<Edge> edges) {
+        this.inputs = inputs;
+        this.recordedAt = recordedAt;
+        this.rootNode = rootNode;
+        this.moduleReplacements = moduleReplacements;
+        this.components = components;
+        this.nodes = nodes;
+        this.selectors = selectors;
+        this.edges = edges;
+    }
+
+    /**
+     * Calculates a hash of the dependencies declared by the given configuration, along with everything about them that the graph builder uses
+     * to decide which edges to follow. The configurations selected by each edge are checked separately.
+     */
+    static String hashDependencies(ConfigurationMetadata configuration) {
+        ModuleExclusionSerializer exclusionSerializer = new ModuleExclusionSerializer();
+        ComponentSelectorSerializer selectorSerializer = new ComponentSelectorSerializer();
+        ModuleVersionSelectorSerializer requestedSerializer = new ModuleVersionSelectorSerializer();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStreamBackedEncoder encoder = new OutputStreamBackedEncoder(bytes);
+        try {
+            encoder.writeBoolean(configuration.isTransitive());
+            exclusionSerializer.write(encoder, configuration.getExclusions());
+            List<? extends DependencyMetadata> dependencies = configuration.getDependencies();
+            encoder.writeSmallInt(dependencies.size());
+            for (DependencyMetadata dependency : dependencies) {
+                selectorSerializer.write(encoder, dependency.getSelector());
+                requestedSerializer.write(encoder, dependency.getRequested());
+                encoder.writeBoolean(dependency.isTransitive());
+                encoder.writeBoolean(dependency.isForce());
+                encoder.writeBoolean(dependency.isChanging());
+                exclusionSerializer.write(encoder, dependency.getExclusions(configuration));
+                encoder.writeSmallInt(dependency.getArtifacts().size());
+                for (IvyArtifactName artifact : dependency.getArtifacts()) {
+                    encoder.writeString(artifact.getName());
+                    encoder.writeString(artifact.getType());
+                    encoder.writeNullableString(artifact.getExtension());
+                    encoder.writeNullableString(artifact.getClassifier());
+                }
+            }
+            encoder.flush();
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return HashUtil.sha1(bytes.toByteArray()).asHexString();
+    }
+
+    static class Component {
+        final Long resultId;
+        final ModuleVersionIdentifier moduleVersion;
+        final ComponentIdentifier componentId;
+        final ComponentSelectionReason selectionReason;
+
+        Component(Long resultId, ModuleVersionIdentifier moduleVersion, ComponentIdentifier componentId, ComponentSelectionReason selectionReason) {
+            this.resultId = resultId;
+            this.moduleVersion = moduleVersion;
+            this.componentId = componentId;
+            this.selectionReason = selectionReason;
+        }
+    }
+
+    static class Node {
+        final Long nodeId;
+        final Long component;
+        final String configuration;
+        final String dependencies;
+        final List<Integer> incomingEdges;
+        final List<Integer> outgoingEdges;
+
+        Node(Long nodeId, Long component, String configuration, String dependencies, List<Integer> incomingEdges, List<Integer> outgoingEdges) {
+            this.nodeId = nodeId;
+            this.component = component;
+            this.configuration = configuration;
+            this.dependencies = dependencies;
+            this.incomingEdges = incomingEdges;
+            this.outgoingEdges = outgoingEdges;
+        }
+    }
+
+    static class Selector {
+        final Long resultId;
+        final ComponentSelector requested;
+
+        Selector(Long resultId, ComponentSelector requested) {
+            this.resultId = resultId;
+            this.requested = requested;
+        }
+    }
+
+    /**
+     * An edge, identified by its index in {@link #edges}. The dependency of the edge is identified by its index in the dependencies of the source node.
+     */
+    static class Edge {
+        final Long from;
+        final int dependency;
+        final Long selector;
+        final Long selected;
+        final ComponentSelectionReason reason;
+        final ModuleExclusion exclusions;
+
+        Edge(Long from, int dependency, Long selector, Long selected, ComponentSelectionReason reason, ModuleExclusion exclusions) {
+            this.from = from;
+            this.dependency = dependency;
+            this.selector = selector;
+            this.selected = selected;
+            this.reason = reason;
+            this.exclusions = exclusions;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.Action;
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.AttributesSchema;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.DefaultResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.BuildCommencedTimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An opt-in cache of resolved dependency graphs that is kept between builds. Each configuration of a build has an entry, keyed by the root directory
+ * of the build and the name of the configuration, which holds the graph visited when the configuration was last resolved along with a fingerprint of
+ * the repositories and resolution strategy used.
+ *
+ * <p>A cached graph is replayed in place of resolving the configuration when the fingerprint matches, no dynamic version or module of the graph has
+ * expired according to the {@link CachePolicy} of the configuration, and the dependencies of each node are the same as when the graph was recorded
+ * (see {@link ResolvedGraphReplay}). Configurations that use dependency substitution or component selection rules are not cached, as these rules
+ * cannot be fingerprinted.</p>
+ */
+public class ResolvedGraphCache {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.resolution.graphcache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedGraphCache.class);
+    private static final int FORMAT_VERSION = 1;
+
+    private final File baseDir;
+    private final String buildRootPath;
+    private final BuildCommencedTimeProvider timeProvider;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final boolean enabled;
+
+    public ResolvedGraphCache(File baseDir, File buildRootDir, BuildCommencedTimeProvider timeProvider, VersionSelectorScheme versionSelectorScheme) {
+        this(baseDir, buildRootDir, timeProvider, versionSelectorScheme, Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    ResolvedGraphCache(File baseDir, File buildRootDir, BuildCommencedTimeProvider timeProvider, VersionSelectorScheme versionSelectorScheme, boolean enabled) {
+        this.baseDir = baseDir;
+        this.buildRootPath = buildRootDir.getAbsolutePath();
+        this.timeProvider = timeProvider;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the entry for the given resolution, or null when its result cannot be cached.
+     */
+    @Nullable
+    public Entry entryFor(ResolveContext resolveContext, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules globalRules, Spec<? super DependencyMetadata> edgeFilter) {
+        if (!enabled || edgeFilter != Specs.SATISFIES_ALL) {
+            return null;
+        }
+        ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
+        if (resolutionStrategy.getDependencySubstitution().hasRules() || globalRules.getDependencySubstitutionRules().hasRules()) {
+            LOGGER.debug("Not caching resolved graph of {}, as it uses dependency substitution rules.", resolveContext.getDisplayName());
+            return null;
+        }
+        if (!resolutionStrategy.getComponentSelection().getRules().isEmpty()) {
+            LOGGER.debug("Not caching resolved graph of {}, as it uses component selection rules.", resolveContext.getDisplayName());
+            return null;
+        }
+
+        StringBuilder inputs = new StringBuilder();
+        inputs.append(FORMAT_VERSION).append('\n');
+        for (ResolutionAwareRepository repository : repositories) {
+            inputs.append("repository ").append(repository.createResolver().getId()).append('\n');
+        }
+        inputs.append("conflict-resolution ").append(resolutionStrategy.getConflictResolution().getClass().getName()).append('\n');
+        List<String> forcedModules = new ArrayList<String>();
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            forcedModules.add(forcedModule.getGroup() + ":" + forcedModule.getName() + ":" + forcedModule.getVersion());
+        }
+        Collections.sort(forcedModules);
+        for (String forcedModule : forcedModules) {
+            inputs.append("force ").append(forcedModule).append('\n');
+        }
+
+        // Configurations of different builds have the same names, so the root directory of the build is part of the key
+        File file = new File(baseDir, HashUtil.createCompactMD5(buildRootPath + "\n" + resolveContext.getDisplayName()) + ".bin");
+        return new Entry(resolveContext, file, HashUtil.createHash(inputs.toString(), "SHA1").asHexString(), globalRules.getModuleMetadataProcessor().getModuleReplacements());
+    }
+
+    static List<String> moduleReplacements(List<ResolvedGraph.Component> components, List<ResolvedGraph.Selector> selectors, ModuleReplacementsData replacementsData) {
+        Set<ModuleIdentifier> modules = new LinkedHashSet<ModuleIdentifier>();
+        for (ResolvedGraph.Component component : components) {
+            modules.add(component.moduleVersion.getModule());
+        }
+        for (ResolvedGraph.Selector selector : selectors) {
+            if (selector.requested instanceof ModuleComponentSelector) {
+                ModuleComponentSelector requested = (ModuleComponentSelector) selector.requested;
+                modules.add(DefaultModuleIdentifier.newId(requested.getGroup(), requested.getModule()));
+            }
+        }
+        List<String> replacements = new ArrayList<String>();
+        for (ModuleIdentifier module : modules) {
+            ModuleIdentifier replacement = replacementsData.getReplacementFor(module);
+            if (replacement != null) {
+                replacements.add(module + "->" + replacement);
+            }
+        }
+        Collections.sort(replacements);
+        return replacements;
+    }
+
+    public class Entry {
+        private final ResolveContext resolveContext;
+        private final File file;
+        private final String inputs;
+        private final ModuleReplacementsData moduleReplacements;
+
+        private Entry(ResolveContext resolveContext, File file, String inputs, ModuleReplacementsData moduleReplacements) {
+            this.resolveContext = resolveContext;
+            this.file = file;
+            this.inputs = inputs;
+            this.moduleReplacements = moduleReplacements;
+        }
+
+        /**
+         * Visits the cached graph, if it can be used.
+         *
+         * @return true if the cached graph was visited, false if the configuration needs to be resolved.
+         */
+        public boolean replay(ComponentMetaDataResolver metaDataResolver, AttributesSchema attributesSchema, DependencyGraphVisitor visitor) {
+            ResolvedGraph graph = read();
+            if (graph == null) {
+                return false;
+            }
+            String problem;
+            ResolvedGraphReplay replay = new ResolvedGraphReplay(graph);
+            try {
+                problem = checkInputs(graph);
+                if (problem == null) {
+                    problem = replay.rebuild(resolveContext, metaDataResolver, attributesSchema);
+                }
+                if (problem == null) {
+                    problem = checkModules(graph, replay);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.debug("Could not rebuild cached resolved graph of {}.", resolveContext.getDisplayName(), e);
+                problem = "it could not be rebuilt";
+            }
+            if (problem != null) {
+                LOGGER.info("Not using cached resolved graph of {}, as {}.", resolveContext.getDisplayName(), problem);
+                return false;
+            }
+            LOGGER.info("Using cached resolved graph of {}.", resolveContext.getDisplayName());
+            replay.visit(visitor);
+            return true;
+        }
+
+        /**
+         * Returns a visitor that passes the graph to the given visitor, and records it in this entry.
+         */
+        public DependencyGraphVisitor recordTo(DependencyGraphVisitor visitor) {
+            return new CompositeDependencyGraphVisitor(visitor, new ResolvedGraphRecorder(inputs, timeProvider.getCurrentTime(), moduleReplacements, new Action<ResolvedGraph>() {
+                @Override
+                public void execute(ResolvedGraph graph) {
+                    write(graph);
+                }
+            }));
+        }
+
+        private String checkInputs(ResolvedGraph graph) {
+            if (!graph.inputs.equals(inputs)) {
+                return "repositories or resolution strategy have changed";
+            }
+            if (!graph.moduleReplacements.equals(moduleReplacements(graph.components, graph.selectors, moduleReplacements))) {
+                return "module replacements have changed";
+            }
+            CachePolicy cachePolicy = resolveContext.getResolutionStrategy().getCachePolicy();
+            long age = timeProvider.getCurrentTime() - graph.recordedAt;
+            for (ResolvedGraph.Selector selector : graph.selectors) {
+                if (!(selector.requested instanceof ModuleComponentSelector)) {
+                    continue;
+                }
+                ModuleComponentSelector requested = (ModuleComponentSelector) selector.requested;
+                if (!versionSelectorScheme.parseSelector(requested.getVersion()).isDynamic()) {
+                    continue;
+                }
+                ModuleIdentifier module = DefaultModuleIdentifier.newId(requested.getGroup(), requested.getModule());
+                Set<ModuleVersionIdentifier> versions = new HashSet<ModuleVersionIdentifier>();
+                for (ResolvedGraph.Component component : graph.components) {
+                    if (component.moduleVersion.getModule().equals(module)) {
+                        versions.add(component.moduleVersion);
+                    }
+                }
+                if (cachePolicy.mustRefreshVersionList(module, versions, age)) {
+                    return "versions of " + module + " have expired";
+                }
+            }
+            return null;
+        }
+
+        private String checkModules(ResolvedGraph graph, ResolvedGraphReplay replay) {
+            CachePolicy cachePolicy = resolveContext.getResolutionStrategy().getCachePolicy();
+            long age = timeProvider.getCurrentTime() - graph.recordedAt;
+            for (DependencyGraphComponent component : replay.getComponents().values()) {
+                ComponentResolveMetadata metadata = component.getMetadata();
+                if (!(metadata.getComponentId() instanceof ModuleComponentIdentifier)) {
+                    continue;
+                }
+                ModuleComponentIdentifier id = (ModuleComponentIdentifier) metadata.getComponentId();
+                DefaultResolvedModuleVersion version = new DefaultResolvedModuleVersion(metadata.getId());
+                boolean expired = metadata.isChanging() ? cachePolicy.mustRefreshChangingModule(id, version, age) : cachePolicy.mustRefreshModule(id, version, age);
+                if (expired) {
+                    return "module " + id + " has expired";
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        private ResolvedGraph read() {
+            if (!file.isFile()) {
+                return null;
+            }
+            try {
+                KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(file));
+                try {
+                    if (decoder.readSmallInt() != FORMAT_VERSION) {
+                        return null;
+                    }
+                    return new ResolvedGraphSerializer().read(decoder);
+                } finally {
+                    decoder.close();
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not read cached resolved graph of {}.", resolveContext.getDisplayName(), e);
+                return null;
+            }
+        }
+
+        private void write(ResolvedGraph graph) {
+            File tempFile = null;
+            try {
+                baseDir.mkdirs();
+                // Other processes may be writing the same entry
+                tempFile = File.createTempFile(file.getName(), ".part", baseDir);
+                KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(tempFile));
+                try {
+                    encoder.writeSmallInt(FORMAT_VERSION);
+                    new ResolvedGraphSerializer().write(encoder, graph);
+                } finally {
+                    encoder.close();
+                }
+                // Readers either see the previous entry or the new one
+                if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                    throw new IllegalStateException("Could not rename " + tempFile + " to " + file);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not write cached resolved graph of {}.", resolveContext.getDisplayName(), e);
+                if (tempFile != null) {
+                    tempFile.delete();
+                }
+            }
+        }
+    }
+}
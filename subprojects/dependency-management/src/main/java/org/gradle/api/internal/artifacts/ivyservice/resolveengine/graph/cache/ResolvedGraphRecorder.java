@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the graph visited by the graph builder as a {@link ResolvedGraph}. Graphs that contain failures or client modules are not recorded.
+ */
+class ResolvedGraphRecorder implements DependencyGraphVisitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedGraphRecorder.class);
+
+    private final String inputs;
+    private final long recordedAt;
+    private final ModuleReplacementsData moduleReplacements;
+    private final Action<? super ResolvedGraph> onComplete;
+    private final Map<Long, ResolvedGraph.Component> components = new LinkedHashMap<Long, ResolvedGraph.Component>();
+    private final List<ResolvedGraph.Node> nodes = new ArrayList<ResolvedGraph.Node>();
+    private final List<ResolvedGraph.Selector> selectors = new ArrayList<ResolvedGraph.Selector>();
+    private final List<ResolvedGraph.Edge> edges = new ArrayList<ResolvedGraph.Edge>();
+    private final Map<DependencyGraphEdge, Integer> edgeIndexes = new IdentityHashMap<DependencyGraphEdge, Integer>();
+    private String notCacheableReason;
+
+    ResolvedGraphRecorder(String inputs, long recordedAt, ModuleReplacementsData moduleReplacements, Action<? super ResolvedGraph> onComplete) {
+        this.inputs = inputs;
+        this.recordedAt = recordedAt;
+        this.moduleReplacements = moduleReplacements;
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public void start(DependencyGraphNode root) {
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        DependencyGraphComponent component = node.getOwner();
+        if (components.containsKey(component.getResultId())) {
+            return;
+        }
+        if (component.getMetadata() == null) {
+            notCacheable("component " + component.getModuleVersion() + " could not be resolved");
+            return;
+        }
+        components.put(component.getResultId(), new ResolvedGraph.Component(component.getResultId(), component.getModuleVersion(), component.getComponentId(), component.getSelectionReason()));
+    }
+
+    @Override
+    public void visitSelector(DependencyGraphSelector selector) {
+        selectors.add(new ResolvedGraph.Selector(selector.getResultId(), selector.getRequested()));
+    }
+
+    @Override
+    public void visitEdges(DependencyGraphNode node) {
+        if (notCacheableReason != null) {
+            return;
+        }
+        try {
+            List<Integer> incoming = indexesOf(node.getIncomingEdges());
+            List<Integer> outgoing = indexesOf(node.getOutgoingEdges());
+            String dependencies = ResolvedGraph.hashDependencies(node.getMetadata());
+            nodes.add(new ResolvedGraph.Node(node.getNodeId(), node.getOwner().getResultId(), node.getResolvedConfigurationId().getConfiguration(), dependencies, incoming, outgoing));
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not record {}.", node, e);
+            notCacheable("node " + node.getResolvedConfigurationId() + " could not be recorded");
+        }
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+        if (notCacheableReason != null) {
+            LOGGER.debug("Not caching resolved graph, as {}.", notCacheableReason);
+            return;
+        }
+        List<ResolvedGraph.Component> componentList = new ArrayList<ResolvedGraph.Component>(components.values());
+        List<String> replacements = ResolvedGraphCache.moduleReplacements(componentList, selectors, moduleReplacements);
+        onComplete.execute(new ResolvedGraph(inputs, recordedAt, root.getNodeId(), replacements, componentList, nodes, selectors, edges));
+    }
+
+    private List<Integer> indexesOf(Collection<? extends DependencyGraphEdge> graphEdges) {
+        List<Integer> indexes = new ArrayList<Integer>(graphEdges.size());
+        for (DependencyGraphEdge edge : graphEdges) {
+            Integer index = edgeIndexes.get(edge);
+            if (index == null) {
+                index = edges.size();
+                edges.add(toEdge(edge));
+                edgeIndexes.put(edge, index);
+            }
+            indexes.add(index);
+        }
+        return indexes;
+    }
+
+    private ResolvedGraph.Edge toEdge(DependencyGraphEdge edge) {
+        if (edge.getFailure() != null) {
+            throw new IllegalStateException("Edge " + edge.getRequested() + " has failed.");
+        }
+        if (edge.getModuleDependency() instanceof ClientModule) {
+            throw new IllegalStateException("Edge " + edge.getRequested() + " refers to a client module.");
+        }
+        List<? extends DependencyMetadata> dependencies = edge.getFrom().getMetadata().getDependencies();
+        int dependency = -1;
+        for (int i = 0; i < dependencies.size(); i++) {
+            if (dependencies.get(i) == edge.getDependencyMetadata()) {
+                dependency = i;
+                break;
+            }
+        }
+        if (dependency < 0) {
+            throw new IllegalStateException("Dependency of edge " + edge.getRequested() + " is not declared by its source node.");
+        }
+        return new ResolvedGraph.Edge(edge.getFrom().getNodeId(), dependency, edge.getSelector().getResultId(), edge.getSelected(), edge.getReason(), edge.getExclusions());
+    }
+
+    private void notCacheable(String reason) {
+        if (notCacheableReason == null) {
+            notCacheableReason = reason;
+        }
+    }
+}
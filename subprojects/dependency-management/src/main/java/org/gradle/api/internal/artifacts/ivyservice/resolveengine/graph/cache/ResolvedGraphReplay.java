@@ -0,0 +1,469 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.attributes.AttributesSchema;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rebuilds a recorded {@link ResolvedGraph} from the current metadata of its components, and visits it in the same order as the graph builder
+ * visited the original graph.
+ *
+ * <p>The metadata of each component is resolved by id, so no dynamic versions are listed and no conflicts are resolved. The recorded graph is
+ * only used when the dependencies of each node and the configurations selected by each edge are the same as when the graph was recorded, as
+ * the graph builder would then make the same decisions again.</p>
+ */
+class ResolvedGraphReplay {
+    private final ResolvedGraph graph;
+    private final Map<Long, ReplayComponent> components = new LinkedHashMap<Long, ReplayComponent>();
+    private final Map<Long, ReplayNode> nodes = new LinkedHashMap<Long, ReplayNode>();
+    private final Map<Long, ReplaySelector> selectors = new LinkedHashMap<Long, ReplaySelector>();
+    private final List<ReplayEdge> edges = new ArrayList<ReplayEdge>();
+    private ReplayNode root;
+
+    ResolvedGraphReplay(ResolvedGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Rebuilds the graph, returning a description of why the recorded graph cannot be used, or null when it can be used.
+     */
+    @Nullable
+    String rebuild(ResolveContext resolveContext, ComponentMetaDataResolver metaDataResolver, AttributesSchema attributesSchema) {
+        String problem = link();
+        if (problem != null) {
+            return problem;
+        }
+        problem = resolveMetadata(resolveContext, metaDataResolver);
+        if (problem != null) {
+            return problem;
+        }
+        return validate(attributesSchema);
+    }
+
+    /**
+     * Returns the rebuilt components, keyed by result id.
+     */
+    Map<Long, ? extends DependencyGraphComponent> getComponents() {
+        return components;
+    }
+
+    void visit(DependencyGraphVisitor visitor) {
+        visitor.start(root);
+        for (ReplayNode node : nodes.values()) {
+            visitor.visitNode(node);
+        }
+        for (ReplaySelector selector : selectors.values()) {
+            visitor.visitSelector(selector);
+        }
+        for (ReplayNode node : nodes.values()) {
+            visitor.visitEdges(node);
+        }
+        visitor.finish(root);
+    }
+
+    private String link() {
+        for (ResolvedGraph.Component component : graph.components) {
+            components.put(component.resultId, new ReplayComponent(component));
+        }
+        for (ResolvedGraph.Node record : graph.nodes) {
+            ReplayComponent owner = components.get(record.component);
+            if (owner == null) {
+                return "node " + record.nodeId + " has no component";
+            }
+            ReplayNode node = new ReplayNode(record, owner);
+            owner.nodes.add(node);
+            nodes.put(record.nodeId, node);
+        }
+        root = nodes.get(graph.rootNode);
+        if (root == null) {
+            return "root node is missing";
+        }
+        for (ResolvedGraph.Selector record : graph.selectors) {
+            selectors.put(record.resultId, new ReplaySelector(record));
+        }
+        for (ResolvedGraph.Edge record : graph.edges) {
+            ReplayNode from = nodes.get(record.from);
+            ReplaySelector selector = selectors.get(record.selector);
+            ReplayComponent selected = components.get(record.selected);
+            if (from == null || selector == null || selected == null) {
+                return "edge " + edges.size() + " is incomplete";
+            }
+            edges.add(new ReplayEdge(record, from, selector, selected));
+        }
+        for (ResolvedGraph.Node record : graph.nodes) {
+            ReplayNode node = nodes.get(record.nodeId);
+            for (Integer index : record.incomingEdges) {
+                if (index >= edges.size()) {
+                    return "node " + record.nodeId + " has an unknown incoming edge";
+                }
+                node.incomingEdges.add(edges.get(index));
+            }
+            for (Integer index : record.outgoingEdges) {
+                if (index >= edges.size()) {
+                    return "node " + record.nodeId + " has an unknown outgoing edge";
+                }
+                node.outgoingEdges.add(edges.get(index));
+            }
+        }
+        return null;
+    }
+
+    private String resolveMetadata(ResolveContext resolveContext, ComponentMetaDataResolver metaDataResolver) {
+        ComponentResolveMetadata rootMetadata = resolveContext.toRootComponentMetaData();
+        if (!rootMetadata.getComponentId().equals(root.owner.record.componentId)) {
+            return "root component has changed";
+        }
+        String problem = root.owner.setMetadata(rootMetadata);
+        if (problem != null) {
+            return problem;
+        }
+
+        // The metadata of a component is resolved using the dependency of one of its incoming edges, so resolve the components in an order where the
+        // source of that edge is already known. Each component is reachable from the root, so every pass resolves at least one more component.
+        List<ReplayComponent> pending = new ArrayList<ReplayComponent>(components.values());
+        pending.remove(root.owner);
+        while (!pending.isEmpty()) {
+            List<ReplayComponent> remaining = new ArrayList<ReplayComponent>();
+            for (ReplayComponent component : pending) {
+                ReplayEdge edge = component.firstResolvedIncomingEdge();
+                if (edge == null) {
+                    remaining.add(component);
+                    continue;
+                }
+                DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                metaDataResolver.resolve(component.record.componentId, DefaultComponentOverrideMetadata.forDependency(edge.getDependencyMetadata()), result);
+                if (result.getFailure() != null) {
+                    return "component " + component.record.moduleVersion + " could not be resolved";
+                }
+                problem = component.setMetadata(result.getMetaData());
+                if (problem != null) {
+                    return problem;
+                }
+            }
+            if (remaining.size() == pending.size()) {
+                return "some components are not reachable from the root";
+            }
+            pending = remaining;
+        }
+        return null;
+    }
+
+    private String validate(AttributesSchema attributesSchema) {
+        for (ReplayEdge edge : edges) {
+            if (!edge.from.outgoingEdges.contains(edge)) {
+                return "edge " + edge.record.dependency + " from " + edge.from.getResolvedConfigurationId() + " is not an outgoing edge of its source";
+            }
+        }
+        for (ReplayNode node : nodes.values()) {
+            if (!ResolvedGraph.hashDependencies(node.metadata).equals(node.record.dependencies)) {
+                return "dependencies of " + node.getResolvedConfigurationId() + " have changed";
+            }
+        }
+        Map<ReplayEdge, Set<String>> recordedTargets = new LinkedHashMap<ReplayEdge, Set<String>>();
+        for (ReplayEdge edge : edges) {
+            recordedTargets.put(edge, new HashSet<String>());
+        }
+        for (ReplayNode node : nodes.values()) {
+            for (ReplayEdge edge : node.incomingEdges) {
+                if (node.owner != edge.selected) {
+                    return "edge to " + node.getResolvedConfigurationId() + " does not target the selected component";
+                }
+                recordedTargets.get(edge).add(node.record.configuration);
+            }
+        }
+        for (ReplayEdge edge : edges) {
+            Set<String> targets = new HashSet<String>();
+            for (ConfigurationMetadata target : edge.dependency.selectConfigurations(edge.from.owner.metadata, edge.from.metadata, edge.selected.metadata, attributesSchema)) {
+                targets.add(target.getName());
+            }
+            if (!targets.equals(recordedTargets.get(edge))) {
+                return "target configurations of " + edge.dependency.getSelector().getDisplayName() + " from " + edge.from.getResolvedConfigurationId() + " have changed";
+            }
+        }
+        return null;
+    }
+
+    private static class ReplayComponent implements DependencyGraphComponent {
+        private final ResolvedGraph.Component record;
+        private final List<ReplayNode> nodes = new ArrayList<ReplayNode>();
+        private ComponentResolveMetadata metadata;
+
+        ReplayComponent(ResolvedGraph.Component record) {
+            this.record = record;
+        }
+
+        String setMetadata(ComponentResolveMetadata metadata) {
+            if (!metadata.getId().equals(record.moduleVersion)) {
+                return "component " + record.moduleVersion + " now has id " + metadata.getId();
+            }
+            this.metadata = metadata;
+            for (ReplayNode node : nodes) {
+                node.metadata = metadata.getConfiguration(node.record.configuration);
+                if (node.metadata == null) {
+                    return "component " + record.moduleVersion + " no longer has configuration " + node.record.configuration;
+                }
+            }
+            for (ReplayNode node : nodes) {
+                for (ReplayEdge edge : node.outgoingEdges) {
+                    String problem = edge.setDependency();
+                    if (problem != null) {
+                        return problem;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        ReplayEdge firstResolvedIncomingEdge() {
+            for (ReplayNode node : nodes) {
+                for (ReplayEdge edge : node.incomingEdges) {
+                    if (edge.dependency != null) {
+                        return edge;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Long getResultId() {
+            return record.resultId;
+        }
+
+        @Override
+        public ModuleVersionIdentifier getModuleVersion() {
+            return record.moduleVersion;
+        }
+
+        @Override
+        public ComponentSelectionReason getSelectionReason() {
+            return record.selectionReason;
+        }
+
+        @Override
+        public ComponentIdentifier getComponentId() {
+            return metadata.getComponentId();
+        }
+
+        @Override
+        public ComponentResolveMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public Set<? extends DependencyGraphComponent> getDependents() {
+            Set<ReplayComponent> dependents = new LinkedHashSet<ReplayComponent>();
+            for (ReplayNode node : nodes) {
+                for (ReplayEdge edge : node.incomingEdges) {
+                    dependents.add(edge.from.owner);
+                }
+            }
+            return dependents;
+        }
+
+        @Override
+        public String toString() {
+            return record.moduleVersion.toString();
+        }
+    }
+
+    private static class ReplayNode implements DependencyGraphNode {
+        private final ResolvedGraph.Node record;
+        private final ReplayComponent owner;
+        private final Set<ReplayEdge> incomingEdges = new LinkedHashSet<ReplayEdge>();
+        private final Set<ReplayEdge> outgoingEdges = new LinkedHashSet<ReplayEdge>();
+        private ConfigurationMetadata metadata;
+
+        ReplayNode(ResolvedGraph.Node record, ReplayComponent owner) {
+            this.record = record;
+            this.owner = owner;
+        }
+
+        @Override
+        public Long getNodeId() {
+            return record.nodeId;
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getResolvedConfigurationId() {
+            return new ResolvedConfigurationIdentifier(owner.record.moduleVersion, record.configuration);
+        }
+
+        @Override
+        public DependencyGraphComponent getOwner() {
+            return owner;
+        }
+
+        @Override
+        public Set<ReplayEdge> getIncomingEdges() {
+            return incomingEdges;
+        }
+
+        @Override
+        public Set<ReplayEdge> getOutgoingEdges() {
+            return outgoingEdges;
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", owner, record.configuration);
+        }
+    }
+
+    private static class ReplaySelector implements DependencyGraphSelector {
+        private final ResolvedGraph.Selector record;
+
+        ReplaySelector(ResolvedGraph.Selector record) {
+            this.record = record;
+        }
+
+        @Override
+        public Long getResultId() {
+            return record.resultId;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return record.requested;
+        }
+    }
+
+    private static class ReplayEdge implements DependencyGraphEdge {
+        private final ResolvedGraph.Edge record;
+        private final ReplayNode from;
+        private final ReplaySelector selector;
+        private final ReplayComponent selected;
+        private DependencyMetadata dependency;
+
+        ReplayEdge(ResolvedGraph.Edge record, ReplayNode from, ReplaySelector selector, ReplayComponent selected) {
+            this.record = record;
+            this.from = from;
+            this.selector = selector;
+            this.selected = selected;
+        }
+
+        String setDependency() {
+            List<? extends DependencyMetadata> dependencies = from.metadata.getDependencies();
+            if (record.dependency >= dependencies.size()) {
+                return "dependencies of " + from.getResolvedConfigurationId() + " have changed";
+            }
+            dependency = dependencies.get(record.dependency);
+            return null;
+        }
+
+        @Override
+        public DependencyGraphNode getFrom() {
+            return from;
+        }
+
+        @Override
+        public DependencyGraphSelector getSelector() {
+            return selector;
+        }
+
+        @Override
+        public ModuleVersionSelector getRequestedModuleVersion() {
+            return dependency.getRequested();
+        }
+
+        @Override
+        public ModuleExclusion getExclusions() {
+            return record.exclusions;
+        }
+
+        @Override
+        public boolean isTransitive() {
+            return from.metadata.isTransitive() && dependency.isTransitive();
+        }
+
+        @Override
+        public Set<ComponentArtifactMetadata> getArtifacts(ConfigurationMetadata metaData) {
+            return dependency.getArtifacts(from.metadata, metaData);
+        }
+
+        @Override
+        public ModuleDependency getModuleDependency() {
+            if (dependency instanceof DslOriginDependencyMetadata) {
+                return ((DslOriginDependencyMetadata) dependency).getSource();
+            }
+            return null;
+        }
+
+        @Override
+        public DependencyMetadata getDependencyMetadata() {
+            return dependency;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return dependency.getSelector();
+        }
+
+        @Override
+        public ModuleVersionResolveException getFailure() {
+            return null;
+        }
+
+        @Override
+        public Long getSelected() {
+            return selected.record.resultId;
+        }
+
+        @Override
+        public ComponentSelectionReason getReason() {
+            return record.reason;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusionSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionReasonSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.Serializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+class ResolvedGraphSerializer implements Serializer<ResolvedGraph> {
+    private final ModuleVersionIdentifierSerializer moduleVersionSerializer = new ModuleVersionIdentifierSerializer();
+    private final ComponentIdentifierSerializer componentIdSerializer = new ComponentIdentifierSerializer();
+    private final ComponentSelectionReasonSerializer reasonSerializer = new ComponentSelectionReasonSerializer();
+    private final ComponentSelectorSerializer selectorSerializer = new ComponentSelectorSerializer();
+    private final ModuleExclusionSerializer exclusionSerializer = new ModuleExclusionSerializer();
+
+    @Override
+    public ResolvedGraph read(Decoder decoder) throws IOException {
+        String inputs = decoder.readString();
+        long recordedAt = decoder.readLong();
+        Long rootNode = decoder.readSmallLong();
+
+        int count = decoder.readSmallInt();
+        List<String> moduleReplacements = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            moduleReplacements.add(decoder.readString());
+        }
+
+        count = decoder.readSmallInt();
+        List<ResolvedGraph.Component> components = new ArrayList<ResolvedGraph.Component>(count);
+        for (int i = 0; i < count; i++) {
+            components.add(new ResolvedGraph.Component(decoder.readSmallLong(), moduleVersionSerializer.read(decoder), componentIdSerializer.read(decoder), reasonSerializer.read(decoder)));
+        }
+
+        count = decoder.readSmallInt();
+        List<ResolvedGraph.Node> nodes = new ArrayList<ResolvedGraph.Node>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(new ResolvedGraph.Node(decoder.readSmallLong(), decoder.readSmallLong(), decoder.readString(), decoder.readString(), readIndexes(decoder), readIndexes(decoder)));
+        }
+
+        count = decoder.readSmallInt();
+        List<ResolvedGraph.Selector> selectors = new ArrayList<ResolvedGraph.Selector>(count);
+        for (int i = 0; i < count; i++) {
+            selectors.add(new ResolvedGraph.Selector(decoder.readSmallLong(), selectorSerializer.read(decoder)));
+        }
+
+        count = decoder.readSmallInt();
+        List<ResolvedGraph.Edge> edges = new ArrayList<ResolvedGraph.Edge>(count);
+        for (int i = 0; i < count; i++) {
+            edges.add(new ResolvedGraph.Edge(decoder.readSmallLong(), decoder.readSmallInt(), decoder.readSmallLong(), decoder.readSmallLong(), reasonSerializer.read(decoder), exclusionSerializer.read(decoder)));
+        }
+
+        return new ResolvedGraph(inputs, recordedAt, rootNode, moduleReplacements, components, nodes, selectors, edges);
+    }
+
+    @Override
+    public void write(Encoder encoder, ResolvedGraph value) throws IOException {
+        encoder.writeString(value.inputs);
+        encoder.writeLong(value.recordedAt);
+        encoder.writeSmallLong(value.rootNode);
+
+        encoder.writeSmallInt(value.moduleReplacements.size());
+        for (String replacement : value.moduleReplacements) {
+            encoder.writeString(replacement);
+        }
+
+        encoder.writeSmallInt(value.components.size());
+        for (ResolvedGraph.Component component : value.components) {
+            encoder.writeSmallLong(component.resultId);
+            moduleVersionSerializer.write(encoder, component.moduleVersion);
+            componentIdSerializer.write(encoder, component.componentId);
+            reasonSerializer.write(encoder, component.selectionReason);
+        }
+
+        encoder.writeSmallInt(value.nodes.size());
+        for (ResolvedGraph.Node node : value.nodes) {
+            encoder.writeSmallLong(node.nodeId);
+            encoder.writeSmallLong(node.component);
+            encoder.writeString(node.configuration);
+            encoder.writeString(node.dependencies);
+            writeIndexes(encoder, node.incomingEdges);
+            writeIndexes(encoder, node.outgoingEdges);
+        }
+
+        encoder.writeSmallInt(value.selectors.size());
+        for (ResolvedGraph.Selector selector : value.selectors) {
+            encoder.writeSmallLong(selector.resultId);
+            selectorSerializer.write(encoder, selector.requested);
+        }
+
+        encoder.writeSmallInt(value.edges.size());
+        for (ResolvedGraph.Edge edge : value.edges) {
+            encoder.writeSmallLong(edge.from);
+            encoder.writeSmallInt(edge.dependency);
+            encoder.writeSmallLong(edge.selector);
+            encoder.writeSmallLong(edge.selected);
+            reasonSerializer.write(encoder, edge.reason);
+            exclusionSerializer.write(encoder, edge.exclusions);
+        }
+    }
+
+    private static List<Integer> readIndexes(Decoder decoder) throws IOException {
+        int count = decoder.readSmallInt();
+        List<Integer> indexes = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            indexes.add(decoder.readSmallInt());
+        }
+        return indexes;
+    }
+
+    private static void writeIndexes(Encoder encoder, List<Integer> indexes) throws IOException {
+        encoder.writeSmallInt(indexes.size());
+        for (Integer index : indexes) {
+            encoder.writeSmallInt(index);
+        }
+    }
+}
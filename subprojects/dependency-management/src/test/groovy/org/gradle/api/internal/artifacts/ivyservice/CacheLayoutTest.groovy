@@ -46,9 +46,9 @@ class CacheLayoutTest extends Specification {
         CacheLayout cacheLayout = CacheLayout.META_DATA
 
         then:
-        cacheLayout.key == 'metadata-2.23'
-        cacheLayout.version == VersionNumber.parse("2.23.0")
-        cacheLayout.formattedVersion == '2.23'
-        cacheLayout.getPath(new File('some/dir')) == new File('some/dir/metadata-2.23')
+        cacheLayout.key == 'metadata-2.24'
+        cacheLayout.version == VersionNumber.parse("2.24.0")
+        cacheLayout.formattedVersion == '2.24'
+        cacheLayout.getPath(new File('some/dir')) == new File('some/dir/metadata-2.24')
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolveActionExecutor
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+class CacheLockReleasingResolveActionExecutorTest extends Specification {
+    @Rule SetSystemProperties sysProp = new SetSystemProperties()
+    def cacheLockingManager = Mock(CacheLockingManager)
+    def executorFactory = Mock(ExecutorFactory)
+
+    def "resolves serially by default"() {
+        when:
+        def executor = CacheLockReleasingResolveActionExecutor.create(cacheLockingManager, executorFactory)
+
+        then:
+        executor == ResolveActionExecutor.SERIAL
+        0 * executorFactory._
+    }
+
+    def "resolves concurrently when more than one thread is configured via system property"() {
+        System.properties.setProperty(CacheLockReleasingResolveActionExecutor.MAX_THREADS_PROPERTY, "3")
+
+        when:
+        def executor = CacheLockReleasingResolveActionExecutor.create(cacheLockingManager, executorFactory)
+
+        then:
+        executor instanceof CacheLockReleasingResolveActionExecutor
+        1 * executorFactory.create("dependency resolution", 3) >> Stub(StoppableExecutor)
+    }
+}
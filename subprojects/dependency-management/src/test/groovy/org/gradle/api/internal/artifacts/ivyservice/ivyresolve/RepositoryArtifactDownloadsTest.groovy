@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve
+
+import org.gradle.internal.resolve.ArtifactResolveException
+import org.gradle.internal.resolve.result.DefaultBuildableArtifactResolveResult
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+
+class RepositoryArtifactDownloadsTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    @Rule
+    SetSystemProperties sysProp = new SetSystemProperties()
+
+    def "downloads one artifact at a time by default"() {
+        expect:
+        !new RepositoryArtifactDownloads().concurrent
+    }
+
+    def "downloads concurrently when more than one download is configured via system property"() {
+        System.properties.setProperty(RepositoryArtifactDownloads.MAX_DOWNLOADS_PROPERTY, "4")
+
+        expect:
+        new RepositoryArtifactDownloads().concurrent
+    }
+
+    def "records successful downloads for each repository"() {
+        def downloads = new RepositoryArtifactDownloads(2)
+        def file = tmpDir.file("artifact.jar") << "12345"
+
+        when:
+        download(downloads, "id1", "repo1", file)
+        download(downloads, "id1", "repo1", file)
+        download(downloads, "id2", "repo2", file)
+        def failed = new DefaultBuildableArtifactResolveResult()
+        downloads.download("id2", "repo2", { failed.failed(new ArtifactResolveException("broken")) } as Runnable, failed)
+
+        then:
+        downloads.statistics.keySet() == ["id1", "id2"] as Set
+        downloads.statistics.id1.name == "repo1"
+        downloads.statistics.id1.downloads == 2
+        downloads.statistics.id1.bytes == 10
+        downloads.statistics.id2.name == "repo2"
+        downloads.statistics.id2.downloads == 1
+        downloads.statistics.id2.bytes == 5
+
+        when:
+        downloads.stop()
+
+        then:
+        downloads.statistics.isEmpty()
+    }
+
+    def "records downloads from repositories with the same name separately"() {
+        def downloads = new RepositoryArtifactDownloads()
+        def file = tmpDir.file("artifact.jar") << "12345"
+
+        when:
+        download(downloads, "id1", "maven", file)
+        download(downloads, "id2", "maven", file)
+
+        then:
+        downloads.statistics.keySet() == ["id1", "id2"] as Set
+        downloads.statistics.id1.downloads == 1
+        downloads.statistics.id2.downloads == 1
+    }
+
+    def "does not limit downloads from a repository by default"() {
+        def downloads = new RepositoryArtifactDownloads()
+
+        when:
+        async {
+            start {
+                downloads.download("id", "repo", {
+                    instant.firstStarted
+                    thread.blockUntil.secondStarted
+                } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+            start {
+                thread.blockUntil.firstStarted
+                downloads.download("id", "repo", { instant.secondStarted } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "limits the number of concurrent downloads from a repository"() {
+        def downloads = new RepositoryArtifactDownloads(2)
+
+        when:
+        async {
+            start {
+                downloads.download("id", "repo", {
+                    instant.firstStarted
+                    thread.blockUntil.secondStarted
+                    thread.block()
+                    instant.firstFinished
+                } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+            start {
+                thread.blockUntil.firstStarted
+                downloads.download("id", "repo", {
+                    instant.secondStarted
+                    thread.blockUntil.firstFinished
+                } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+            start {
+                thread.blockUntil.secondStarted
+                downloads.download("id", "repo", { instant.thirdStarted } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+        }
+
+        then:
+        instant.thirdStarted > instant.firstFinished
+    }
+
+    def "limits concurrent downloads from repositories with the same name separately"() {
+        def downloads = new RepositoryArtifactDownloads(2)
+
+        when:
+        async {
+            start {
+                downloads.download("id1", "maven", {
+                    instant.firstStarted
+                    thread.blockUntil.thirdStarted
+                } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+            start {
+                thread.blockUntil.firstStarted
+                downloads.download("id1", "maven", {
+                    instant.secondStarted
+                    thread.blockUntil.thirdStarted
+                } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+            start {
+                thread.blockUntil.secondStarted
+                downloads.download("id2", "maven", { instant.thirdStarted } as Runnable, new DefaultBuildableArtifactResolveResult())
+            }
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
+    private static void download(RepositoryArtifactDownloads downloads, String repositoryId, String repositoryName, File file) {
+        def result = new DefaultBuildableArtifactResolveResult()
+        downloads.download(repositoryId, repositoryName, { result.resolved(file) } as Runnable, result)
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.internal.component.external.descriptor.MutableModuleDescriptorState
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class SegmentFileModuleMetadataStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder
+    def serializer = new ModuleMetadataSerializer()
+    def stores = []
+
+    def cleanup() {
+        stores*.close()
+    }
+
+    @Unroll
+    def "stores and loads module metadata when mapReads is #mapReads"() {
+        def store = store(mapReads)
+
+        when:
+        def hash = store.putModuleDescriptor(key("a"), metadata("a", "jar"))
+        store.putModuleDescriptor(key("b"), metadata("b", "pom"))
+
+        then:
+        hash != null
+        store.getModuleDescriptor(key("a")).packaging == "jar"
+        store.getModuleDescriptor(key("b")).packaging == "pom"
+        store.getModuleDescriptor(key("c")) == null
+
+        and:
+        def reopened = store(mapReads)
+        reopened.getModuleDescriptor(key("a")).packaging == "jar"
+        reopened.getModuleDescriptor(key("b")).packaging == "pom"
+
+        where:
+        mapReads << [true, false]
+    }
+
+    def "later record replaces earlier record for the same component"() {
+        def store = store()
+
+        when:
+        store.putModuleDescriptor(key("a"), metadata("a", "jar"))
+        store.putModuleDescriptor(key("a"), metadata("a", "war"))
+
+        then:
+        store.getModuleDescriptor(key("a")).packaging == "war"
+        store(true).getModuleDescriptor(key("a")).packaging == "war"
+    }
+
+    def "maps segment on open and reads appended records from the file"() {
+        def store = store()
+        store.putModuleDescriptor(key("a"), metadata("a", "jar"))
+        def mappedLength = store.mappedLength
+
+        when:
+        store.putModuleDescriptor(key("b"), metadata("b", "pom"))
+        store.putModuleDescriptor(key("c"), metadata("c", "war"))
+
+        then:
+        store.getModuleDescriptor(key("a")).packaging == "jar"
+        store.getModuleDescriptor(key("b")).packaging == "pom"
+        store.getModuleDescriptor(key("c")).packaging == "war"
+        store.mappedLength == mappedLength
+
+        and:
+        def reopened = store()
+        reopened.getModuleDescriptor(key("b")).packaging == "pom"
+        reopened.mappedLength == reopened.segmentFile.length()
+    }
+
+    def "does not map segment when mapReads is false"() {
+        def store = store(false)
+
+        when:
+        store.putModuleDescriptor(key("a"), metadata("a", "jar"))
+
+        then:
+        store.getModuleDescriptor(key("a")).packaging == "jar"
+        store.mappedLength == 0
+    }
+
+    def "discards record that was not completely written"() {
+        def store = store()
+        store.putModuleDescriptor(key("a"), metadata("a", "jar"))
+        store.putModuleDescriptor(key("b"), metadata("b", "jar"))
+        store.close()
+        def segment = store.segmentFile
+        def raf = new RandomAccessFile(segment, "rw")
+        raf.setLength(segment.length() - 3)
+        raf.close()
+
+        when:
+        def reopened = store()
+
+        then:
+        reopened.getModuleDescriptor(key("a")).packaging == "jar"
+        reopened.getModuleDescriptor(key("b")) == null
+
+        when:
+        reopened.putModuleDescriptor(key("b"), metadata("b", "pom"))
+
+        then:
+        store().getModuleDescriptor(key("b")).packaging == "pom"
+    }
+
+    def "sees records written by another instance"() {
+        def store1 = store()
+        def store2 = store()
+        store1.putModuleDescriptor(key("a"), metadata("a", "jar"))
+
+        expect:
+        store2.getModuleDescriptor(key("a")).packaging == "jar"
+
+        when:
+        store2.putModuleDescriptor(key("b"), metadata("b", "jar"))
+        store2.putModuleDescriptor(key("a"), metadata("a", "war"))
+
+        then:
+        store1.getModuleDescriptor(key("b")).packaging == "jar"
+        store1.getModuleDescriptor(key("a")).packaging == "war"
+    }
+
+    def "compacts segment once most records have been replaced"() {
+        def store1 = store()
+        def store2 = store()
+        store1.putModuleDescriptor(key("b"), metadata("b", "pom"))
+        store2.getModuleDescriptor(key("b"))
+        def initialSegment = store1.segmentFile
+
+        when:
+        while (initialSegment.length() < SegmentFileModuleMetadataStore.COMPACTION_THRESHOLD_BYTES) {
+            store1.putModuleDescriptor(key("a"), metadata("a", "jar"))
+        }
+        store1.compactIfRequired()
+
+        then:
+        store1.segmentFile != initialSegment
+        store1.segmentFile.length() < 1024
+        store1.getModuleDescriptor(key("a")).packaging == "jar"
+        store1.getModuleDescriptor(key("b")).packaging == "pom"
+
+        and:
+        store2.getModuleDescriptor(key("a")).packaging == "jar"
+        store2.getModuleDescriptor(key("b")).packaging == "pom"
+        store2.segmentFile == store1.segmentFile
+    }
+
+    def "does not compact segment when most records are live"() {
+        def store = store()
+        store.putModuleDescriptor(key("a"), metadata("a", "jar"))
+        def segment = store.segmentFile
+
+        when:
+        store.compactIfRequired()
+
+        then:
+        store.segmentFile == segment
+    }
+
+    private SegmentFileModuleMetadataStore store(boolean mapReads = true) {
+        def store = new SegmentFileModuleMetadataStore(temporaryFolder.testDirectory, serializer, mapReads)
+        stores << store
+        return store
+    }
+
+    private static ModuleComponentAtRepositoryKey key(String module) {
+        return new ModuleComponentAtRepositoryKey("repositoryId", DefaultModuleComponentIdentifier.newId("org.test", module, "1.0"))
+    }
+
+    private static ModuleComponentResolveMetadata metadata(String module, String packaging) {
+        def id = DefaultModuleComponentIdentifier.newId("org.test", module, "1.0")
+        return new DefaultMutableMavenModuleResolveMetadata(id, new MutableModuleDescriptorState(id), packaging, false, []).asImmutable()
+    }
+}
@@ -27,6 +27,7 @@ import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
 import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolveActionExecutor
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphPathResolver
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
@@ -105,6 +106,42 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, a, b, c)
     }
 
+    def "resolves selectors of a configuration concurrently and builds the same graph"() {
+        given:
+        def threads = Collections.synchronizedSet(new HashSet<Thread>())
+        def executor = new ResolveActionExecutor() {
+            @Override
+            void runAll(List<? extends Runnable> actions) {
+                actions.reverse().collect { action ->
+                    Thread.start {
+                        threads << Thread.currentThread()
+                        action.run()
+                    }
+                }*.join()
+            }
+        }
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, new DefaultConflictHandler(conflictResolver, moduleReplacements), Specs.satisfyAll(), attributesSchema, executor)
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        def e = revision("e")
+        traverses root, a
+        traverses root, b
+        traverses root, c
+        traverses a, d
+        traverses a, e
+        doesNotResolve b, d
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b, c, d, e)
+        threads.size() == 5
+    }
+
     def "honors component replacements"() {
         given:
         def a = revision('a') // a->c
@@ -20,9 +20,12 @@ import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.internal.component.external.descriptor.DefaultExclude
 import org.gradle.internal.component.model.DefaultIvyArtifactName
 import org.gradle.internal.component.model.Exclude
+import org.gradle.test.fixtures.ConcurrentTestUtil
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.lang.ref.WeakReference
+
 import static ModuleExclusions.excludeAny
 import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions.excludeNone
 
@@ -764,6 +767,47 @@ class DefaultModuleExclusionTest extends Specification {
         return spec.moduleId.group == rule.moduleId.group && spec.moduleId.name == rule.moduleId.name
     }
 
+    def "specs with the same rules are the same instance"() {
+        def rule1 = excludeRule("org", "module")
+        def rule2 = excludeRule("org", "module2")
+        def rule3 = excludeRule("org2", "*")
+
+        expect:
+        excludeAny(rule1, rule2).is(excludeAny(rule2, rule1))
+        intersect(excludeAny(rule1), excludeAny(rule3)).is(excludeAny(rule1, rule3))
+        union(excludeAny(rule1, rule2), excludeAny(rule2, rule3)).is(union(excludeAny(rule2, rule3), excludeAny(rule1, rule2)))
+    }
+
+    def "does not keep specs alive once they have been merged"() {
+        when:
+        def references = mergeAndForget()
+
+        then:
+        ConcurrentTestUtil.poll(10) {
+            System.gc()
+            assert references.every { it.get() == null }
+        }
+    }
+
+    private List<WeakReference<ModuleExclusion>> mergeAndForget() {
+        def one = excludeAny(excludeRule("unreferenced", "module"))
+        def two = excludeAny(excludeRule("unreferenced", "module2"), excludeGroupRule("unreferenced2"))
+        def merged = [ModuleExclusions.union(one, two), ModuleExclusions.intersect(one, two)]
+        return ([one, two] + merged).collect { new WeakReference<ModuleExclusion>(it) }
+    }
+
+    def "intersection matches modules using indexed and other rules"() {
+        def spec = excludeAny(excludeRule("org", "module"), excludeModuleRule("module2"), excludeGroupRule("org2"), regexpExcludeRule("regexp-\\d+", "module\\d+"), excludeArtifactRule("a", "jar", "jar"))
+
+        expect:
+        spec.excludeModule(moduleId("org", "module"))
+        spec.excludeModule(moduleId("other", "module2"))
+        spec.excludeModule(moduleId("org2", "anything"))
+        spec.excludeModule(moduleId("regexp-12", "module3"))
+        !spec.excludeModule(moduleId("org", "module3"))
+        !spec.excludeModule(moduleId("regexp", "module"))
+    }
+
     def moduleId(String group, String name) {
         return DefaultModuleIdentifier.newId(group, name);
     }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes
+
+import org.gradle.internal.component.external.descriptor.DefaultExclude
+import org.gradle.internal.serialize.SerializerSpec
+
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions.excludeAny
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions.excludeNone
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions.intersect
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions.union
+
+class ModuleExclusionSerializerTest extends SerializerSpec {
+    private serializer = new ModuleExclusionSerializer()
+
+    def "serializes simple exclusions"() {
+        expect:
+        check(excludeNone())
+        check(excludeAny(excludeRule("*", "*")))
+        check(excludeAny(excludeRule("org", "module")))
+        check(excludeAny(excludeRule("*", "module")))
+        check(excludeAny(excludeRule("org", "*")))
+        check(excludeAny(excludeRule("*", "*", "a", "jar", "jar")))
+        check(excludeAny(new DefaultExclude("org.*", "module", "*", "*", "*", new String[0], "regexp")))
+    }
+
+    def "serializes composite exclusions"() {
+        def spec1 = excludeAny(excludeRule("org", "module"), excludeRule("org", "module2"))
+        def spec2 = excludeAny(excludeRule("org", "module"), excludeRule("*", "*", "a", "jar", "jar"))
+
+        expect:
+        check(spec1)
+        check(union(spec1, spec2))
+        check(intersect(spec1, spec2))
+    }
+
+    void check(ModuleExclusion exclusion) {
+        def result = serialize(exclusion, serializer)
+        assert result == exclusion
+    }
+
+    def excludeRule(String org, String module, String name = "*", String type = "*", String ext = "*") {
+        new DefaultExclude(org, module, name, type, ext, new String[0], PatternMatchers.EXACT)
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache
+
+import org.gradle.StartParameter
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.api.attributes.AttributesSchema
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.ResolveContext
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.StartParameterResolutionOverride
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.DefaultCachePolicy
+import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.LatestConflictResolution
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ModuleConflictResolver
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler
+import org.gradle.api.internal.attributes.AttributeContainerInternal
+import org.gradle.api.specs.Specs
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadataWrapper
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver
+import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver
+import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.BuildCommencedTimeProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+import static org.gradle.internal.component.local.model.TestComponentIdentifiers.newProjectId
+
+class ResolvedGraphCacheTest extends Specification {
+    private static final long HOUR = 60 * 60 * 1000
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder
+    def attributesSchema = Stub(AttributesSchema)
+    def attributes = Stub(AttributeContainerInternal) {
+        isEmpty() >> true
+    }
+    def cachePolicy = new DefaultCachePolicy()
+    def resolutionStrategy = Stub(ResolutionStrategyInternal) {
+        getCachePolicy() >> cachePolicy
+        getConflictResolution() >> new LatestConflictResolution()
+    }
+    def root = project("root")
+    def resolveContext = Stub(ResolveContext) {
+        getName() >> "root"
+        getDisplayName() >> "configuration ':root'"
+        getResolutionStrategy() >> resolutionStrategy
+        toRootComponentMetaData() >> { root }
+    }
+    def modules = [:]
+    def idResolver = Stub(DependencyToComponentIdResolver) {
+        resolve(_, _) >> { DependencyMetadata dependency, BuildableComponentIdResolveResult result ->
+            def target = modules[dependency.requested.name]
+            result.resolved(target.componentId, target.id)
+        }
+    }
+    def metaDataResolver = Stub(ComponentMetaDataResolver) {
+        resolve(_, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata override, BuildableComponentResolveResult result ->
+            result.resolved(modules[id.module])
+        }
+    }
+    def now = 100 * HOUR
+    def timeProvider = Stub(BuildCommencedTimeProvider) {
+        getCurrentTime() >> { now }
+    }
+    def cacheDir = temporaryFolder.file("resolved-graphs")
+    def cache = cache(temporaryFolder.file("build"))
+    boolean replayed
+
+    def "replays the same graph as a fresh resolution"() {
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        dependsOn root, a
+        dependsOn root, b
+        dependsOn a, c
+        dependsOn b, c
+
+        when:
+        def recorded = resolve()
+
+        then:
+        !replayed
+        recorded.nodes.contains("group:c:1.0(default)")
+
+        when:
+        now += HOUR
+        def result = resolve()
+
+        then:
+        replayed
+        result.events == recorded.events
+        result.events == resolveWithoutCache().events
+    }
+
+    def "does not replay graph once a dynamic version has expired"() {
+        def a = revision("a")
+        dependsOn root, a, "1.+"
+        resolve()
+
+        when:
+        now += 23 * HOUR
+        resolve()
+
+        then:
+        replayed
+
+        when:
+        now += 2 * HOUR
+        resolve()
+
+        then:
+        !replayed
+    }
+
+    def "does not replay graph once a changing module has expired"() {
+        def a = changingRevision("a")
+        dependsOn root, a
+        resolve()
+
+        when:
+        now += 23 * HOUR
+        resolve()
+
+        then:
+        replayed
+
+        when:
+        now += 2 * HOUR
+        resolve()
+
+        then:
+        !replayed
+    }
+
+    def "replays graph with expired dynamic versions when offline"() {
+        def a = revision("a")
+        dependsOn root, a, "1.+"
+        resolve()
+        def startParameter = new StartParameter()
+        startParameter.offline = true
+        new StartParameterResolutionOverride(startParameter).addResolutionRules(cachePolicy)
+
+        when:
+        now += 48 * HOUR
+        resolve()
+
+        then:
+        replayed
+    }
+
+    def "does not replay graph when refreshing dependencies"() {
+        def a = revision("a")
+        dependsOn root, a
+        resolve()
+        def startParameter = new StartParameter()
+        startParameter.refreshDependencies = true
+        new StartParameterResolutionOverride(startParameter).addResolutionRules(cachePolicy)
+
+        when:
+        now += 1
+        resolve()
+
+        then:
+        !replayed
+    }
+
+    def "resolves again when the dependencies of a node have changed"() {
+        def a = revision("a")
+        def b = revision("b")
+        dependsOn root, a
+        resolve()
+
+        when:
+        def changedA = revision("a")
+        dependsOn changedA, b
+        def result = resolve()
+
+        then:
+        !replayed
+        result.nodes.contains("group:b:1.0(default)")
+        result.events == resolveWithoutCache().events
+
+        when:
+        def replayedResult = resolve()
+
+        then:
+        replayed
+        replayedResult.events == result.events
+    }
+
+    def "keeps separate entries for builds with different root directories"() {
+        def a = revision("a")
+        dependsOn root, a
+        resolve()
+
+        when:
+        resolve(cache(temporaryFolder.file("other-build")))
+
+        then:
+        !replayed
+
+        when:
+        resolve()
+
+        then:
+        replayed
+    }
+
+    def "does not leave temporary files behind"() {
+        def a = revision("a")
+        dependsOn root, a
+
+        when:
+        resolve()
+        resolve(cache(temporaryFolder.file("other-build")))
+
+        then:
+        cacheDir.list().length == 2
+        cacheDir.list().every { it.endsWith(".bin") }
+    }
+
+    def "does not cache graph when disabled"() {
+        def disabled = new ResolvedGraphCache(cacheDir, temporaryFolder.file("build"), timeProvider, new DefaultVersionSelectorScheme(new DefaultVersionComparator()), false)
+
+        expect:
+        disabled.entryFor(resolveContext, [], GlobalDependencyResolutionRules.NO_OP, Specs.satisfyAll()) == null
+    }
+
+    private ResolvedGraphCache cache(File buildRootDir) {
+        return new ResolvedGraphCache(cacheDir, buildRootDir, timeProvider, new DefaultVersionSelectorScheme(new DefaultVersionComparator()), true)
+    }
+
+    private RecordingVisitor resolve(ResolvedGraphCache cache = this.cache) {
+        def visitor = new RecordingVisitor()
+        def entry = cache.entryFor(resolveContext, [], GlobalDependencyResolutionRules.NO_OP, Specs.satisfyAll())
+        replayed = entry.replay(metaDataResolver, attributesSchema, visitor)
+        if (!replayed) {
+            builder().resolve(resolveContext, entry.recordTo(visitor))
+        }
+        return visitor
+    }
+
+    private RecordingVisitor resolveWithoutCache() {
+        def visitor = new RecordingVisitor()
+        builder().resolve(resolveContext, visitor)
+        return visitor
+    }
+
+    private DependencyGraphBuilder builder() {
+        def moduleResolver = Stub(ResolveContextToComponentResolver) {
+            resolve(_, _) >> { it[1].resolved(root) }
+        }
+        return new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, new DefaultConflictHandler(Stub(ModuleConflictResolver), ModuleReplacementsData.NO_OP), Specs.satisfyAll(), attributesSchema)
+    }
+
+    def revision(String name) {
+        def id = newId("group", name, "1.0")
+        def metaData = new DefaultLocalComponentMetadata(id, DefaultModuleComponentIdentifier.newId(id), "release", attributesSchema)
+        addDefaultConfiguration(metaData)
+        modules[name] = metaData
+        return metaData
+    }
+
+    def changingRevision(String name) {
+        def id = newId("group", name, "1.0")
+        def metaData = new DefaultLocalComponentMetadata(id, DefaultModuleComponentIdentifier.newId(id), "integration", attributesSchema) {
+            @Override
+            boolean isChanging() {
+                return true
+            }
+        }
+        addDefaultConfiguration(metaData)
+        modules[name] = metaData
+        return metaData
+    }
+
+    def project(String name) {
+        def metaData = new DefaultLocalComponentMetadata(newId("group", name, "1.0"), newProjectId(":${name}"), "release", attributesSchema)
+        addDefaultConfiguration(metaData)
+        metaData.addConfiguration(name, "${name}Config", ["default"] as Set<String>, ["default", name] as Set<String>, true, true, attributes, true, true)
+        return metaData
+    }
+
+    private void addDefaultConfiguration(DefaultLocalComponentMetadata metaData) {
+        metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ["default"] as Set<String>, true, true, attributes, true, true)
+    }
+
+    def dependsOn(ComponentResolveMetadata from, ComponentResolveMetadata to, String version = to.id.version) {
+        def selector = newSelector(to.id.group, to.id.name, version)
+        def dependencyMetaData = new LocalComponentDependencyMetadata(DefaultModuleComponentSelector.newSelector(selector), selector, "default", null, "default",
+            [] as Set<IvyArtifactName>, [], false, false, true)
+        from.getDependencies().add(new DslOriginDependencyMetadataWrapper(dependencyMetaData, Stub(ModuleDependency)))
+    }
+
+    static class RecordingVisitor implements DependencyGraphVisitor {
+        final List<String> events = []
+        final List<String> nodes = []
+
+        @Override
+        void start(DependencyGraphNode root) {
+            events << "start ${root.resolvedConfigurationId}".toString()
+        }
+
+        @Override
+        void visitNode(DependencyGraphNode node) {
+            nodes << node.resolvedConfigurationId.toString()
+            events << "node ${node.nodeId} ${node.resolvedConfigurationId} ${node.owner.componentId} ${node.owner.selectionReason.description}".toString()
+        }
+
+        @Override
+        void visitSelector(DependencyGraphSelector selector) {
+            events << "selector ${selector.resultId} ${selector.requested}".toString()
+        }
+
+        @Override
+        void visitEdges(DependencyGraphNode node) {
+            node.outgoingEdges.each {
+                events << "edge ${it.from.nodeId} ${it.requested} -> ${it.selected} ${it.reason.description} transitive: ${it.transitive}".toString()
+            }
+            node.incomingEdges.each {
+                events << "incoming ${node.nodeId} from ${it.from.nodeId}".toString()
+            }
+        }
+
+        @Override
+        void finish(DependencyGraphNode root) {
+            events << "finish ${root.nodeId}".toString()
+        }
+    }
+}
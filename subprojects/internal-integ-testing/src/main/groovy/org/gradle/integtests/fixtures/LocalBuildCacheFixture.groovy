@@ -45,6 +45,8 @@ trait LocalBuildCacheFixture {
     }
 
     List<TestFile> listCacheFiles() {
-        cacheDir.listFiles().findAll { it.name ==~ /\p{XDigit}{32}/}.sort()
+        cacheDir.listFiles().findAll { it.directory && it.name ==~ /\p{XDigit}{2}/ }.collectMany { shard ->
+            shard.listFiles().findAll { it.name ==~ /\p{XDigit}{32}/ }
+        }.sort()
     }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.os.OperatingSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the file managers of finished in-process compilations, so that the next compilation can reuse the archives that a file manager has
+ * already opened and indexed, such as the jars on the classpath and the symbol file of the JDK.
+ *
+ * <p>A file manager is only reused when none of the archives on the classpath of the next compilation have changed since the file manager last
+ * saw them. Archives are compared by the hash of their contents, which is only computed again when the size or timestamp of an archive changes.
+ * A file manager that has seen a changed archive is closed and discarded. The size, timestamp and hash are kept for a bounded number of archives,
+ * and are computed again for an archive that has been forgotten.</p>
+ *
+ * <p>The pool is used when the {@value #ENABLED_PROPERTY} system property is set in the build process. It is not used on Windows, where an
+ * archive that is held open cannot be deleted, nor for compilations that use options of Java 9 or later that change how the file manager
+ * locates classes, such as {@code --release} or a module path. The pool lives for a build session, and closes its file managers when the
+ * session ends.</p>
+ */
+public class JavaFileManagerPool implements Stoppable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.java.compile.reusefilemanagers";
+    private static final Logger LOGGER = LoggerFactory.getLogger(JavaFileManagerPool.class);
+    private static final int MAX_ARCHIVES = 10000;
+    private static final Set<String> UNSUPPORTED_OPTIONS = ImmutableSet.of(
+        "--release", "--system", "--module-path", "-p", "--upgrade-module-path", "--module-source-path", "--patch-module", "--add-modules",
+        "--limit-modules", "--add-reads", "--add-exports"
+    );
+    private static final StandardLocation[] LOCATIONS = {
+        StandardLocation.CLASS_OUTPUT, StandardLocation.SOURCE_OUTPUT, StandardLocation.CLASS_PATH, StandardLocation.SOURCE_PATH,
+        StandardLocation.ANNOTATION_PROCESSOR_PATH, StandardLocation.PLATFORM_CLASS_PATH
+    };
+
+    private final int maxIdle;
+    private final Deque<PooledFileManager> idle = new ArrayDeque<PooledFileManager>();
+    private final Cache<File, ArchiveState> archives;
+    private boolean stopped;
+
+    public JavaFileManagerPool(int maxIdle) {
+        this(maxIdle, MAX_ARCHIVES);
+    }
+
+    JavaFileManagerPool(int maxIdle, int maxArchives) {
+        this.maxIdle = maxIdle;
+        this.archives = CacheBuilder.newBuilder().maximumSize(maxArchives).build();
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) && !OperatingSystem.current().isWindows();
+    }
+
+    /**
+     * Returns whether a file manager from this pool can be used for a compilation with the given options.
+     */
+    public static boolean supportsOptions(Iterable<String> options) {
+        for (String option : options) {
+            int separator = option.indexOf('=');
+            if (UNSUPPORTED_OPTIONS.contains(separator < 0 ? option : option.substring(0, separator))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a file manager for a compilation with the given classpath, reusing an idle file manager if there is one that has not seen
+     * a different version of any archive on the classpath.
+     */
+    public PooledFileManager acquire(JavaCompiler compiler, @Nullable Charset charset, Iterable<File> classpath) {
+        Map<File, HashCode> archiveHashes = hashArchives(classpath);
+        PooledFileManager fileManager = takeIdle(compiler, charset, archiveHashes);
+        if (fileManager == null) {
+            fileManager = new PooledFileManager(compiler.getClass().getName(), charset, compiler.getStandardFileManager(null, null, charset));
+        }
+        fileManager.archivesSeen(archiveHashes);
+        return fileManager;
+    }
+
+    @Nullable
+    private PooledFileManager takeIdle(JavaCompiler compiler, @Nullable Charset charset, Map<File, HashCode> archiveHashes) {
+        synchronized (idle) {
+            Iterator<PooledFileManager> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                PooledFileManager candidate = iterator.next();
+                if (!candidate.compilerType.equals(compiler.getClass().getName()) || !equal(candidate.charset, charset)) {
+                    continue;
+                }
+                iterator.remove();
+                if (candidate.isUpToDate(archiveHashes) && candidate.reset()) {
+                    return candidate;
+                }
+                LOGGER.debug("Discarding Java file manager that has seen a changed classpath archive.");
+                candidate.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a file manager to the pool after its compilation has finished.
+     */
+    public void release(PooledFileManager fileManager) {
+        synchronized (idle) {
+            if (!stopped && idle.size() < maxIdle) {
+                idle.addFirst(fileManager);
+                return;
+            }
+        }
+        fileManager.close();
+    }
+
+    /**
+     * Closes a file manager whose compilation did not finish normally.
+     */
+    public void discard(PooledFileManager fileManager) {
+        fileManager.close();
+    }
+
+    /**
+     * Closes the idle file managers. File managers that are released afterwards are closed right away.
+     */
+    @Override
+    public void stop() {
+        synchronized (idle) {
+            stopped = true;
+            for (PooledFileManager fileManager : idle) {
+                fileManager.close();
+            }
+            idle.clear();
+        }
+        archives.invalidateAll();
+    }
+
+    private Map<File, HashCode> hashArchives(Iterable<File> classpath) {
+        Map<File, HashCode> hashes = new HashMap<File, HashCode>();
+        for (File file : classpath) {
+            if (file.isFile()) {
+                hashes.put(file, hashArchive(file));
+            }
+        }
+        return hashes;
+    }
+
+    private HashCode hashArchive(File file) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        ArchiveState state = archives.getIfPresent(file);
+        if (state != null && state.length == length && state.lastModified == lastModified) {
+            return state.hash;
+        }
+        try {
+            HashCode hash = Files.hash(file, Hashing.md5());
+            archives.put(file, new ArchiveState(length, lastModified, hash));
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not hash classpath archive '%s'.", file), e);
+        }
+    }
+
+    private static boolean equal(@Nullable Charset a, @Nullable Charset b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class ArchiveState {
+        private final long length;
+        private final long lastModified;
+        private final HashCode hash;
+
+        ArchiveState(long length, long lastModified, HashCode hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    public static class PooledFileManager {
+        private final String compilerType;
+        private final Charset charset;
+        private final StandardJavaFileManager fileManager;
+        private final Map<File, HashCode> archivesSeen = new HashMap<File, HashCode>();
+
+        PooledFileManager(String compilerType, @Nullable Charset charset, StandardJavaFileManager fileManager) {
+            this.compilerType = compilerType;
+            this.charset = charset;
+            this.fileManager = fileManager;
+        }
+
+        public StandardJavaFileManager getFileManager() {
+            return fileManager;
+        }
+
+        private boolean isUpToDate(Map<File, HashCode> archiveHashes) {
+            for (Map.Entry<File, HashCode> entry : archiveHashes.entrySet()) {
+                HashCode seen = archivesSeen.get(entry.getKey());
+                if (seen != null && !seen.equals(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void archivesSeen(Map<File, HashCode> archiveHashes) {
+            archivesSeen.putAll(archiveHashes);
+        }
+
+        /**
+         * Resets the locations of the file manager to their defaults, so that no location of the previous compilation leaks into the next one.
+         */
+        private boolean reset() {
+            try {
+                for (StandardLocation location : LOCATIONS) {
+                    fileManager.setLocation(location, null);
+                }
+                return true;
+            } catch (IOException e) {
+                LOGGER.debug("Could not reset Java file manager.", e);
+                return false;
+            }
+        }
+
+        private void close() {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close Java file manager.", e);
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.tasks.compile;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.tasks.SimpleWorkResult;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.api.tasks.compile.CompileOptions;
@@ -33,17 +34,29 @@ import java.util.List;
 public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(JdkJavaCompiler.class);
     private final Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory;
+    // Not sent to compiler daemons, which do not reuse file managers
+    private final transient JavaFileManagerPool fileManagerPool;
 
     public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory) {
+        this(javaHomeBasedJavaCompilerFactory, null);
+    }
+
+    /**
+     * @param fileManagerPool the pool to reuse the file managers of earlier compilations in the same process from, or null to not reuse them.
+     */
+    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, @Nullable JavaFileManagerPool fileManagerPool) {
         this.javaHomeBasedJavaCompilerFactory = javaHomeBasedJavaCompilerFactory;
+        this.fileManagerPool = fileManagerPool;
     }
 
     @Override
     public WorkResult execute(JavaCompileSpec spec) {
         LOGGER.info("Compiling with JDK Java compiler API.");
 
-        JavaCompiler.CompilationTask task = createCompileTask(spec);
-        boolean success = task.call();
+        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
+        boolean success = fileManagerPool != null && JavaFileManagerPool.supportsOptions(options)
+            ? compileWithPooledFileManager(spec, options, fileManagerPool)
+            : createCompileTask(spec, options).call();
         if (!success) {
             throw new CompilationFailedException();
         }
@@ -51,12 +64,35 @@ public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable
         return new SimpleWorkResult(true);
     }
 
-    private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec) {
-        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
+    private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec, List<String> options) {
         JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
-        CompileOptions compileOptions = spec.getCompileOptions();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null);
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, getCharset(spec));
         Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(spec.getSource());
         return compiler.getTask(null, null, null, options, null, compilationUnits);
     }
+
+    private boolean compileWithPooledFileManager(JavaCompileSpec spec, List<String> options, JavaFileManagerPool pool) {
+        JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
+        JavaFileManagerPool.PooledFileManager pooledFileManager = pool.acquire(compiler, getCharset(spec), spec.getClasspath());
+        boolean finished = false;
+        try {
+            StandardJavaFileManager fileManager = pooledFileManager.getFileManager();
+            Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(spec.getSource());
+            boolean success = compiler.getTask(null, fileManager, null, options, null, compilationUnits).call();
+            finished = true;
+            return success;
+        } finally {
+            if (finished) {
+                pool.release(pooledFileManager);
+            } else {
+                pool.discard(pooledFileManager);
+            }
+        }
+    }
+
+    @Nullable
+    private static Charset getCharset(JavaCompileSpec spec) {
+        CompileOptions compileOptions = spec.getCompileOptions();
+        return compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null;
+    }
 }
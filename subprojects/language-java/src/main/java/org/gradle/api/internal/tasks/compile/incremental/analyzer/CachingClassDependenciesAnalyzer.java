@@ -50,4 +50,13 @@ public class CachingClassDependenciesAnalyzer implements ClassDependenciesAnalyz
             }
         });
     }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(final String className, final HashCode classHash, final byte[] classBytes) {
+        return cache.get(classHash, new Factory<ClassAnalysis>() {
+            public ClassAnalysis create() {
+                return analyzer.getClassAnalysis(className, classHash, classBytes);
+            }
+        });
+    }
 }
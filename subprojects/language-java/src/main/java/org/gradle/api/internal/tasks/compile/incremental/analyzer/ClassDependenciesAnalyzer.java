@@ -16,8 +16,17 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.analyzer;
 
+import com.google.common.hash.HashCode;
+
 import java.io.File;
 
 public interface ClassDependenciesAnalyzer {
     ClassAnalysis getClassAnalysis(String className, File classFile);
+
+    /**
+     * Analyzes a class whose contents have already been read, for example from a jar.
+     *
+     * @param classHash the hash of the class contents
+     */
+    ClassAnalysis getClassAnalysis(String className, HashCode classHash, byte[] classBytes);
 }
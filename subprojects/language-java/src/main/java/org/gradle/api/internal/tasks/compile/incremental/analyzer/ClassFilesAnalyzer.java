@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.analyzer;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
@@ -55,7 +56,21 @@ public class ClassFilesAnalyzer implements FileVisitor {
             return;
         }
 
-        ClassAnalysis analysis = analyzer.getClassAnalysis(className, file);
+        addClass(className, analyzer.getClassAnalysis(className, file));
+    }
+
+    /**
+     * Analyzes a class whose contents have already been read.
+     */
+    public void visitClass(String className, HashCode classHash, byte[] classBytes) {
+        if (!className.startsWith(packagePrefix)) {
+            return;
+        }
+
+        addClass(className, analyzer.getClassAnalysis(className, classHash, classBytes));
+    }
+
+    private void addClass(String className, ClassAnalysis analysis) {
         accumulator.addClass(className, analysis.isDependencyToAll(), analysis.getClassDependencies(), analysis.getConstants(), analysis.getLiterals());
     }
 
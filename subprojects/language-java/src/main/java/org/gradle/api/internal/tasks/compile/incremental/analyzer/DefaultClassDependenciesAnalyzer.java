@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.compile.incremental.analyzer;
 
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 import com.google.common.io.ByteStreams;
 import org.gradle.api.internal.tasks.compile.incremental.asm.ClassDependenciesVisitor;
 import org.gradle.util.GFileUtils;
@@ -34,8 +35,12 @@ import java.util.Set;
 public class DefaultClassDependenciesAnalyzer implements ClassDependenciesAnalyzer {
 
     public ClassAnalysis getClassAnalysis(String className, InputStream input) throws IOException {
+        return getClassAnalysis(className, ByteStreams.toByteArray(input));
+    }
+
+    private ClassAnalysis getClassAnalysis(String className, byte[] classBytes) {
         ClassRelevancyFilter filter = new ClassRelevancyFilter(className);
-        ClassReader reader = new Java9ClassReader(ByteStreams.toByteArray(input));
+        ClassReader reader = new Java9ClassReader(classBytes);
         Set<Integer> constants = Sets.newHashSet();
         Set<Integer> literals = Sets.newHashSet();
         ClassDependenciesVisitor visitor = new ClassDependenciesVisitor(constants, literals);
@@ -81,4 +86,9 @@ public class DefaultClassDependenciesAnalyzer implements ClassDependenciesAnalyz
             GFileUtils.closeInputStream(input);
         }
     }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(String className, HashCode classHash, byte[] classBytes) {
+        return getClassAnalysis(className, classBytes);
+    }
 }
@@ -16,21 +16,33 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
+import org.gradle.api.Action;
 import org.gradle.internal.Factory;
+import org.gradle.internal.operations.BuildOperationProcessor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CachingJarSnapshotter implements JarSnapshotter {
 
     private final DefaultJarSnapshotter snapshotter;
     private final FileHasher hasher;
     private final JarSnapshotCache cache;
+    private final BuildOperationProcessor buildOperationProcessor;
 
-    public CachingJarSnapshotter(FileHasher hasher, ClassDependenciesAnalyzer analyzer, JarSnapshotCache cache) {
-        this.snapshotter = new DefaultJarSnapshotter(hasher, analyzer);
+    public CachingJarSnapshotter(FileHasher hasher, ClassDependenciesAnalyzer analyzer, JarSnapshotCache cache, BuildOperationProcessor buildOperationProcessor) {
+        this.snapshotter = new DefaultJarSnapshotter(analyzer);
         this.hasher = hasher;
         this.cache = cache;
+        this.buildOperationProcessor = buildOperationProcessor;
     }
 
     @Override
@@ -43,7 +55,80 @@ public class CachingJarSnapshotter implements JarSnapshotter {
         });
     }
 
+    /**
+     * Looks up the snapshots of all jars in the cache at once, then creates the missing snapshots as build operations and adds them to the cache
+     * at once. The build operations run in the shared build operation pool, each holding a worker lease, so that the number of jars snapshotted
+     * at a time is bounded by the maximum number of workers of the build.
+     */
+    @Override
+    public List<JarSnapshot> createSnapshots(List<JarArchive> jarArchives) {
+        List<HashCode> hashes = new ArrayList<HashCode>(jarArchives.size());
+        for (JarArchive jarArchive : jarArchives) {
+            hashes.add(getHash(jarArchive));
+        }
+
+        Map<HashCode, JarSnapshot> snapshots = Maps.newHashMap(cache.findJarSnapshots(hashes));
+        Map<HashCode, JarArchive> missing = Maps.newLinkedHashMap();
+        for (int i = 0; i < jarArchives.size(); i++) {
+            HashCode hash = hashes.get(i);
+            if (!snapshots.containsKey(hash)) {
+                missing.put(hash, jarArchives.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<HashCode, JarSnapshot> created = createMissingSnapshots(missing);
+            cache.putJarSnapshots(created);
+            snapshots.putAll(created);
+        }
+
+        List<JarSnapshot> result = new ArrayList<JarSnapshot>(hashes.size());
+        for (HashCode hash : hashes) {
+            result.add(snapshots.get(hash));
+        }
+        return result;
+    }
+
+    private Map<HashCode, JarSnapshot> createMissingSnapshots(final Map<HashCode, JarArchive> jarArchives) {
+        final Map<HashCode, JarSnapshot> snapshots = new ConcurrentHashMap<HashCode, JarSnapshot>();
+        if (jarArchives.size() == 1) {
+            Map.Entry<HashCode, JarArchive> entry = jarArchives.entrySet().iterator().next();
+            snapshots.put(entry.getKey(), snapshotter.createSnapshot(entry.getKey(), entry.getValue()));
+            return snapshots;
+        }
+        buildOperationProcessor.run(new Action<BuildOperationQueue<CreateJarSnapshot>>() {
+            @Override
+            public void execute(BuildOperationQueue<CreateJarSnapshot> queue) {
+                for (Map.Entry<HashCode, JarArchive> entry : jarArchives.entrySet()) {
+                    queue.add(new CreateJarSnapshot(entry.getKey(), entry.getValue(), snapshots));
+                }
+            }
+        });
+        return snapshots;
+    }
+
     private HashCode getHash(JarArchive jarArchive) {
         return hasher.hash(jarArchive.file);
     }
+
+    private class CreateJarSnapshot implements RunnableBuildOperation {
+        private final HashCode hash;
+        private final JarArchive jarArchive;
+        private final Map<HashCode, JarSnapshot> snapshots;
+
+        CreateJarSnapshot(HashCode hash, JarArchive jarArchive, Map<HashCode, JarSnapshot> snapshots) {
+            this.hash = hash;
+            this.jarArchive = jarArchive;
+            this.snapshots = snapshots;
+        }
+
+        @Override
+        public void run() {
+            snapshots.put(hash, snapshotter.createSnapshot(hash, jarArchive));
+        }
+
+        @Override
+        public String getDescription() {
+            return "Create snapshot of " + jarArchive.file;
+        }
+    }
 }
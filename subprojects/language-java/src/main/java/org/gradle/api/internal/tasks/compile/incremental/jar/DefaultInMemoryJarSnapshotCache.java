@@ -22,7 +22,10 @@ import com.google.common.hash.HashCode;
 import org.gradle.internal.Factory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -69,6 +72,32 @@ public class DefaultInMemoryJarSnapshotCache implements JarSnapshotCache {
         return out;
     }
 
+    @Override
+    public Map<HashCode, JarSnapshot> findJarSnapshots(Collection<HashCode> jarHashes) {
+        Map<HashCode, JarSnapshot> out = new HashMap<HashCode, JarSnapshot>(jarHashes.size());
+        List<HashCode> notInMemory = new ArrayList<HashCode>();
+        for (HashCode jarHash : jarHashes) {
+            JarSnapshot snapshot = inMemoryCache.getIfPresent(jarHash);
+            if (snapshot != null) {
+                out.put(jarHash, snapshot);
+            } else {
+                notInMemory.add(jarHash);
+            }
+        }
+        if (!notInMemory.isEmpty()) {
+            Map<HashCode, JarSnapshot> loaded = delegate.findJarSnapshots(notInMemory);
+            inMemoryCache.putAll(loaded);
+            out.putAll(loaded);
+        }
+        return out;
+    }
+
+    @Override
+    public void putJarSnapshots(Map<HashCode, JarSnapshot> jarSnapshots) {
+        delegate.putJarSnapshots(jarSnapshots);
+        inMemoryCache.putAll(jarSnapshots);
+    }
+
     @Override
     public void stop() {
         delegate.stop();
@@ -23,6 +23,7 @@ import org.gradle.internal.Factory;
 import org.gradle.internal.serialize.HashCodeSerializer;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -56,6 +57,33 @@ public class DefaultJarSnapshotCache implements JarSnapshotCache {
         });
     }
 
+    @Override
+    public Map<HashCode, JarSnapshot> findJarSnapshots(final Collection<HashCode> jarHashes) {
+        return cache.getCacheAccess().useCache("loading jar snapshots", new Factory<Map<HashCode, JarSnapshot>>() {
+            public Map<HashCode, JarSnapshot> create() {
+                Map<HashCode, JarSnapshot> out = new HashMap<HashCode, JarSnapshot>();
+                for (HashCode jarHash : jarHashes) {
+                    JarSnapshotData snapshotData = cache.getCache().get(jarHash);
+                    if (snapshotData != null) {
+                        out.put(jarHash, new JarSnapshot(snapshotData));
+                    }
+                }
+                return out;
+            }
+        });
+    }
+
+    @Override
+    public void putJarSnapshots(final Map<HashCode, JarSnapshot> jarSnapshots) {
+        cache.getCacheAccess().useCache("storing jar snapshots", new Runnable() {
+            public void run() {
+                for (Map.Entry<HashCode, JarSnapshot> entry : jarSnapshots.entrySet()) {
+                    cache.getCache().put(entry.getKey(), entry.getValue().getData());
+                }
+            }
+        });
+    }
+
     @Override
     public JarSnapshot get(HashCode key, final Factory<JarSnapshot> factory) {
         return new JarSnapshot(cache.get(key, new Factory<JarSnapshotData>() {
@@ -17,22 +17,27 @@ package org.gradle.api.internal.tasks.compile.incremental.jar;
 
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
-import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
+/**
+ * Creates the snapshot of a jar. Each class is read from the jar once, and the same contents are used to hash and to analyze the class.
+ */
 class DefaultJarSnapshotter {
 
-    private final FileHasher hasher;
     private final ClassDependenciesAnalyzer analyzer;
 
-    public DefaultJarSnapshotter(FileHasher hasher, ClassDependenciesAnalyzer analyzer) {
-        this.hasher = hasher;
+    public DefaultJarSnapshotter(ClassDependenciesAnalyzer analyzer) {
         this.analyzer = analyzer;
     }
 
@@ -47,13 +52,27 @@ class DefaultJarSnapshotter {
             }
 
             public void visitFile(FileVisitDetails fileDetails) {
-                analyzer.visitFile(fileDetails);
+                byte[] classBytes = readContents(fileDetails);
                 String className = fileDetails.getPath().replaceAll("/", ".").replaceAll("\\.class$", "");
-                HashCode classHash = hasher.hash(fileDetails.getFile());
+                HashCode classHash = Hashing.md5().hashBytes(classBytes);
+                analyzer.visitClass(className, classHash, classBytes);
                 hashes.put(className, classHash);
             }
         });
 
         return new JarSnapshot(new JarSnapshotData(hash, hashes, analyzer.getAnalysis()));
     }
+
+    private static byte[] readContents(FileVisitDetails fileDetails) {
+        InputStream inputStream = fileDetails.open();
+        try {
+            try {
+                return ByteStreams.toByteArray(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read class file '%s'.", fileDetails.getPath()), e);
+        }
+    }
 }
@@ -16,11 +16,13 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,8 +40,11 @@ public class JarClasspathSnapshotFactory {
         Set<String> allClasses = Sets.newHashSet();
         Set<String> duplicateClasses = Sets.newHashSet();
 
-        for (JarArchive jar : jarArchives) {
-            JarSnapshot snapshot = jarSnapshotter.createSnapshot(jar);
+        List<JarArchive> jars = Lists.newArrayList(jarArchives);
+        List<JarSnapshot> snapshots = jarSnapshotter.createSnapshots(jars);
+        for (int i = 0; i < jars.size(); i++) {
+            JarArchive jar = jars.get(i);
+            JarSnapshot snapshot = snapshots.get(i);
             jarSnapshots.put(jar.file, snapshot);
             jarHashes.put(jar.file, snapshot.getHash());
             for (String c : snapshot.getClasses()) {
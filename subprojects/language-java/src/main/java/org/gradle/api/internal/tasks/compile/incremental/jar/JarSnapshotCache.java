@@ -21,8 +21,19 @@ import org.gradle.api.internal.cache.Cache;
 import org.gradle.internal.concurrent.Stoppable;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Map;
 
 public interface JarSnapshotCache extends Cache<HashCode, JarSnapshot>, Stoppable {
     Map<File, JarSnapshot> getJarSnapshots(Map<File, HashCode> jarHashes);
+
+    /**
+     * Returns the cached snapshots of the jars with the given hashes. Jars that have no cached snapshot are left out.
+     */
+    Map<HashCode, JarSnapshot> findJarSnapshots(Collection<HashCode> jarHashes);
+
+    /**
+     * Adds the given snapshots to the cache in one go.
+     */
+    void putJarSnapshots(Map<HashCode, JarSnapshot> jarSnapshots);
 }
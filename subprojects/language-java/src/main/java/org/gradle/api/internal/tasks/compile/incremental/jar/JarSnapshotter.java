@@ -16,6 +16,13 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import java.util.List;
+
 public interface JarSnapshotter {
     JarSnapshot createSnapshot(JarArchive jarArchive);
+
+    /**
+     * Creates the snapshots of the given jars, in the same order.
+     */
+    List<JarSnapshot> createSnapshots(List<JarArchive> jarArchives);
 }
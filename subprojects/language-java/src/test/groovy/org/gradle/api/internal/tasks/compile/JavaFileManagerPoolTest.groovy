@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import javax.tools.StandardJavaFileManager
+import java.nio.charset.Charset
+
+class JavaFileManagerPoolTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def compiler = Mock(JavaCompiler)
+    def pool = new JavaFileManagerPool(2)
+    def jar = tmpDir.file("lib.jar")
+
+    def setup() {
+        jar.text = "contents"
+    }
+
+    def "reuses the file manager of a finished compilation"() {
+        def fileManager = Mock(StandardJavaFileManager)
+
+        when:
+        def first = pool.acquire(compiler, null, [jar])
+        pool.release(first)
+        def second = pool.acquire(compiler, null, [jar, tmpDir.file("classes")])
+
+        then:
+        1 * compiler.getStandardFileManager(null, null, null) >> fileManager
+        second.fileManager == fileManager
+        0 * fileManager.close()
+    }
+
+    def "does not reuse a file manager that is in use or uses a different encoding"() {
+        when:
+        def first = pool.acquire(compiler, null, [jar])
+        def second = pool.acquire(compiler, null, [jar])
+        pool.release(first)
+        def third = pool.acquire(compiler, Charset.forName("UTF-8"), [jar])
+
+        then:
+        1 * compiler.getStandardFileManager(null, null, null) >> Mock(StandardJavaFileManager)
+        1 * compiler.getStandardFileManager(null, null, null) >> Mock(StandardJavaFileManager)
+        1 * compiler.getStandardFileManager(null, null, Charset.forName("UTF-8")) >> Mock(StandardJavaFileManager)
+        [first, second, third]*.fileManager.unique().size() == 3
+    }
+
+    def "discards a file manager that has seen an archive that has changed since"() {
+        def oldFileManager = Mock(StandardJavaFileManager)
+        def newFileManager = Mock(StandardJavaFileManager)
+
+        given:
+        compiler.getStandardFileManager(null, null, null) >>> [oldFileManager, newFileManager]
+
+        when:
+        pool.release(pool.acquire(compiler, null, [jar]))
+        jar.text = "changed contents"
+        def fileManager = pool.acquire(compiler, null, [jar])
+
+        then:
+        fileManager.fileManager == newFileManager
+        1 * oldFileManager.close()
+    }
+
+    def "closes idle file managers when stopped"() {
+        def idleFileManager = Mock(StandardJavaFileManager)
+        def busyFileManager = Mock(StandardJavaFileManager)
+
+        given:
+        compiler.getStandardFileManager(null, null, null) >>> [idleFileManager, busyFileManager]
+        def idle = pool.acquire(compiler, null, [jar])
+        def busy = pool.acquire(compiler, null, [jar])
+        pool.release(idle)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * idleFileManager.close()
+        0 * busyFileManager.close()
+
+        when:
+        pool.release(busy)
+
+        then:
+        1 * busyFileManager.close()
+    }
+
+    def "detects changed archive after its state has been forgotten"() {
+        def pool = new JavaFileManagerPool(2, 1)
+        def otherJar = tmpDir.file("other.jar")
+        otherJar.text = "other"
+        def oldFileManager = Mock(StandardJavaFileManager)
+        def newFileManager = Mock(StandardJavaFileManager)
+
+        given:
+        compiler.getStandardFileManager(null, null, null) >>> [oldFileManager, newFileManager]
+
+        when:
+        pool.release(pool.acquire(compiler, null, [jar]))
+        pool.release(pool.acquire(compiler, null, [otherJar]))
+        jar.text = "changed contents"
+        def fileManager = pool.acquire(compiler, null, [jar])
+
+        then:
+        fileManager.fileManager == newFileManager
+        1 * oldFileManager.close()
+    }
+
+    def "does not support options that change how classes are located on Java 9 and later"() {
+        expect:
+        JavaFileManagerPool.supportsOptions(["-source", "1.8", "-classpath", "lib.jar"])
+        !JavaFileManagerPool.supportsOptions(["--release", "8"])
+        !JavaFileManagerPool.supportsOptions(["--module-path=mods"])
+        !JavaFileManagerPool.supportsOptions(["-p", "mods"])
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.jar
+
+import com.google.common.hash.HashCode
+import org.gradle.api.Action
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.DirectoryFileTree
+import org.gradle.api.internal.file.collections.FileTreeAdapter
+import org.gradle.api.internal.hash.FileHasher
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
+import org.gradle.internal.operations.BuildOperationProcessor
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.util.UsesNativeServices
+import spock.lang.Specification
+import spock.lang.Subject
+
+@UsesNativeServices
+class CachingJarSnapshotterTest extends Specification {
+    def hasher = Mock(FileHasher)
+    def cache = Mock(JarSnapshotCache)
+    def buildOperationProcessor = Mock(BuildOperationProcessor)
+    def queue = [add: { it.run() }, waitForCompletion: {}] as BuildOperationQueue
+    @Subject snapshotter = new CachingJarSnapshotter(hasher, Mock(ClassDependenciesAnalyzer), cache, buildOperationProcessor)
+
+    def "creates the snapshots of jars that are not cached and stores them in one go"() {
+        def jar1 = jar("a.jar"); def jar2 = jar("b.jar"); def jar3 = jar("c.jar")
+        def hash1 = HashCode.fromString("1234"); def hash2 = HashCode.fromString("2345"); def hash3 = HashCode.fromString("3456")
+        def cached = Stub(JarSnapshot)
+
+        when:
+        def snapshots = snapshotter.createSnapshots([jar1, jar2, jar3])
+
+        then:
+        1 * hasher.hash(jar1.file) >> hash1
+        1 * hasher.hash(jar2.file) >> hash2
+        1 * hasher.hash(jar3.file) >> hash3
+        1 * cache.findJarSnapshots([hash1, hash2, hash3]) >> [(hash2): cached]
+        1 * buildOperationProcessor.run(_ as Action) >> { Action generator -> generator.execute(queue) }
+        1 * cache.putJarSnapshots({ it.keySet() == [hash1, hash3] as Set })
+        0 * _
+
+        and:
+        snapshots.size() == 3
+        snapshots[0].hash == hash1
+        snapshots[1] == cached
+        snapshots[2].hash == hash3
+    }
+
+    def "does not store anything when all jars are cached"() {
+        def jar1 = jar("a.jar")
+        def hash1 = HashCode.fromString("1234")
+        def cached = Stub(JarSnapshot)
+
+        when:
+        def snapshots = snapshotter.createSnapshots([jar1])
+
+        then:
+        1 * hasher.hash(jar1.file) >> hash1
+        1 * cache.findJarSnapshots([hash1]) >> [(hash1): cached]
+        0 * _
+
+        and:
+        snapshots == [cached]
+    }
+
+    private static JarArchive jar(String name) {
+        new JarArchive(new File(name), new FileTreeAdapter(new DirectoryFileTree(new File("missing"))), TestFiles.resolver().getPatternSetFactory())
+    }
+}
@@ -23,7 +23,6 @@ import com.google.common.hash.Hashing
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.file.collections.DirectoryFileTree
 import org.gradle.api.internal.file.collections.FileTreeAdapter
-import org.gradle.api.internal.hash.FileHasher
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
@@ -37,9 +36,7 @@ import spock.lang.Subject
 class DefaultJarSnapshotterTest extends Specification {
 
     @Rule TestNameTestDirectoryProvider temp = new TestNameTestDirectoryProvider()
-    def hasher = Mock(FileHasher)
-
-    @Subject snapshotter = new DefaultJarSnapshotter(hasher, Mock(ClassDependenciesAnalyzer))
+    @Subject snapshotter = new DefaultJarSnapshotter(Mock(ClassDependenciesAnalyzer))
 
     def "creates snapshot for an empty jar"() {
         expect:
@@ -49,22 +46,21 @@ class DefaultJarSnapshotterTest extends Specification {
     }
 
     def "creates snapshot of a jar with classes"() {
-        def f1 = temp.createFile("foo/Foo.class")
-        def f2 = temp.createFile("foo/com/Foo2.class")
+        temp.createFile("foo/Foo.class") << "foo"
+        temp.createFile("foo/com/Foo2.class") << "foo2"
         def analyzer = Mock(ClassFilesAnalyzer)
 
         when:
         def snapshot = snapshotter.createSnapshot(Hashing.md5().hashString("foo", Charsets.UTF_8), new FileTreeAdapter(new DirectoryFileTree(temp.file("foo"))), analyzer)
 
         then:
-        2 * analyzer.visitFile(_)
-        1 * hasher.hash(f1)
-        1 * hasher.hash(f2)
+        1 * analyzer.visitClass("Foo", Hashing.md5().hashBytes("foo".bytes), "foo".bytes)
+        1 * analyzer.visitClass("com.Foo2", Hashing.md5().hashBytes("foo2".bytes), "foo2".bytes)
         1 * analyzer.getAnalysis() >> Stub(ClassSetAnalysisData)
         0 * _._
 
         and:
-        snapshot.hashes.keySet() == ["Foo", "com.Foo2"] as Set
+        snapshot.hashes == [Foo: Hashing.md5().hashBytes("foo".bytes), "com.Foo2": Hashing.md5().hashBytes("foo2".bytes)]
         snapshot.analysis
     }
 }
@@ -38,9 +38,7 @@ class JarClasspathSnapshotFactoryTest extends Specification {
         def s = factory.createSnapshot([jar1, jar2, jar3])
 
         then:
-        1 * snapshotter.createSnapshot(jar1) >> sn1
-        1 * snapshotter.createSnapshot(jar2) >> sn2
-        1 * snapshotter.createSnapshot(jar3) >> sn3
+        1 * snapshotter.createSnapshots([jar1, jar2, jar3]) >> [sn1, sn2, sn3]
         0 * _
 
         s.data.duplicateClasses == ["B", "C"] as Set
@@ -57,8 +55,7 @@ class JarClasspathSnapshotFactoryTest extends Specification {
         def s = factory.createSnapshot([jar1, jar2])
 
         then:
-        1 * snapshotter.createSnapshot(jar1) >> sn1
-        1 * snapshotter.createSnapshot(jar2) >> sn2
+        1 * snapshotter.createSnapshots([jar1, jar2]) >> [sn1, sn2]
 
         s.data.jarHashes.size() == 2
         s.data.jarHashes[new File("f1")] == HashCode.fromString("1234")
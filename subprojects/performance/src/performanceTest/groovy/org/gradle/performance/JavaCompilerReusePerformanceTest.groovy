@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.categories.BasicPerformanceTest
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+@Category([BasicPerformanceTest])
+class JavaCompilerReusePerformanceTest extends AbstractCrossBuildPerformanceTest {
+
+    @Unroll("Compile '#testProject' calling #tasks with reused Java file managers")
+    def "compile many small projects with reused Java file managers"() {
+        when:
+        runner.testId = "reused java file managers $testProject ${tasks.join(' ')} (daemon)"
+        runner.testGroup = "java compilation"
+        runner.buildSpec {
+            projectName(testProject).displayName("reused file managers").invocation {
+                tasksToRun(tasks).useDaemon().args("-Dorg.gradle.internal.java.compile.reusefilemanagers=true", "--rerun-tasks")
+            }
+        }
+        runner.baseline {
+            projectName(testProject).displayName("new file manager per compilation").invocation {
+                tasksToRun(tasks).useDaemon().args("--rerun-tasks")
+            }
+        }
+
+        then:
+        runner.run()
+
+        where:
+        testProject  | tasks
+        "bigOldJava" | ["compileJava"]
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.categories.BasicPerformanceTest
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+@Category([BasicPerformanceTest])
+class ParallelSnapshottingPerformanceTest extends AbstractCrossBuildPerformanceTest {
+
+    @Unroll("Snapshotting inputs of '#testProject' calling #tasks with #threads threads")
+    def "snapshot inputs in parallel"() {
+        when:
+        runner.testId = "parallel snapshotting $testProject ${tasks.join(' ')} (daemon)"
+        runner.testGroup = "input snapshotting"
+        runner.buildSpec {
+            projectName(testProject).displayName("parallel snapshotting").invocation {
+                tasksToRun(tasks).useDaemon().args("-Dorg.gradle.internal.snapshotting.maxthreads=$threads", "--rerun-tasks")
+            }
+        }
+        runner.baseline {
+            projectName(testProject).displayName("sequential snapshotting").invocation {
+                tasksToRun(tasks).useDaemon().args("--rerun-tasks")
+            }
+        }
+
+        then:
+        runner.run()
+
+        where:
+        testProject  | tasks         | threads
+        "largeSrc"   | ["jar"]       | 4
+        "bigOldJava" | ["assemble"]  | 4
+    }
+}
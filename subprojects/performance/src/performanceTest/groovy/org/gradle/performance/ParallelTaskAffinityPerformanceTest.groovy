@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.categories.BasicPerformanceTest
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+@Category([BasicPerformanceTest])
+class ParallelTaskAffinityPerformanceTest extends AbstractCrossBuildPerformanceTest {
+
+    @Unroll("Parallel build of '#testProject' calling #tasks with #workers workers")
+    def "parallel build with project affinity"() {
+        when:
+        runner.testId = "parallel project affinity $testProject ${tasks.join(' ')} (daemon)"
+        runner.testGroup = "parallel builds"
+        runner.buildSpec {
+            projectName(testProject).displayName("project affinity").invocation {
+                tasksToRun(tasks).useDaemon().args("--parallel", "--max-workers=$workers", "-Dorg.gradle.parallel.affinity=true", "--rerun-tasks")
+            }
+        }
+        runner.baseline {
+            projectName(testProject).displayName("no project affinity").invocation {
+                tasksToRun(tasks).useDaemon().args("--parallel", "--max-workers=$workers", "--rerun-tasks")
+            }
+        }
+
+        then:
+        runner.run()
+
+        where:
+        testProject  | tasks        | workers
+        "bigOldJava" | ["assemble"] | 4
+    }
+}
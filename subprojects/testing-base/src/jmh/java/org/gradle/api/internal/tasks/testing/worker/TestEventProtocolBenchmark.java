@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.id.CompositeIdGenerator;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.SerializerRegistry;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of test events per second that a test worker can encode for the build process, for a test class whose tests log a lot of output.
+ * Compares sending each event as a separate, flushed message with sending batches of events. The encoded bytes are discarded, so the cost of
+ * writing to the socket is not included.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TestEventProtocolBenchmark {
+    private static final int TESTS = 100;
+    private static final int LINES_PER_TEST = 20;
+    private static final int EVENTS = TESTS * (LINES_PER_TEST + 2);
+
+    private TestDescriptorInternal[] tests;
+    private TestOutputEvent[] lines;
+    private KryoBackedEncoder encoder;
+    private ScheduledExecutorService flushExecutor;
+    private TestResultProcessor perEvent;
+    private BatchingTestResultProcessor batching;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tests = new TestDescriptorInternal[TESTS];
+        for (int i = 0; i < TESTS; i++) {
+            tests[i] = new DefaultTestMethodDescriptor(new CompositeIdGenerator.CompositeId(1L, (long) i), "org.gradle.SomeTest", "test" + i);
+        }
+        lines = new TestOutputEvent[LINES_PER_TEST];
+        for (int i = 0; i < LINES_PER_TEST; i++) {
+            lines[i] = new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "DEBUG org.hibernate.SQL - select this_.id as id1_0_0_, this_.name as name2_0_0_ from entity this_ where this_.id=" + i + "\n");
+        }
+        encoder = new KryoBackedEncoder(new DiscardingOutputStream());
+        SerializerRegistry registry = TestEventSerializer.create();
+        perEvent = new PerEventEncoder(encoder, registry);
+        final Serializer<TestEventBatch> batchSerializer = registry.build(TestEventBatch.class);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor();
+        batching = new BatchingTestResultProcessor(new TestEventBatchProcessor() {
+            @Override
+            public void process(TestEventBatch batch) {
+                try {
+                    encoder.writeSmallInt(0);
+                    batchSerializer.write(encoder, batch);
+                    encoder.flush();
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+                batching.batchProcessed();
+            }
+        }, flushExecutor, new BatchingTestResultProcessor.Limits(1000, 64 * 1024, 50, 8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        flushExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void perEvent() {
+        runTests(perEvent);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void batched() {
+        runTests(batching);
+        batching.flush();
+    }
+
+    private void runTests(TestResultProcessor processor) {
+        for (TestDescriptorInternal test : tests) {
+            processor.started(test, new TestStartEvent(1L));
+            for (TestOutputEvent line : lines) {
+                processor.output(test.getId(), line);
+            }
+            processor.completed(test.getId(), new TestCompleteEvent(2L));
+        }
+    }
+
+    /**
+     * Encodes each event the way a method call on a remote {@link TestResultProcessor} is encoded, and flushes it.
+     */
+    private static class PerEventEncoder implements TestResultProcessor {
+        private final KryoBackedEncoder encoder;
+        private final Serializer<TestDescriptorInternal> descriptorSerializer;
+        private final Serializer<Object> idSerializer;
+        private final Serializer<TestStartEvent> startEventSerializer;
+        private final Serializer<TestCompleteEvent> completeEventSerializer;
+        private final Serializer<TestOutputEvent> outputEventSerializer;
+
+        PerEventEncoder(KryoBackedEncoder encoder, SerializerRegistry registry) {
+            this.encoder = encoder;
+            this.descriptorSerializer = registry.build(TestDescriptorInternal.class);
+            this.idSerializer = registry.build(Object.class);
+            this.startEventSerializer = registry.build(TestStartEvent.class);
+            this.completeEventSerializer = registry.build(TestCompleteEvent.class);
+            this.outputEventSerializer = registry.build(TestOutputEvent.class);
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            try {
+                encoder.writeSmallInt(0);
+                descriptorSerializer.write(encoder, test);
+                startEventSerializer.write(encoder, event);
+                encoder.flush();
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            try {
+                encoder.writeSmallInt(1);
+                idSerializer.write(encoder, testId);
+                completeEventSerializer.write(encoder, event);
+                encoder.flush();
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            try {
+                encoder.writeSmallInt(2);
+                idSerializer.write(encoder, testId);
+                outputEventSerializer.write(encoder, event);
+                encoder.flush();
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+        }
+    }
+}
@@ -27,18 +27,24 @@ import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Test classes are pulled by the processors: each test class is assigned to a processor that has
+ * finished processing its previous test class, so that a slow test class does not hold up the test classes queued behind it.
+ *
+ * <p>A processor is considered free when its {@link TestClassProcessor#processTestClass(TestClassRunInfo)} method returns. Processors are created on
+ * demand, up to the maximum, when a test class is received and no processor is free.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Object lock = new Object();
+    private final LinkedList<TestClassRunInfo> pendingTestClasses = new LinkedList<TestClassRunInfo>();
+    private final LinkedList<TestClassProcessor> freeProcessors = new LinkedList<TestClassProcessor>();
     private TestResultProcessor resultProcessor;
-    private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
@@ -58,27 +64,89 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
 
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
-        TestClassProcessor processor;
-        if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
-        } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+        synchronized (lock) {
+            TestClassProcessor processor = freeProcessors.poll();
+            if (processor == null && processors.size() < maxProcessors) {
+                processor = createProcessor();
+            }
+            if (processor == null) {
+                pendingTestClasses.add(testClass);
+            } else {
+                processor.processTestClass(testClass);
+            }
+        }
+    }
+
+    private TestClassProcessor createProcessor() {
+        PullingTestClassProcessor pullingProcessor = new PullingTestClassProcessor(factory.create());
+        Actor actor = actorFactory.createActor(pullingProcessor);
+        TestClassProcessor processor = actor.getProxy(TestClassProcessor.class);
+        pullingProcessor.proxy = processor;
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void processorFree(TestClassProcessor processor) {
+        synchronized (lock) {
+            TestClassRunInfo testClass = pendingTestClasses.poll();
+            if (testClass != null) {
+                processor.processTestClass(testClass);
+            } else {
+                freeProcessors.add(processor);
+            }
+            lock.notifyAll();
         }
-        processor.processTestClass(testClass);
     }
 
     @Override
     public void stop() {
+        synchronized (lock) {
+            // Wait for every test class to be handed to a processor
+            while (!pendingTestClasses.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
         try {
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
     }
+
+    /**
+     * Asks for the next test class once the target processor has finished with a test class. Called from the thread of the processor's actor.
+     */
+    private class PullingTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor processor;
+        private TestClassProcessor proxy;
+
+        PullingTestClassProcessor(TestClassProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            processor.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            try {
+                processor.processTestClass(testClass);
+            } finally {
+                processorFree(proxy);
+            }
+        }
+
+        @Override
+        public void stop() {
+            processor.stop();
+        }
+    }
 }
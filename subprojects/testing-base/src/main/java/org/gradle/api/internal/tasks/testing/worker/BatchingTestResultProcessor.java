@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.dispatch.StreamCompletion;
+
+import java.io.Serializable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the test events produced by a test worker into {@link TestEventBatch}es, so that a test that produces lots of output does not need
+ * a separate message and flush for each line.
+ *
+ * <p>A batch is sent when it reaches the maximum number of events or characters of output, or when its oldest event reaches the maximum latency.
+ * At most the maximum number of outstanding batches are sent before the build process has processed them, after which producers of test events
+ * are blocked.</p>
+ *
+ * <p>Implementation is thread-safe.</p>
+ */
+public class BatchingTestResultProcessor implements TestResultProcessor, TestEventBatchListener, StreamCompletion, Stoppable {
+    private final Object lock = new Object();
+    private final TestEventBatchProcessor target;
+    private final ScheduledExecutorService executor;
+    private final Limits limits;
+    private final Runnable latencyFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private TestEventBatch batch = new TestEventBatch();
+    private ScheduledFuture<?> scheduledFlush;
+    private int outstanding;
+    private boolean ended;
+
+    public BatchingTestResultProcessor(TestEventBatchProcessor target, ScheduledExecutorService executor, Limits limits) {
+        this.target = target;
+        this.executor = executor;
+        this.limits = limits;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (lock) {
+            batch.started(test, event);
+            added();
+        }
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        synchronized (lock) {
+            batch.completed(testId, event);
+            added();
+        }
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        synchronized (lock) {
+            batch.output(testId, event);
+            added();
+        }
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        synchronized (lock) {
+            batch.failure(testId, result);
+            added();
+        }
+    }
+
+    private void added() {
+        if (batch.size() >= limits.maxEvents || batch.getOutputLength() >= limits.maxOutputLength) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = executor.schedule(latencyFlush, limits.maxLatencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the events collected so far, blocking while the maximum number of batches is outstanding.
+     */
+    public void flush() {
+        synchronized (lock) {
+            while (outstanding >= limits.maxOutstandingBatches && !ended) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            // Another producer may have sent the batch while this thread was waiting
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            TestEventBatch current = batch;
+            batch = new TestEventBatch();
+            outstanding++;
+            target.process(current);
+        }
+    }
+
+    @Override
+    public void batchProcessed() {
+        synchronized (lock) {
+            outstanding--;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops applying back-pressure once the build process has gone away.
+     */
+    @Override
+    public void endStream() {
+        synchronized (lock) {
+            ended = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        flush();
+    }
+
+    /**
+     * The bounds of a batch. Batching is enabled for test workers using the {@value #ENABLED_PROPERTY} system property of the build process.
+     */
+    public static class Limits implements Serializable {
+        public static final String ENABLED_PROPERTY = "org.gradle.internal.test.batching";
+        private static final Limits DEFAULT = new Limits(1000, 64 * 1024, 50, 8);
+
+        private final int maxEvents;
+        private final int maxOutputLength;
+        private final long maxLatencyMillis;
+        private final int maxOutstandingBatches;
+
+        public Limits(int maxEvents, int maxOutputLength, long maxLatencyMillis, int maxOutstandingBatches) {
+            this.maxEvents = maxEvents;
+            this.maxOutputLength = maxOutputLength;
+            this.maxLatencyMillis = maxLatencyMillis;
+            this.maxOutstandingBatches = maxOutstandingBatches;
+        }
+
+        /**
+         * Returns the limits to use for test workers, or null when batching is not enabled.
+         */
+        @Nullable
+        public static Limits fromSystemProperty() {
+            return Boolean.getBoolean(ENABLED_PROPERTY) ? DEFAULT : null;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.dispatch.StreamCompletion;
 import org.gradle.internal.operations.BuildOperationWorkerRegistry;
 import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.process.JavaForkOptions;
@@ -34,6 +36,10 @@ import java.io.File;
 import java.net.URL;
 import java.util.List;
 
+/**
+ * Processes test classes in a worker process. Each test class is handed to the worker once it has finished processing the previous one, so that
+ * {@link #processTestClass(TestClassRunInfo)} blocks until the worker is ready for the next test class.
+ */
 public class ForkingTestClassProcessor implements TestClassProcessor {
     private final WorkerProcessFactory workerFactory;
     private final WorkerTestClassProcessorFactory processorFactory;
@@ -42,10 +48,12 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
     private final BuildOperationWorkerRegistry.Operation owner;
+    private final BatchingTestResultProcessor.Limits batchLimits = BatchingTestResultProcessor.Limits.fromSystemProperty();
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
     private BuildOperationWorkerRegistry.Completion workerCompletion;
+    final WorkerProgress workerProgress = new WorkerProgress();
 
     public ForkingTestClassProcessor(WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, BuildOperationWorkerRegistry.Operation owner) {
         this.workerFactory = workerFactory;
@@ -69,11 +77,13 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             remoteProcessor = forkProcess();
         }
 
+        workerProgress.testClassSent();
         remoteProcessor.processTestClass(testClass);
+        workerProgress.waitForWorker();
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
+        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory, batchLimits));
         builder.setBaseName("Gradle Test Executor");
         builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
         builder.applicationClasspath(classPath);
@@ -85,7 +95,12 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
 
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializers(TestEventSerializer.create());
-        connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        if (batchLimits != null) {
+            connection.addIncoming(TestEventBatchProcessor.class, new BatchReplayer(resultProcessor, connection.addOutgoing(TestEventBatchListener.class)));
+        } else {
+            connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        }
+        connection.addIncoming(TestWorkerListener.class, workerProgress);
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
@@ -124,4 +139,60 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             }
         }
     }
+
+    /**
+     * Replays the batches of test events received from the worker, and acknowledges each batch so that the worker can send more.
+     */
+    private static class BatchReplayer implements TestEventBatchProcessor {
+        private final TestResultProcessor resultProcessor;
+        private final TestEventBatchListener listener;
+
+        BatchReplayer(TestResultProcessor resultProcessor, TestEventBatchListener listener) {
+            this.resultProcessor = resultProcessor;
+            this.listener = listener;
+        }
+
+        @Override
+        public void process(TestEventBatch batch) {
+            try {
+                batch.replayTo(resultProcessor);
+            } finally {
+                listener.batchProcessed();
+            }
+        }
+    }
+
+    /**
+     * Tracks the test classes that have been sent to the worker and not yet processed. Stops waiting for the worker when its connection ends, for example when it crashes.
+     */
+    static class WorkerProgress implements TestWorkerListener, StreamCompletion {
+        private int outstanding;
+        private boolean ended;
+
+        synchronized void testClassSent() {
+            outstanding++;
+        }
+
+        synchronized void waitForWorker() {
+            while (outstanding > 0 && !ended) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void testClassProcessed() {
+            outstanding--;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void endStream() {
+            ended = true;
+            notifyAll();
+        }
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of test events that is sent from a test worker to the build process as a single message. Consecutive output events for the same test and
+ * destination are merged into a single event.
+ */
+public class TestEventBatch {
+    static final byte STARTED = 0;
+    static final byte COMPLETED = 1;
+    static final byte OUTPUT = 2;
+    static final byte FAILURE = 3;
+
+    private final List<Event> events;
+    private int outputLength;
+
+    public TestEventBatch() {
+        this.events = new ArrayList<Event>();
+    }
+
+    TestEventBatch(List<Event> events) {
+        this.events = events;
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        events.add(new Event(STARTED, test, event));
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        events.add(new Event(COMPLETED, testId, event));
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        outputLength += event.getMessage().length();
+        if (!events.isEmpty()) {
+            Event last = events.get(events.size() - 1);
+            if (last.kind == OUTPUT && last.testId.equals(testId) && last.destination == event.getDestination()) {
+                last.append(event.getMessage());
+                return;
+            }
+        }
+        events.add(new Event(testId, event.getDestination(), event.getMessage()));
+    }
+
+    public void failure(Object testId, Throwable failure) {
+        events.add(new Event(FAILURE, testId, failure));
+    }
+
+    /**
+     * Returns the number of events in this batch, after merging output events.
+     */
+    public int size() {
+        return events.size();
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Returns the number of characters of output added to this batch.
+     */
+    public int getOutputLength() {
+        return outputLength;
+    }
+
+    List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Dispatches the events of this batch to the given processor, in the order they were added.
+     */
+    public void replayTo(TestResultProcessor processor) {
+        for (Event event : events) {
+            switch (event.kind) {
+                case STARTED:
+                    processor.started((TestDescriptorInternal) event.testId, (TestStartEvent) event.payload);
+                    break;
+                case COMPLETED:
+                    processor.completed(event.testId, (TestCompleteEvent) event.payload);
+                    break;
+                case OUTPUT:
+                    processor.output(event.testId, new DefaultTestOutputEvent(event.destination, event.getMessage()));
+                    break;
+                case FAILURE:
+                    processor.failure(event.testId, (Throwable) event.payload);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected test event kind " + event.kind + ".");
+            }
+        }
+    }
+
+    static class Event {
+        final byte kind;
+        // The test descriptor for a started event, and the test id otherwise
+        final Object testId;
+        final Object payload;
+        final TestOutputEvent.Destination destination;
+        private String message;
+        private StringBuilder mergedMessage;
+
+        Event(byte kind, Object testId, Object payload) {
+            this.kind = kind;
+            this.testId = testId;
+            this.payload = payload;
+            this.destination = null;
+        }
+
+        Event(Object testId, TestOutputEvent.Destination destination, String message) {
+            this.kind = OUTPUT;
+            this.testId = testId;
+            this.payload = null;
+            this.destination = destination;
+            this.message = message;
+        }
+
+        String getMessage() {
+            if (mergedMessage != null) {
+                message = mergedMessage.toString();
+                mergedMessage = null;
+            }
+            return message;
+        }
+
+        private void append(String message) {
+            if (mergedMessage == null) {
+                mergedMessage = new StringBuilder(this.message.length() + message.length() * 4);
+                mergedMessage.append(this.message);
+            }
+            mergedMessage.append(message);
+        }
+    }
+}
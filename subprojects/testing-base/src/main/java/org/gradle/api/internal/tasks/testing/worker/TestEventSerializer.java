@@ -22,6 +22,9 @@ import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.serialize.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class TestEventSerializer {
     public static SerializerRegistry create() {
         BaseSerializerFactory factory = new BaseSerializerFactory();
@@ -37,6 +40,7 @@ public class TestEventSerializer {
         registry.register(TestCompleteEvent.class, new TestCompleteEventSerializer());
         registry.register(DefaultTestOutputEvent.class, new DefaultTestOutputEventSerializer());
         registry.register(Throwable.class, factory.getSerializerFor(Throwable.class));
+        registry.register(TestEventBatch.class, new TestEventBatchSerializer(registry.build(TestDescriptorInternal.class), registry.build(Object.class), registry.build(Throwable.class)));
         return registry;
     }
 
@@ -228,4 +232,72 @@ public class TestEventSerializer {
             encoder.writeString(value.getName());
         }
     }
+
+    private static class TestEventBatchSerializer implements Serializer<TestEventBatch> {
+        private final Serializer<TestDescriptorInternal> descriptorSerializer;
+        private final Serializer<Object> idSerializer;
+        private final Serializer<Throwable> failureSerializer;
+        private final Serializer<TestStartEvent> startEventSerializer = new TestStartEventSerializer();
+        private final Serializer<TestCompleteEvent> completeEventSerializer = new TestCompleteEventSerializer();
+        private final Serializer<TestOutputEvent.Destination> destinationSerializer = new BaseSerializerFactory().getSerializerFor(TestOutputEvent.Destination.class);
+
+        private TestEventBatchSerializer(Serializer<TestDescriptorInternal> descriptorSerializer, Serializer<Object> idSerializer, Serializer<Throwable> failureSerializer) {
+            this.descriptorSerializer = descriptorSerializer;
+            this.idSerializer = idSerializer;
+            this.failureSerializer = failureSerializer;
+        }
+
+        @Override
+        public TestEventBatch read(Decoder decoder) throws Exception {
+            int count = decoder.readSmallInt();
+            List<TestEventBatch.Event> events = new ArrayList<TestEventBatch.Event>(count);
+            for (int i = 0; i < count; i++) {
+                byte kind = decoder.readByte();
+                switch (kind) {
+                    case TestEventBatch.STARTED:
+                        events.add(new TestEventBatch.Event(kind, descriptorSerializer.read(decoder), startEventSerializer.read(decoder)));
+                        break;
+                    case TestEventBatch.COMPLETED:
+                        events.add(new TestEventBatch.Event(kind, idSerializer.read(decoder), completeEventSerializer.read(decoder)));
+                        break;
+                    case TestEventBatch.OUTPUT:
+                        events.add(new TestEventBatch.Event(idSerializer.read(decoder), destinationSerializer.read(decoder), decoder.readString()));
+                        break;
+                    case TestEventBatch.FAILURE:
+                        events.add(new TestEventBatch.Event(kind, idSerializer.read(decoder), failureSerializer.read(decoder)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unexpected test event kind %d found.", kind));
+                }
+            }
+            return new TestEventBatch(events);
+        }
+
+        @Override
+        public void write(Encoder encoder, TestEventBatch value) throws Exception {
+            List<TestEventBatch.Event> events = value.getEvents();
+            encoder.writeSmallInt(events.size());
+            for (TestEventBatch.Event event : events) {
+                encoder.writeByte(event.kind);
+                switch (event.kind) {
+                    case TestEventBatch.STARTED:
+                        descriptorSerializer.write(encoder, (TestDescriptorInternal) event.testId);
+                        startEventSerializer.write(encoder, (TestStartEvent) event.payload);
+                        break;
+                    case TestEventBatch.COMPLETED:
+                        idSerializer.write(encoder, event.testId);
+                        completeEventSerializer.write(encoder, (TestCompleteEvent) event.payload);
+                        break;
+                    case TestEventBatch.OUTPUT:
+                        idSerializer.write(encoder, event.testId);
+                        destinationSerializer.write(encoder, event.destination);
+                        encoder.writeString(event.getMessage());
+                        break;
+                    default:
+                        idSerializer.write(encoder, event.testId);
+                        failureSerializer.write(encoder, (Throwable) event.payload);
+                }
+            }
+        }
+    }
 }
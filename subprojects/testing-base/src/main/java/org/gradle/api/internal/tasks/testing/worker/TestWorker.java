@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -24,8 +25,10 @@ import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.internal.time.TimeProvider;
 import org.gradle.internal.time.TrueTimeProvider;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableScheduledExecutor;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.LongIdGenerator;
@@ -46,12 +49,24 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
     private final WorkerTestClassProcessorFactory factory;
+    private final BatchingTestResultProcessor.Limits batchLimits;
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private TestWorkerListener workerListener;
+    private BatchingTestResultProcessor batchingResultProcessor;
+    private StoppableScheduledExecutor batchFlushExecutor;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
+        this(factory, null);
+    }
+
+    /**
+     * @param batchLimits The bounds of the batches of test events to send to the build process, or null to send each test event separately.
+     */
+    public TestWorker(WorkerTestClassProcessorFactory factory, @Nullable BatchingTestResultProcessor.Limits batchLimits) {
         this.factory = factory;
+        this.batchLimits = batchLimits;
     }
 
     @Override
@@ -91,7 +106,15 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
 
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        if (batchLimits != null) {
+            batchFlushExecutor = testServices.get(ExecutorFactory.class).createScheduled("Test event batch flusher", 1);
+            batchingResultProcessor = new BatchingTestResultProcessor(serverConnection.addOutgoing(TestEventBatchProcessor.class), batchFlushExecutor, batchLimits);
+            serverConnection.addIncoming(TestEventBatchListener.class, batchingResultProcessor);
+            this.resultProcessor = batchingResultProcessor;
+        } else {
+            this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        }
+        this.workerListener = serverConnection.addOutgoing(TestWorkerListener.class);
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
     }
@@ -110,6 +133,12 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         } finally {
             // Clean the interrupted status
             Thread.interrupted();
+            // Send the events of the test class ahead of asking for the next one
+            if (batchingResultProcessor != null) {
+                batchingResultProcessor.flush();
+            }
+            // Ask for the next test class
+            workerListener.testClassProcessed();
         }
     }
 
@@ -119,7 +148,11 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         try {
             processor.stop();
         } finally {
-            completed.countDown();
+            try {
+                CompositeStoppable.stoppable(batchingResultProcessor, batchFlushExecutor).stop();
+            } finally {
+                completed.countDown();
+            }
         }
     }
 
@@ -71,7 +71,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(_) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
         1 * asyncProcessor1.processTestClass(test)
@@ -101,7 +101,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(_) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
         1 * asyncProcessor1.processTestClass(test)
@@ -111,7 +111,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
         then:
         1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actorFactory.createActor(_) >> actor2
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
         1 * asyncProcessor2.startProcessing(asyncResultProcessor)
         1 * asyncProcessor2.processTestClass(test)
@@ -124,47 +124,75 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * asyncProcessor2.stop()
     }
 
-    def roundRobinsTestClassesToProcessors() {
-        TestClassRunInfo test = Mock()
+    def assignsTestClassesToProcessorsAsTheyBecomeFree() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassRunInfo test4 = Mock()
+        TestClassRunInfo test5 = Mock()
         TestClassProcessor processor1 = Mock()
         TestClassProcessor processor2 = Mock()
         TestClassProcessor asyncProcessor1 = Mock()
         TestClassProcessor asyncProcessor2 = Mock()
         Actor actor1 = Mock()
         Actor actor2 = Mock()
+        TestClassProcessor target1
+        TestClassProcessor target2
 
         startProcessor()
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(_) >> { args -> target1 = args[0]; actor1 }
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * factory.create() >> processor2
+        1 * actorFactory.createActor(_) >> { args -> target2 = args[0]; actor2 }
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor2.processTestClass(test2)
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test3)
+        processor.processTestClass(test4)
 
         then:
-        1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
-        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        0 * factory._
+        0 * asyncProcessor1._
+        0 * asyncProcessor2._
 
         when:
-        processor.processTestClass(test)
+        target2.processTestClass(test2)
 
         then:
-        1 * asyncProcessor1.processTestClass(test)
+        1 * processor2.processTestClass(test2)
+
+        then:
+        1 * asyncProcessor2.processTestClass(test3)
+        0 * asyncProcessor1._
 
         when:
-        processor.processTestClass(test)
+        target1.processTestClass(test1)
 
         then:
-        1 * asyncProcessor2.processTestClass(test)
+        1 * processor1.processTestClass(test1)
+
+        then:
+        1 * asyncProcessor1.processTestClass(test4)
+
+        when:
+        target2.processTestClass(test3)
+        processor.processTestClass(test5)
+
+        then:
+        1 * processor2.processTestClass(test3)
+
+        then:
+        1 * asyncProcessor2.processTestClass(test5)
+        0 * factory._
+        0 * asyncProcessor1._
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import spock.lang.Specification
+
+class OrderingTestClassProcessorTest extends Specification {
+    private final TestClassProcessor delegate = Mock()
+    private final TestResultProcessor resultProcessor = Mock()
+    private final OrderingTestClassProcessor processor = new OrderingTestClassProcessor(delegate, { TestClassRunInfo a, TestClassRunInfo b -> a.testClassName.length() <=> b.testClassName.length() } as Comparator)
+
+    def "passes test classes to delegate in order when stopped"() {
+        def test1 = new DefaultTestClassRunInfo("Test")
+        def test2 = new DefaultTestClassRunInfo("LongTest")
+        def test3 = new DefaultTestClassRunInfo("ATest")
+        def test4 = new DefaultTestClassRunInfo("BTest")
+
+        when:
+        processor.startProcessing(resultProcessor)
+
+        then:
+        1 * delegate.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
+        processor.processTestClass(test4)
+
+        then:
+        0 * delegate._
+
+        when:
+        processor.stop()
+
+        then:
+        1 * delegate.processTestClass(test1)
+
+        then:
+        1 * delegate.processTestClass(test3)
+
+        then:
+        1 * delegate.processTestClass(test4)
+
+        then:
+        1 * delegate.processTestClass(test2)
+
+        then:
+        1 * delegate.stop()
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+class BatchingTestResultProcessorTest extends ConcurrentSpec {
+    def target = Mock(TestEventBatchProcessor)
+    def flushExecutor = Mock(ScheduledExecutorService)
+    def resultProcessor = Mock(TestResultProcessor)
+    def test = Mock(TestDescriptorInternal)
+    def processor = new BatchingTestResultProcessor(target, flushExecutor, new BatchingTestResultProcessor.Limits(3, 10, 50, 1))
+
+    def "merges consecutive output of a test for the same destination"() {
+        def batch = null
+
+        when:
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "a"))
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "b"))
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "c"))
+        processor.output("other", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "d"))
+        processor.stop()
+        batch.replayTo(resultProcessor)
+
+        then:
+        1 * target.process(_) >> { batch = it[0] }
+        batch.size() == 3
+
+        then:
+        1 * resultProcessor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "ab"))
+
+        then:
+        1 * resultProcessor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "c"))
+
+        then:
+        1 * resultProcessor.output("other", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "d"))
+        0 * resultProcessor._
+    }
+
+    def "sends batch when it reaches the maximum number of events"() {
+        def scheduledFlush = Mock(ScheduledFuture)
+
+        when:
+        processor.started(test, new TestStartEvent(1L))
+        processor.failure("test", new RuntimeException())
+
+        then:
+        1 * flushExecutor.schedule(_, 50, TimeUnit.MILLISECONDS) >> scheduledFlush
+        0 * target._
+
+        when:
+        processor.completed("test", new TestCompleteEvent(2L))
+
+        then:
+        1 * scheduledFlush.cancel(false)
+        1 * target.process({ it.size() == 3 })
+    }
+
+    def "sends batch when it reaches the maximum length of output"() {
+        when:
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "0123456789"))
+
+        then:
+        1 * target.process({ it.outputLength == 10 })
+        0 * flushExecutor._
+    }
+
+    def "sends batch when its first event reaches the maximum latency"() {
+        def latencyFlush = null
+
+        when:
+        processor.started(test, new TestStartEvent(1L))
+        processor.completed("test", new TestCompleteEvent(2L))
+
+        then:
+        1 * flushExecutor.schedule(_, 50, TimeUnit.MILLISECONDS) >> { latencyFlush = it[0]; Mock(ScheduledFuture) }
+        0 * target._
+
+        when:
+        latencyFlush.run()
+
+        then:
+        1 * target.process({ it.size() == 2 })
+    }
+
+    def "does not send empty batch"() {
+        when:
+        processor.flush()
+        processor.stop()
+
+        then:
+        0 * target._
+    }
+
+    def "blocks producers while the maximum number of batches is outstanding"() {
+        given:
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "0123456789"))
+
+        when:
+        async {
+            start {
+                instant.producing
+                processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "0123456789"))
+                instant.sent
+            }
+            thread.blockUntil.producing
+            thread.block()
+            instant.acknowledged
+            processor.batchProcessed()
+        }
+
+        then:
+        instant.sent > instant.acknowledged
+    }
+
+    def "stops blocking producers when the build process goes away"() {
+        given:
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "0123456789"))
+        processor.endStream()
+
+        when:
+        processor.output("test", new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "0123456789"))
+
+        then:
+        1 * target.process(_)
+    }
+}
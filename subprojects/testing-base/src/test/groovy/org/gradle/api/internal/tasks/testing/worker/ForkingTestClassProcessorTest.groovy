@@ -55,11 +55,23 @@ class ForkingTestClassProcessorTest extends Specification {
 
         then:
         1 * processor.forkProcess() >> remoteProcessor
-        1 * remoteProcessor.processTestClass(test1)
-        1 * remoteProcessor.processTestClass(test2)
+        1 * remoteProcessor.processTestClass(test1) >> { processor.workerProgress.testClassProcessed() }
+        1 * remoteProcessor.processTestClass(test2) >> { processor.workerProgress.testClassProcessed() }
         0 * remoteProcessor._
     }
 
+    def "stops waiting for worker when its connection ends"() {
+        def test = Mock(TestClassRunInfo)
+        def remoteProcessor = Mock(RemoteTestClassProcessor)
+
+        when:
+        processor.processTestClass(test)
+
+        then:
+        1 * processor.forkProcess() >> remoteProcessor
+        1 * remoteProcessor.processTestClass(test) >> { processor.workerProgress.endStream() }
+    }
+
     def "starts process with a limited implementation classpath"() {
         setup:
         1 * workerProcessFactory.create(_) >> workerProcessBuilder
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The duration and outcome of each test class of a test task, the last time it was executed. The history is kept next to the binary test results of
+ * the task and updated after each execution, so that test classes which were not executed, for example because of a test filter, keep their history.
+ */
+public class TestClassHistory {
+    /**
+     * The system property used to select the order in which test classes are executed, either {@code failed-first} or {@code longest-first}.
+     * When not set, test classes are executed in the order they are found.
+     */
+    public static final String ORDER_PROPERTY = "org.gradle.internal.test.order";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassHistory.class);
+    private static final int HISTORY_VERSION = 1;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public enum Order {
+        /**
+         * Test classes that failed in the previous execution first, then test classes without history, then the others. Longest first within each group.
+         */
+        FAILED_FIRST("failed-first"),
+        /**
+         * Test classes without history first, then the others, longest first.
+         */
+        LONGEST_FIRST("longest-first");
+
+        private final String name;
+
+        Order(String name) {
+            this.name = name;
+        }
+
+        @Nullable
+        public static Order forName(@Nullable String name) {
+            if (name == null) {
+                return null;
+            }
+            for (Order order : values()) {
+                if (order.name.equals(name)) {
+                    return order;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unknown test class order '%s' for system property '%s'.", name, ORDER_PROPERTY));
+        }
+    }
+
+    /**
+     * Reads the history kept in the given binary results directory. Returns an empty history when there is none, or it cannot be read.
+     */
+    public static TestClassHistory read(File resultsDir) {
+        TestClassHistory history = new TestClassHistory();
+        File historyFile = historyFile(resultsDir);
+        if (!historyFile.isFile()) {
+            return history;
+        }
+        try {
+            InputStream inputStream = new FileInputStream(historyFile);
+            try {
+                Decoder decoder = new KryoBackedDecoder(inputStream);
+                if (decoder.readSmallInt() != HISTORY_VERSION) {
+                    return history;
+                }
+                int count = decoder.readSmallInt();
+                for (int i = 0; i < count; i++) {
+                    String className = decoder.readString();
+                    history.entries.put(className, new Entry(decoder.readSmallLong(), decoder.readBoolean()));
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not read test class history from {}.", historyFile, e);
+            history.entries.clear();
+        }
+        return history;
+    }
+
+    public void update(Collection<TestClassResult> results) {
+        for (TestClassResult result : results) {
+            entries.put(result.getClassName(), new Entry(result.getDuration(), result.getFailuresCount() > 0));
+        }
+    }
+
+    public void write(File resultsDir) {
+        try {
+            OutputStream outputStream = new FileOutputStream(historyFile(resultsDir));
+            try {
+                FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                encoder.writeSmallInt(HISTORY_VERSION);
+                encoder.writeSmallInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeSmallLong(entry.getValue().duration);
+                    encoder.writeBoolean(entry.getValue().failed);
+                }
+                encoder.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a comparator that sorts test classes in the given order, based on this history.
+     */
+    public Comparator<TestClassRunInfo> comparatorFor(final Order order) {
+        return new Comparator<TestClassRunInfo>() {
+            @Override
+            public int compare(TestClassRunInfo left, TestClassRunInfo right) {
+                Entry leftEntry = entries.get(left.getTestClassName());
+                Entry rightEntry = entries.get(right.getTestClassName());
+                int result = rank(order, leftEntry) - rank(order, rightEntry);
+                if (result != 0 || leftEntry == null || rightEntry == null) {
+                    return result;
+                }
+                return leftEntry.duration < rightEntry.duration ? 1 : leftEntry.duration > rightEntry.duration ? -1 : 0;
+            }
+        };
+    }
+
+    private static int rank(Order order, @Nullable Entry entry) {
+        if (order == Order.FAILED_FIRST && entry != null && entry.failed) {
+            return 0;
+        }
+        return entry == null ? 1 : 2;
+    }
+
+    private static File historyFile(File resultsDir) {
+        return new File(resultsDir, "history.bin");
+    }
+
+    private static class Entry {
+        private final long duration;
+        private final boolean failed;
+
+        Entry(long duration, boolean failed) {
+            this.duration = duration;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class TestClassHistoryTest extends Specification {
+    @Rule
+    private TestNameTestDirectoryProvider tmp = new TestNameTestDirectoryProvider()
+
+    def "keeps history of test classes that were not executed"() {
+        def dir = tmp.createDir("results")
+        def history = TestClassHistory.read(dir)
+        history.update([classResult("Slow", 1000, false), classResult("Fast", 10, false)])
+        history.write(dir)
+
+        when:
+        history = TestClassHistory.read(dir)
+        history.update([classResult("Fast", 20, true)])
+        history.write(dir)
+
+        then:
+        order(TestClassHistory.read(dir), TestClassHistory.Order.LONGEST_FIRST, "Fast", "Slow") == ["Slow", "Fast"]
+        order(TestClassHistory.read(dir), TestClassHistory.Order.FAILED_FIRST, "Slow", "Fast") == ["Fast", "Slow"]
+    }
+
+    def "orders test classes without history before the others"() {
+        def history = new TestClassHistory()
+        history.update([classResult("Failed", 10, true), classResult("Slow", 1000, false), classResult("Fast", 10, false)])
+
+        expect:
+        order(history, TestClassHistory.Order.LONGEST_FIRST, "Fast", "New1", "Failed", "Slow", "New2") == ["New1", "New2", "Slow", "Fast", "Failed"]
+        order(history, TestClassHistory.Order.FAILED_FIRST, "Fast", "New1", "Failed", "Slow", "New2") == ["Failed", "New1", "New2", "Slow", "Fast"]
+    }
+
+    def "uses empty history when there is none"() {
+        expect:
+        order(TestClassHistory.read(tmp.createDir("results")), TestClassHistory.Order.FAILED_FIRST, "B", "A") == ["B", "A"]
+    }
+
+    def "fails on unknown order"() {
+        when:
+        TestClassHistory.Order.forName("random")
+
+        then:
+        thrown(IllegalArgumentException)
+
+        expect:
+        TestClassHistory.Order.forName(null) == null
+        TestClassHistory.Order.forName("longest-first") == TestClassHistory.Order.LONGEST_FIRST
+    }
+
+    def classResult(String className, long duration, boolean failed) {
+        def result = new TestClassResult(1, className, 1000)
+        def method = new TestMethodResult(1, "test", failed ? TestResult.ResultType.FAILURE : TestResult.ResultType.SUCCESS, duration, 1000 + duration)
+        if (failed) {
+            method.addFailure("message", "stack-trace", "ExceptionType")
+        }
+        result.add(method)
+        return result
+    }
+
+    def order(TestClassHistory history, TestClassHistory.Order order, String... classNames) {
+        def testClasses = classNames.collect { new DefaultTestClassRunInfo(it) }
+        Collections.sort(testClasses, history.comparatorFor(order))
+        return testClasses*.testClassName
+    }
+}